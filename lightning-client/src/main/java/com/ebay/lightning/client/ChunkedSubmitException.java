@@ -0,0 +1,52 @@
+package com.ebay.lightning.client;
+
+import java.util.Iterator;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.config.RequestConfig;
+
+/**
+ * The {@code ChunkedSubmitException} is thrown when a chunk of a request submitted in chunks could not be appended.
+ * The tasks submitted before the failure keep running on the seed, which seals the request once no chunk arrives
+ * within its idle timeout. The request is available from {@link #getSubmittedRequest()} to be polled.
+ *
+ * @author shashukla
+ * @see LightningClient#submitInChunks(Iterator, int, int, RequestConfig)
+ */
+public class ChunkedSubmitException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient LightningRequest submittedRequest;
+	private final int submittedTaskCount;
+
+	/**
+	 * Create the exception.
+	 * @param submittedRequest the request submitted with the first chunk
+	 * @param submittedTaskCount the number of tasks submitted before the failure
+	 * @param cause the failure of the chunk that could not be appended
+	 */
+	public ChunkedSubmitException(LightningRequest submittedRequest, int submittedTaskCount, Throwable cause) {
+		super("Submitted " + submittedTaskCount + " tasks of request " + submittedRequest.getSessionId() + " before the failure", cause);
+		this.submittedRequest = submittedRequest;
+		this.submittedTaskCount = submittedTaskCount;
+	}
+
+	/**
+	 * Get the request submitted with the first chunk, its session id is used to poll the tasks submitted before the
+	 * failure.
+	 * @return the request with the first chunk of tasks
+	 */
+	public LightningRequest getSubmittedRequest() {
+		return submittedRequest;
+	}
+
+	/**
+	 * Get the number of tasks submitted before the failure, the tasks are indexed in submit order.
+	 * @return the number of tasks submitted
+	 */
+	public int getSubmittedTaskCount() {
+		return submittedTaskCount;
+	}
+}
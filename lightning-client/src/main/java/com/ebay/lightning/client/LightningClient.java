@@ -4,20 +4,43 @@
 package com.ebay.lightning.client;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import com.ebay.lightning.client.caller.LightningProgressCallback;
 import com.ebay.lightning.client.caller.LightningResponseCallback;
+import com.ebay.lightning.client.caller.RestAPICaller;
 import com.ebay.lightning.client.caller.ServiceCaller;
+import com.ebay.lightning.client.caller.WebSocketAPICaller;
 import com.ebay.lightning.client.config.LightningClientConfig;
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.SystemStatus;
 import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTemplate;
 import com.ebay.lightning.core.config.RequestConfig;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.store.LightningRequestReport;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * {@code LightningClient} provides the interface for users to submit requests, poll response, see audit data etc to/from lightning core.
@@ -43,6 +66,29 @@ public interface LightningClient {
 	 */
 	LightningRequest submit(List<Task> tasks, RequestConfig requestconfig);
 
+	/**
+	 * Submit the tasks as a URL template that the seed expands while executing the request.
+	 *
+	 * The submit payload holds the template and its parameter values instead of a task per URL.
+	 * @param urlTemplate the template and the values of its placeholders
+	 * @param requestconfig configuration parameters to execute the task
+	 * @return {@code LightningRequest} that contain {@code sessionId}, {@code ReservationReceipt} etc
+	 */
+	LightningRequest submit(URLTemplate urlTemplate, RequestConfig requestconfig);
+
+	/**
+	 * Submit the tasks in chunks; the seed starts executing the first chunk while the later chunks are appended.
+	 *
+	 * Only one chunk of tasks is held by the client if the iterator creates the tasks lazily.
+	 * @param tasks iterator over the {@code Task} to be executed asynchronously
+	 * @param taskCount the total number of tasks, the reservation is made for this load
+	 * @param chunkSize the maximum number of tasks sent in one call
+	 * @param requestconfig configuration parameters to execute the task
+	 * @return {@code LightningRequest} that contain {@code sessionId}, {@code ReservationReceipt} and the first chunk of tasks
+	 * @throws ChunkedSubmitException if a chunk could not be appended, with the request submitted before
+	 */
+	LightningRequest submitInChunks(Iterator<Task> tasks, int taskCount, int chunkSize, RequestConfig requestconfig);
+
 	/**
 	 * Submit a list of tasks to be executed asynchronously at high speed.
 	 * @param tasks list of {@code Task} to be executed asynchronously
@@ -55,12 +101,58 @@ public interface LightningClient {
 	 * Submit a list of tasks to be executed asynchronously and configuration parameters.
 	 * @param tasks list of {@code Task} to be executed asynchronously
 	 * @param requestconfig configuration parameters to execute the task
-	 * @param callback {@code LightningResponseCallback} to invoke on completion of request or timeout.
+	 * @param callback {@code LightningResponseCallback} to invoke on completion of request or timeout, a
+	 * {@link LightningProgressCallback} is also notified of the tasks completed while the request runs
 	 * @param timeoutInMillis timeout for callback
 	 */
 	void submitWithCallback(List<Task> tasks, RequestConfig requestconfig, LightningResponseCallback callback,
 			final long timeoutInMillis);
 
+	/**
+	 * Submit a list of tasks without blocking the caller.
+	 *
+	 * The reservation, the submit and the polls of the results run on the event loop shared by all the requests
+	 * of the client, no thread is held per request.
+	 * @param tasks list of {@code Task} to be executed asynchronously
+	 * @param requestconfig configuration parameters to execute the task
+	 * @param timeoutInMillis time to wait for the completion of the request after it is submitted
+	 * @return {@code LightningSubmission} with the future of the {@code LightningRequest} and of its final {@code LightningResponse}
+	 */
+	LightningSubmission submitAsync(List<Task> tasks, RequestConfig requestconfig, long timeoutInMillis);
+
+	/**
+	 * Submit a list of tasks split across several seeds, each seed getting a share proportional to its free capacity.
+	 *
+	 * A request larger than the capacity of one seed is executed by several seeds at once. Each seed executes a
+	 * contiguous range of the tasks as a sub request; a small request, or a cluster with a single seed with free
+	 * capacity, gives a single sub request. A sub request gets no more tasks than its seed reserved, the tasks left
+	 * over by a smaller reservation are reserved on the next available seed.
+	 * @param tasks list of {@code Task} to be executed asynchronously
+	 * @param requestconfig configuration parameters to execute the task
+	 * @return {@code ScatteredRequest} that contain the sub requests and the index of their first task
+	 * @throws ScatteredSubmitException if a sub request could not be submitted, with the sub requests submitted before
+	 * throws RuntimeException if the tasks could not be reserved, no sub request is submitted then
+	 */
+	ScatteredRequest submitScattered(List<Task> tasks, RequestConfig requestconfig);
+
+	/**
+	 * Submit a list of tasks split across several seeds, see {@link #submitScattered(List, RequestConfig)}.
+	 * @param tasks list of {@code Task} to be executed asynchronously
+	 * @param requestconfig configuration parameters to execute the task
+	 * @param callback {@code LightningResponseCallback} to invoke with the merged response once all the sub requests
+	 * completed, or once any of them timed out
+	 * @param timeoutInMillis timeout for callback
+	 */
+	void submitScatteredWithCallback(List<Task> tasks, RequestConfig requestconfig, LightningResponseCallback callback,
+			long timeoutInMillis);
+
+	/**
+	 * Poll the current result of all the sub requests of a scattered request.
+	 * @param req the {@code ScatteredRequest} object returned by {@link #submitScattered(List, RequestConfig)} method
+	 * @return {@code LightningResponse} with the indexes of the submitted task list
+	 */
+	LightningResponse pollResponse(ScatteredRequest req);
+
 	/**
 	 * Poll the current result for request.
 	 *
@@ -71,6 +163,17 @@ public interface LightningClient {
 	 */
 	LightningResponse pollResponse(LightningRequest req, boolean pollDeltaOnly);
 
+	/**
+	 * Poll the tasks completed after the change log sequence number.
+	 *
+	 * Unlike {@link #pollResponse(LightningRequest, boolean)} the cursor is held by the caller, so a lost response
+	 * can be polled again and several pollers can follow the same request independently.
+	 * @param req the {@code LightningRequest} object returned by {@link #submit(List)} method
+	 * @param fromSequence the {@link LightningResponse#getSequence()} of the previous poll, 0 for the first poll
+	 * @return {@code LightningResponse} with the tasks completed after {@code fromSequence}
+	 */
+	LightningResponse pollResponse(LightningRequest req, int fromSequence);
+
 	/**
 	 * Get the detailed execution report for the request in compressed format.
 	 *
@@ -139,6 +242,12 @@ public interface LightningClient {
 	 */
 	LightningClientConfig getConfig();
 
+	/**
+	 * Release the threads of the client, including the health checks of the seeds. The requests pending a callback
+	 * are no longer polled and the client cannot be used afterwards.
+	 */
+	void shutdown();
+
 	/**
 	 * {@code LightningClientImpl} is the one and only implementation of {@link LightningClient} as of version 1.0
 	 * This class is package protected to discourage direct instantiation. LightningClientBuild should be used to instantiate LightningClient
@@ -148,14 +257,38 @@ public interface LightningClient {
 	 */
 	static class LightningClientImpl implements LightningClient {
 
+		// capped by half the read timeout of the poll endpoint
+
+		private static final int CALLBACK_QUEUE_SIZE = 10000;
+
+		private static final int IO_QUEUE_SIZE = 10000;
+
 		private final ServiceCaller caller;
 		private final ServiceHostResolver resolver;
 		private final LightningClientConfig config;
+		private final ListeningScheduledExecutorService eventLoop;
+		private final ListeningExecutorService ioExecutor;
+		private final ThreadPoolExecutor callbackExecutor;
+		private final ResponsePoller poller;
 
 		public LightningClientImpl(LightningClientConfig config, ServiceHostResolver resolver, ServiceCaller caller) {
 			this.caller = caller;
 			this.resolver = resolver;
 			this.config = config;
+			// the event loop only schedules, the calls to the seeds block and run on the I/O threads
+			this.eventLoop = MoreExecutors.listeningDecorator(Executors.newScheduledThreadPool(config.getEventLoopThreadPoolSize(),
+					new ThreadFactoryBuilder().setNameFormat("LightningClientEventLoop-%d").setDaemon(true).build()));
+			final ThreadPoolExecutor ioThreadPool = new ThreadPoolExecutor(config.getIoThreadPoolSize(), config.getIoThreadPoolSize(),
+					60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(IO_QUEUE_SIZE),
+					new ThreadFactoryBuilder().setNameFormat("LightningClientIO-%d").setDaemon(true).build());
+			ioThreadPool.allowCoreThreadTimeOut(true);
+			this.ioExecutor = MoreExecutors.listeningDecorator(ioThreadPool);
+			// the callbacks run on the thread of the poller once the queue is full, which slows down the polls
+			this.callbackExecutor = new ThreadPoolExecutor(config.getCallbackThreadPoolSize(), config.getCallbackThreadPoolSize(),
+					60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(CALLBACK_QUEUE_SIZE),
+					new ThreadFactoryBuilder().setNameFormat("LightningClientCallback-%d").setDaemon(true).build(), new ThreadPoolExecutor.CallerRunsPolicy());
+			callbackExecutor.allowCoreThreadTimeOut(true);
+			this.poller = new ResponsePoller(config, caller, eventLoop, ioExecutor, callbackExecutor);
 		}
 
 		/* (non-Javadoc)
@@ -182,6 +315,276 @@ public interface LightningClient {
 			return req;
 		}
 
+		/* (non-Javadoc)
+		 * @see com.ebay.lightning.client.LightningClient#submit(com.ebay.lightning.core.beans.URLTemplate, com.ebay.lightning.core.config.RequestConfig)
+		 */
+		@Override
+		public LightningRequest submit(URLTemplate urlTemplate, RequestConfig requestconfig) {
+			final SimpleEntry<ReservationReceipt, String> resvIdEndpointPair = resolver.getNextEndPoint(urlTemplate.size());
+			final ReservationReceipt reservationReciept = resvIdEndpointPair.getKey();
+			final String endPoint = resvIdEndpointPair.getValue();
+
+			final LightningRequest req = new LightningRequest(UUID.randomUUID().toString(), urlTemplate, reservationReciept);
+			req.setServingHostIp(endPoint);
+			req.setRequestconfig(requestconfig);
+			caller.submit(req, endPoint);
+			return req;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.ebay.lightning.client.LightningClient#submitInChunks(java.util.Iterator, int, int, com.ebay.lightning.core.config.RequestConfig)
+		 */
+		@Override
+		public LightningRequest submitInChunks(Iterator<Task> tasks, int taskCount, int chunkSize, RequestConfig requestconfig) {
+			Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive");
+			final SimpleEntry<ReservationReceipt, String> resvIdEndpointPair = resolver.getNextEndPoint(taskCount);
+			final ReservationReceipt reservationReciept = resvIdEndpointPair.getKey();
+			final String endPoint = resvIdEndpointPair.getValue();
+
+			final LightningRequest req = new LightningRequest(UUID.randomUUID().toString(), nextChunk(tasks, chunkSize), reservationReciept);
+			req.setServingHostIp(endPoint);
+			req.setRequestconfig(requestconfig);
+			req.setStreaming(tasks.hasNext());
+			caller.submit(req, endPoint);
+			int submittedTaskCount = req.getTasks().size();
+			while (tasks.hasNext()) {
+				final LightningRequest chunk = new LightningRequest(req.getSessionId(), nextChunk(tasks, chunkSize), reservationReciept);
+				try {
+					if (!caller.appendTasks(chunk, endPoint, !tasks.hasNext())) {
+						throw new IllegalStateException("Chunk of request " + req.getSessionId() + " not appended @ " + endPoint);
+					}
+				} catch (RuntimeException e) {
+					throw new ChunkedSubmitException(req, submittedTaskCount, e);
+				}
+				submittedTaskCount += chunk.getTasks().size();
+			}
+			return req;
+		}
+
+		private List<Task> nextChunk(Iterator<Task> tasks, int chunkSize) {
+			List<Task> chunk = new ArrayList<>(chunkSize);
+			while (chunk.size() < chunkSize && tasks.hasNext()) {
+				chunk.add(tasks.next());
+			}
+			return chunk;
+		}
+
+		/* (non-Javadoc)
+		 * @see LightningClient#submitAsync(List, RequestConfig, long)
+		 */
+		@Override
+		public LightningSubmission submitAsync(final List<Task> tasks, final RequestConfig requestconfig, final long timeoutInMillis) {
+			final ListenableFuture<SimpleEntry<ReservationReceipt, String>> reservation = resolver.getNextEndPointAsync(tasks.size(), eventLoop, ioExecutor);
+			final ListenableFuture<LightningRequest> request = Futures.transform(reservation,
+					new Function<SimpleEntry<ReservationReceipt, String>, LightningRequest>() {
+						@Override
+						public LightningRequest apply(SimpleEntry<ReservationReceipt, String> resvIdEndpointPair) {
+							final String endPoint = resvIdEndpointPair.getValue();
+							final LightningRequest req = new LightningRequest(UUID.randomUUID().toString(), tasks, resvIdEndpointPair.getKey());
+							req.setServingHostIp(endPoint);
+							req.setRequestconfig(requestconfig);
+							caller.submit(req, endPoint);
+							return req;
+						}
+					}, ioExecutor);
+
+			final SettableFuture<LightningResponse> response = SettableFuture.create();
+			Futures.addCallback(request, new FutureCallback<LightningRequest>() {
+				@Override
+				public void onSuccess(LightningRequest req) {
+					final LightningResponseCallback callback = new FutureResponseCallback(req, response);
+					if (caller instanceof WebSocketAPICaller && ((WebSocketAPICaller) caller).subscribe(req, callback, timeoutInMillis)) {
+						return;
+					}
+					poller.register(req, callback, timeoutInMillis);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					response.setException(t);
+				}
+			}, ioExecutor);
+			return new LightningSubmission(request, response);
+		}
+
+		/* (non-Javadoc)
+		 * @see LightningClient#submitScattered(List, RequestConfig)
+		 */
+		@Override
+		public ScatteredRequest submitScattered(List<Task> tasks, RequestConfig requestconfig) {
+			final List<SimpleEntry<ReservationReceipt, String>> resvIdEndpointPairs = reserveShares(tasks.size());
+			final List<LightningRequest> subRequests = new ArrayList<>();
+			final int[] offsets = new int[resvIdEndpointPairs.size()];
+			int offset = 0;
+			for (int i = 0; i < resvIdEndpointPairs.size(); i++) {
+				final ReservationReceipt reservationReciept = resvIdEndpointPairs.get(i).getKey();
+				final String endPoint = resvIdEndpointPairs.get(i).getValue();
+				// a seed executes no more than its receipt, the reservations left without a task are released
+				final int load = Math.min(reservationReciept.getLoad(), tasks.size() - offset);
+				if (load <= 0) {
+					resolver.releaseReservation(resvIdEndpointPairs.get(i));
+					continue;
+				}
+
+				final LightningRequest req = new LightningRequest(UUID.randomUUID().toString(),
+						new ArrayList<>(tasks.subList(offset, offset + load)), reservationReciept);
+				req.setServingHostIp(endPoint);
+				req.setRequestconfig(requestconfig);
+				try {
+					caller.submit(req, endPoint);
+				} catch (RuntimeException e) {
+					// the reservations of the sub requests not submitted are released, the submitted ones keep running
+					for (int j = i; j < resvIdEndpointPairs.size(); j++) {
+						resolver.releaseReservation(resvIdEndpointPairs.get(j));
+					}
+					throw new ScatteredSubmitException(new ScatteredRequest(UUID.randomUUID().toString(), subRequests,
+							Arrays.copyOf(offsets, subRequests.size()), tasks.size()), e);
+				}
+				offsets[subRequests.size()] = offset;
+				subRequests.add(req);
+				offset += load;
+			}
+			return new ScatteredRequest(UUID.randomUUID().toString(), subRequests, Arrays.copyOf(offsets, subRequests.size()),
+					tasks.size());
+		}
+
+		/**
+		 * Reserve the load across the seeds, the load left over by receipts smaller than their share is reserved on
+		 * the next available seed.
+		 * @param forLoad the total load of the tasks
+		 * @return the reservation receipts, whose loads add up to at least {@code forLoad}, and their seeds
+		 * throws RuntimeException if the load could not be reserved, the reservations made are released
+		 */
+		private List<SimpleEntry<ReservationReceipt, String>> reserveShares(int forLoad) {
+			final List<SimpleEntry<ReservationReceipt, String>> endPoints = new ArrayList<>(resolver.getEndPoints(forLoad));
+			int reserved = 0;
+			for (SimpleEntry<ReservationReceipt, String> endPoint : endPoints) {
+				reserved += endPoint.getKey().getLoad();
+			}
+			try {
+				while (reserved < forLoad) {
+					final SimpleEntry<ReservationReceipt, String> endPoint = resolver.getNextEndPoint(forLoad - reserved);
+					endPoints.add(endPoint);
+					if (endPoint.getKey().getLoad() <= 0) {
+						throw new RuntimeException("Unable to reserve the remaining load " + (forLoad - reserved) + " on " + endPoint.getValue());
+					}
+					reserved += endPoint.getKey().getLoad();
+				}
+			} catch (RuntimeException e) {
+				for (SimpleEntry<ReservationReceipt, String> endPoint : endPoints) {
+					resolver.releaseReservation(endPoint);
+				}
+				throw e;
+			}
+			return endPoints;
+		}
+
+		/* (non-Javadoc)
+		 * @see LightningClient#submitScatteredWithCallback(List, RequestConfig, LightningResponseCallback, long)
+		 */
+		@Override
+		public void submitScatteredWithCallback(List<Task> tasks, RequestConfig requestconfig, LightningResponseCallback callback,
+				long timeoutInMillis) {
+			final ScatteredRequest request = submitScattered(tasks, requestconfig);
+			final GatheringCallback gathering = new GatheringCallback(request, callback);
+			for (int i = 0; i < request.getSubRequests().size(); i++) {
+				addResponseCallback(request.getSubRequests().get(i), gathering.forSubRequest(i), timeoutInMillis);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see LightningClient#pollResponse(ScatteredRequest)
+		 */
+		@Override
+		public LightningResponse pollResponse(ScatteredRequest req) {
+			final List<LightningResponse> responses = new ArrayList<>();
+			for (LightningRequest subRequest : req.getSubRequests()) {
+				responses.add(caller.pollResults(subRequest.getSessionId(), subRequest.getServingHostIp(), false));
+			}
+			return req.gather(responses);
+		}
+
+		/**
+		 * Invoke the callback of a scattered request with the merged response once every sub request completed or
+		 * timed out.
+		 */
+		private static class GatheringCallback {
+
+			private final ScatteredRequest request;
+			private final LightningResponseCallback callback;
+			private final List<LightningResponse> responses;
+			private int pending;
+			private boolean timedOut;
+
+			private GatheringCallback(ScatteredRequest request, LightningResponseCallback callback) {
+				this.request = request;
+				this.callback = callback;
+				this.pending = request.getSubRequests().size();
+				this.responses = new ArrayList<>(Collections.<LightningResponse> nCopies(pending, null));
+			}
+
+			private LightningResponseCallback forSubRequest(final int subRequest) {
+				return new LightningResponseCallback() {
+					@Override
+					public void onComplete(LightningResponse response) {
+						onResponse(subRequest, response, false);
+					}
+
+					@Override
+					public void onTimeout(LightningResponse response) {
+						onResponse(subRequest, response, true);
+					}
+				};
+			}
+
+			private void onResponse(int subRequest, LightningResponse response, boolean subRequestTimedOut) {
+				final LightningResponse gathered;
+				final boolean anyTimedOut;
+				synchronized (this) {
+					responses.set(subRequest, response);
+					timedOut |= subRequestTimedOut;
+					if (--pending > 0) {
+						return;
+					}
+					gathered = request.gather(responses);
+					anyTimedOut = timedOut;
+				}
+				if (anyTimedOut) {
+					callback.onTimeout(gathered);
+				} else {
+					callback.onComplete(gathered);
+				}
+			}
+		}
+
+		/**
+		 * Complete the response future of a request submitted with {@link #submitAsync(List, RequestConfig, long)}.
+		 */
+		private static class FutureResponseCallback implements LightningResponseCallback {
+
+			private final LightningRequest request;
+			private final SettableFuture<LightningResponse> future;
+
+			private FutureResponseCallback(LightningRequest request, SettableFuture<LightningResponse> future) {
+				this.request = request;
+				this.future = future;
+			}
+
+			@Override
+			public void onComplete(LightningResponse response) {
+				future.set(response);
+			}
+
+			@Override
+			public void onTimeout(LightningResponse response) {
+				if (response != null) {
+					future.set(response);
+				} else {
+					future.setException(new TimeoutException("No response for " + request.getSessionId() + " from " + request.getServingHostIp()));
+				}
+			}
+		}
+
 		/* (non-Javadoc)
 		 * @see com.ebay.lightning.client.LightningClient#pollResponse(com.ebay.lightning.core.beans.LightningRequest, boolean)
 		 */
@@ -190,6 +593,14 @@ public interface LightningClient {
 			return caller.pollResults(req.getSessionId(), req.getServingHostIp(), pollDeltaOnly);
 		}
 
+		/* (non-Javadoc)
+		 * @see com.ebay.lightning.client.LightningClient#pollResponse(com.ebay.lightning.core.beans.LightningRequest, int)
+		 */
+		@Override
+		public LightningResponse pollResponse(LightningRequest req, int fromSequence) {
+			return caller.pollResults(req.getSessionId(), req.getServingHostIp(), fromSequence);
+		}
+
 		/* (non-Javadoc)
 		 * @see LightningClient#submitWithCallback(List, LightningResponseCallback, long)
 		 */
@@ -217,22 +628,14 @@ public interface LightningClient {
 		 * @param timeoutInMillis timeout for callback
 		 */
 		protected void addResponseCallback(final LightningRequest request, final LightningResponseCallback callback, final long timeoutInMillis) {
-			new Thread(){
-				@Override
-				public void run() {
-					boolean notTimedOut = true;
-					final long startTime = System.currentTimeMillis();
-					while (notTimedOut) {
-						notTimedOut = (System.currentTimeMillis() - startTime) < timeoutInMillis;
-						final LightningResponse pollResults = caller.pollResults(request.getSessionId(), request.getServingHostIp(), false);
-						if (pollResults.isCompleted()) {
-							callback.onComplete(caller.pollResults(request.getSessionId(), request.getServingHostIp(), false));
-							return;
-						}
-					}
-					callback.onTimeout(caller.pollResults(request.getSessionId(), request.getServingHostIp(), false));
-				}
-			}.start();
+			if (caller instanceof WebSocketAPICaller && ((WebSocketAPICaller) caller).subscribe(request, callback, timeoutInMillis)) {
+				return;
+			}
+			if (config.isLongPollEnabled() && caller instanceof RestAPICaller) {
+				poller.registerLongPoll(request, callback, timeoutInMillis);
+				return;
+			}
+			poller.register(request, callback, timeoutInMillis);
 		}
 
 		/* (non-Javadoc)
@@ -299,6 +702,17 @@ public interface LightningClient {
 			return config;
 		}
 
+		/* (non-Javadoc)
+		 * @see com.ebay.lightning.client.LightningClient#shutdown()
+		 */
+		@Override
+		public void shutdown() {
+			eventLoop.shutdownNow();
+			ioExecutor.shutdownNow();
+			callbackExecutor.shutdown();
+			resolver.close();
+		}
+
 	}
 
 }
\ No newline at end of file
@@ -1,19 +1,23 @@
 package com.ebay.lightning.client;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.ebay.lightning.client.caller.EmbeddedAPICaller;
 import com.ebay.lightning.client.caller.RestAPICaller;
 import com.ebay.lightning.client.caller.ServiceCaller;
+import com.ebay.lightning.client.caller.WebSocketAPICaller;
 import com.ebay.lightning.client.config.LightningClientConfig;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.manager.TaskExecutionManager;
 import com.ebay.lightning.core.services.TaskExecutionService;
 import com.ebay.lightning.core.services.TaskExecutionServiceImpl;
 import com.ebay.lightning.core.store.ExecutionDataStore;
+import com.ebay.lightning.core.utils.BinaryCodec;
 import com.ebay.lightning.core.utils.InetSocketAddressCache;
 import com.ebay.lightning.core.utils.UrlUtils;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
 
 /**
  * <p>
@@ -64,9 +68,31 @@ public class LightningClientBuilder {
 	private String lightningStatsUrl = "http://{host}:port/l/lightningStats";
 	private String systemConfigUrl = "http://{host}:port/l/getSystemConfig";
 	private String systemConfigUpdateUrl = "http://{host}:port/l/updateSystemConfig";
+	private String pushApiUrl = "ws://{host}:port/l/push";
+	private String ecvUrl = "http://{host}:port/l/ecv";
 
 	private boolean embeddedMode = false;
 	private boolean allowCrossRegionInteraction = true;
+	private boolean binaryCodecEnabled = false;
+	private boolean webSocketPushEnabled = false;
+	private boolean longPollEnabled = false;
+	private int eventLoopThreadPoolSize = 2;
+	private int ioThreadPoolSize = 16;
+	private long minPollIntervalInMillis = 50;
+	private long maxPollIntervalInMillis = 2000;
+	private int callbackThreadPoolSize = 4;
+	private int minScatterLoad = 1000;
+	private int reservationFanOut = 3;
+	private long healthCheckIntervalInMillis = 5000;
+	private int maxConsecutiveFailures = 3;
+	private long baseEjectionTimeInMillis = 1000;
+	private List<Codec> compressionCodecs;
+	private int maxIdleConnectionsPerSeed = 0;
+	private int connectTimeoutInMillis = LightningClientConfig.DEFAULT_TIMEOUT_IN_MILLIS;
+	private int reserveReadTimeoutInMillis = LightningClientConfig.DEFAULT_TIMEOUT_IN_MILLIS;
+	private int submitReadTimeoutInMillis = LightningClientConfig.DEFAULT_TIMEOUT_IN_MILLIS;
+	private int pollReadTimeoutInMillis = LightningClientConfig.DEFAULT_TIMEOUT_IN_MILLIS;
+	private int auditReadTimeoutInMillis = LightningClientConfig.DEFAULT_TIMEOUT_IN_MILLIS;
 	private int corePort;
 
 	/**
@@ -79,6 +105,15 @@ public class LightningClientBuilder {
 	public LightningClient build() {
 		final LightningClientConfig config = new LightningClientConfig();
 		config.setEmbeddedMode(embeddedMode);
+		config.setEventLoopThreadPoolSize(eventLoopThreadPoolSize);
+		config.setIoThreadPoolSize(ioThreadPoolSize);
+		config.setMinPollIntervalInMillis(minPollIntervalInMillis);
+		config.setMaxPollIntervalInMillis(maxPollIntervalInMillis);
+		config.setCallbackThreadPoolSize(callbackThreadPoolSize);
+		config.setMinScatterLoad(minScatterLoad);
+		config.setReservationFanOut(reservationFanOut);
+		config.setMaxConsecutiveFailures(maxConsecutiveFailures);
+		config.setBaseEjectionTimeInMillis(baseEjectionTimeInMillis);
 		ServiceCaller apiCaller = null;
 		if (embeddedMode) {
 			final SystemConfig systemConfig = new SystemConfig();
@@ -104,8 +139,21 @@ public class LightningClientBuilder {
 			config.setSystemConfigUpdateUrl(systemConfigUpdateUrl.replace(":port", ":" + corePort));
 			config.setCrossRegionSeeds(crossRegionSeeds);
 			config.setAllowCrossRegionInteraction(allowCrossRegionInteraction);
+			config.setBinaryCodecEnabled(binaryCodecEnabled);
+			config.setPushApiUrl(pushApiUrl.replace(":port", ":" + corePort));
+			config.setEcvUrl(ecvUrl.replace(":port", ":" + corePort));
+			config.setHealthCheckIntervalInMillis(healthCheckIntervalInMillis);
+			config.setWebSocketPushEnabled(webSocketPushEnabled);
+			config.setLongPollEnabled(longPollEnabled);
+			config.setCompressionCodecs(compressionCodecs);
+			config.setMaxIdleConnectionsPerSeed(maxIdleConnectionsPerSeed);
+			config.setConnectTimeoutInMillis(connectTimeoutInMillis);
+			config.setReserveReadTimeoutInMillis(reserveReadTimeoutInMillis);
+			config.setSubmitReadTimeoutInMillis(submitReadTimeoutInMillis);
+			config.setPollReadTimeoutInMillis(pollReadTimeoutInMillis);
+			config.setAuditReadTimeoutInMillis(auditReadTimeoutInMillis);
 
-			apiCaller = new RestAPICaller(config, urlUtils);
+			apiCaller = webSocketPushEnabled ? new WebSocketAPICaller(config, urlUtils) : new RestAPICaller(config, urlUtils);
 		}
 		final ServiceHostResolver resolver = new ServiceHostResolver(config, apiCaller);
 		return new LightningClient.LightningClientImpl(config, resolver, apiCaller);
@@ -312,6 +360,23 @@ public class LightningClientBuilder {
 		return this;
 	}
 
+	/**
+	 * Set the WebSocket URL template for the results pushed by the lightning core.
+	 *
+	 * <p>
+	 * Format: ws://{hostname}:[port]/[some/push/url]<br>
+	 * Example: ws://{host}:{port}/l/push
+	 * </p>
+	 *
+	 * @param pushApiUrl
+	 *            the URL template for the results pushed by the lightning core
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setPushApiUrlTemplate(String pushApiUrl) {
+		this.pushApiUrl = pushApiUrl;
+		return this;
+	}
+
 	/**
 	 * Set the lightning core to run in embedded mode.
 	 * If set to {@code true}, the lightning core will run in embedded mode.
@@ -337,6 +402,234 @@ public class LightningClientBuilder {
 		return this;
 	}
 
+	/**
+	 * Exchange requests and responses with the lightning core in the binary format of {@link BinaryCodec}.
+	 * Enable only when every lightning core supports the binary format.
+	 * @param binaryCodecEnabled to enable the binary format
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setBinaryCodecEnabled(boolean binaryCodecEnabled) {
+		this.binaryCodecEnabled = binaryCodecEnabled;
+		return this;
+	}
+
+	/**
+	 * Get the results of the requests submitted with a callback pushed by the lightning core over WebSocket
+	 * instead of polling. The results are polled if the lightning core does not accept the WebSocket connection.
+	 * @param webSocketPushEnabled to enable the results pushed over WebSocket
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setWebSocketPushEnabled(boolean webSocketPushEnabled) {
+		this.webSocketPushEnabled = webSocketPushEnabled;
+		return this;
+	}
+
+	/**
+	 * Long poll the results of the requests submitted with a callback instead of polling repeatedly, the
+	 * lightning core holds each poll until a task completes. The requests of a lightning core that does not support
+	 * it are polled instead.
+	 * @param longPollEnabled to enable the long poll
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setLongPollEnabled(boolean longPollEnabled) {
+		this.longPollEnabled = longPollEnabled;
+		return this;
+	}
+
+	/**
+	 * Set the number of threads of the event loop that schedules the polls and retries of the requests submitted
+	 * asynchronously.
+	 * @param eventLoopThreadPoolSize the thread pool size of the event loop
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setEventLoopThreadPoolSize(int eventLoopThreadPoolSize) {
+		this.eventLoopThreadPoolSize = eventLoopThreadPoolSize;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of threads calling the seeds for the requests submitted asynchronously.
+	 * @param ioThreadPoolSize the thread pool size of the seed calls
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setIoThreadPoolSize(int ioThreadPoolSize) {
+		this.ioThreadPoolSize = ioThreadPoolSize;
+		return this;
+	}
+
+	/**
+	 * Set the interval between the first polls of a request submitted with a callback, the interval grows with the age
+	 * of the request up to the maximum poll interval.
+	 * @param minPollIntervalInMillis the minimum poll interval
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setMinPollIntervalInMillis(long minPollIntervalInMillis) {
+		this.minPollIntervalInMillis = minPollIntervalInMillis;
+		return this;
+	}
+
+	/**
+	 * Set the longest interval between the polls of a request submitted with a callback.
+	 * @param maxPollIntervalInMillis the maximum poll interval
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setMaxPollIntervalInMillis(long maxPollIntervalInMillis) {
+		this.maxPollIntervalInMillis = maxPollIntervalInMillis;
+		return this;
+	}
+
+	/**
+	 * Set the number of threads that invoke the callbacks of the requests.
+	 * @param callbackThreadPoolSize the thread pool size of the callbacks
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setCallbackThreadPoolSize(int callbackThreadPoolSize) {
+		this.callbackThreadPoolSize = callbackThreadPoolSize;
+		return this;
+	}
+
+	/**
+	 * Set the minimum number of tasks sent to a seed by a scattered request, the seeds with too little free
+	 * capacity for this share are left out.
+	 * @param minScatterLoad the minimum number of tasks per seed of a scattered request
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setMinScatterLoad(int minScatterLoad) {
+		this.minScatterLoad = minScatterLoad;
+		return this;
+	}
+
+	/**
+	 * Set the number of seeds a reservation is sent to at once. The least busy seed that accepted is used and the
+	 * reservations on the other seeds are cancelled.
+	 * @param reservationFanOut the number of seeds reserved in parallel
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setReservationFanOut(int reservationFanOut) {
+		this.reservationFanOut = reservationFanOut;
+		return this;
+	}
+
+	/**
+	 * Set the ECV URL template used to check that a seed is up.
+	 * <p>
+	 * Format: http://{hostname}:[port]/[ecvUrl]<br>
+	 * Example: http://{host}:{port}/l/ecv
+	 * </p>
+	 *
+	 * @param ecvUrl
+	 *            the ECV URL template
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setEcvUrlTemplate(String ecvUrl) {
+		this.ecvUrl = ecvUrl;
+		return this;
+	}
+
+	/**
+	 * Set the interval between two ECV checks of the seeds.
+	 * @param healthCheckIntervalInMillis the interval between two health checks, 0 to not check the seeds
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setHealthCheckIntervalInMillis(long healthCheckIntervalInMillis) {
+		this.healthCheckIntervalInMillis = healthCheckIntervalInMillis;
+		return this;
+	}
+
+	/**
+	 * Set the number of consecutive failed calls after which a seed is ejected.
+	 * @param maxConsecutiveFailures the number of consecutive failures that ejects a seed
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setMaxConsecutiveFailures(int maxConsecutiveFailures) {
+		this.maxConsecutiveFailures = maxConsecutiveFailures;
+		return this;
+	}
+
+	/**
+	 * Set the time a seed is ejected for the first time, the ejection time doubles with every new ejection.
+	 * @param baseEjectionTimeInMillis the first ejection time of a seed
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setBaseEjectionTimeInMillis(long baseEjectionTimeInMillis) {
+		this.baseEjectionTimeInMillis = baseEjectionTimeInMillis;
+		return this;
+	}
+
+	/**
+	 * Negotiate the compression of requests and responses with the lightning core instead of always using gzip.
+	 * Within a data center {@link Codec#LZ} or {@link Codec#IDENTITY} save the CPU cost of gzip. Set only when
+	 * every lightning core supports the negotiation.
+	 * @param compressionCodecs the compression codecs in order of preference
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setCompressionCodecs(Codec... compressionCodecs) {
+		this.compressionCodecs = Arrays.asList(compressionCodecs);
+		return this;
+	}
+
+	/**
+	 * Set the number of idle connections kept open per lightning core, 0 keeps the JVM setting of 5. The connections
+	 * are pooled by {@code HttpURLConnection} for the whole JVM and the size only applies if it is set before the
+	 * first HTTP call of the JVM.
+	 * @param maxIdleConnectionsPerSeed the number of idle connections per lightning core
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setMaxIdleConnectionsPerSeed(int maxIdleConnectionsPerSeed) {
+		this.maxIdleConnectionsPerSeed = maxIdleConnectionsPerSeed;
+		return this;
+	}
+
+	/**
+	 * Set the connect timeout of the calls to the lightning core.
+	 * @param connectTimeoutInMillis the connect timeout
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setConnectTimeoutInMillis(int connectTimeoutInMillis) {
+		this.connectTimeoutInMillis = connectTimeoutInMillis;
+		return this;
+	}
+
+	/**
+	 * Set the read timeout of the calls to reserve the capacity on the lightning core.
+	 * @param reserveReadTimeoutInMillis the read timeout
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setReserveReadTimeoutInMillis(int reserveReadTimeoutInMillis) {
+		this.reserveReadTimeoutInMillis = reserveReadTimeoutInMillis;
+		return this;
+	}
+
+	/**
+	 * Set the read timeout of the calls to submit the requests.
+	 * @param submitReadTimeoutInMillis the read timeout
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setSubmitReadTimeoutInMillis(int submitReadTimeoutInMillis) {
+		this.submitReadTimeoutInMillis = submitReadTimeoutInMillis;
+		return this;
+	}
+
+	/**
+	 * Set the read timeout of the calls to poll the results, including the long polls.
+	 * @param pollReadTimeoutInMillis the read timeout
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setPollReadTimeoutInMillis(int pollReadTimeoutInMillis) {
+		this.pollReadTimeoutInMillis = pollReadTimeoutInMillis;
+		return this;
+	}
+
+	/**
+	 * Set the read timeout of the calls to get the audit reports.
+	 * @param auditReadTimeoutInMillis the read timeout
+	 * @return a reference to this object.
+	 */
+	public LightningClientBuilder setAuditReadTimeoutInMillis(int auditReadTimeoutInMillis) {
+		this.auditReadTimeoutInMillis = auditReadTimeoutInMillis;
+		return this;
+	}
+
 	/**
 	 * Set the lightning core port. Please ensure that lightning core is running
 	 * on this port before setting this.
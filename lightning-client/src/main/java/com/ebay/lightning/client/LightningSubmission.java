@@ -0,0 +1,47 @@
+package com.ebay.lightning.client;
+
+import java.util.List;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.config.RequestConfig;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * {@code LightningSubmission} holds the results of a request submitted with
+ * {@link LightningClient#submitAsync(List, RequestConfig, long)}: the future of the {@link LightningRequest},
+ * completed once a seed accepted the tasks, and the future of the final {@link LightningResponse}.
+ *
+ * The response future completes with the response of the completed request, or with the partial response if the
+ * request did not complete within the timeout; {@link LightningResponse#isCompleted()} tells them apart. Both futures
+ * fail if the request could not be submitted.
+ *
+ * @author shashukla
+ * @see LightningClient#submitAsync(List, RequestConfig, long)
+ */
+public class LightningSubmission {
+
+	private final ListenableFuture<LightningRequest> request;
+	private final ListenableFuture<LightningResponse> response;
+
+	public LightningSubmission(ListenableFuture<LightningRequest> request, ListenableFuture<LightningResponse> response) {
+		this.request = request;
+		this.response = response;
+	}
+
+	/**
+	 * Get the future of the submitted request.
+	 * @return the future of the {@code LightningRequest} that contain {@code sessionId}, {@code ReservationReceipt} etc
+	 */
+	public ListenableFuture<LightningRequest> getRequest() {
+		return request;
+	}
+
+	/**
+	 * Get the future of the final response of the request.
+	 * @return the future of the {@code LightningResponse} of the completed request or the partial response on timeout
+	 */
+	public ListenableFuture<LightningResponse> getResponse() {
+		return response;
+	}
+}
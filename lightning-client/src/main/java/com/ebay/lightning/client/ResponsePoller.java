@@ -0,0 +1,454 @@
+package com.ebay.lightning.client;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.ebay.lightning.client.caller.LightningProgressCallback;
+import com.ebay.lightning.client.caller.LightningResponseCallback;
+import com.ebay.lightning.client.caller.RestAPICaller;
+import com.ebay.lightning.client.caller.ServiceCaller;
+import com.ebay.lightning.client.config.LightningClientConfig;
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * {@code ResponsePoller} polls the results of all the requests registered with a callback on a shared scheduler,
+ * instead of a thread per request.
+ *
+ * <p>The requests are grouped by the seed that serves them and the due requests of a seed are polled in one batch
+ * call, see {@link ServiceCaller#pollResults(String, Map)}, falling back to a call per request if the batch call
+ * fails. Each request is polled for the tasks completed since its previous poll, or for its full response if the
+ * seed predates the {@code since} sequence endpoint, and the poll interval grows
+ * with the age of the request from {@link LightningClientConfig#getMinPollIntervalInMillis()} to
+ * {@link LightningClientConfig#getMaxPollIntervalInMillis()}, so short requests complete fast while long running
+ * requests add little load on the seeds. The polls are scheduled on the scheduler and run on the I/O executor, so a
+ * slow seed holds an I/O thread only. The callbacks are invoked on the callback executor, a slow callback does not
+ * delay the polls. A {@link LightningProgressCallback} is notified of every poll that returned completed tasks and
+ * completes as soon as it is satisfied.</p>
+ *
+ * <p>A request registered with {@link #registerLongPoll(LightningRequest, LightningResponseCallback, long)} is long
+ * polled instead, see {@link RestAPICaller#pollResults(String, String, int, long)}: each long poll is a task on the
+ * I/O executor that issues the next one as soon as the seed answers, so the long polls of all the requests share the
+ * I/O threads. The request is polled as above if its seed does not serve the long poll endpoint.</p>
+ *
+ * @author shashukla
+ * @see LightningClient#submitWithCallback(java.util.List, LightningResponseCallback, long)
+ */
+public class ResponsePoller {
+
+	private static final Logger log = Logger.getLogger(ResponsePoller.class);
+	// the poll interval is this fraction of the age of the request
+	private static final int POLL_INTERVAL_AGE_DIVISOR = 10;
+	private static final long LONG_POLL_WAIT_IN_MILLIS = 5000;
+
+	private final ServiceCaller caller;
+	private final ScheduledExecutorService scheduler;
+	private final Executor ioExecutor;
+	private final Executor callbackExecutor;
+	private final long minPollIntervalInMillis;
+	private final long maxPollIntervalInMillis;
+	private final long longPollWaitInMillis;
+	private final ConcurrentMap<String, SeedPolls> seedPolls = new ConcurrentHashMap<>();
+
+	public ResponsePoller(LightningClientConfig config, ServiceCaller caller, ScheduledExecutorService scheduler, Executor callbackExecutor) {
+		this(config, caller, scheduler, scheduler, callbackExecutor);
+	}
+
+	public ResponsePoller(LightningClientConfig config, ServiceCaller caller, ScheduledExecutorService scheduler, Executor ioExecutor,
+			Executor callbackExecutor) {
+		this.caller = caller;
+		this.scheduler = scheduler;
+		this.ioExecutor = ioExecutor;
+		this.callbackExecutor = callbackExecutor;
+		this.minPollIntervalInMillis = config.getMinPollIntervalInMillis();
+		this.maxPollIntervalInMillis = Math.max(config.getMaxPollIntervalInMillis(), minPollIntervalInMillis);
+		// the seed must answer the long poll before the read timeout
+		this.longPollWaitInMillis = Math.min(LONG_POLL_WAIT_IN_MILLIS, config.getPollReadTimeoutInMillis() / 2);
+	}
+
+	/**
+	 * Poll the results of the request until it completes or times out.
+	 * @param request the submitted request
+	 * @param callback the callback to invoke on completion of the request or timeout
+	 * @param timeoutInMillis timeout for callback
+	 */
+	public void register(LightningRequest request, LightningResponseCallback callback, long timeoutInMillis) {
+		getSeedPolls(request.getServingHostIp()).add(new PendingPoll(request, callback, timeoutInMillis));
+	}
+
+	/**
+	 * Long poll the results of the request until it completes or times out.
+	 * @param request the submitted request
+	 * @param callback the callback to invoke on completion of the request or timeout
+	 * @param timeoutInMillis timeout for callback
+	 */
+	public void registerLongPoll(LightningRequest request, LightningResponseCallback callback, long timeoutInMillis) {
+		Preconditions.checkState(caller instanceof RestAPICaller, "Long poll needs a RestAPICaller");
+		ioExecutor.execute(new LongPoll((RestAPICaller) caller, new PendingPoll(request, callback, timeoutInMillis)));
+	}
+
+	private SeedPolls getSeedPolls(String serviceHostIp) {
+		SeedPolls polls = seedPolls.get(serviceHostIp);
+		if (polls == null) {
+			SeedPolls newPolls = new SeedPolls(serviceHostIp);
+			polls = seedPolls.putIfAbsent(serviceHostIp, newPolls);
+			if (polls == null) {
+				polls = newPolls;
+			}
+		}
+		return polls;
+	}
+
+	/**
+	 * Get the number of requests that are polled.
+	 * @return the number of requests pending completion or timeout
+	 */
+	public int getPendingCount() {
+		int count = 0;
+		for (SeedPolls polls : seedPolls.values()) {
+			count += polls.pending.size();
+		}
+		return count;
+	}
+
+	/**
+	 * The requests served by a seed, polled in a single run of the scheduler.
+	 */
+	private class SeedPolls implements Runnable {
+
+		private final String serviceHostIp;
+		private final Queue<PendingPoll> pending = new ConcurrentLinkedQueue<>();
+		private final Object pollLock = new Object();
+		private volatile boolean fullPollsOnly;
+		private ScheduledFuture<?> nextRun;
+		private long nextRunAt;
+
+		private SeedPolls(String serviceHostIp) {
+			this.serviceHostIp = serviceHostIp;
+		}
+
+		private void add(PendingPoll poll) {
+			pending.add(poll);
+			scheduleAt(poll.nextPollAt);
+		}
+
+		private synchronized void scheduleAt(long time) {
+			if (nextRun != null && nextRunAt <= time) {
+				return;
+			}
+			if (nextRun != null) {
+				nextRun.cancel(false);
+			}
+			nextRunAt = time;
+			nextRun = scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					ioExecutor.execute(SeedPolls.this);
+				}
+			}, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				nextRun = null;
+			}
+			synchronized (pollLock) {
+				long now = System.currentTimeMillis();
+				List<PendingPoll> due = new ArrayList<>();
+				for (PendingPoll poll : pending) {
+					if (poll.nextPollAt <= now) {
+						due.add(poll);
+					}
+				}
+				if (due.size() > 1 && !fullPollsOnly) {
+					pollBatch(due);
+				} else {
+					pollEach(due);
+				}
+				long nextDue = Long.MAX_VALUE;
+				for (PendingPoll poll : due) {
+					poll.completeOrReschedule(pending);
+				}
+				for (PendingPoll poll : pending) {
+					nextDue = Math.min(nextDue, poll.nextPollAt);
+				}
+				if (nextDue != Long.MAX_VALUE) {
+					scheduleAt(nextDue);
+				}
+			}
+		}
+
+		private void pollBatch(List<PendingPoll> due) {
+			Map<String, Integer> fromSequences = new HashMap<>();
+			for (PendingPoll poll : due) {
+				fromSequences.put(poll.request.getSessionId(), poll.getSequence());
+			}
+			Map<String, LightningResponse> deltas;
+			try {
+				deltas = caller.pollResults(serviceHostIp, fromSequences);
+			} catch (Exception e) {
+				log.warn("Error polling " + due.size() + " requests from " + serviceHostIp + " in a batch, polling them one at a time", e);
+				pollEach(due);
+				return;
+			}
+			for (PendingPoll poll : due) {
+				poll.onDelta(deltas.get(poll.request.getSessionId()));
+			}
+		}
+
+		/**
+		 * Poll the requests one at a time. The remaining requests are polled in the next run if the seed is unreachable,
+		 * so a dead seed holds the thread for a single read timeout.
+		 */
+		private void pollEach(List<PendingPoll> due) {
+			for (int i = 0; i < due.size(); i++) {
+				if (!poll(due.get(i))) {
+					if (i < due.size() - 1) {
+						log.warn("Skipping " + (due.size() - i - 1) + " polls of unreachable seed " + serviceHostIp + " until the next run");
+					}
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Poll the tasks completed since the previous poll of the request, or the full response if the seed does not
+		 * serve the {@code since} sequence endpoint. A poll that returns no response failed, the {@link RestAPICaller}
+		 * logs the error and returns {@code null}.
+		 * @return {@code false} if the seed could not be reached
+		 */
+		private boolean poll(PendingPoll poll) {
+			if (!fullPollsOnly) {
+				try {
+					LightningResponse delta = caller.pollResults(poll.request.getSessionId(), serviceHostIp, poll.getSequence());
+					if (delta != null) {
+						poll.onDelta(delta);
+						return true;
+					}
+					log.warn("No results of " + poll.request.getSessionId() + " since sequence " + poll.getSequence() + " from "
+							+ serviceHostIp + ", polling the full response");
+				} catch (Exception e) {
+					log.warn("Error polling the results of " + poll.request.getSessionId() + " since sequence " + poll.getSequence() + " from "
+							+ serviceHostIp + ", polling the full response", e);
+				}
+			}
+			LightningResponse fullResponse = poll.pollFullResponse();
+			if (fullResponse == null) {
+				return false;
+			}
+			if (!fullPollsOnly) {
+				log.info("Seed " + serviceHostIp + " does not serve the sequence endpoint, polling the full responses of its requests");
+				fullPollsOnly = true;
+			}
+			poll.onFullResponse(fullResponse);
+			return true;
+		}
+	}
+
+	/**
+	 * The long polls of a request, each long poll runs on the I/O executor and issues the next one. A failed long
+	 * poll is retried after a back off on the scheduler.
+	 */
+	private class LongPoll implements Runnable {
+
+		private final RestAPICaller restCaller;
+		private final PendingPoll poll;
+		private long retryIntervalInMillis;
+
+		private LongPoll(RestAPICaller restCaller, PendingPoll poll) {
+			this.restCaller = restCaller;
+			this.poll = poll;
+			this.retryIntervalInMillis = Math.max(1, minPollIntervalInMillis);
+		}
+
+		@Override
+		public void run() {
+			long waitInMillis = Math.min(longPollWaitInMillis, poll.deadline - System.currentTimeMillis());
+			if (waitInMillis <= 0) {
+				poll.dispatch(true);
+				return;
+			}
+			String sessionId = poll.request.getSessionId();
+			String serviceHostIp = poll.request.getServingHostIp();
+			LightningResponse delta;
+			try {
+				delta = restCaller.pollResults(sessionId, serviceHostIp, poll.getSequence(), waitInMillis);
+			} catch (Exception e) {
+				if (Throwables.getRootCause(e) instanceof FileNotFoundException) {
+					log.info("Seed " + serviceHostIp + " does not serve the long poll endpoint, polling " + sessionId);
+					getSeedPolls(serviceHostIp).add(poll);
+					return;
+				}
+				log.warn("Error long polling the results of " + sessionId + " from " + serviceHostIp + ", retrying in "
+						+ retryIntervalInMillis + " ms", e);
+				scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						ioExecutor.execute(LongPoll.this);
+					}
+				}, Math.min(retryIntervalInMillis, waitInMillis), TimeUnit.MILLISECONDS);
+				retryIntervalInMillis = Math.min(retryIntervalInMillis * 2, maxPollIntervalInMillis);
+				return;
+			}
+			retryIntervalInMillis = Math.max(1, minPollIntervalInMillis);
+			poll.onDelta(delta);
+			if (poll.response != null && (poll.response.isCompleted() || poll.isSatisfied())) {
+				poll.dispatch(false);
+				return;
+			}
+			ioExecutor.execute(this);
+		}
+	}
+
+	/**
+	 * A request polled until it completes or times out, with the response merged from its polls.
+	 */
+	private class PendingPoll {
+
+		private final LightningRequest request;
+		private final LightningResponseCallback callback;
+		private final long startTime;
+		private final long deadline;
+		private final Queue<Runnable> notifications = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean notifying = new AtomicBoolean();
+		private long nextPollAt;
+		private LightningResponse response;
+
+		private PendingPoll(LightningRequest request, LightningResponseCallback callback, long timeoutInMillis) {
+			this.request = request;
+			this.callback = callback;
+			this.startTime = System.currentTimeMillis();
+			this.deadline = startTime + timeoutInMillis;
+			this.nextPollAt = startTime + minPollIntervalInMillis;
+		}
+
+		private int getSequence() {
+			return response != null ? response.getSequence() : 0;
+		}
+
+		private void onDelta(final LightningResponse delta) {
+			if (delta == null) {
+				return;
+			}
+			int sequence = getSequence();
+			// the delta is handed to the progress callback, the merged response is a separate object
+			if (response == null) {
+				response = new LightningResponse(request.getSessionId(), delta.getStatus());
+			}
+			response.merge(delta);
+			if (callback instanceof LightningProgressCallback && delta.getSequence() > sequence) {
+				execute(new Runnable() {
+					@Override
+					public void run() {
+						((LightningProgressCallback) callback).onProgress(delta);
+					}
+				});
+			}
+		}
+
+		/**
+		 * Replace the merged response with a full response polled from a seed without the {@code since} sequence
+		 * endpoint. The progress callback is not notified as the full response is not a delta.
+		 */
+		private void onFullResponse(LightningResponse fullResponse) {
+			response = fullResponse;
+		}
+
+		private boolean isSatisfied() {
+			return callback instanceof LightningProgressCallback && ((LightningProgressCallback) callback).isSatisfied(response);
+		}
+
+		/**
+		 * Dispatch the callback if the request completed or timed out, otherwise schedule the next poll. A completed
+		 * request is removed from the pending polls before its callback is dispatched.
+		 * @param pending the pending polls of the seed
+		 */
+		private void completeOrReschedule(Queue<PendingPoll> pending) {
+			long now = System.currentTimeMillis();
+			if (response != null && (response.isCompleted() || isSatisfied())) {
+				pending.remove(this);
+				dispatch(false);
+				return;
+			}
+			if (now >= deadline) {
+				pending.remove(this);
+				dispatch(true);
+				return;
+			}
+			long interval = Math.max(minPollIntervalInMillis, Math.min(maxPollIntervalInMillis, (now - startTime) / POLL_INTERVAL_AGE_DIVISOR));
+			nextPollAt = Math.min(now + interval, deadline);
+		}
+
+		private void dispatch(final boolean timedOut) {
+			final LightningResponse currentResponse = response;
+			execute(new Runnable() {
+				@Override
+				public void run() {
+					if (timedOut) {
+						callback.onTimeout(currentResponse != null ? currentResponse : pollFullResponse());
+					} else {
+						callback.onComplete(currentResponse);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Invoke the callbacks of the request on the callback executor one at a time and in order.
+		 */
+		private void execute(Runnable notification) {
+			notifications.add(notification);
+			drainNotifications();
+		}
+
+		private void drainNotifications() {
+			if (notifications.isEmpty() || !notifying.compareAndSet(false, true)) {
+				return;
+			}
+			callbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Runnable notification;
+						while ((notification = notifications.poll()) != null) {
+							try {
+								notification.run();
+							} catch (RuntimeException e) {
+								log.error("Error in the callback of " + request.getSessionId(), e);
+							}
+						}
+					} finally {
+						notifying.set(false);
+						drainNotifications();
+					}
+				}
+			});
+		}
+
+		private LightningResponse pollFullResponse() {
+			try {
+				return caller.pollResults(request.getSessionId(), request.getServingHostIp(), false);
+			} catch (Exception e) {
+				log.warn("Error polling the results of " + request.getSessionId() + " from " + request.getServingHostIp(), e);
+				return null;
+			}
+		}
+	}
+}
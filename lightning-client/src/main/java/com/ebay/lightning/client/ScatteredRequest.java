@@ -0,0 +1,143 @@
+package com.ebay.lightning.client;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.config.RequestConfig;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.google.common.base.Preconditions;
+
+/**
+ * {@code ScatteredRequest} is a list of tasks submitted with
+ * {@link LightningClient#submitScattered(List, RequestConfig)} and split across several seeds. Each seed executes a
+ * contiguous range of the tasks as a sub request with its own {@code sessionId}.
+ *
+ * The responses of the sub requests are merged with {@link #gather(List)}, the task indexes of the merged response
+ * are the indexes in the submitted task list.
+ *
+ * @author shashukla
+ * @see LightningClient#submitScattered(List, RequestConfig)
+ */
+public class ScatteredRequest {
+
+	private final String sessionId;
+	private final List<LightningRequest> subRequests;
+	private final int[] offsets;
+	private final int totalCount;
+
+	/**
+	 * Create the scattered request.
+	 * @param sessionId the id of the scattered request
+	 * @param subRequests the sub requests in the order of their tasks
+	 * @param offsets the index of the first task of each sub request in the submitted task list
+	 * @param totalCount the number of submitted tasks
+	 */
+	public ScatteredRequest(String sessionId, List<LightningRequest> subRequests, int[] offsets, int totalCount) {
+		Preconditions.checkArgument(subRequests.size() == offsets.length, "A sub request needs an offset");
+		this.sessionId = sessionId;
+		this.subRequests = subRequests;
+		this.offsets = offsets;
+		this.totalCount = totalCount;
+	}
+
+	/**
+	 * Get the id of the scattered request, it is only known by the client.
+	 * @return the id of the scattered request
+	 */
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	/**
+	 * Get the sub requests submitted to the seeds.
+	 * @return the sub requests in the order of their tasks
+	 */
+	public List<LightningRequest> getSubRequests() {
+		return subRequests;
+	}
+
+	/**
+	 * Get the index of the first task of a sub request in the submitted task list.
+	 * @param subRequest the position of the sub request in {@link #getSubRequests()}
+	 * @return the index of the first task of the sub request
+	 */
+	public int getOffset(int subRequest) {
+		return offsets[subRequest];
+	}
+
+	/**
+	 * Get the number of submitted tasks.
+	 * @return the number of tasks of all the sub requests
+	 */
+	public int getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Merge the responses of the sub requests. The merged response is completed once all the sub requests are
+	 * completed, and {@link WorkStatus#STOPPED} if any of them stopped.
+	 * @param responses the responses in the order of {@link #getSubRequests()}, {@code null} for a sub request with
+	 * no response yet
+	 * @return the response of the scattered request with the indexes of the submitted task list
+	 */
+	public LightningResponse gather(List<LightningResponse> responses) {
+		Preconditions.checkArgument(responses.size() == subRequests.size(), "A response is needed for every sub request");
+		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
+		Map<Integer, FailedResponse> failedResponses = new HashMap<>();
+		int successCount = 0;
+		WorkStatus status = WorkStatus.DONE;
+		for (int i = 0; i < responses.size(); i++) {
+			LightningResponse response = responses.get(i);
+			if (response == null) {
+				status = WorkStatus.IN_QUEUE;
+				continue;
+			}
+			successCount += response.getSuccessCount();
+			status = gatherStatus(status, response);
+			if (response.getSuccessResponses() != null) {
+				for (Entry<Integer, SuccessResponse> success : response.getSuccessResponses().entrySet()) {
+					successResponses.put(offsets[i] + success.getKey(), success.getValue());
+				}
+			}
+			if (response.getFailedResponses() != null) {
+				for (Entry<Integer, FailedResponse> failure : response.getFailedResponses().entrySet()) {
+					failedResponses.put(offsets[i] + failure.getKey(), failure.getValue());
+				}
+			}
+		}
+		LightningResponse gathered = new LightningResponse(sessionId, status);
+		gathered.setTotalCount(totalCount);
+		gathered.setSuccessCount(successCount);
+		gathered.setSuccessResponses(successResponses);
+		gathered.setFailedResponses(failedResponses);
+		return gathered;
+	}
+
+	/**
+	 * The least advanced status wins: a running sub request keeps the scattered request running.
+	 */
+	private static WorkStatus gatherStatus(WorkStatus status, LightningResponse response) {
+		if (response.isCompleted()) {
+			return WorkStatus.DONE.equals(status) ? response.getStatus() : status;
+		}
+		WorkStatus subStatus = response.getStatus() != null ? response.getStatus() : WorkStatus.IN_QUEUE;
+		if (WorkStatus.DONE.equals(status) || WorkStatus.STOPPED.equals(status) || subStatus.ordinal() < status.ordinal()) {
+			return subStatus;
+		}
+		return status;
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link Object#toString()}
+	 */
+	@Override
+	public String toString() {
+		return "ScatteredRequest [sessionId=" + sessionId + ", subRequests=" + subRequests.size() + ", totalCount=" + totalCount + "]";
+	}
+}
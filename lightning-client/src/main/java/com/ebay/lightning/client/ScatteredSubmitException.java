@@ -0,0 +1,39 @@
+package com.ebay.lightning.client;
+
+import java.util.List;
+
+import com.ebay.lightning.core.config.RequestConfig;
+
+/**
+ * The {@code ScatteredSubmitException} is thrown when a sub request of a scattered request could not be submitted.
+ * The sub requests submitted before the failure keep running on their seeds, they are available from
+ * {@link #getSubmittedRequest()} to be polled.
+ *
+ * @author shashukla
+ * @see LightningClient#submitScattered(List, RequestConfig)
+ */
+public class ScatteredSubmitException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient ScatteredRequest submittedRequest;
+
+	/**
+	 * Create the exception.
+	 * @param submittedRequest the scattered request with the sub requests submitted before the failure
+	 * @param cause the failure of the sub request that could not be submitted
+	 */
+	public ScatteredSubmitException(ScatteredRequest submittedRequest, Throwable cause) {
+		super("Submitted " + submittedRequest.getSubRequests().size() + " sub requests of scattered request "
+				+ submittedRequest.getSessionId() + " before the failure", cause);
+		this.submittedRequest = submittedRequest;
+	}
+
+	/**
+	 * Get the sub requests submitted before the failure, the tasks of the other sub requests are not executed.
+	 * @return the scattered request with the submitted sub requests only
+	 */
+	public ScatteredRequest getSubmittedRequest() {
+		return submittedRequest;
+	}
+}
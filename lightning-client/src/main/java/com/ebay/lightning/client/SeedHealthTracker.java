@@ -0,0 +1,198 @@
+package com.ebay.lightning.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.ebay.lightning.client.config.LightningClientConfig;
+
+/**
+ * {@code SeedHealthTracker} remembers how the seeds responded to the calls of the client, so that the reservations
+ * go to the healthy seeds first and skip the seeds that are down.
+ *
+ * <p>Each seed has a moving average of its latency and a count of its consecutive failed calls. A seed that failed
+ * {@link LightningClientConfig#getMaxConsecutiveFailures()} times in a row is ejected for
+ * {@link LightningClientConfig#getBaseEjectionTimeInMillis()}. Once the ejection is over the next call probes the
+ * seed: a success brings the seed back, a failure ejects it again for twice as long.</p>
+ *
+ * @author shashukla
+ * @see ServiceHostResolver
+ */
+public class SeedHealthTracker {
+
+	private static final Logger log = Logger.getLogger(SeedHealthTracker.class);
+	// the weight of the latest call in the latency moving average
+	private static final double LATENCY_WEIGHT = 0.3;
+	// the ejection time stops doubling after this many ejections in a row
+	private static final int MAX_EJECTION_DOUBLINGS = 6;
+	// a seed this many times slower than the fastest seed is tried after the other seeds
+	private static final int SLOW_SEED_FACTOR = 3;
+
+	private final int maxConsecutiveFailures;
+	private final long baseEjectionTimeInMillis;
+	private final ConcurrentMap<String, SeedHealth> seeds = new ConcurrentHashMap<>();
+
+	public SeedHealthTracker(LightningClientConfig config) {
+		this.maxConsecutiveFailures = Math.max(1, config.getMaxConsecutiveFailures());
+		this.baseEjectionTimeInMillis = config.getBaseEjectionTimeInMillis();
+	}
+
+	/**
+	 * Record a call that the seed responded to.
+	 * @param seed the seed
+	 * @param latencyInMillis the time the call took
+	 */
+	public void onSuccess(String seed, long latencyInMillis) {
+		SeedHealth health = getHealth(seed);
+		boolean wasEjected;
+		synchronized (health) {
+			wasEjected = health.ejections > 0;
+			health.latencyInMillis = health.latencyInMillis < 0 ? latencyInMillis
+					: LATENCY_WEIGHT * latencyInMillis + (1 - LATENCY_WEIGHT) * health.latencyInMillis;
+			health.consecutiveFailures = 0;
+			health.ejections = 0;
+			health.ejectedUntil = 0;
+		}
+		if (wasEjected) {
+			log.info("Seed " + seed + " is back");
+		}
+	}
+
+	/**
+	 * Record a call that failed, ejecting the seed once it failed too many times in a row.
+	 * @param seed the seed
+	 */
+	public void onFailure(String seed) {
+		SeedHealth health = getHealth(seed);
+		long ejectionTime = 0;
+		int failures;
+		synchronized (health) {
+			failures = ++health.consecutiveFailures;
+			long now = System.currentTimeMillis();
+			if (failures >= maxConsecutiveFailures && health.ejectedUntil <= now) {
+				ejectionTime = baseEjectionTimeInMillis << Math.min(health.ejections, MAX_EJECTION_DOUBLINGS);
+				health.ejections++;
+				health.ejectedUntil = now + ejectionTime;
+			}
+		}
+		if (ejectionTime > 0) {
+			log.warn("Seed " + seed + " failed " + failures + " times in a row, ejected for " + ejectionTime + " ms");
+		}
+	}
+
+	/**
+	 * Check if the seed is ejected, a seed whose ejection is over is not ejected and gets probed by the next call.
+	 * @param seed the seed
+	 * @return {@code true} if no call should be sent to the seed
+	 */
+	public boolean isEjected(String seed) {
+		SeedHealth health = seeds.get(seed);
+		if (health == null) {
+			return false;
+		}
+		synchronized (health) {
+			return health.ejectedUntil > System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Order the seeds for a reservation. The ejected seeds are left out, the seeds that failed or that are much
+	 * slower than the others are moved to the end, the other seeds keep their order. If all the seeds are ejected,
+	 * they are all returned with the seed whose ejection ends first in front, so that the reservation still has a
+	 * seed to try.
+	 * @param candidates the seeds, in the order they would be tried otherwise
+	 * @return the seeds in the order to try them
+	 */
+	public List<String> order(List<String> candidates) {
+		final long now = System.currentTimeMillis();
+		List<SeedHealth> available = new ArrayList<>();
+		List<SeedHealth> ejected = new ArrayList<>();
+		double fastest = Double.MAX_VALUE;
+		for (String seed : candidates) {
+			SeedHealth health = snapshot(seed);
+			if (health.ejectedUntil > now) {
+				ejected.add(health);
+			} else {
+				available.add(health);
+				if (health.latencyInMillis >= 0) {
+					fastest = Math.min(fastest, health.latencyInMillis);
+				}
+			}
+		}
+		if (available.isEmpty()) {
+			Collections.sort(ejected, new Comparator<SeedHealth>() {
+				@Override
+				public int compare(SeedHealth h1, SeedHealth h2) {
+					return Long.compare(h1.ejectedUntil, h2.ejectedUntil);
+				}
+			});
+			return seedsOf(ejected);
+		}
+		// a latency under a millisecond is not worth telling apart
+		final double slowLatency = Math.max(1, fastest) * SLOW_SEED_FACTOR;
+		Collections.sort(available, new Comparator<SeedHealth>() {
+			@Override
+			public int compare(SeedHealth h1, SeedHealth h2) {
+				int failures = Integer.compare(h1.consecutiveFailures, h2.consecutiveFailures);
+				return failures != 0 ? failures : Boolean.compare(h1.latencyInMillis > slowLatency, h2.latencyInMillis > slowLatency);
+			}
+		});
+		return seedsOf(available);
+	}
+
+	private static List<String> seedsOf(List<SeedHealth> healths) {
+		List<String> seeds = new ArrayList<>(healths.size());
+		for (SeedHealth health : healths) {
+			seeds.add(health.seed);
+		}
+		return seeds;
+	}
+
+	private SeedHealth snapshot(String seed) {
+		SeedHealth health = seeds.get(seed);
+		SeedHealth copy = new SeedHealth(seed);
+		if (health != null) {
+			synchronized (health) {
+				copy.latencyInMillis = health.latencyInMillis;
+				copy.consecutiveFailures = health.consecutiveFailures;
+				copy.ejections = health.ejections;
+				copy.ejectedUntil = health.ejectedUntil;
+			}
+		}
+		return copy;
+	}
+
+	private SeedHealth getHealth(String seed) {
+		SeedHealth health = seeds.get(seed);
+		if (health == null) {
+			SeedHealth newHealth = new SeedHealth(seed);
+			health = seeds.putIfAbsent(seed, newHealth);
+			if (health == null) {
+				health = newHealth;
+			}
+		}
+		return health;
+	}
+
+	/**
+	 * The health of a seed, guarded by its own lock.
+	 */
+	private static class SeedHealth {
+
+		private final String seed;
+		// -1 until the first successful call
+		private double latencyInMillis = -1;
+		private int consecutiveFailures;
+		private int ejections;
+		private long ejectedUntil;
+
+		private SeedHealth(String seed) {
+			this.seed = seed;
+		}
+	}
+}
@@ -2,21 +2,27 @@ package com.ebay.lightning.client;
 
 import java.util.AbstractMap;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 
 import com.ebay.lightning.client.caller.RestAPICaller;
+import com.ebay.lightning.client.caller.SeedManagementCaller;
 import com.ebay.lightning.client.caller.ServiceCaller;
 import com.ebay.lightning.client.config.LightningClientConfig;
 import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.SystemStatus;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
@@ -24,6 +30,13 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  * are passed to the constructor via {link  LightningClientConfig}. The {@link LightningClient} routes the 
  * tasks to the seed returned by {@code ServiceHostResolver}.
  * 
+ * The reservations are sent to a few seeds in parallel and the least busy seed that accepted is used, so a slow or
+ * dead seed does not delay the submit when another seed responds.
+ * 
+ * The health of the seeds is tracked by a {@link SeedHealthTracker} fed by the reservations and by periodic ECV
+ * checks: the seeds that keep failing are ejected and the slow seeds are tried last, so a seed that is down does not
+ * cost a timeout on every reservation.
+ * 
  * @author shashukla
  * @see LightningClientConfig
  * @see RestAPICaller
@@ -31,10 +44,16 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 public class ServiceHostResolver {
 
 	private static final Logger log = Logger.getLogger(ServiceHostResolver.class);
+	private static final long RETRY_DELAY_IN_MILLIS = 2000;
+	private static final long RESERVATION_TIMEOUT_IN_MILLIS = 1000;
+	// once a seed accepted, the other seeds of the fan out are waited for this long to find a less busy one
+	private static final long LEAST_BUSY_WAIT_IN_MILLIS = 50;
 
 	private ServiceCaller apiCaller;
 	private LightningClientConfig config;
 	private ExecutorService executor;
+	private ScheduledExecutorService healthChecker;
+	private final SeedHealthTracker seedHealth;
 	private int minimumSize = 1;
 
     /**
@@ -49,6 +68,25 @@ public class ServiceHostResolver {
 		int seedSize = config.getSeeds() != null ? config.getSeeds().size() : 0;
 		int threadPoolSize = seedSize > minimumSize ? seedSize : minimumSize;
 		executor = Executors.newFixedThreadPool(threadPoolSize, new ThreadFactoryBuilder().setNameFormat("ServiceHostResolver-%d").build());
+		seedHealth = new SeedHealthTracker(config);
+		if (config.getHealthCheckIntervalInMillis() > 0) {
+			healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("SeedHealthChecker-%d")
+					.setDaemon(true).build());
+			healthChecker.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					checkSeeds();
+				}
+			}, 0, config.getHealthCheckIntervalInMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Get the health of the seeds as seen by this resolver.
+	 * @return the tracker of the health of the seeds
+	 */
+	public SeedHealthTracker getSeedHealth() {
+		return seedHealth;
 	}
 
 	/**
@@ -85,10 +123,168 @@ public class ServiceHostResolver {
 		return nextEndPoint;
 	}
 
+	/**
+	 * Reserve the load on several seeds, each seed getting a share proportional to its free capacity.
+	 *
+	 * The free capacity of the seeds is read from their {@link SystemStatus}. The seeds whose share would be less
+	 * than {@link LightningClientConfig#getMinScatterLoad()} are left out, and a share denied by its seed is
+	 * reserved on the next available seed.
+	 * @param forLoad the total load of the tasks to be executed by the seeds
+	 * @return the reservation receipts, whose loads add up to {@code forLoad}, and the seeds that accepted them
+	 * throws RuntimeException if a share could not be reserved on any seed
+	 */
+	public List<SimpleEntry<ReservationReceipt, String>> getEndPoints(final int forLoad) {
+		List<SimpleEntry<String, Integer>> shares = splitByFreeCapacity(forLoad, getFreeCapacities(getAllSeed(true)));
+		List<SimpleEntry<ReservationReceipt, String>> endPoints = new ArrayList<>();
+		if (shares.size() <= 1) {
+			endPoints.add(getNextEndPoint(forLoad));
+			return endPoints;
+		}
+		List<ShareReservation> reservations = new ArrayList<>();
+		List<Future<ReservationReceipt>> receipts = new ArrayList<>();
+		for (SimpleEntry<String, Integer> share : shares) {
+			ShareReservation reservation = new ShareReservation(share.getKey(), share.getValue());
+			reservations.add(reservation);
+			receipts.add(executor.submit(reservation));
+		}
+		for (int i = 0; i < shares.size(); i++) {
+			SimpleEntry<String, Integer> share = shares.get(i);
+			ReservationReceipt receipt = null;
+			try {
+				receipt = receipts.get(i).get(RESERVATION_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// a receipt returned after the timeout is released by the share reservation
+				receipt = reservations.get(i).abandon();
+				if (receipt == null) {
+					receipts.get(i).cancel(true);
+					log.error("Timed out getting reservation on " + share.getKey());
+				}
+			} catch (Exception e) {
+				log.error("Unable to get reservation on" + share.getKey(), e);
+			}
+			if (receipt != null && !ReservationReceipt.State.DENIED.equals(receipt.getState())) {
+				endPoints.add(new AbstractMap.SimpleEntry<ReservationReceipt, String>(receipt, share.getKey()));
+			} else {
+				endPoints.add(getNextEndPoint(share.getValue()));
+			}
+		}
+		return endPoints;
+	}
+
+	/**
+	 * Read the free capacity of the seeds in parallel, skipping the ejected seeds.
+	 * @param allSeeds the seeds to check
+	 * @return the seeds that have free capacity with their free capacity
+	 */
+	private List<SimpleEntry<String, Integer>> getFreeCapacities(List<String> allSeeds) {
+		List<SimpleEntry<String, Integer>> capacities = new ArrayList<>();
+		if (allSeeds == null) {
+			return capacities;
+		}
+		List<String> seeds = seedHealth.order(allSeeds);
+		List<Future<SystemStatus>> statuses = new ArrayList<>();
+		for (final String seed : seeds) {
+			statuses.add(executor.submit(new Callable<SystemStatus>() {
+				@Override
+				public SystemStatus call() throws Exception {
+					return apiCaller.getLightningStats(seed);
+				}
+			}));
+		}
+		for (int i = 0; i < seeds.size(); i++) {
+			try {
+				SystemStatus status = statuses.get(i).get(RESERVATION_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+				if (status != null && status.getAvailableTaskCapacity() > 0) {
+					capacities.add(new AbstractMap.SimpleEntry<String, Integer>(seeds.get(i), status.getAvailableTaskCapacity()));
+				}
+			} catch (Exception e) {
+				statuses.get(i).cancel(true);
+				log.warn("Unable to get the free capacity of " + seeds.get(i) + ": " + e.getMessage());
+			}
+		}
+		return capacities;
+	}
+
+	/**
+	 * Split the load between the seeds proportionally to their free capacity, leaving out the seeds with the least
+	 * free capacity until every share is at least {@link LightningClientConfig#getMinScatterLoad()}.
+	 * @param forLoad the total load
+	 * @param capacities the seeds with their free capacity
+	 * @return the seeds with their share of the load, the shares add up to {@code forLoad}
+	 */
+	List<SimpleEntry<String, Integer>> splitByFreeCapacity(int forLoad, List<SimpleEntry<String, Integer>> capacities) {
+		List<SimpleEntry<String, Integer>> seeds = new ArrayList<>(capacities);
+		while (true) {
+			long totalCapacity = 0;
+			int leastCapable = -1;
+			for (int i = 0; i < seeds.size(); i++) {
+				totalCapacity += seeds.get(i).getValue();
+				if (leastCapable < 0 || seeds.get(i).getValue() < seeds.get(leastCapable).getValue()) {
+					leastCapable = i;
+				}
+			}
+			if (seeds.size() <= 1 || forLoad * (long) seeds.get(leastCapable).getValue() / totalCapacity >= config.getMinScatterLoad()) {
+				return split(forLoad, seeds, totalCapacity);
+			}
+			seeds.remove(leastCapable);
+		}
+	}
+
+	private static List<SimpleEntry<String, Integer>> split(int forLoad, List<SimpleEntry<String, Integer>> seeds, long totalCapacity) {
+		List<SimpleEntry<String, Integer>> shares = new ArrayList<>();
+		int assigned = 0;
+		for (int i = 0; i < seeds.size(); i++) {
+			// the last seed takes the remainder of the rounding
+			int share = i == seeds.size() - 1 ? forLoad - assigned : (int) (forLoad * (long) seeds.get(i).getValue() / totalCapacity);
+			if (share > 0) {
+				shares.add(new AbstractMap.SimpleEntry<String, Integer>(seeds.get(i).getKey(), share));
+				assigned += share;
+			}
+		}
+		return shares;
+	}
+
+	/**
+	 * Get the next available seed that can handle the task without blocking the caller, calling the seeds on the
+	 * scheduler.
+	 * @param forLoad the load of the task to be executed by the seed
+	 * @param scheduler the scheduler to call the seeds on
+	 * @return the future of the reservation receipt and the seed that accepted the pay load, failed with
+	 * RuntimeException if none of the seeds accepted the request
+	 * @see #getNextEndPointAsync(int, ScheduledExecutorService, Executor)
+	 */
+	public ListenableFuture<SimpleEntry<ReservationReceipt, String>> getNextEndPointAsync(final int forLoad,
+			final ScheduledExecutorService scheduler) {
+		return getNextEndPointAsync(forLoad, scheduler, scheduler);
+	}
+
+	/**
+	 * Get the next available seed that can handle the task without blocking the caller.
+	 *
+	 * The seeds are called on the I/O executor and the retries are scheduled after the delay instead of sleeping,
+	 * so the scheduler never blocks and an I/O thread is only held while the seeds are called.
+	 * @param forLoad the load of the task to be executed by the seed
+	 * @param scheduler the scheduler of the retries
+	 * @param ioExecutor the executor to call the seeds on
+	 * @return the future of the reservation receipt and the seed that accepted the pay load, failed with
+	 * RuntimeException if none of the seeds accepted the request
+	 */
+	public ListenableFuture<SimpleEntry<ReservationReceipt, String>> getNextEndPointAsync(final int forLoad,
+			final ScheduledExecutorService scheduler, final Executor ioExecutor) {
+		List<List<String>> regions = new ArrayList<>();
+		regions.add(getAllSeed(true));
+		if (config.isAllowCrossRegionInteraction() && config.getCrossRegionSeeds() != null) {
+			regions.add(config.getCrossRegionSeeds());
+		}
+		AsyncReservation reservation = new AsyncReservation(forLoad, regions, scheduler, ioExecutor);
+		ioExecutor.execute(reservation);
+		return reservation.result;
+	}
+
 	/**
 	 * Get the next available seed that can handle the task.
 	 * @param forLoad the load of the task to be executed by the seed
-	 * @param seeds	the list of seeds to check sequentially until one accepts
+	 * @param seeds	the list of seeds to check until one accepts
 	 * @return the reservation receipt and the seed that accepted the pay load
 	 * throws RuntimeException if none of the seeds accepted the load request
 	 */
@@ -98,17 +294,9 @@ public class ServiceHostResolver {
 		if (seeds != null && !seeds.isEmpty()) {
 			while (retryAttempt++ < config.getMaxRetryAttempt()) {
 
-				for (int i = 0; i < seeds.size(); i++) {
-					try {
-						final String seedToCall = seeds.get(i);
-						ReservationReceipt reservationRcptTemp = getReservationRcpt(forLoad, seedToCall);
-						boolean denied = ReservationReceipt.State.DENIED.equals(reservationRcptTemp.getState());
-						if (!denied) {
-							return new AbstractMap.SimpleEntry<ReservationReceipt, String>(reservationRcptTemp, seedToCall);
-						}
-					} catch (Exception e) {
-						log.error("Unable to get reservation on" + seeds.get(i), e);
-					}
+				SimpleEntry<ReservationReceipt, String> endPoint = reserveOnAnySeed(forLoad, seeds);
+				if (endPoint != null) {
+					return endPoint;
 				}
 
 				//if none of the seeds accept the reservation then get the first randomized seed
@@ -116,7 +304,7 @@ public class ServiceHostResolver {
 						retryAttempt));
 
 				//All core machines are busy, lets wait for some time before trying
-				sleepFor(2000);
+				sleepFor(RETRY_DELAY_IN_MILLIS);
 			}
 
 			throw new RuntimeException(String.format("None of the seeds [%s] accepted  reservation for load [%d] even after %d retries", seeds,
@@ -128,27 +316,108 @@ public class ServiceHostResolver {
 	}
 
 	/**
-	 * Check if the seed can accept the request
+	 * Try the seeds once, reserving on {@link LightningClientConfig#getReservationFanOut()} seeds in parallel until a
+	 * group of seeds accepts. The healthy seeds are tried first and the ejected seeds are skipped.
 	 * @param forLoad the load of the task to be executed by the seed
-	 * @param seedToCall the seed to check
-	 * @return the reservation receipt returned by the seed. Returns {@code null} if the seed
-	 * do not respond within a second.
-	 * throws RuntimeException if none of the seeds accepted the load request
+	 * @param allSeeds the list of seeds to check until one accepts
+	 * @return the reservation receipt and the least busy seed that accepted the pay load, {@code null} if none accepted
+	 */
+	private SimpleEntry<ReservationReceipt, String> reserveOnAnySeed(final int forLoad, List<String> allSeeds) {
+		List<String> seeds = seedHealth.order(allSeeds);
+		int fanOut = Math.max(1, config.getReservationFanOut());
+		for (int from = 0; from < seeds.size(); from += fanOut) {
+			FanOutReservation reservation = new FanOutReservation(forLoad, seeds.subList(from, Math.min(seeds.size(), from + fanOut)));
+			SimpleEntry<ReservationReceipt, String> endPoint = reservation.awaitLeastBusy();
+			if (endPoint != null) {
+				return endPoint;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reserve the load on a seed, recording the latency or the failure of the call in the health of the seed.
+	 * @param forLoad the load of the task to be executed by the seed
+	 * @param seed the seed
+	 * @return the reservation receipt of the seed
+	 */
+	private ReservationReceipt reserve(int forLoad, String seed) {
+		long startTime = System.currentTimeMillis();
+		try {
+			ReservationReceipt receipt = apiCaller.reserve(forLoad, seed);
+			seedHealth.onSuccess(seed, System.currentTimeMillis() - startTime);
+			return receipt;
+		} catch (RuntimeException e) {
+			seedHealth.onFailure(seed);
+			throw e;
+		}
+	}
+
+	/**
+	 * Check the seeds that are not ejected with their ECV URL, and probe the ejected seeds whose ejection is over.
+	 * The checks run one after the other: a seed that is down costs a connect timeout until it is ejected.
+	 */
+	private void checkSeeds() {
+		List<String> seeds = new ArrayList<>();
+		if (config.getSeeds() != null) {
+			seeds.addAll(config.getSeeds());
+		}
+		if (config.isAllowCrossRegionInteraction() && config.getCrossRegionSeeds() != null) {
+			seeds.addAll(config.getCrossRegionSeeds());
+		}
+		for (String seed : seeds) {
+			if (seedHealth.isEjected(seed)) {
+				continue;
+			}
+			long startTime = System.currentTimeMillis();
+			boolean healthy;
+			try {
+				healthy = checkHealth(seed);
+			} catch (RuntimeException e) {
+				log.warn("Unable to check the health of " + seed + ": " + e.getMessage());
+				healthy = false;
+			}
+			if (healthy) {
+				seedHealth.onSuccess(seed, System.currentTimeMillis() - startTime);
+			} else {
+				seedHealth.onFailure(seed);
+			}
+		}
+	}
+
+	/**
+	 * Check the health of a seed with its ECV URL, or with its statistics if the caller cannot check the ECV URL.
+	 */
+	private boolean checkHealth(String seed) {
+		if (apiCaller instanceof SeedManagementCaller) {
+			return ((SeedManagementCaller) apiCaller).checkHealth(seed);
+		}
+		return apiCaller.getLightningStats(seed) != null;
+	}
+
+	/**
+	 * Release a reservation that is not used, in the background. The reservation expires on the seed if the caller
+	 * cannot cancel it.
+	 * @param endPoint the reservation receipt and the seed that accepted it
 	 */
-	private ReservationReceipt getReservationRcpt(final int forLoad, final String seedToCall)
-			throws InterruptedException, ExecutionException, TimeoutException {
-		Future<ReservationReceipt> future = executor.submit(new Callable<ReservationReceipt>() {
+	void releaseReservation(final SimpleEntry<ReservationReceipt, String> endPoint) {
+		if (!(apiCaller instanceof SeedManagementCaller)) {
+			return;
+		}
+		final SeedManagementCaller seedManagementCaller = (SeedManagementCaller) apiCaller;
+		executor.execute(new Runnable() {
 			@Override
-			public ReservationReceipt call() throws Exception {
-				return apiCaller.reserve(forLoad, seedToCall);
+			public void run() {
+				try {
+					seedManagementCaller.cancelReservation(endPoint.getKey().getId(), endPoint.getValue());
+				} catch (Exception e) {
+					log.warn("Unable to cancel reservation " + endPoint.getKey().getId() + " on " + endPoint.getValue() + ": " + e.getMessage());
+				}
 			}
 		});
-
-		ReservationReceipt reservationRcptTemp = future.get(1000, TimeUnit.MILLISECONDS);
-		return reservationRcptTemp;
 	}
 
-	private void sleepFor(int sleepTime) {
+	private void sleepFor(long sleepTime) {
 		try {
 			Thread.sleep(sleepTime);
 		} catch (InterruptedException e) {
@@ -168,12 +437,223 @@ public class ServiceHostResolver {
 		return result;
 	}
 
+	/**
+	 * The reservation of a share of a scattered request. The share is reserved on another seed if its seed does not
+	 * respond within the timeout, the receipt returned after the share was abandoned is released.
+	 */
+	private class ShareReservation implements Callable<ReservationReceipt> {
+
+		private final String seed;
+		private final int load;
+		private ReservationReceipt receipt;
+		private boolean abandoned;
+
+		private ShareReservation(String seed, int load) {
+			this.seed = seed;
+			this.load = load;
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link Callable#call()}
+		 */
+		@Override
+		public ReservationReceipt call() throws Exception {
+			ReservationReceipt reserved = reserve(load, seed);
+			synchronized (this) {
+				if (!abandoned) {
+					receipt = reserved;
+					return reserved;
+				}
+			}
+			if (reserved != null && !ReservationReceipt.State.DENIED.equals(reserved.getState())) {
+				releaseReservation(new AbstractMap.SimpleEntry<ReservationReceipt, String>(reserved, seed));
+			}
+			return null;
+		}
+
+		/**
+		 * Give up on the share, unless the seed responded in the meantime.
+		 * @return the receipt if the seed responded, {@code null} if the share is abandoned
+		 */
+		private synchronized ReservationReceipt abandon() {
+			abandoned = receipt == null;
+			return receipt;
+		}
+	}
+
+	/**
+	 * A reservation sent to a group of seeds in parallel. The least busy seed that accepts within the timeout is
+	 * used, without waiting for the slow seeds once one accepted, and the reservations on the other seeds are
+	 * cancelled, including those accepted after the choice.
+	 */
+	private class FanOutReservation {
+
+		private final int seedCount;
+		private final List<SimpleEntry<ReservationReceipt, String>> accepted = new ArrayList<>();
+		private int responded;
+		private boolean chosen;
+
+		private FanOutReservation(final int forLoad, List<String> seeds) {
+			this.seedCount = seeds.size();
+			for (final String seed : seeds) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						ReservationReceipt receipt = null;
+						try {
+							receipt = reserve(forLoad, seed);
+						} catch (Exception e) {
+							log.error("Unable to get reservation on" + seed, e);
+						}
+						onReceipt(seed, receipt);
+					}
+				});
+			}
+		}
+
+		private synchronized void onReceipt(String seed, ReservationReceipt receipt) {
+			responded++;
+			if (receipt != null && !ReservationReceipt.State.DENIED.equals(receipt.getState())) {
+				SimpleEntry<ReservationReceipt, String> endPoint = new AbstractMap.SimpleEntry<ReservationReceipt, String>(receipt, seed);
+				if (chosen) {
+					releaseReservation(endPoint);
+				} else {
+					accepted.add(endPoint);
+				}
+			}
+			notifyAll();
+		}
+
+		/**
+		 * Wait for the seeds to respond, at most {@link #LEAST_BUSY_WAIT_IN_MILLIS} once a seed accepted.
+		 * @return the least busy seed that accepted, {@code null} if none accepted
+		 */
+		private synchronized SimpleEntry<ReservationReceipt, String> awaitLeastBusy() {
+			long deadline = System.currentTimeMillis() + RESERVATION_TIMEOUT_IN_MILLIS;
+			boolean extended = false;
+			try {
+				while (responded < seedCount) {
+					if (!accepted.isEmpty()) {
+						if (leastBusy().getKey().getBusyWithLoad() == 0) {
+							// an idle seed is as good as it gets
+							break;
+						}
+						if (!extended) {
+							deadline = Math.min(deadline, System.currentTimeMillis() + LEAST_BUSY_WAIT_IN_MILLIS);
+							extended = true;
+						}
+					}
+					long waitInMillis = deadline - System.currentTimeMillis();
+					if (waitInMillis <= 0) {
+						break;
+					}
+					wait(waitInMillis);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			chosen = true;
+			SimpleEntry<ReservationReceipt, String> leastBusy = leastBusy();
+			for (SimpleEntry<ReservationReceipt, String> endPoint : accepted) {
+				if (endPoint != leastBusy) {
+					releaseReservation(endPoint);
+				}
+			}
+			return leastBusy;
+		}
+
+		private SimpleEntry<ReservationReceipt, String> leastBusy() {
+			SimpleEntry<ReservationReceipt, String> leastBusy = null;
+			for (SimpleEntry<ReservationReceipt, String> endPoint : accepted) {
+				if (leastBusy == null || endPoint.getKey().getBusyWithLoad() < leastBusy.getKey().getBusyWithLoad()) {
+					leastBusy = endPoint;
+				}
+			}
+			return leastBusy;
+		}
+	}
+
+	/**
+	 * The reservation retried on a scheduler, the seeds of the region are tried up to the max retry attempts
+	 * before moving to the seeds of the next region.
+	 */
+	private class AsyncReservation implements Runnable {
+
+		private final int forLoad;
+		private final List<List<String>> regions;
+		private final ScheduledExecutorService scheduler;
+		private final Executor ioExecutor;
+		private final SettableFuture<SimpleEntry<ReservationReceipt, String>> result = SettableFuture.create();
+		private int region;
+		private int retryAttempt;
+
+		private AsyncReservation(int forLoad, List<List<String>> regions, ScheduledExecutorService scheduler, Executor ioExecutor) {
+			this.forLoad = forLoad;
+			this.regions = regions;
+			this.scheduler = scheduler;
+			this.ioExecutor = ioExecutor;
+		}
+
+		private void retryLater() {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					ioExecutor.execute(AsyncReservation.this);
+				}
+			}, RETRY_DELAY_IN_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void run() {
+			if (result.isCancelled()) {
+				return;
+			}
+			try {
+				List<String> seeds = regions.get(region);
+				if (seeds != null && !seeds.isEmpty()) {
+					SimpleEntry<ReservationReceipt, String> endPoint = reserveOnAnySeed(forLoad, seeds);
+					if (endPoint != null) {
+						result.set(endPoint);
+						return;
+					}
+					if (++retryAttempt < config.getMaxRetryAttempt()) {
+						log.info(String.format("None of the seeds [%s] have accepted my reservation for load [%d], retrying attmept: %d", seeds,
+								forLoad, retryAttempt));
+						retryLater();
+						return;
+					}
+				}
+				if (++region < regions.size()) {
+					retryAttempt = 0;
+					log.info("Now trying cross region seeds " + regions.get(region));
+					ioExecutor.execute(this);
+					return;
+				}
+				result.setException(new RuntimeException(String.format("None of the seeds %s accepted  reservation for load [%d] even after %d retries",
+						regions, forLoad, config.getMaxRetryAttempt())));
+			} catch (Exception e) {
+				result.setException(e);
+			}
+		}
+	}
+
+	/**
+	 * Stop the reservation threads and the health checks of the seeds. The health checker holds a reference to the
+	 * resolver, so the resolver is not garbage collected until it is closed.
+	 */
+	public void close() {
+		executor.shutdownNow();
+		if (healthChecker != null) {
+			healthChecker.shutdownNow();
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#finalize()
 	 */
 	@Override
 	protected void finalize() throws Throwable {
 		super.finalize();
-		executor.shutdownNow();
+		close();
 	}
 }
@@ -4,6 +4,7 @@
 package com.ebay.lightning.client.caller;
 
 import java.util.List;
+import java.util.Map;
 
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
@@ -20,7 +21,7 @@ import com.ebay.lightning.core.store.LightningRequestReport;
  * @author shashukla
  * @see RestAPICaller
  */
-public class EmbeddedAPICaller implements ServiceCaller {
+public class EmbeddedAPICaller implements SeedManagementCaller {
 
 	private TaskExecutionService service;
 
@@ -28,6 +29,18 @@ public class EmbeddedAPICaller implements ServiceCaller {
 		this.service = embeddedService;
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link SeedManagementCaller#cancelReservation(String, String)}
+	 */
+	@Override
+	public boolean cancelReservation(String reservationId, String serviceHostIp) {
+		try {
+			return service.cancelReservation(reservationId);
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling service: ", e);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link ServiceCaller#reserve(int, String)}
 	 */
@@ -57,6 +70,19 @@ public class EmbeddedAPICaller implements ServiceCaller {
 		return success;
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link ServiceCaller#appendTasks(LightningRequest, String, boolean)}
+	 */
+	@Override
+	public boolean appendTasks(LightningRequest chunk, String serviceHostIp, boolean lastChunk) {
+		try {
+			service.appendTasks(chunk.getSessionId(), chunk.getTasks(), lastChunk);
+			return true;
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling service: ", e);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link ServiceCaller#pollResults(String, String, boolean)}
 	 */
@@ -70,6 +96,30 @@ public class EmbeddedAPICaller implements ServiceCaller {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link ServiceCaller#pollResults(String, Map)}
+	 */
+	@Override
+	public Map<String, LightningResponse> pollResults(String serviceHostIp, Map<String, Integer> fromSequences) {
+		try {
+			return service.pollResponses(fromSequences);
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling service: ", e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link ServiceCaller#pollResults(String, String, int)}
+	 */
+	@Override
+	public LightningResponse pollResults(String sessionId, String serviceHostIp, int fromSequence) {
+		try {
+			return service.pollResponse(sessionId, fromSequence);
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling service: ", e);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link ServiceCaller#getAuditReport(String, String)
 	 */
@@ -138,4 +188,13 @@ public class EmbeddedAPICaller implements ServiceCaller {
 	public SystemStatus getLightningStats(String serviceHostIp) {
 		return service.getLightningStats();
 	}
+
+	/* (non-Javadoc)
+	 * @see {@link SeedManagementCaller#checkHealth(String)}
+	 */
+	@Override
+	public boolean checkHealth(String serviceHostIp) {
+		// the embedded seed runs in this process
+		return true;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.ebay.lightning.client.caller;
+
+import com.ebay.lightning.core.beans.LightningResponse;
+
+/**
+ * The {@link LightningResponseCallback} that is also notified of the tasks completed while the request runs, and
+ * that can complete the request before all its tasks are done.
+ *
+ * The callbacks of a request are invoked one at a time and in order: every {@link #onProgress(LightningResponse)}
+ * happens before {@link #onComplete(LightningResponse)} or {@link #onTimeout(LightningResponse)}.
+ *
+ * @author shashukla
+ */
+public interface LightningProgressCallback extends LightningResponseCallback {
+
+	/**
+	 * Invoked when tasks of the request completed since the previous notification.
+	 * @param delta the tasks completed since the previous notification, with the current status of the request
+	 */
+	public void onProgress(LightningResponse delta);
+
+	/**
+	 * Check if the tasks completed so far are enough for the caller, for example a quorum of successes or too many
+	 * failures. {@link #onComplete(LightningResponse)} is invoked with the partial response as soon as this returns
+	 * {@code true}, the tasks still running on the seed are not waited for.
+	 * @param response the tasks completed so far
+	 * @return {@code true} to complete the request early
+	 */
+	public boolean isSatisfied(LightningResponse response);
+}
@@ -3,7 +3,12 @@
  */
 package com.ebay.lightning.client.caller;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -15,8 +20,10 @@ import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.SystemStatus;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.store.LightningRequestReport;
+import com.ebay.lightning.core.utils.BinaryCodec;
 import com.ebay.lightning.core.utils.UrlUtils;
 import com.ebay.lightning.core.utils.ZipUtil;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
 import com.ebay.lightning.core.utils.UrlUtils.ContentType;
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
@@ -29,11 +36,13 @@ import com.google.gson.JsonParser;
  * @see EmbeddedAPICaller
  */
 
-public class RestAPICaller implements ServiceCaller {
+public class RestAPICaller implements SeedManagementCaller {
 	
 	private static final Logger log = Logger.getLogger(RestAPICaller.class);
 
 	private static final String HOST_VARIABLE_LITERAL = "{host}";
+	private static final String ACCEPT_BINARY = BinaryCodec.CONTENT_TYPE + ", application/zip;q=0.5";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
 
 	private UrlUtils urlUtils;
 	private LightningClientConfig config;
@@ -41,6 +50,21 @@ public class RestAPICaller implements ServiceCaller {
 	public RestAPICaller(LightningClientConfig config, UrlUtils urlUtils) {
 		this.urlUtils = urlUtils;
 		this.config = config;
+		if (config.getMaxIdleConnectionsPerSeed() > 0) {
+			UrlUtils.setMaxIdleConnectionsPerHost(config.getMaxIdleConnectionsPerSeed());
+		}
+		setTimeouts();
+	}
+
+	private void setTimeouts() {
+		int connectTimeout = config.getConnectTimeoutInMillis();
+		urlUtils.setTimeouts(config.getReserveApiUrl(), connectTimeout, config.getReserveReadTimeoutInMillis());
+		urlUtils.setTimeouts(config.getEcvUrl(), connectTimeout, config.getReserveReadTimeoutInMillis());
+		urlUtils.setTimeouts(config.getSubmitApiUrl(), connectTimeout, config.getSubmitReadTimeoutInMillis());
+		urlUtils.setTimeouts(config.getPollApiUrl(), connectTimeout, config.getPollReadTimeoutInMillis());
+		urlUtils.setTimeouts(config.getAuditApiUrl(), connectTimeout, config.getAuditReadTimeoutInMillis());
+		urlUtils.setTimeouts(config.getAuditJsonApiUrl(), connectTimeout, config.getAuditReadTimeoutInMillis());
+		urlUtils.setTimeouts(config.getAuditSummaryUrl(), connectTimeout, config.getAuditReadTimeoutInMillis());
 	}
 
 
@@ -61,7 +85,20 @@ public class RestAPICaller implements ServiceCaller {
 		return reservationReciept;
 	}
 
-	private String fillHostIP(String reserveApiUrlTemplate, String serviceHostIp) {
+	/* (non-Javadoc)
+	 * see {@link SeedManagementCaller#cancelReservation(String, String)}
+	 */
+	@Override
+	public boolean cancelReservation(String reservationId, String serviceHostIp) {
+		String url = fillHostIP(config.getReserveApiUrl(), serviceHostIp) + "/cancel/" + reservationId;
+		try {
+			return Boolean.parseBoolean(urlUtils.get(url).trim());
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling Lightning Core @ URL: " + url, e);
+		}
+	}
+
+	protected String fillHostIP(String reserveApiUrlTemplate, String serviceHostIp) {
 		return reserveApiUrlTemplate.replace(HOST_VARIABLE_LITERAL, serviceHostIp);
 	}
 
@@ -73,8 +110,13 @@ public class RestAPICaller implements ServiceCaller {
 		boolean success = false;
 		String url = fillHostIP(config.getSubmitApiUrl(), serviceHostIp);
 		try {
-			String payload = ZipUtil.zip(request);
-			String response = urlUtils.post(url, ContentType.APPLICATION_JSON, null, payload);
+			String response;
+			if (config.isBinaryCodecEnabled()) {
+				response = urlUtils.postBytes(url, BinaryCodec.CONTENT_TYPE, BinaryCodec.toByteArray(BinaryCodec.encode(request)));
+			} else {
+				String payload = zip(request);
+				response = urlUtils.post(url, ContentType.APPLICATION_JSON, null, payload);
+			}
 			if ("submitted".equals(new JsonParser().parse(response).getAsJsonObject().get("status").getAsString())) {
 				success = true;
 			}
@@ -84,6 +126,25 @@ public class RestAPICaller implements ServiceCaller {
 		return success;
 	}
 
+	/* (non-Javadoc)
+	 * see {@link ServiceCaller#appendTasks(LightningRequest, String, boolean)}
+	 */
+	@Override
+	public boolean appendTasks(LightningRequest chunk, String serviceHostIp, boolean lastChunk) {
+		String url = fillHostIP(config.getSubmitApiUrl(), serviceHostIp) + "/" + chunk.getSessionId() + "/append?last=" + lastChunk;
+		try {
+			String response;
+			if (config.isBinaryCodecEnabled()) {
+				response = urlUtils.postBytes(url, BinaryCodec.CONTENT_TYPE, BinaryCodec.toByteArray(BinaryCodec.encode(chunk)));
+			} else {
+				response = urlUtils.post(url, ContentType.APPLICATION_JSON, null, zip(chunk));
+			}
+			return "appended".equals(new JsonParser().parse(response).getAsJsonObject().get("status").getAsString());
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling Lightning Core @URL: " + url, e);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * see {@link ServiceCaller#pollResults(String, String, boolean)}
 	 */
@@ -92,8 +153,8 @@ public class RestAPICaller implements ServiceCaller {
 		byte[] response;
 		String url = fillHostIP(config.getPollApiUrl(), serviceHostIp) + "/" + sessionId + "/" + pollDeltaOnly;
 		try {
-			response = urlUtils.getByteArray(url);
-			LightningResponse resp = (LightningResponse) ZipUtil.unZipByteArray(response, LightningResponse.class);
+			response = getByteArray(url);
+			LightningResponse resp = decodeResponse(response);
 			return resp;
 		} catch (Exception e) {
 			log.error("Error Calling URL" + url, e);
@@ -101,6 +162,62 @@ public class RestAPICaller implements ServiceCaller {
 		return null;
 	}
 	
+	/* (non-Javadoc)
+	 * see {@link ServiceCaller#pollResults(String, String, int)}
+	 */
+	@Override
+	public LightningResponse pollResults(String sessionId, String serviceHostIp, int fromSequence) {
+		String url = fillHostIP(config.getPollApiUrl(), serviceHostIp) + "/" + sessionId + "/since/" + fromSequence;
+		try {
+			byte[] response = getByteArray(url);
+			return decodeResponse(response);
+		} catch (Exception e) {
+			log.error("Error Calling URL" + url, e);
+		}
+		return null;
+	}
+	
+	/* (non-Javadoc)
+	 * see {@link ServiceCaller#pollResults(String, Map)}
+	 */
+	@Override
+	public Map<String, LightningResponse> pollResults(String serviceHostIp, Map<String, Integer> fromSequences) {
+		String url = fillHostIP(config.getPollApiUrl(), serviceHostIp) + "/batch";
+		try {
+			Map<String, String> headers = config.getCompressionCodecs() != null ? Collections.singletonMap("Accept-Encoding", getAcceptEncoding())
+					: null;
+			byte[] payload = new Gson().toJson(fromSequences).getBytes(UTF_8);
+			byte[] response = urlUtils.postForByteArray(url, ContentType.APPLICATION_JSON.toString(), headers, payload);
+			@SuppressWarnings("unchecked")
+			Map<String, LightningResponse> responses = (Map<String, LightningResponse>) ZipUtil.unZipByteArray(response, Map.class);
+			return responses;
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling Lightning Core @URL: " + url, e);
+		}
+	}
+
+	/**
+	 * Long poll the tasks completed after the change log sequence number. The seed holds the poll until a task
+	 * completes after the sequence number, the request completes or the wait elapses.
+	 * @param sessionId the session id submitted through {@link #submit(LightningRequest, String)} method
+	 * @param serviceHostIp the seed
+	 * @param fromSequence the {@link LightningResponse#getSequence()} of the previous poll, 0 for the first poll
+	 * @param maxWaitInMillis the maximum time the seed holds the poll, must be less than the read timeout
+	 * @return the result with the tasks completed after {@code fromSequence}, no task if the wait elapsed
+	 * @throws RuntimeException if the poll fails, caused by a {@link java.io.FileNotFoundException} if the seed does
+	 * not serve the long poll endpoint
+	 */
+	public LightningResponse pollResults(String sessionId, String serviceHostIp, int fromSequence, long maxWaitInMillis) {
+		String url = fillHostIP(config.getPollApiUrl(), serviceHostIp) + "/" + sessionId + "/since/" + fromSequence + "/wait?maxWaitInMillis="
+				+ maxWaitInMillis;
+		try {
+			byte[] response = getByteArray(url);
+			return decodeResponse(response);
+		} catch (Exception e) {
+			throw new RuntimeException("Error Calling Lightning Core @URL: " + url, e);
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see {@link ServiceCaller#getAuditReport(String, String)
 	 */
@@ -110,8 +227,14 @@ public class RestAPICaller implements ServiceCaller {
 		Preconditions.checkNotNull(config.getAuditApiUrl(), "Audit API is null. Please configure Audit API url");
 		String url = fillHostIP(config.getAuditApiUrl(), serviceHostIp) + "/" + sessionId;
 		try {
-			response = urlUtils.getByteArray(url);
-			LightningRequestReport report = (LightningRequestReport) ZipUtil.unZipByteArray(response, LightningRequestReport.class);
+			response = getByteArray(url);
+			LightningRequestReport report;
+			// the seed falls back to the compressed format for reports it cannot encode
+			if (BinaryCodec.isEncoded(response)) {
+				report = BinaryCodec.decodeReport(ByteBuffer.wrap(response));
+			} else {
+				report = (LightningRequestReport) ZipUtil.unZipByteArray(response, LightningRequestReport.class);
+			}
 			
 			return report;
 		} catch (Exception e) {
@@ -156,7 +279,7 @@ public class RestAPICaller implements ServiceCaller {
 		}
 		
 		try {
-			response = urlUtils.getByteArray(url);
+			response = getZippedByteArray(url);
 			List<LightningRequestReport> reports = (List<LightningRequestReport>) ZipUtil.unZipByteArray(response);
 			
 			return reports;
@@ -216,7 +339,7 @@ public class RestAPICaller implements ServiceCaller {
 		String url = fillHostIP(config.getLightningStatsUrl(), serviceHostIp);
 		SystemStatus stats = null;
 		try {
-			response = urlUtils.getByteArray(url);
+			response = getZippedByteArray(url);
 			stats = (SystemStatus) ZipUtil.unZipByteArray(response, SystemStatus.class);
 			stats.setHostName(serviceHostIp);
 			stats.setSystemHealth(true);
@@ -231,4 +354,60 @@ public class RestAPICaller implements ServiceCaller {
 
 		return stats;
 	}
-}
\ No newline at end of file
+
+	/* (non-Javadoc)
+	 * @see {@link SeedManagementCaller#checkHealth(String)}
+	 */
+	@Override
+	public boolean checkHealth(String serviceHostIp) {
+		Preconditions.checkNotNull(config.getEcvUrl(), "ECV URL is null. Please configure ECV url");
+		String url = fillHostIP(config.getEcvUrl(), serviceHostIp);
+		try {
+			String response = urlUtils.get(url);
+			return response != null && "OK".equals(response.trim());
+		} catch (Exception e) {
+			log.warn("Error Calling ECV URL: " + url + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	private byte[] getByteArray(String url) throws Exception {
+		if (config.isBinaryCodecEnabled() || config.getCompressionCodecs() != null) {
+			Map<String, String> headers = new HashMap<>();
+			if (config.isBinaryCodecEnabled()) {
+				headers.put("Accept", ACCEPT_BINARY);
+			}
+			if (config.getCompressionCodecs() != null) {
+				headers.put("Accept-Encoding", getAcceptEncoding());
+			}
+			return urlUtils.getByteArray(url, headers);
+		}
+		return urlUtils.getByteArray(url);
+	}
+
+	private byte[] getZippedByteArray(String url) throws Exception {
+		if (config.getCompressionCodecs() != null) {
+			return urlUtils.getByteArray(url, Collections.singletonMap("Accept-Encoding", getAcceptEncoding()));
+		}
+		return urlUtils.getByteArray(url);
+	}
+
+	private String getAcceptEncoding() {
+		return Codec.toAcceptEncoding(config.getCompressionCodecs().toArray(new Codec[0]));
+	}
+
+	private String zip(Object payload) throws Exception {
+		// the seed detects the codec of the payload from its leading bytes
+		if (config.getCompressionCodecs() != null) {
+			return ZipUtil.zip(payload, config.getCompressionCodecs().get(0));
+		}
+		return ZipUtil.zip(payload);
+	}
+
+	private LightningResponse decodeResponse(byte[] response) throws Exception {
+		if (BinaryCodec.isEncoded(response)) {
+			return BinaryCodec.decodeResponse(ByteBuffer.wrap(response));
+		}
+		return (LightningResponse) ZipUtil.unZipByteArray(response, LightningResponse.class);
+	}
+}
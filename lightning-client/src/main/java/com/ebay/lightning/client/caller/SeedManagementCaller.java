@@ -0,0 +1,29 @@
+package com.ebay.lightning.client.caller;
+
+/**
+ * {@code SeedManagementCaller} is a {@link ServiceCaller} that also releases unused reservations and checks the
+ * health of the seeds. The {@link com.ebay.lightning.client.ServiceHostResolver} uses these calls when the caller
+ * provides them. Otherwise unused reservations expire on the seed, and a seed's health is read from its
+ * statistics.
+ *
+ * @author shashukla
+ * @see RestAPICaller
+ * @see EmbeddedAPICaller
+ */
+public interface SeedManagementCaller extends ServiceCaller {
+
+	/**
+	 * Release a reservation that will not be used, so that the seed can accept other requests.
+	 * @param reservationId the id of the reservation receipt returned by the {@link #reserve(int, String)} method
+	 * @param serviceHostIp the seed
+	 * @return {@code true} if the reservation was pending and is released
+	 */
+	boolean cancelReservation(String reservationId, String serviceHostIp);
+
+	/**
+	 * Check that the seed is up through its ECV URL, a cheap call that does not touch the tasks of the seed.
+	 * @param serviceHostIp the seed
+	 * @return {@code true} if the seed is up
+	 */
+	boolean checkHealth(String serviceHostIp);
+}
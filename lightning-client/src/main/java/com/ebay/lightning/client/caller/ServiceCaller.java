@@ -1,6 +1,7 @@
 package com.ebay.lightning.client.caller;
 
 import java.util.List;
+import java.util.Map;
 
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
@@ -16,6 +17,7 @@ import com.ebay.lightning.core.store.LightningRequestReport;
  * @author shashukla
  * @see RestAPICaller
  * @see EmbeddedAPICaller
+ * @see SeedManagementCaller
  */
 public interface ServiceCaller {
 
@@ -72,6 +74,15 @@ public interface ServiceCaller {
 	 */
 	boolean submit(LightningRequest request, String serviceHostIp);
 
+	/**
+	 * Append a chunk of tasks to a streaming request submitted to the seed.
+	 * @param chunk a request with the session id of the streaming request and the tasks to append
+	 * @param serviceHostIp the seed that executes the request
+	 * @param lastChunk {@code true} if no more tasks will be appended
+	 * @return {@code true} if the append operation is successful
+	 */
+	boolean appendTasks(LightningRequest chunk, String serviceHostIp, boolean lastChunk);
+
 	/**
 	 * Update the configuration of the seed
 	 * @param serviceHostIp the seed
@@ -102,4 +113,22 @@ public interface ServiceCaller {
 	 * @return the result for the request corresponding to sessionId
 	 */
 	LightningResponse pollResults(String sessionId, String serviceHostIp, boolean pollDeltaOnly);	
+
+	/**
+	 * Get the tasks completed after the change log sequence number.
+	 * @param sessionId the session id submitted through {@link #submit(LightningRequest, String)} method
+	 * @param serviceHostIp the seed
+	 * @param fromSequence the {@link LightningResponse#getSequence()} of the previous poll, 0 for the first poll
+	 * @return the result with the tasks completed after {@code fromSequence}
+	 */
+	LightningResponse pollResults(String sessionId, String serviceHostIp, int fromSequence);
+
+	/**
+	 * Get the tasks completed after the change log sequence numbers of several requests served by a seed in one call.
+	 * @param serviceHostIp the seed
+	 * @param fromSequences the {@link LightningResponse#getSequence()} of the previous poll of each session id
+	 * @return the result with the tasks completed after the sequence number by session id, the session ids unknown
+	 * to the seed are left out
+	 */
+	Map<String, LightningResponse> pollResults(String serviceHostIp, Map<String, Integer> fromSequences);
 }
@@ -0,0 +1,292 @@
+package com.ebay.lightning.client.caller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import com.ebay.lightning.client.config.LightningClientConfig;
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.ebay.lightning.core.utils.UrlUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * The {@link RestAPICaller} that gets the results of the requests pushed by the seeds over WebSocket instead of
+ * polling the seeds.
+ *
+ * <p>One WebSocket connection is kept per seed and shared by all the requests submitted to the seed. The seed pushes
+ * the tasks completed since the previous push, the caller merges them and invokes the callback once the request is
+ * completed. If the connection is lost the remaining requests are polled with the change log sequence number of the
+ * last push, so no result is lost. A request whose subscription the seed ends with an error is polled the same way.</p>
+ *
+ * @author shashukla
+ * @see RestAPICaller
+ */
+public class WebSocketAPICaller extends RestAPICaller {
+
+	private static final Logger log = Logger.getLogger(WebSocketAPICaller.class);
+	private static final long CONNECT_TIMEOUT_IN_MILLIS = 5000;
+	private static final long FALLBACK_POLL_INTERVAL_IN_MILLIS = 100;
+
+	private final LightningClientConfig config;
+	private final WebSocketClient webSocketClient;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("WebSocketAPICaller-%d").setDaemon(true).build());
+	private final ConcurrentMap<String, PushConnection> connections = new ConcurrentHashMap<>();
+
+	public WebSocketAPICaller(LightningClientConfig config, UrlUtils urlUtils) {
+		this(config, urlUtils, new StandardWebSocketClient());
+	}
+
+	public WebSocketAPICaller(LightningClientConfig config, UrlUtils urlUtils, WebSocketClient webSocketClient) {
+		super(config, urlUtils);
+		this.config = config;
+		this.webSocketClient = webSocketClient;
+	}
+
+	/**
+	 * Invoke the callback when the seed pushes the completed response of the request.
+	 * @param request the request submitted to the seed
+	 * @param callback the callback to invoke on completion of the request or timeout
+	 * @param timeoutInMillis timeout for callback
+	 * @return {@code false} if the seed does not accept the WebSocket connection, the results have to be polled
+	 */
+	public boolean subscribe(LightningRequest request, LightningResponseCallback callback, long timeoutInMillis) {
+		Subscription subscription = new Subscription(request, callback);
+		try {
+			getConnection(request.getServingHostIp()).subscribe(subscription);
+		} catch (Exception e) {
+			log.warn("Unable to subscribe to the results of " + request.getSessionId() + ", falling back to poll", e);
+			return false;
+		}
+		subscription.scheduleTimeout(timeoutInMillis);
+		return true;
+	}
+
+	private synchronized PushConnection getConnection(String serviceHostIp) throws Exception {
+		PushConnection connection = connections.get(serviceHostIp);
+		if (connection == null || !connection.isOpen()) {
+			connection = new PushConnection(serviceHostIp);
+			webSocketClient.doHandshake(connection, fillHostIP(config.getPushApiUrl(), serviceHostIp)).get(CONNECT_TIMEOUT_IN_MILLIS,
+					TimeUnit.MILLISECONDS);
+			connections.put(serviceHostIp, connection);
+		}
+		return connection;
+	}
+
+	/**
+	 * The WebSocket connection to a seed and the requests subscribed on it.
+	 */
+	private class PushConnection extends AbstractWebSocketHandler {
+
+		private final String serviceHostIp;
+		private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+		private volatile WebSocketSession session;
+
+		private PushConnection(String serviceHostIp) {
+			this.serviceHostIp = serviceHostIp;
+		}
+
+		private boolean isOpen() {
+			return session != null && session.isOpen();
+		}
+
+		private void subscribe(Subscription subscription) throws Exception {
+			subscription.connection = this;
+			subscriptions.put(subscription.request.getSessionId(), subscription);
+			try {
+				synchronized (this) {
+					session.sendMessage(new TextMessage(subscription.request.getSessionId()));
+				}
+			} catch (Exception e) {
+				subscriptions.remove(subscription.request.getSessionId());
+				throw e;
+			}
+		}
+
+		private void unsubscribe(Subscription subscription) {
+			subscriptions.remove(subscription.request.getSessionId());
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link AbstractWebSocketHandler#afterConnectionEstablished(WebSocketSession)}
+		 */
+		@Override
+		public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+			this.session = session;
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link AbstractWebSocketHandler#handleBinaryMessage(WebSocketSession, BinaryMessage)}
+		 */
+		@Override
+		protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+			LightningResponse delta = BinaryCodec.decodeResponse(message.getPayload());
+			Subscription subscription = subscriptions.get(delta.getSessionId());
+			if (subscription != null) {
+				subscription.onResponse(delta);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link AbstractWebSocketHandler#handleTextMessage(WebSocketSession, TextMessage)}
+		 */
+		@Override
+		protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+			JsonObject error = new JsonParser().parse(message.getPayload()).getAsJsonObject();
+			String sessionId = error.get("sessionId").getAsString();
+			log.warn("Seed " + serviceHostIp + " ended the subscription to " + sessionId + ": " + error.get("msg"));
+			Subscription subscription = subscriptions.get(sessionId);
+			if (subscription != null) {
+				unsubscribe(subscription);
+				subscription.pollUntilCompleted();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link AbstractWebSocketHandler#handleTransportError(WebSocketSession, Throwable)}
+		 */
+		@Override
+		public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+			log.warn("Error in the result push connection to " + serviceHostIp, exception);
+			if (session.isOpen()) {
+				session.close(CloseStatus.SERVER_ERROR);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link AbstractWebSocketHandler#afterConnectionClosed(WebSocketSession, CloseStatus)}
+		 */
+		@Override
+		public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+			connections.remove(serviceHostIp, this);
+			for (Subscription subscription : subscriptions.values()) {
+				unsubscribe(subscription);
+				subscription.pollUntilCompleted();
+			}
+		}
+	}
+
+	/**
+	 * The callback of a request and the response merged from the pushes.
+	 */
+	private class Subscription {
+
+		private final LightningRequest request;
+		private final LightningResponseCallback callback;
+		private final AtomicBoolean finished = new AtomicBoolean();
+		private volatile PushConnection connection;
+		private volatile ScheduledFuture<?> timeout;
+		private volatile ScheduledFuture<?> poller;
+		private LightningResponse response;
+
+		private Subscription(LightningRequest request, LightningResponseCallback callback) {
+			this.request = request;
+			this.callback = callback;
+		}
+
+		private void scheduleTimeout(long timeoutInMillis) {
+			timeout = scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					finish(true);
+				}
+			}, timeoutInMillis, TimeUnit.MILLISECONDS);
+			if (finished.get()) {
+				timeout.cancel(false);
+			}
+		}
+
+		private void onResponse(LightningResponse delta) {
+			boolean completed;
+			synchronized (this) {
+				int sequence = getSequence();
+				if (response == null) {
+					response = new LightningResponse(delta.getSessionId(), delta.getStatus());
+				}
+				response.merge(delta);
+				completed = response.isCompleted();
+				if (callback instanceof LightningProgressCallback && !finished.get()) {
+					LightningProgressCallback progressCallback = (LightningProgressCallback) callback;
+					if (delta.getSequence() > sequence) {
+						progressCallback.onProgress(delta);
+					}
+					completed = completed || progressCallback.isSatisfied(response);
+				}
+			}
+			if (completed) {
+				finish(false);
+			}
+		}
+
+		private synchronized int getSequence() {
+			return response != null ? response.getSequence() : 0;
+		}
+
+		private void pollUntilCompleted() {
+			if (finished.get()) {
+				return;
+			}
+			poller = scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						LightningResponse delta = pollResults(request.getSessionId(), request.getServingHostIp(), getSequence());
+						if (delta != null) {
+							onResponse(delta);
+						}
+					} catch (Exception e) {
+						log.warn("Error polling the results of " + request.getSessionId(), e);
+					}
+				}
+			}, 0, FALLBACK_POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+			if (finished.get()) {
+				poller.cancel(false);
+			}
+		}
+
+		private void finish(boolean timedOut) {
+			if (!finished.compareAndSet(false, true)) {
+				return;
+			}
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+			if (poller != null) {
+				poller.cancel(false);
+			}
+			if (connection != null) {
+				connection.unsubscribe(this);
+			}
+			LightningResponse currentResponse;
+			synchronized (this) {
+				currentResponse = response;
+			}
+			if (currentResponse == null) {
+				currentResponse = pollResults(request.getSessionId(), request.getServingHostIp(), false);
+			}
+			if (timedOut) {
+				callback.onTimeout(currentResponse);
+			} else {
+				callback.onComplete(currentResponse);
+			}
+		}
+	}
+}
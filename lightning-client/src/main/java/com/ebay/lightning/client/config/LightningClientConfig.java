@@ -2,11 +2,16 @@ package com.ebay.lightning.client.config;
 
 import java.util.List;
 
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
+
 /**
  * @author shashukla
  */
 public class LightningClientConfig {
 
+	public static final int DEFAULT_TIMEOUT_IN_MILLIS = 10000;
+
 	private String reserveApiUrl;
 	private String submitApiUrl;
 	private String pollApiUrl;
@@ -16,9 +21,31 @@ public class LightningClientConfig {
 	private String lightningStatsUrl;
 	private String systemConfigUrl;
 	private String systemConfigUpdateUrl;
+	private String pushApiUrl;
+	private String ecvUrl;
 	private int maxRetryAttempt = 3;
 	private boolean embeddedMode = false;
 	private boolean allowCrossRegionInteraction = true;
+	private boolean binaryCodecEnabled = false;
+	private boolean webSocketPushEnabled = false;
+	private boolean longPollEnabled = false;
+	private int eventLoopThreadPoolSize = 2;
+	private int ioThreadPoolSize = 16;
+	private long minPollIntervalInMillis = 50;
+	private long maxPollIntervalInMillis = 2000;
+	private int callbackThreadPoolSize = 4;
+	private int minScatterLoad = 1000;
+	private int reservationFanOut = 3;
+	private long healthCheckIntervalInMillis = 0;
+	private int maxConsecutiveFailures = 3;
+	private long baseEjectionTimeInMillis = 1000;
+	private List<Codec> compressionCodecs;
+	private int maxIdleConnectionsPerSeed = 0;
+	private int connectTimeoutInMillis = DEFAULT_TIMEOUT_IN_MILLIS;
+	private int reserveReadTimeoutInMillis = DEFAULT_TIMEOUT_IN_MILLIS;
+	private int submitReadTimeoutInMillis = DEFAULT_TIMEOUT_IN_MILLIS;
+	private int pollReadTimeoutInMillis = DEFAULT_TIMEOUT_IN_MILLIS;
+	private int auditReadTimeoutInMillis = DEFAULT_TIMEOUT_IN_MILLIS;
 	private List<String> seeds;
 	private List<String> crossRegionSeeds;
 	
@@ -279,5 +306,378 @@ public class LightningClientConfig {
 	public void setCrossRegionSeeds(List<String> crossRegionSeeds) {
 		this.crossRegionSeeds = crossRegionSeeds;
 	}
-	
+
+	/**
+	 * Check if requests and responses are exchanged in the binary format of {@link BinaryCodec}.
+	 * @return {@code true} if the binary format is enabled
+	 */
+	public boolean isBinaryCodecEnabled() {
+		return binaryCodecEnabled;
+	}
+
+	/**
+	 * Exchange requests and responses with the seeds in the binary format of {@link BinaryCodec} instead of
+	 * compressed Java serialization. Enable only when every seed supports the binary format.
+	 * @param binaryCodecEnabled to enable the binary format
+	 */
+	public void setBinaryCodecEnabled(boolean binaryCodecEnabled) {
+		this.binaryCodecEnabled = binaryCodecEnabled;
+	}
+
+	/**
+	 * Get the WebSocket URL template the seeds push the results on.
+	 * @return the URL template for the results pushed by the seeds
+	 */
+	public String getPushApiUrl() {
+		return pushApiUrl;
+	}
+
+	/**
+	 * Set the WebSocket URL template the seeds push the results on.
+	 * 
+	 * <p>Format: ws://{hostname}:[port]/[some/push/url]<br>
+	 * Example: ws://{host}:8989/l/push</p>
+	 * @param pushApiUrl the URL template for the results pushed by the seeds
+	 */
+	public void setPushApiUrl(String pushApiUrl) {
+		this.pushApiUrl = pushApiUrl;
+	}
+
+	/**
+	 * Check if the results of the requests submitted with a callback are pushed by the seeds.
+	 * @return {@code true} if the results are pushed over WebSocket
+	 */
+	public boolean isWebSocketPushEnabled() {
+		return webSocketPushEnabled;
+	}
+
+	/**
+	 * Get the results of the requests submitted with a callback pushed by the seeds over WebSocket instead of
+	 * polling the seeds. The results are polled if a seed does not accept the WebSocket connection.
+	 * @param webSocketPushEnabled to enable the results pushed over WebSocket
+	 */
+	public void setWebSocketPushEnabled(boolean webSocketPushEnabled) {
+		this.webSocketPushEnabled = webSocketPushEnabled;
+	}
+
+	/**
+	 * Check if the results of the requests submitted with a callback are long polled.
+	 * @return {@code true} if the results are long polled
+	 */
+	public boolean isLongPollEnabled() {
+		return longPollEnabled;
+	}
+
+	/**
+	 * Long poll the results of the requests submitted with a callback, the seed holds each poll until a task
+	 * completes. The requests of a seed that does not serve the long poll are polled instead.
+	 * @param longPollEnabled to enable the long poll
+	 */
+	public void setLongPollEnabled(boolean longPollEnabled) {
+		this.longPollEnabled = longPollEnabled;
+	}
+
+	/**
+	 * Get the number of threads of the event loop that schedules the polls and retries of the requests submitted
+	 * asynchronously.
+	 * @return the thread pool size of the event loop
+	 */
+	public int getEventLoopThreadPoolSize() {
+		return eventLoopThreadPoolSize;
+	}
+
+	/**
+	 * Set the number of threads of the event loop that schedules the polls and retries of the requests submitted
+	 * asynchronously. The event loop never calls the seeds, it hands the calls over to the I/O thread pool.
+	 * @param eventLoopThreadPoolSize the thread pool size of the event loop
+	 */
+	public void setEventLoopThreadPoolSize(int eventLoopThreadPoolSize) {
+		this.eventLoopThreadPoolSize = eventLoopThreadPoolSize;
+	}
+
+	/**
+	 * Get the maximum number of threads calling the seeds for the requests submitted asynchronously.
+	 * @return the thread pool size of the seed calls
+	 */
+	public int getIoThreadPoolSize() {
+		return ioThreadPoolSize;
+	}
+
+	/**
+	 * Set the maximum number of threads calling the seeds for the requests submitted asynchronously. A thread is
+	 * held for the whole call, up to the read timeout when a seed does not answer.
+	 * @param ioThreadPoolSize the thread pool size of the seed calls
+	 */
+	public void setIoThreadPoolSize(int ioThreadPoolSize) {
+		this.ioThreadPoolSize = ioThreadPoolSize;
+	}
+
+	/**
+	 * Get the interval between the first polls of a request submitted with a callback.
+	 * @return the minimum poll interval
+	 */
+	public long getMinPollIntervalInMillis() {
+		return minPollIntervalInMillis;
+	}
+
+	/**
+	 * Set the interval between the first polls of a request submitted with a callback, the interval grows with the age
+	 * of the request up to the maximum poll interval.
+	 * @param minPollIntervalInMillis the minimum poll interval
+	 */
+	public void setMinPollIntervalInMillis(long minPollIntervalInMillis) {
+		this.minPollIntervalInMillis = minPollIntervalInMillis;
+	}
+
+	/**
+	 * Get the longest interval between the polls of a request submitted with a callback.
+	 * @return the maximum poll interval
+	 */
+	public long getMaxPollIntervalInMillis() {
+		return maxPollIntervalInMillis;
+	}
+
+	/**
+	 * Set the longest interval between the polls of a request submitted with a callback.
+	 * @param maxPollIntervalInMillis the maximum poll interval
+	 */
+	public void setMaxPollIntervalInMillis(long maxPollIntervalInMillis) {
+		this.maxPollIntervalInMillis = maxPollIntervalInMillis;
+	}
+
+	/**
+	 * Get the number of threads that invoke the callbacks of the requests.
+	 * @return the thread pool size of the callbacks
+	 */
+	public int getCallbackThreadPoolSize() {
+		return callbackThreadPoolSize;
+	}
+
+	/**
+	 * Set the number of threads that invoke the callbacks of the requests.
+	 * @param callbackThreadPoolSize the thread pool size of the callbacks
+	 */
+	public void setCallbackThreadPoolSize(int callbackThreadPoolSize) {
+		this.callbackThreadPoolSize = callbackThreadPoolSize;
+	}
+
+	/**
+	 * Get the minimum number of tasks sent to a seed by a scattered request.
+	 * @return the minimum number of tasks per seed of a scattered request
+	 */
+	public int getMinScatterLoad() {
+		return minScatterLoad;
+	}
+
+	/**
+	 * Set the minimum number of tasks sent to a seed by a scattered request, the seeds with too little free
+	 * capacity for this share are left out.
+	 * @param minScatterLoad the minimum number of tasks per seed of a scattered request
+	 */
+	public void setMinScatterLoad(int minScatterLoad) {
+		this.minScatterLoad = minScatterLoad;
+	}
+
+	/**
+	 * Get the number of seeds a reservation is sent to at once.
+	 * @return the number of seeds reserved in parallel
+	 */
+	public int getReservationFanOut() {
+		return reservationFanOut;
+	}
+
+	/**
+	 * Set the number of seeds a reservation is sent to at once. The least busy seed that accepted is used and the
+	 * reservations on the other seeds are cancelled.
+	 * @param reservationFanOut the number of seeds reserved in parallel
+	 */
+	public void setReservationFanOut(int reservationFanOut) {
+		this.reservationFanOut = reservationFanOut;
+	}
+
+	/**
+	 * Get the ECV URL template used to check that a seed is up.
+	 * @return the ECV URL template
+	 */
+	public String getEcvUrl() {
+		return ecvUrl;
+	}
+
+	/**
+	 * Set the ECV URL template used to check that a seed is up.
+	 * 
+	 * <p>Format: http://{hostname}:[port]/[ecvUrl]<br>
+	 * Example: http://{host}:8989/l/ecv</p>
+	 * @param ecvUrl the ECV URL template
+	 */
+	public void setEcvUrl(String ecvUrl) {
+		this.ecvUrl = ecvUrl;
+	}
+
+	/**
+	 * Get the interval between two ECV checks of the seeds.
+	 * @return the interval between two health checks, 0 if the seeds are not checked
+	 */
+	public long getHealthCheckIntervalInMillis() {
+		return healthCheckIntervalInMillis;
+	}
+
+	/**
+	 * Set the interval between two ECV checks of the seeds. The checks keep the health of the seeds current between
+	 * the reservations and re-probe the ejected seeds.
+	 * @param healthCheckIntervalInMillis the interval between two health checks, 0 to not check the seeds
+	 */
+	public void setHealthCheckIntervalInMillis(long healthCheckIntervalInMillis) {
+		this.healthCheckIntervalInMillis = healthCheckIntervalInMillis;
+	}
+
+	/**
+	 * Get the number of consecutive failed calls after which a seed is ejected.
+	 * @return the number of consecutive failures that ejects a seed
+	 */
+	public int getMaxConsecutiveFailures() {
+		return maxConsecutiveFailures;
+	}
+
+	/**
+	 * Set the number of consecutive failed calls after which a seed is ejected, no reservation is sent to an
+	 * ejected seed until its ejection time is over.
+	 * @param maxConsecutiveFailures the number of consecutive failures that ejects a seed
+	 */
+	public void setMaxConsecutiveFailures(int maxConsecutiveFailures) {
+		this.maxConsecutiveFailures = maxConsecutiveFailures;
+	}
+
+	/**
+	 * Get the time a seed is ejected for the first time.
+	 * @return the first ejection time of a seed
+	 */
+	public long getBaseEjectionTimeInMillis() {
+		return baseEjectionTimeInMillis;
+	}
+
+	/**
+	 * Set the time a seed is ejected for the first time. The ejection time doubles every time the seed fails again
+	 * once its ejection is over, and is reset when the seed responds.
+	 * @param baseEjectionTimeInMillis the first ejection time of a seed
+	 */
+	public void setBaseEjectionTimeInMillis(long baseEjectionTimeInMillis) {
+		this.baseEjectionTimeInMillis = baseEjectionTimeInMillis;
+	}
+
+	/**
+	 * Get the compression codecs negotiated with the seeds, in order of preference.
+	 * @return the compression codecs or {@code null} if gzip is used without negotiation
+	 */
+	public List<Codec> getCompressionCodecs() {
+		return compressionCodecs;
+	}
+
+	/**
+	 * Set the compression codecs negotiated with the seeds, in order of preference. The requests are compressed
+	 * with the first codec and the seeds choose the codec of each response among them by its size. Set only when
+	 * every seed supports the negotiation.
+	 * @param compressionCodecs the compression codecs or {@code null} to use gzip without negotiation
+	 */
+	public void setCompressionCodecs(List<Codec> compressionCodecs) {
+		this.compressionCodecs = compressionCodecs;
+	}
+
+	/**
+	 * Get the number of idle connections kept open per seed.
+	 * @return the number of idle connections per seed, 0 to keep the JVM setting
+	 */
+	public int getMaxIdleConnectionsPerSeed() {
+		return maxIdleConnectionsPerSeed;
+	}
+
+	/**
+	 * Set the number of idle connections kept open per seed, size it to the concurrent calls to a seed so that they
+	 * reuse the connections. The calls use the keep-alive pool of {@code HttpURLConnection}, which is shared by the JVM
+	 * and sized once, see {@link com.ebay.lightning.core.utils.UrlUtils#setMaxIdleConnectionsPerHost(int)}.
+	 * @param maxIdleConnectionsPerSeed the number of idle connections per seed, 0 to keep the JVM setting
+	 */
+	public void setMaxIdleConnectionsPerSeed(int maxIdleConnectionsPerSeed) {
+		this.maxIdleConnectionsPerSeed = maxIdleConnectionsPerSeed;
+	}
+
+	/**
+	 * Get the connect timeout of the calls to the seeds.
+	 * @return the connect timeout
+	 */
+	public int getConnectTimeoutInMillis() {
+		return connectTimeoutInMillis;
+	}
+
+	/**
+	 * Set the connect timeout of the calls to the seeds.
+	 * @param connectTimeoutInMillis the connect timeout
+	 */
+	public void setConnectTimeoutInMillis(int connectTimeoutInMillis) {
+		this.connectTimeoutInMillis = connectTimeoutInMillis;
+	}
+
+	/**
+	 * Get the read timeout of the calls to reserve the capacity on the seeds.
+	 * @return the read timeout
+	 */
+	public int getReserveReadTimeoutInMillis() {
+		return reserveReadTimeoutInMillis;
+	}
+
+	/**
+	 * Set the read timeout of the calls to reserve the capacity on the seeds.
+	 * @param reserveReadTimeoutInMillis the read timeout
+	 */
+	public void setReserveReadTimeoutInMillis(int reserveReadTimeoutInMillis) {
+		this.reserveReadTimeoutInMillis = reserveReadTimeoutInMillis;
+	}
+
+	/**
+	 * Get the read timeout of the calls to submit the requests.
+	 * @return the read timeout
+	 */
+	public int getSubmitReadTimeoutInMillis() {
+		return submitReadTimeoutInMillis;
+	}
+
+	/**
+	 * Set the read timeout of the calls to submit the requests.
+	 * @param submitReadTimeoutInMillis the read timeout
+	 */
+	public void setSubmitReadTimeoutInMillis(int submitReadTimeoutInMillis) {
+		this.submitReadTimeoutInMillis = submitReadTimeoutInMillis;
+	}
+
+	/**
+	 * Get the read timeout of the calls to poll the results, including the long polls.
+	 * @return the read timeout
+	 */
+	public int getPollReadTimeoutInMillis() {
+		return pollReadTimeoutInMillis;
+	}
+
+	/**
+	 * Set the read timeout of the calls to poll the results, including the long polls.
+	 * @param pollReadTimeoutInMillis the read timeout
+	 */
+	public void setPollReadTimeoutInMillis(int pollReadTimeoutInMillis) {
+		this.pollReadTimeoutInMillis = pollReadTimeoutInMillis;
+	}
+
+	/**
+	 * Get the read timeout of the calls to get the audit reports.
+	 * @return the read timeout
+	 */
+	public int getAuditReadTimeoutInMillis() {
+		return auditReadTimeoutInMillis;
+	}
+
+	/**
+	 * Set the read timeout of the calls to get the audit reports.
+	 * @param auditReadTimeoutInMillis the read timeout
+	 */
+	public void setAuditReadTimeoutInMillis(int auditReadTimeoutInMillis) {
+		this.auditReadTimeoutInMillis = auditReadTimeoutInMillis;
+	}
 }
@@ -0,0 +1,289 @@
+package com.ebay.lightning.client;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.ebay.lightning.client.LightningClient.LightningClientImpl;
+import com.ebay.lightning.client.caller.ServiceCaller;
+import com.ebay.lightning.client.config.LightningClientConfig;
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.google.common.util.concurrent.Futures;
+
+public class LightningClientTest {
+
+	@Test
+	public void testSubmitInChunks() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		ReservationReceipt receipt = new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 25);
+		Mockito.when(resolver.getNextEndPoint(25)).thenReturn(new SimpleEntry<ReservationReceipt, String>(receipt, "localhost"));
+		Mockito.when(caller.appendTasks(Mockito.any(LightningRequest.class), Mockito.eq("localhost"), Mockito.anyBoolean())).thenReturn(true);
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		LightningRequest request = client.submitInChunks(tasks.iterator(), tasks.size(), 10, null);
+		Assert.assertTrue(request.isStreaming());
+		Assert.assertEquals(10, request.getTasks().size());
+		Mockito.verify(caller).submit(request, "localhost");
+
+		ArgumentCaptor<LightningRequest> chunks = ArgumentCaptor.forClass(LightningRequest.class);
+		ArgumentCaptor<Boolean> lastChunk = ArgumentCaptor.forClass(Boolean.class);
+		Mockito.verify(caller, Mockito.times(2)).appendTasks(chunks.capture(), Mockito.eq("localhost"), lastChunk.capture());
+		Assert.assertEquals(request.getSessionId(), chunks.getAllValues().get(1).getSessionId());
+		Assert.assertEquals(10, chunks.getAllValues().get(0).getTasks().size());
+		Assert.assertEquals(5, chunks.getAllValues().get(1).getTasks().size());
+		Assert.assertFalse(lastChunk.getAllValues().get(0));
+		Assert.assertTrue(lastChunk.getAllValues().get(1));
+	}
+
+	@Test
+	public void testSubmitInChunksPartialFailure() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		ReservationReceipt receipt = new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 25);
+		Mockito.when(resolver.getNextEndPoint(25)).thenReturn(new SimpleEntry<ReservationReceipt, String>(receipt, "localhost"));
+		Mockito.when(caller.appendTasks(Mockito.any(LightningRequest.class), Mockito.eq("localhost"), Mockito.anyBoolean()))
+				.thenReturn(true).thenThrow(new RuntimeException("Core down"));
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		try {
+			client.submitInChunks(tasks.iterator(), tasks.size(), 10, null);
+			Assert.fail("The failed chunk should be reported");
+		} catch (ChunkedSubmitException e) {
+			Assert.assertEquals("Core down", e.getCause().getMessage());
+			Assert.assertEquals(20, e.getSubmittedTaskCount());
+			Assert.assertEquals(10, e.getSubmittedRequest().getTasks().size());
+			Mockito.verify(caller).submit(e.getSubmittedRequest(), "localhost");
+		}
+	}
+
+	@Test
+	public void testSubmitScatteredPartialFailure() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		SimpleEntry<ReservationReceipt, String> first = new SimpleEntry<ReservationReceipt, String>(
+				new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 3), "phx1");
+		SimpleEntry<ReservationReceipt, String> second = new SimpleEntry<ReservationReceipt, String>(
+				new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "2", 2), "phx2");
+		Mockito.when(resolver.getEndPoints(5)).thenReturn(Arrays.asList(first, second));
+		Mockito.when(caller.submit(Mockito.any(LightningRequest.class), Mockito.eq("phx2"))).thenThrow(new RuntimeException("Core down"));
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		try {
+			client.submitScattered(tasks, null);
+			Assert.fail("The failed sub request should be reported");
+		} catch (ScatteredSubmitException e) {
+			ScatteredRequest submitted = e.getSubmittedRequest();
+			Assert.assertEquals(1, submitted.getSubRequests().size());
+			Assert.assertEquals("phx1", submitted.getSubRequests().get(0).getServingHostIp());
+			Assert.assertEquals(5, submitted.getTotalCount());
+		}
+		Mockito.verify(resolver).releaseReservation(second);
+		Mockito.verify(resolver, Mockito.never()).releaseReservation(first);
+	}
+
+	@Test
+	public void testSubmitScatteredSizedByReceipt() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		// the last seed reserved less than its share, the remainder is reserved on the next seed
+		Mockito.when(resolver.getEndPoints(6)).thenReturn(Arrays.asList(
+				new SimpleEntry<ReservationReceipt, String>(new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 3), "phx1"),
+				new SimpleEntry<ReservationReceipt, String>(new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "2", 2), "phx2")));
+		Mockito.when(resolver.getNextEndPoint(1)).thenReturn(
+				new SimpleEntry<ReservationReceipt, String>(new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "3", 4), "phx3"));
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		ScatteredRequest request = client.submitScattered(tasks, null);
+		Assert.assertEquals(3, request.getSubRequests().size());
+		Assert.assertEquals(tasks.subList(3, 5), request.getSubRequests().get(1).getTasks());
+		Assert.assertEquals(tasks.subList(5, 6), request.getSubRequests().get(2).getTasks());
+		Assert.assertEquals(5, request.getOffset(2));
+		Mockito.verify(caller).submit(request.getSubRequests().get(2), "phx3");
+		Mockito.verify(resolver, Mockito.never()).releaseReservation(Mockito.<SimpleEntry<ReservationReceipt, String>> any());
+	}
+
+	@Test
+	public void testSubmitScatteredRemainderNotReserved() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		SimpleEntry<ReservationReceipt, String> first = new SimpleEntry<ReservationReceipt, String>(
+				new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 3), "phx1");
+		Mockito.when(resolver.getEndPoints(5)).thenReturn(Arrays.asList(first));
+		Mockito.when(resolver.getNextEndPoint(2)).thenThrow(new RuntimeException("No seed accepted"));
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		try {
+			client.submitScattered(tasks, null);
+			Assert.fail("The tasks not reserved should be reported");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("No seed accepted", e.getMessage());
+		}
+		Mockito.verify(resolver).releaseReservation(first);
+		Mockito.verify(caller, Mockito.never()).submit(Mockito.any(LightningRequest.class), Mockito.anyString());
+	}
+
+	@Test
+	public void testSubmitScattered() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		Mockito.when(resolver.getEndPoints(5)).thenReturn(Arrays.asList(
+				new SimpleEntry<ReservationReceipt, String>(new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 3), "phx1"),
+				new SimpleEntry<ReservationReceipt, String>(new ReservationReceipt(ReservationReceipt.State.BUSY, "2", 2), "phx2")));
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		ScatteredRequest request = client.submitScattered(tasks, null);
+		Assert.assertEquals(2, request.getSubRequests().size());
+		LightningRequest first = request.getSubRequests().get(0);
+		LightningRequest second = request.getSubRequests().get(1);
+		Assert.assertEquals(tasks.subList(0, 3), first.getTasks());
+		Assert.assertEquals(tasks.subList(3, 5), second.getTasks());
+		Assert.assertEquals(3, request.getOffset(1));
+		Mockito.verify(caller).submit(first, "phx1");
+		Mockito.verify(caller).submit(second, "phx2");
+
+		LightningResponse firstResponse = new LightningResponse(first.getSessionId(), WorkStatus.DONE);
+		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
+		successResponses.put(0, new SuccessResponse("first"));
+		successResponses.put(2, new SuccessResponse("third"));
+		firstResponse.setSuccessResponses(successResponses);
+		firstResponse.setSuccessCount(2);
+		LightningResponse secondResponse = new LightningResponse(second.getSessionId(), WorkStatus.RUNNING);
+		Map<Integer, FailedResponse> failedResponses = new HashMap<>();
+		failedResponses.put(1, new FailedResponse(500, "fifth"));
+		secondResponse.setFailedResponses(failedResponses);
+		Mockito.when(caller.pollResults(first.getSessionId(), "phx1", false)).thenReturn(firstResponse);
+		Mockito.when(caller.pollResults(second.getSessionId(), "phx2", false)).thenReturn(secondResponse);
+
+		LightningResponse response = client.pollResponse(request);
+		Assert.assertEquals(request.getSessionId(), response.getSessionId());
+		Assert.assertEquals(WorkStatus.RUNNING, response.getStatus());
+		Assert.assertEquals(5, response.getTotalCount());
+		Assert.assertEquals(2, response.getSuccessCount());
+		Assert.assertEquals("first", response.getSuccessResponses().get(0).getBody());
+		Assert.assertEquals("third", response.getSuccessResponses().get(2).getBody());
+		Assert.assertEquals("fifth", response.getFailedResponses().get(4).getErrMsg());
+
+		secondResponse.setStatus(WorkStatus.DONE);
+		Assert.assertTrue(client.pollResponse(request).isCompleted());
+	}
+
+	@Test
+	public void testSubmitAsync() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		ReservationReceipt receipt = new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 2);
+		Mockito.when(resolver.getNextEndPointAsync(Mockito.eq(2), Mockito.any(ScheduledExecutorService.class), Mockito.any(Executor.class))).thenReturn(
+				Futures.immediateFuture(new SimpleEntry<ReservationReceipt, String>(receipt, "localhost")));
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).thenReturn(
+				new LightningResponse("session", WorkStatus.RUNNING), new LightningResponse("session", WorkStatus.DONE));
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		tasks.add(new URLTask("http://localhost:8989/0"));
+		tasks.add(new URLTask("http://localhost:8989/1"));
+		LightningSubmission submission = client.submitAsync(tasks, null, 5000);
+		LightningRequest request = submission.getRequest().get(5, TimeUnit.SECONDS);
+		Assert.assertEquals("localhost", request.getServingHostIp());
+		Mockito.verify(caller).submit(request, "localhost");
+
+		LightningResponse response = submission.getResponse().get(5, TimeUnit.SECONDS);
+		Assert.assertTrue(response.isCompleted());
+		Mockito.verify(caller, Mockito.times(2)).pollResults(Mockito.eq(request.getSessionId()), Mockito.eq("localhost"), Mockito.anyInt());
+	}
+
+	@Test
+	public void testSubmitAsyncTimeout() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		ReservationReceipt receipt = new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 1);
+		Mockito.when(resolver.getNextEndPointAsync(Mockito.eq(1), Mockito.any(ScheduledExecutorService.class), Mockito.any(Executor.class))).thenReturn(
+				Futures.immediateFuture(new SimpleEntry<ReservationReceipt, String>(receipt, "localhost")));
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).thenReturn(
+				new LightningResponse("session", WorkStatus.RUNNING));
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		tasks.add(new URLTask("http://localhost:8989/0"));
+		LightningResponse response = client.submitAsync(tasks, null, 300).getResponse().get(5, TimeUnit.SECONDS);
+		Assert.assertFalse(response.isCompleted());
+	}
+
+	@Test
+	public void testSubmitAsyncCallsSeedsOffEventLoop() throws Exception {
+		ServiceHostResolver resolver = Mockito.mock(ServiceHostResolver.class);
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		ReservationReceipt receipt = new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "1", 1);
+		Mockito.when(resolver.getNextEndPointAsync(Mockito.eq(1), Mockito.any(ScheduledExecutorService.class), Mockito.any(Executor.class))).thenReturn(
+				Futures.immediateFuture(new SimpleEntry<ReservationReceipt, String>(receipt, "localhost")));
+		final List<String> callingThreads = new ArrayList<>();
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				callingThreads.add(Thread.currentThread().getName());
+				return null;
+			}
+		}).when(caller).submit(Mockito.any(LightningRequest.class), Mockito.eq("localhost"));
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).thenAnswer(new Answer<LightningResponse>() {
+			@Override
+			public LightningResponse answer(InvocationOnMock invocation) {
+				callingThreads.add(Thread.currentThread().getName());
+				return new LightningResponse("session", WorkStatus.DONE);
+			}
+		});
+		LightningClient client = new LightningClientImpl(new LightningClientConfig(), resolver, caller);
+
+		List<Task> tasks = new ArrayList<>();
+		tasks.add(new URLTask("http://localhost:8989/0"));
+		Assert.assertTrue(client.submitAsync(tasks, null, 5000).getResponse().get(5, TimeUnit.SECONDS).isCompleted());
+		Assert.assertEquals(2, callingThreads.size());
+		for (String callingThread : callingThreads) {
+			Assert.assertTrue(callingThread, callingThread.startsWith("LightningClientIO-"));
+		}
+		client.shutdown();
+	}
+}
@@ -0,0 +1,384 @@
+package com.ebay.lightning.client;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.ebay.lightning.client.caller.LightningProgressCallback;
+import com.ebay.lightning.client.caller.LightningResponseCallback;
+import com.ebay.lightning.client.caller.RestAPICaller;
+import com.ebay.lightning.client.caller.ServiceCaller;
+import com.ebay.lightning.client.config.LightningClientConfig;
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.ebay.lightning.core.utils.UrlUtils;
+import com.ebay.lightning.core.utils.ZipUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+public class ResponsePollerTest {
+
+	private ServiceCaller caller;
+	private ScheduledExecutorService scheduler;
+	private ResponsePoller poller;
+
+	@Before
+	public void setup() {
+		caller = Mockito.mock(ServiceCaller.class);
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		poller = new ResponsePoller(new LightningClientConfig(), caller, scheduler, Executors.newSingleThreadExecutor());
+	}
+
+	@After
+	public void shutDown() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testMergeDeltasOfSessions() throws Exception {
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).then(new Answer<LightningResponse>() {
+			@Override
+			public LightningResponse answer(InvocationOnMock invocation) throws Throwable {
+				return delta((String) invocation.getArguments()[0], (Integer) invocation.getArguments()[2]);
+			}
+		});
+		Mockito.when(caller.pollResults(Mockito.eq("localhost"), Mockito.anyMapOf(String.class, Integer.class))).then(
+				new Answer<Map<String, LightningResponse>>() {
+					@Override
+					public Map<String, LightningResponse> answer(InvocationOnMock invocation) throws Throwable {
+						Map<String, LightningResponse> deltas = new HashMap<>();
+						for (Entry<String, Integer> fromSequence : ((Map<String, Integer>) invocation.getArguments()[1]).entrySet()) {
+							deltas.put(fromSequence.getKey(), delta(fromSequence.getKey(), fromSequence.getValue()));
+						}
+						return deltas;
+					}
+				});
+
+		ResponseCallback[] callbacks = new ResponseCallback[3];
+		for (int i = 0; i < callbacks.length; i++) {
+			LightningRequest request = new LightningRequest("session" + i);
+			request.setServingHostIp("localhost");
+			callbacks[i] = new ResponseCallback();
+			poller.register(request, callbacks[i], 5000);
+		}
+		for (ResponseCallback callback : callbacks) {
+			Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+			Assert.assertFalse(callback.timedOut);
+			Assert.assertEquals(2, callback.response.getSuccessCount());
+			Assert.assertEquals(2, callback.response.getSuccessResponses().size());
+		}
+		Assert.assertEquals(0, poller.getPendingCount());
+	}
+
+	@Test
+	public void testBatchPollFallback() throws Exception {
+		Mockito.when(caller.pollResults(Mockito.eq("localhost"), Mockito.anyMapOf(String.class, Integer.class))).thenThrow(
+				new RuntimeException("Not supported"));
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).then(new Answer<LightningResponse>() {
+			@Override
+			public LightningResponse answer(InvocationOnMock invocation) throws Throwable {
+				return delta((String) invocation.getArguments()[0], (Integer) invocation.getArguments()[2]);
+			}
+		});
+
+		ResponseCallback first = new ResponseCallback();
+		ResponseCallback second = new ResponseCallback();
+		LightningRequest request = new LightningRequest("session0");
+		request.setServingHostIp("localhost");
+		LightningRequest other = new LightningRequest("session1");
+		other.setServingHostIp("localhost");
+		poller.register(request, first, 5000);
+		poller.register(other, second, 5000);
+
+		Assert.assertTrue(first.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(second.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(2, first.response.getSuccessCount());
+		Assert.assertEquals(2, second.response.getSuccessCount());
+	}
+
+	@Test
+	public void testProgressUntilQuorum() throws Exception {
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).then(new Answer<LightningResponse>() {
+			@Override
+			public LightningResponse answer(InvocationOnMock invocation) throws Throwable {
+				int fromSequence = (Integer) invocation.getArguments()[2];
+				LightningResponse delta = new LightningResponse("session", WorkStatus.RUNNING);
+				delta.setTotalCount(10);
+				delta.setSequence(fromSequence < 3 ? fromSequence + 1 : fromSequence);
+				delta.setSuccessCount(fromSequence < 3 ? 1 : 0);
+				return delta;
+			}
+		});
+		final List<LightningResponse> deltas = new CopyOnWriteArrayList<>();
+		final ResponseCallback completion = new ResponseCallback();
+		LightningRequest request = new LightningRequest("session");
+		request.setServingHostIp("localhost");
+		poller.register(request, new LightningProgressCallback() {
+			@Override
+			public void onTimeout(LightningResponse response) {
+				completion.onTimeout(response);
+			}
+
+			@Override
+			public void onComplete(LightningResponse response) {
+				completion.onComplete(response);
+			}
+
+			@Override
+			public void onProgress(LightningResponse delta) {
+				deltas.add(delta);
+			}
+
+			@Override
+			public boolean isSatisfied(LightningResponse response) {
+				return response.getSuccessCount() >= 3;
+			}
+		}, 5000);
+
+		Assert.assertTrue(completion.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(completion.timedOut);
+		Assert.assertEquals(WorkStatus.RUNNING, completion.response.getStatus());
+		Assert.assertEquals(3, completion.response.getSuccessCount());
+		Assert.assertEquals(3, deltas.size());
+		Assert.assertEquals(3, deltas.get(2).getSequence());
+		Assert.assertEquals(1, deltas.get(2).getSuccessCount());
+	}
+
+	@Test
+	public void testTimeoutWithBackoff() throws Exception {
+		Mockito.when(caller.pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.anyInt())).thenReturn(
+				new LightningResponse("session", WorkStatus.RUNNING));
+		LightningRequest request = new LightningRequest("session");
+		request.setServingHostIp("localhost");
+		ResponseCallback callback = new ResponseCallback();
+		poller.register(request, callback, 1000);
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(callback.timedOut);
+		Assert.assertEquals(WorkStatus.RUNNING, callback.response.getStatus());
+		// polled about every 50 ms, growing with the age of the request, instead of spinning
+		Mockito.verify(caller, Mockito.atMost(25)).pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.anyInt());
+	}
+
+	@Test
+	public void testFullPollFallback() throws Exception {
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).thenThrow(
+				new RuntimeException("Not found"));
+		LightningResponse fullResponse = delta("session", 1);
+		Mockito.when(caller.pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.eq(false))).thenReturn(fullResponse);
+		LightningRequest request = new LightningRequest("session");
+		request.setServingHostIp("localhost");
+		ResponseCallback callback = new ResponseCallback();
+		poller.register(request, callback, 5000);
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(callback.timedOut);
+		Assert.assertEquals(WorkStatus.DONE, callback.response.getStatus());
+		Assert.assertEquals(1, callback.response.getSuccessCount());
+	}
+
+	@Test
+	public void testUnreachableSeedPolledOncePerRun() throws Exception {
+		Mockito.when(caller.pollResults(Mockito.eq("localhost"), Mockito.anyMapOf(String.class, Integer.class))).thenThrow(
+				new RuntimeException("Connection refused"));
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyInt())).thenThrow(
+				new RuntimeException("Connection refused"));
+		Mockito.when(caller.pollResults(Mockito.anyString(), Mockito.eq("localhost"), Mockito.anyBoolean())).thenThrow(
+				new RuntimeException("Connection refused"));
+		LightningClientConfig config = new LightningClientConfig();
+		config.setMinPollIntervalInMillis(500);
+		config.setMaxPollIntervalInMillis(500);
+		poller = new ResponsePoller(config, caller, scheduler, Executors.newSingleThreadExecutor());
+		// hold the scheduler so that both requests are due in the first run
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(600);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		LightningRequest request = new LightningRequest("session0");
+		request.setServingHostIp("localhost");
+		LightningRequest other = new LightningRequest("session1");
+		other.setServingHostIp("localhost");
+		poller.register(request, new ResponseCallback(), 5000);
+		poller.register(other, new ResponseCallback(), 5000);
+		Thread.sleep(900);
+
+		// only the first request of the run is polled once the batch call fails
+		Mockito.verify(caller).pollResults(Mockito.eq("localhost"), Mockito.anyMapOf(String.class, Integer.class));
+		Mockito.verify(caller).pollResults(Mockito.eq("session0"), Mockito.eq("localhost"), Mockito.anyInt());
+		Mockito.verify(caller, Mockito.never()).pollResults(Mockito.eq("session1"), Mockito.eq("localhost"), Mockito.anyInt());
+	}
+
+	@Test
+	public void testFullPollFallbackOfRestCaller() throws Exception {
+		UrlUtils urlUtils = Mockito.mock(UrlUtils.class);
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/poll/session/since/0")).thenThrow(new FileNotFoundException());
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/poll/session/false")).thenReturn(ZipUtil.zipAsByteArray(delta("session", 1)));
+		poller = new ResponsePoller(restConfig(), new RestAPICaller(restConfig(), urlUtils), scheduler, Executors.newSingleThreadExecutor());
+		LightningRequest request = new LightningRequest("session");
+		request.setServingHostIp("localhost");
+		ResponseCallback callback = new ResponseCallback();
+		poller.register(request, callback, 5000);
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(callback.timedOut);
+		Assert.assertEquals(WorkStatus.DONE, callback.response.getStatus());
+		// the seed is polled for the full responses once the sequence endpoint failed
+		Mockito.verify(urlUtils).getByteArray("http://localhost:port/poll/session/since/0");
+	}
+
+	@Test
+	public void testUnreachableSeedOfRestCallerPolledOncePerRun() throws Exception {
+		UrlUtils urlUtils = Mockito.mock(UrlUtils.class);
+		Mockito.when(urlUtils.getByteArray(Mockito.anyString())).thenThrow(new ConnectException("Connection refused"));
+		Mockito.when(urlUtils.postForByteArray(Mockito.anyString(), Mockito.anyString(), Mockito.anyMapOf(String.class, String.class),
+				Mockito.any(byte[].class))).thenThrow(new ConnectException("Connection refused"));
+		LightningClientConfig config = restConfig();
+		config.setMinPollIntervalInMillis(500);
+		config.setMaxPollIntervalInMillis(500);
+		poller = new ResponsePoller(config, new RestAPICaller(config, urlUtils), scheduler, Executors.newSingleThreadExecutor());
+		// hold the scheduler so that both requests are due in the first run
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(600);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		LightningRequest request = new LightningRequest("session0");
+		request.setServingHostIp("localhost");
+		LightningRequest other = new LightningRequest("session1");
+		other.setServingHostIp("localhost");
+		poller.register(request, new ResponseCallback(), 5000);
+		poller.register(other, new ResponseCallback(), 5000);
+		Thread.sleep(900);
+
+		// the null responses of the dead seed count as failed polls, the second request waits for the next run
+		Mockito.verify(urlUtils).getByteArray("http://localhost:port/poll/session0/since/0");
+		Mockito.verify(urlUtils).getByteArray("http://localhost:port/poll/session0/false");
+		Mockito.verify(urlUtils, Mockito.never()).getByteArray(Mockito.startsWith("http://localhost:port/poll/session1"));
+	}
+
+	@Test
+	public void testLongPollOnIoExecutor() throws Exception {
+		RestAPICaller restCaller = Mockito.mock(RestAPICaller.class);
+		final List<String> pollThreads = new CopyOnWriteArrayList<>();
+		Mockito.when(restCaller.pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.anyInt(), Mockito.anyLong())).then(
+				new Answer<LightningResponse>() {
+					@Override
+					public LightningResponse answer(InvocationOnMock invocation) throws Throwable {
+						pollThreads.add(Thread.currentThread().getName());
+						return delta("session", (Integer) invocation.getArguments()[2]);
+					}
+				});
+		ExecutorService ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("io-%d").build());
+		poller = new ResponsePoller(new LightningClientConfig(), restCaller, scheduler, ioExecutor, Executors.newSingleThreadExecutor());
+		LightningRequest request = new LightningRequest("session");
+		request.setServingHostIp("localhost");
+		ResponseCallback callback = new ResponseCallback();
+		poller.registerLongPoll(request, callback, 5000);
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(callback.timedOut);
+		Assert.assertEquals(2, callback.response.getSuccessCount());
+		// the long poll is issued again with the sequence of the previous answer
+		Mockito.verify(restCaller).pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.eq(0), Mockito.anyLong());
+		Mockito.verify(restCaller).pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.eq(1), Mockito.anyLong());
+		Assert.assertEquals(2, pollThreads.size());
+		for (String pollThread : pollThreads) {
+			Assert.assertEquals("io-0", pollThread);
+		}
+		Assert.assertFalse("io-0".equals(callback.thread));
+		ioExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testLongPollFallback() throws Exception {
+		RestAPICaller restCaller = Mockito.mock(RestAPICaller.class);
+		Mockito.when(restCaller.pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.anyInt(), Mockito.anyLong())).thenThrow(
+				new RuntimeException("Error Calling Lightning Core", new FileNotFoundException("http://localhost/poll/session/since/0/wait")));
+		Mockito.when(restCaller.pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.anyInt())).then(new Answer<LightningResponse>() {
+			@Override
+			public LightningResponse answer(InvocationOnMock invocation) throws Throwable {
+				return delta("session", (Integer) invocation.getArguments()[2]);
+			}
+		});
+		poller = new ResponsePoller(new LightningClientConfig(), restCaller, scheduler, Executors.newSingleThreadExecutor());
+		LightningRequest request = new LightningRequest("session");
+		request.setServingHostIp("localhost");
+		ResponseCallback callback = new ResponseCallback();
+		poller.registerLongPoll(request, callback, 5000);
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(callback.timedOut);
+		Assert.assertEquals(2, callback.response.getSuccessCount());
+		// the seed without the long poll endpoint is polled
+		Mockito.verify(restCaller).pollResults(Mockito.eq("session"), Mockito.eq("localhost"), Mockito.anyInt(), Mockito.anyLong());
+		Assert.assertEquals(0, poller.getPendingCount());
+	}
+
+	private static LightningClientConfig restConfig() {
+		LightningClientConfig config = new LightningClientConfig();
+		config.setPollApiUrl("http://{host}:port/poll");
+		return config;
+	}
+
+	private static LightningResponse delta(String sessionId, int fromSequence) {
+		LightningResponse delta = new LightningResponse(sessionId, fromSequence == 0 ? WorkStatus.RUNNING : WorkStatus.DONE);
+		delta.setTotalCount(2);
+		delta.setSuccessCount(1);
+		delta.setSequence(fromSequence + 1);
+		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
+		successResponses.put(fromSequence, new SuccessResponse("body"));
+		delta.setSuccessResponses(successResponses);
+		return delta;
+	}
+
+	private static class ResponseCallback implements LightningResponseCallback {
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile LightningResponse response;
+		private volatile boolean timedOut;
+		private volatile String thread;
+
+		@Override
+		public void onComplete(LightningResponse response) {
+			this.response = response;
+			this.thread = Thread.currentThread().getName();
+			latch.countDown();
+		}
+
+		@Override
+		public void onTimeout(LightningResponse response) {
+			this.response = response;
+			this.timedOut = true;
+			latch.countDown();
+		}
+	}
+}
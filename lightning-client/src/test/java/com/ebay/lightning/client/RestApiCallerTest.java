@@ -3,7 +3,11 @@ package com.ebay.lightning.client;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -19,10 +23,13 @@ import com.ebay.lightning.core.beans.SystemStatus;
 import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.beans.URLTask;
 import com.ebay.lightning.core.config.SystemConfig;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
 import com.ebay.lightning.core.store.LightningRequestReport;
+import com.ebay.lightning.core.utils.BinaryCodec;
 import com.ebay.lightning.core.utils.UrlUtils;
 import com.ebay.lightning.core.utils.UrlUtils.ContentType;
 import com.ebay.lightning.core.utils.ZipUtil;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
 import com.google.gson.Gson;
 
 /**
@@ -85,6 +92,89 @@ public class RestApiCallerTest {
 		}
 	}
 
+	@Test
+	public void testBinaryCodec() throws Exception {
+		LightningClientConfig config = new LightningClientConfig();
+		config.setPollApiUrl("http://{host}:port/poll");
+		config.setSubmitApiUrl("http://{host}:port/submit");
+		config.setBinaryCodecEnabled(true);
+		RestAPICaller binaryCaller = new RestAPICaller(config, urlUtils);
+
+		LightningRequest request = new LightningRequest("sessionId", generateTasks(10), new ReservationReceipt(ReservationReceipt.State.ACCEPTED,
+				"1", 10));
+		Mockito.when(urlUtils.postBytes(Mockito.eq("http://localhost:port/submit"), Mockito.eq(BinaryCodec.CONTENT_TYPE), Mockito.any(byte[].class)))
+				.thenReturn("{\"status\": \"submitted\"}");
+		Assert.assertTrue(binaryCaller.submit(request, "localhost"));
+
+		LightningResponse expectedResponse = new LightningResponse("sessionId", WorkStatus.RUNNING);
+		expectedResponse.setSequence(25);
+		byte[] encodedResponse = BinaryCodec.toByteArray(BinaryCodec.encode(expectedResponse));
+		Mockito.when(urlUtils.getByteArray(Mockito.eq("http://localhost:port/poll/sessionId/since/10"), Mockito.anyMapOf(String.class, String.class)))
+				.thenReturn(encodedResponse);
+		Assert.assertEquals(25, binaryCaller.pollResults("sessionId", "localhost", 10).getSequence());
+
+		// seeds without the binary format answer with the compressed format
+		Mockito.when(urlUtils.getByteArray(Mockito.eq("http://localhost:port/poll/sessionId/since/20"), Mockito.anyMapOf(String.class, String.class)))
+				.thenReturn(ZipUtil.zipAsByteArray(expectedResponse));
+		Assert.assertEquals(25, binaryCaller.pollResults("sessionId", "localhost", 20).getSequence());
+	}
+
+	@Test
+	public void testCompressionCodecs() throws Exception {
+		LightningClientConfig config = new LightningClientConfig();
+		config.setPollApiUrl("http://{host}:port/poll");
+		config.setSubmitApiUrl("http://{host}:port/submit");
+		config.setLightningStatsUrl("http://{host}:port/lightningStats");
+		config.setCompressionCodecs(Arrays.asList(Codec.LZ, Codec.GZIP));
+		RestAPICaller lzCaller = new RestAPICaller(config, urlUtils);
+
+		LightningRequest request = new LightningRequest("sessionId", generateTasks(10), new ReservationReceipt(ReservationReceipt.State.ACCEPTED,
+				"1", 10));
+		Mockito.when(urlUtils.post("http://localhost:port/submit", ContentType.APPLICATION_JSON, null, ZipUtil.zip(request, Codec.LZ))).thenReturn(
+				"{\"status\": \"submitted\"}");
+		Assert.assertTrue(lzCaller.submit(request, "localhost"));
+
+		Map<String, String> acceptEncoding = Collections.singletonMap("Accept-Encoding", "x-lightning-lz, gzip");
+		LightningResponse expectedResponse = new LightningResponse("sessionId", WorkStatus.RUNNING);
+		expectedResponse.setSequence(25);
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/poll/sessionId/since/10", acceptEncoding)).thenReturn(
+				ZipUtil.zipAsByteArray(expectedResponse, Codec.LZ));
+		Assert.assertEquals(25, lzCaller.pollResults("sessionId", "localhost", 10).getSequence());
+
+		SystemStatus status = new SystemStatus();
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/lightningStats", acceptEncoding)).thenReturn(
+				ZipUtil.zipAsByteArray(status, Codec.IDENTITY));
+		Assert.assertTrue(lzCaller.getLightningStats("localhost").isSystemHealth());
+	}
+
+	@Test
+	public void testPollBatch() throws Exception {
+		LightningResponse running = new LightningResponse("session1", WorkStatus.RUNNING);
+		running.setSequence(7);
+		HashMap<String, LightningResponse> responses = new HashMap<>();
+		responses.put("session1", running);
+		Map<String, Integer> fromSequences = Collections.singletonMap("session1", 3);
+		Mockito.when(urlUtils.postForByteArray("http://localhost:port/poll/batch", ContentType.APPLICATION_JSON.toString(), null,
+				"{\"session1\":3}".getBytes("UTF-8"))).thenReturn(ZipUtil.zipAsByteArray(responses));
+
+		Map<String, LightningResponse> polled = restAPICaller.pollResults("localhost", fromSequences);
+		Assert.assertEquals(7, polled.get("session1").getSequence());
+	}
+
+	@Test
+	public void testEndpointTimeouts() throws Exception {
+		LightningClientConfig config = new LightningClientConfig();
+		config.setPollApiUrl("http://{host}:port/poll");
+		config.setSubmitApiUrl("http://{host}:port/submit");
+		config.setConnectTimeoutInMillis(1000);
+		config.setPollReadTimeoutInMillis(30000);
+		UrlUtils timeoutUrlUtils = Mockito.mock(UrlUtils.class);
+		new RestAPICaller(config, timeoutUrlUtils);
+
+		Mockito.verify(timeoutUrlUtils).setTimeouts("http://{host}:port/poll", 1000, 30000);
+		Mockito.verify(timeoutUrlUtils).setTimeouts("http://{host}:port/submit", 1000, LightningClientConfig.DEFAULT_TIMEOUT_IN_MILLIS);
+	}
+
 	@Test
 	public void testPoll() throws Exception {
 		LightningResponse resultResponse = null;
@@ -95,6 +185,42 @@ public class RestApiCallerTest {
 		Assert.assertNotNull(resultResponse);
 	}
 
+	@Test
+	public void testPollSinceSequence() throws Exception {
+		LightningResponse expectedResponse = new LightningResponse("1000", null);
+		expectedResponse.setSequence(25);
+		byte[] zippedResponse = ZipUtil.zipAsByteArray(expectedResponse);
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/poll/1000/since/10")).thenReturn(zippedResponse);
+		LightningResponse resultResponse = restAPICaller.pollResults("1000", "localhost", 10);
+		Assert.assertEquals(25, resultResponse.getSequence());
+	}
+
+	@Test
+	public void testMaxIdleConnectionsPerSeed() throws Exception {
+		String maxConnections = System.getProperty("http.maxConnections");
+		try {
+			LightningClientConfig config = new LightningClientConfig();
+			config.setMaxIdleConnectionsPerSeed(32);
+			new RestAPICaller(config, urlUtils);
+			Assert.assertEquals("32", System.getProperty("http.maxConnections"));
+		} finally {
+			if (maxConnections != null) {
+				System.setProperty("http.maxConnections", maxConnections);
+			} else {
+				System.clearProperty("http.maxConnections");
+			}
+		}
+	}
+
+	@Test
+	public void testLongPollSinceSequence() throws Exception {
+		LightningResponse expectedResponse = new LightningResponse("1000", WorkStatus.RUNNING);
+		expectedResponse.setSequence(12);
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/poll/1000/since/10/wait?maxWaitInMillis=5000"))
+				.thenReturn(ZipUtil.zipAsByteArray(expectedResponse));
+		Assert.assertEquals(12, restAPICaller.pollResults("1000", "localhost", 10, 5000).getSequence());
+	}
+
 	@Test
 	public void testPollThrows() throws Exception {
 		Mockito.when(urlUtils.getByteArray("http://localhost:port/pollTEST/1000/false")).thenThrow(Exception.class);
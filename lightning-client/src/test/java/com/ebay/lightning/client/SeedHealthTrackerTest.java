@@ -0,0 +1,68 @@
+package com.ebay.lightning.client;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.lightning.client.config.LightningClientConfig;
+
+public class SeedHealthTrackerTest {
+
+	private SeedHealthTracker seedHealth;
+
+	@Before
+	public void setup() {
+		LightningClientConfig config = new LightningClientConfig();
+		config.setMaxConsecutiveFailures(3);
+		config.setBaseEjectionTimeInMillis(200);
+		seedHealth = new SeedHealthTracker(config);
+	}
+
+	@Test
+	public void testEjectionWithExponentialReprobe() throws Exception {
+		seedHealth.onFailure("phx1");
+		seedHealth.onFailure("phx1");
+		Assert.assertFalse(seedHealth.isEjected("phx1"));
+		Assert.assertEquals(Arrays.asList("phx2", "phx1"), seedHealth.order(Arrays.asList("phx1", "phx2")));
+
+		seedHealth.onFailure("phx1");
+		Assert.assertTrue(seedHealth.isEjected("phx1"));
+		Assert.assertEquals(Arrays.asList("phx2"), seedHealth.order(Arrays.asList("phx1", "phx2")));
+
+		// the ejection is over, the next call probes the seed and its failure ejects it for twice as long
+		Thread.sleep(300);
+		Assert.assertFalse(seedHealth.isEjected("phx1"));
+		seedHealth.onFailure("phx1");
+		Assert.assertTrue(seedHealth.isEjected("phx1"));
+		Thread.sleep(300);
+		Assert.assertTrue(seedHealth.isEjected("phx1"));
+
+		seedHealth.onSuccess("phx1", 5);
+		Assert.assertFalse(seedHealth.isEjected("phx1"));
+		Assert.assertEquals(Arrays.asList("phx1", "phx2"), seedHealth.order(Arrays.asList("phx1", "phx2")));
+	}
+
+	@Test
+	public void testSlowSeedsLast() {
+		seedHealth.onSuccess("phx1", 100);
+		seedHealth.onSuccess("phx2", 5);
+		seedHealth.onSuccess("phx3", 12);
+		// the seeds that are not much slower than the fastest seed keep their order
+		Assert.assertEquals(Arrays.asList("phx2", "phx3", "phx4", "phx1"), seedHealth.order(Arrays.asList("phx1", "phx2", "phx3", "phx4")));
+	}
+
+	@Test
+	public void testAllSeedsEjected() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			seedHealth.onFailure("phx2");
+		}
+		Thread.sleep(10);
+		for (int i = 0; i < 3; i++) {
+			seedHealth.onFailure("phx1");
+		}
+		// the seed that comes back first is tried first rather than none
+		Assert.assertEquals(Arrays.asList("phx2", "phx1"), seedHealth.order(Arrays.asList("phx1", "phx2")));
+	}
+}
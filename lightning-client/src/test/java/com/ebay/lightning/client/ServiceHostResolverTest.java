@@ -4,17 +4,24 @@
 
 package com.ebay.lightning.client;
 
+import java.io.IOException;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.hamcrest.core.IsEqual;
 import org.hamcrest.core.IsNot;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,8 +30,11 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import com.ebay.lightning.client.caller.RestAPICaller;
+import com.ebay.lightning.client.caller.SeedManagementCaller;
+import com.ebay.lightning.client.caller.ServiceCaller;
 import com.ebay.lightning.client.config.LightningClientConfig;
 import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.SystemStatus;
 import com.ebay.lightning.core.utils.UrlUtils;
 
 public class ServiceHostResolverTest {
@@ -64,6 +74,11 @@ public class ServiceHostResolverTest {
 
 	}
 
+	@After
+	public void shutDown() {
+		serviceHostResolver.close();
+	}
+
 	@Test
 	public void testCrossRegionFlow() throws Exception {
 		config.setAllowCrossRegionInteraction(true);
@@ -74,7 +89,7 @@ public class ServiceHostResolverTest {
 			private int callOrder = 0;
 
 			@Override
-			public String answer(InvocationOnMock invocationonmock) throws Throwable {
+			public synchronized String answer(InvocationOnMock invocationonmock) throws Throwable {
 				callOrder = callOrder + 1;
 				if (callOrder < 20) {
 					return String.format(RESERVATION_DENIED, 1000);
@@ -90,13 +105,43 @@ public class ServiceHostResolverTest {
 
 	}
 
+	@Test
+	public void testCrossRegionFlowAsync() throws Exception {
+		config.setAllowCrossRegionInteraction(true);
+		config.setSeeds(new ArrayList(Arrays.asList("phx1,phx2,phx3,phx4,phx5".split(","))));
+		config.setCrossRegionSeeds(new ArrayList(Arrays.asList("slc1,slc2,slc3,lvs4,lvs5".split(","))));
+
+		Mockito.when(urlUtils.get(Mockito.anyString())).then(new Answer<String>() {
+			private int callOrder = 0;
+
+			@Override
+			public synchronized String answer(InvocationOnMock invocationonmock) throws Throwable {
+				callOrder = callOrder + 1;
+				if (callOrder < 20) {
+					return String.format(RESERVATION_DENIED, 1000);
+				} else {
+					return String.format(RESERVATION_BUSY_TEMPLATE, 4);
+				}
+			}
+		});
+
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			SimpleEntry<ReservationReceipt, String> simpleEntry = serviceHostResolver.getNextEndPointAsync(100, scheduler).get(10, TimeUnit.SECONDS);
+			Assert.assertEquals(4, simpleEntry.getKey().getBusyWithLoad());
+			Assert.assertTrue(config.getCrossRegionSeeds().contains(simpleEntry.getValue()));
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
 	@Test
 	public void testReservationLeastBusy() throws Exception {
 		Mockito.when(urlUtils.get(Mockito.anyString())).then(new Answer<String>() {
 			private int callOrder = 0;
 
 			@Override
-			public String answer(InvocationOnMock invocationonmock) throws Throwable {
+			public synchronized String answer(InvocationOnMock invocationonmock) throws Throwable {
 				callOrder = callOrder + 1;
 				String result = null;
 				switch (callOrder) {
@@ -122,9 +167,13 @@ public class ServiceHostResolverTest {
 			}
 		});
 
+		// the five seeds are reserved in parallel and the least busy one is used
+		config.setReservationFanOut(5);
 		SimpleEntry<ReservationReceipt, String> simpleEntry = serviceHostResolver.getNextEndPoint(100);
-		Assert.assertEquals(100, simpleEntry.getKey().getBusyWithLoad());
+		Assert.assertEquals(4, simpleEntry.getKey().getBusyWithLoad());
 		Assert.assertEquals(ReservationReceipt.State.BUSY, simpleEntry.getKey().getState());
+		// the reservations accepted by the other seeds are cancelled
+		Mockito.verify(urlUtils, Mockito.timeout(1000).times(3)).get(Mockito.contains("/cancel/"));
 
 	}
 
@@ -134,7 +183,7 @@ public class ServiceHostResolverTest {
 			private int callOrder = 0;
 
 			@Override
-			public String answer(InvocationOnMock invocationonmock) throws Throwable {
+			public synchronized String answer(InvocationOnMock invocationonmock) throws Throwable {
 				callOrder = callOrder + 1;
 				String result = null;
 				switch (callOrder) {
@@ -175,7 +224,7 @@ public class ServiceHostResolverTest {
 			private int callOrder = 0;
 
 			@Override
-			public String answer(InvocationOnMock invocationonmock) throws Throwable {
+			public synchronized String answer(InvocationOnMock invocationonmock) throws Throwable {
 				callOrder = callOrder + 1;
 				String result = null;
 				switch (callOrder) {
@@ -202,8 +251,9 @@ public class ServiceHostResolverTest {
 			}
 		});
 
+		// the idle seed is preferred to the busy ones reserved in parallel
 		SimpleEntry<ReservationReceipt, String> simpleEntry = serviceHostResolver.getNextEndPoint(100);
-		Assert.assertEquals(ReservationReceipt.State.BUSY, simpleEntry.getKey().getState());
+		Assert.assertEquals(ReservationReceipt.State.ACCEPTED, simpleEntry.getKey().getState());
 
 	}
 
@@ -213,7 +263,7 @@ public class ServiceHostResolverTest {
 			ReservationResponse response;
 
 			@Override
-			public String answer(InvocationOnMock invocation) throws Throwable {
+			public synchronized String answer(InvocationOnMock invocation) throws Throwable {
 				response = coreBehavior.getNextResponse();
 				return response.answer(invocation);
 			}
@@ -252,7 +302,7 @@ public class ServiceHostResolverTest {
 			private int callOrder = 0;
 
 			@Override
-			public String answer(InvocationOnMock invocationonmock) throws Throwable {
+			public synchronized String answer(InvocationOnMock invocationonmock) throws Throwable {
 				callOrder = callOrder + 1;
 				if (callOrder < 20) {
 					return String.format(RESERVATION_DENIED, 1000);
@@ -268,6 +318,128 @@ public class ServiceHostResolverTest {
 
 	}
 
+	@Test
+	public void testScatterByFreeCapacity() throws Exception {
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		config.setSeeds(new ArrayList(Arrays.asList("phx1,phx2,phx3,phx4".split(","))));
+		config.setMinScatterLoad(500);
+		final Map<String, Integer> freeCapacities = new HashMap<>();
+		freeCapacities.put("phx1", 3000);
+		freeCapacities.put("phx2", 1000);
+		freeCapacities.put("phx3", 100);
+		Mockito.when(caller.getLightningStats(Mockito.anyString())).then(new Answer<SystemStatus>() {
+			@Override
+			public SystemStatus answer(InvocationOnMock invocation) throws Throwable {
+				Integer freeCapacity = freeCapacities.get(invocation.getArguments()[0]);
+				if (freeCapacity == null) {
+					throw new RuntimeException("Core down");
+				}
+				SystemStatus status = new SystemStatus();
+				status.setAvailableTaskCapacity(freeCapacity);
+				return status;
+			}
+		});
+		Mockito.when(caller.reserve(Mockito.anyInt(), Mockito.anyString())).then(new Answer<ReservationReceipt>() {
+			@Override
+			public ReservationReceipt answer(InvocationOnMock invocation) throws Throwable {
+				return new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "youGotIt", (Integer) invocation.getArguments()[0]);
+			}
+		});
+		ServiceHostResolver resolver = new ServiceHostResolver(config, caller);
+
+		Map<String, Integer> shares = new HashMap<>();
+		for (SimpleEntry<ReservationReceipt, String> endPoint : resolver.getEndPoints(4000)) {
+			shares.put(endPoint.getValue(), endPoint.getKey().getLoad());
+		}
+		// phx3 would get less than the minimum share and phx4 is down
+		Assert.assertEquals(2, shares.size());
+		Assert.assertEquals(Integer.valueOf(3000), shares.get("phx1"));
+		Assert.assertEquals(Integer.valueOf(1000), shares.get("phx2"));
+
+		// a small request is not scattered
+		List<SimpleEntry<ReservationReceipt, String>> endPoints = resolver.getEndPoints(600);
+		Assert.assertEquals(1, endPoints.size());
+		Assert.assertEquals(600, endPoints.get(0).getKey().getLoad());
+	}
+
+	@Test
+	public void testReleaseLateShareReservation() throws Exception {
+		SeedManagementCaller caller = Mockito.mock(SeedManagementCaller.class);
+		config.setSeeds(new ArrayList(Arrays.asList("phx1,phx2".split(","))));
+		config.setMinScatterLoad(500);
+		SystemStatus status = new SystemStatus();
+		status.setAvailableTaskCapacity(2000);
+		Mockito.when(caller.getLightningStats(Mockito.anyString())).thenReturn(status);
+		Mockito.when(caller.reserve(Mockito.anyInt(), Mockito.anyString())).then(new Answer<ReservationReceipt>() {
+			@Override
+			public ReservationReceipt answer(InvocationOnMock invocation) throws Throwable {
+				if ("phx2".equals(invocation.getArguments()[1])) {
+					// a slow seed that completes the reservation even when the caller gave up
+					long wakeUpAt = System.currentTimeMillis() + 1500;
+					while (System.currentTimeMillis() < wakeUpAt) {
+						try {
+							Thread.sleep(wakeUpAt - System.currentTimeMillis());
+						} catch (InterruptedException e) {
+							// keep going
+						}
+					}
+					return new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "late", (Integer) invocation.getArguments()[0]);
+				}
+				return new ReservationReceipt(ReservationReceipt.State.ACCEPTED, "onTime", (Integer) invocation.getArguments()[0]);
+			}
+		});
+		ServiceHostResolver resolver = new ServiceHostResolver(config, caller);
+
+		int load = 0;
+		for (SimpleEntry<ReservationReceipt, String> endPoint : resolver.getEndPoints(2000)) {
+			Assert.assertEquals("phx1", endPoint.getValue());
+			load += endPoint.getKey().getLoad();
+		}
+		Assert.assertEquals(2000, load);
+		Mockito.verify(caller, Mockito.timeout(3000).atLeastOnce()).cancelReservation("late", "phx2");
+	}
+
+	@Test
+	public void testCloseStopsHealthChecks() throws Exception {
+		// a caller without health checks is checked with the statistics of the seeds
+		ServiceCaller caller = Mockito.mock(ServiceCaller.class);
+		Mockito.when(caller.getLightningStats(Mockito.anyString())).thenReturn(new SystemStatus());
+		config.setSeeds(new ArrayList(Arrays.asList("phx1")));
+		config.setHealthCheckIntervalInMillis(20);
+		ServiceHostResolver resolver = new ServiceHostResolver(config, caller);
+		Mockito.verify(caller, Mockito.timeout(1000).atLeastOnce()).getLightningStats("phx1");
+
+		resolver.close();
+		Thread.sleep(50);
+		Mockito.reset(caller);
+		Thread.sleep(100);
+		Mockito.verify(caller, Mockito.never()).getLightningStats(Mockito.anyString());
+	}
+
+	@Test
+	public void testSkipEjectedSeed() throws Exception {
+		config.setSeeds(new ArrayList(Arrays.asList("phx1,phx2,phx3".split(","))));
+		config.setReservationFanOut(1);
+		config.setMaxConsecutiveFailures(1);
+		config.setBaseEjectionTimeInMillis(60000);
+		Mockito.when(urlUtils.get(Mockito.anyString())).then(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				if (((String) invocation.getArguments()[0]).contains("phx1")) {
+					throw new IOException("Connection refused");
+				}
+				return RESERVATION_ACCEPTED;
+			}
+		});
+		ServiceHostResolver resolver = new ServiceHostResolver(config, new RestAPICaller(config, urlUtils));
+
+		for (int i = 0; i < 10; i++) {
+			Assert.assertFalse("phx1".equals(resolver.getNextEndPoint(100).getValue()));
+		}
+		// the seed that is down costs a single failed call
+		Mockito.verify(urlUtils, Mockito.atMost(1)).get(Mockito.contains("phx1"));
+	}
+
 	class ReservationResponse implements Answer<String> {
 		private int timeToSleepInMillis;
 		private String response;
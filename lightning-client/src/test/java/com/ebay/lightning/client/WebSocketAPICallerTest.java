@@ -0,0 +1,174 @@
+package com.ebay.lightning.client;
+
+import java.net.ConnectException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+
+import com.ebay.lightning.client.caller.LightningResponseCallback;
+import com.ebay.lightning.client.caller.WebSocketAPICaller;
+import com.ebay.lightning.client.config.LightningClientConfig;
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.ebay.lightning.core.utils.UrlUtils;
+import com.ebay.lightning.core.utils.ZipUtil;
+
+public class WebSocketAPICallerTest {
+
+	private WebSocketAPICaller caller;
+	private UrlUtils urlUtils;
+	private WebSocketClient webSocketClient;
+	private WebSocketSession session;
+	private WebSocketHandler handler;
+	private LightningRequest request;
+	private ResponseCallback callback;
+
+	@Before
+	public void setup() throws Exception {
+		LightningClientConfig config = new LightningClientConfig();
+		config.setPollApiUrl("http://{host}:port/poll");
+		config.setPushApiUrl("ws://{host}:port/push");
+		urlUtils = Mockito.mock(UrlUtils.class);
+		session = Mockito.mock(WebSocketSession.class);
+		Mockito.when(session.isOpen()).thenReturn(true);
+		webSocketClient = Mockito.mock(WebSocketClient.class);
+		Mockito.when(webSocketClient.doHandshake(Mockito.any(WebSocketHandler.class), Mockito.eq("ws://localhost:port/push")))
+				.thenAnswer(new Answer<ListenableFuture<WebSocketSession>>() {
+					@Override
+					public ListenableFuture<WebSocketSession> answer(InvocationOnMock invocation) throws Throwable {
+						handler = (WebSocketHandler) invocation.getArguments()[0];
+						handler.afterConnectionEstablished(session);
+						ListenableFutureTask<WebSocketSession> future = new ListenableFutureTask<>(new Callable<WebSocketSession>() {
+							@Override
+							public WebSocketSession call() throws Exception {
+								return session;
+							}
+						});
+						future.run();
+						return future;
+					}
+				});
+		caller = new WebSocketAPICaller(config, urlUtils, webSocketClient);
+		request = new LightningRequest("session");
+		request.setServingHostIp("localhost");
+		callback = new ResponseCallback();
+	}
+
+	@Test
+	public void testPushedResponse() throws Exception {
+		Assert.assertTrue(caller.subscribe(request, callback, 5000));
+		Mockito.verify(session).sendMessage(new TextMessage("session"));
+
+		LightningResponse first = new LightningResponse("session", WorkStatus.RUNNING);
+		first.setTotalCount(3);
+		first.setSuccessCount(1);
+		first.setSequence(1);
+		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
+		successResponses.put(0, new SuccessResponse("body"));
+		first.setSuccessResponses(successResponses);
+		handler.handleMessage(session, new BinaryMessage(BinaryCodec.encode(first)));
+		Assert.assertEquals(1, callback.latch.getCount());
+
+		LightningResponse last = new LightningResponse("session", WorkStatus.DONE);
+		last.setTotalCount(3);
+		last.setSuccessCount(1);
+		last.setSequence(3);
+		successResponses = new HashMap<>();
+		successResponses.put(2, new SuccessResponse("body"));
+		last.setSuccessResponses(successResponses);
+		Map<Integer, FailedResponse> failedResponses = new HashMap<>();
+		failedResponses.put(1, new FailedResponse(500, "error"));
+		last.setFailedResponses(failedResponses);
+		handler.handleMessage(session, new BinaryMessage(BinaryCodec.encode(last)));
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(callback.timedOut);
+		Assert.assertEquals(2, callback.response.getSuccessCount());
+		Assert.assertEquals(2, callback.response.getSuccessResponses().size());
+		Assert.assertEquals(1, callback.response.getFailedResponses().size());
+		Assert.assertEquals(3, callback.response.getSequence());
+		Mockito.verify(urlUtils, Mockito.never()).getByteArray(Mockito.anyString());
+	}
+
+	@Test
+	public void testPollAfterConnectionLost() throws Exception {
+		Assert.assertTrue(caller.subscribe(request, callback, 5000));
+		LightningResponse first = new LightningResponse("session", WorkStatus.RUNNING);
+		first.setSuccessCount(1);
+		first.setSequence(1);
+		handler.handleMessage(session, new BinaryMessage(BinaryCodec.encode(first)));
+
+		LightningResponse last = new LightningResponse("session", WorkStatus.DONE);
+		last.setSuccessCount(1);
+		last.setSequence(2);
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/poll/session/since/1")).thenReturn(ZipUtil.zipAsByteArray(last));
+		handler.afterConnectionClosed(session, CloseStatus.SERVER_ERROR);
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(callback.timedOut);
+		Assert.assertEquals(2, callback.response.getSuccessCount());
+	}
+
+	@Test
+	public void testPollAfterSubscriptionError() throws Exception {
+		Assert.assertTrue(caller.subscribe(request, callback, 5000));
+		LightningResponse last = new LightningResponse("session", WorkStatus.DONE);
+		last.setSuccessCount(1);
+		last.setSequence(1);
+		Mockito.when(urlUtils.getByteArray("http://localhost:port/poll/session/since/0")).thenReturn(ZipUtil.zipAsByteArray(last));
+		handler.handleMessage(session, new TextMessage("{\"sessionId\":\"session\",\"status\":\"failed\",\"msg\":\"error\"}"));
+
+		Assert.assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(callback.timedOut);
+		Assert.assertEquals(1, callback.response.getSuccessCount());
+		Mockito.verify(session, Mockito.never()).close(Mockito.any(CloseStatus.class));
+	}
+
+	@Test
+	public void testConnectFailure() throws Exception {
+		Mockito.when(webSocketClient.doHandshake(Mockito.any(WebSocketHandler.class), Mockito.eq("ws://localhost:port/push")))
+				.thenThrow(new IllegalStateException(new ConnectException()));
+		Assert.assertFalse(caller.subscribe(request, callback, 5000));
+	}
+
+	private static class ResponseCallback implements LightningResponseCallback {
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile LightningResponse response;
+		private volatile boolean timedOut;
+
+		@Override
+		public void onComplete(LightningResponse response) {
+			this.response = response;
+			latch.countDown();
+		}
+
+		@Override
+		public void onTimeout(LightningResponse response) {
+			this.response = response;
+			this.timedOut = true;
+			latch.countDown();
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
 import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
 
 /**
@@ -38,6 +39,22 @@ public class ChainedURLTask extends URLTask implements Serializable {
 		urlTasks.add(urlTask);
 	}
 
+	/**
+	 * Get the list of URLs to be executed in sequential order.
+	 * @return the list of URL tasks
+	 */
+	public List<URLTask> getUrlTasks() {
+		return urlTasks;
+	}
+
+	/**
+	 * Get the task being executed.
+	 * @return the current execution task or {@code null} if the execution has not started
+	 */
+	public URLTask getCurrentUrlTask() {
+		return currentUrlTask;
+	}
+
 	/**
 	 * Get the state of the current execution task.
 	 * 
@@ -181,6 +198,37 @@ public class ChainedURLTask extends URLTask implements Serializable {
 		currentUrlTask.setErrorMsg(errorMsg);
 	}
 
+	/**
+	 * Get the error code if any for the current execution task.
+	 * 
+	 * @return the error code if any for the current execution task
+	 */
+	@Override
+	public ErrorCode getErrorCode() {
+		return currentUrlTask.getErrorCode();
+	}
+
+	/**
+	 * Get the error detail if any for the current execution task.
+	 * 
+	 * @return the error detail if any for the current execution task
+	 */
+	@Override
+	public String getErrorDetail() {
+		return currentUrlTask.getErrorDetail();
+	}
+
+	/**
+	 * Set the error for the current execution task.
+	 * 
+	 * @param errorCode the error code
+	 * @param errorDetail the detail of the error, may be {@code null}
+	 */
+	@Override
+	public void setError(ErrorCode errorCode, String errorDetail) {
+		currentUrlTask.setError(errorCode, errorDetail);
+	}
+
 	/**
 	 * Get the last update time when there is a change in task status for the current execution task.
 	 * 
@@ -1,6 +1,7 @@
 package com.ebay.lightning.core.beans;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
@@ -23,6 +24,8 @@ public class LightningRequest implements Serializable{
 	private int requestSize;
 	private String servingHostIp;
 	private RequestConfig requestconfig = null;
+	private boolean streaming;
+	private URLTemplate urlTemplate;
 	
 	public LightningRequest(String sessionId){
 		setSessionId(sessionId);
@@ -34,6 +37,12 @@ public class LightningRequest implements Serializable{
 		setReservationReciept(reservationReciept);
 	}
 
+	public LightningRequest(String sessionId, URLTemplate urlTemplate, ReservationReceipt reservationReciept) {
+		setSessionId(sessionId);
+		setUrlTemplate(urlTemplate);
+		setReservationReciept(reservationReciept);
+	}
+
 	/**
 	 * Get the sessionId of the request.
 	 * @return the sessionId of the request
@@ -74,6 +83,38 @@ public class LightningRequest implements Serializable{
 		}
 	}
 
+	/**
+	 * Get the template the tasks are expanded from.
+	 * @return the URL template or {@code null} if the tasks are submitted as a list
+	 */
+	public URLTemplate getUrlTemplate() {
+		return urlTemplate;
+	}
+
+	/**
+	 * Set the template the tasks are expanded from. The task list holds the tasks expanded so far.
+	 * @param urlTemplate the URL template
+	 */
+	public void setUrlTemplate(URLTemplate urlTemplate) {
+		if (urlTemplate == null || urlTemplate.size() == 0) {
+            throw new IllegalArgumentException("Invalid URL template. Lightning request should be at least with one valid Task.");
+		}
+		this.urlTemplate = urlTemplate;
+		if (this.tasks == null) {
+			this.tasks = new ArrayList<>();
+		}
+		this.requestSize = urlTemplate.size();
+	}
+
+	/**
+	 * Add tasks to the end of the task list of a streaming request or a request expanded from a template.
+	 * @param tasks the tasks to be added
+	 */
+	public void addTasks(List<Task> tasks) {
+		this.tasks.addAll(tasks);
+		this.requestSize = Math.max(this.requestSize, this.tasks.size());
+	}
+
 	/**
 	 * Get the request type.
 	 * @return the request type
@@ -149,5 +190,22 @@ public class LightningRequest implements Serializable{
 	public void setRequestconfig(RequestConfig requestconfig) {
 		this.requestconfig = requestconfig;
 	}
-	
+
+	/**
+	 * Check if more tasks are appended to the request after it is submitted.
+	 * @return {@code true} until the last chunk of tasks has been appended
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Set if more tasks are appended to the request after it is submitted.
+	 * 
+	 * <p>The reservation of a streaming request has to cover all the tasks that will be appended.</p>
+	 * @param streaming {@code true} if the submitted task list is only the first chunk
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
 }
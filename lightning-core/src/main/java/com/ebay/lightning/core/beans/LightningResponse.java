@@ -1,9 +1,11 @@
 package com.ebay.lightning.core.beans;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
 import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
 
 /**
@@ -24,6 +26,7 @@ public class LightningResponse implements Serializable {
 	private int totalCount;
 	private int successCount;
 	private WorkStatus status;
+	private int sequence;
 	private Map<Integer, FailedResponse> failedResponses;
 	private Map<Integer, SuccessResponse> successResponses;
 
@@ -100,6 +103,24 @@ public class LightningResponse implements Serializable {
 		this.status = status;
 	}
 
+	/**
+	 * Get the change log sequence number covered by this response.
+	 *
+	 * Pass the sequence number to the next delta poll to get only the tasks completed after this response.
+	 * @return the change log sequence number
+	 */
+	public int getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Set the change log sequence number covered by this response.
+	 * @param sequence the change log sequence number
+	 */
+	public void setSequence(int sequence) {
+		this.sequence = sequence;
+	}
+
 	/**
 	 * Check of the request is completed.
 	 * @return true if the all tasks in the request are completed.
@@ -108,6 +129,43 @@ public class LightningResponse implements Serializable {
 		return WorkStatus.DONE.equals(this.status) || WorkStatus.STOPPED.equals(this.status);
 	}
 
+	/**
+	 * Add the tasks of a delta response, polled with the sequence number of this response, to this response.
+	 *
+	 * The success count is recounted from the merged tasks rather than added up, since a report without a change
+	 * log answers a delta poll with all its tasks.
+	 * @param delta the tasks completed after the sequence number of this response
+	 */
+	public void merge(LightningResponse delta) {
+		this.status = delta.status;
+		this.totalCount = delta.totalCount;
+		this.sequence = delta.sequence;
+		if (delta.failedResponses != null) {
+			if (this.failedResponses == null) {
+				this.failedResponses = new HashMap<>();
+			}
+			this.failedResponses.putAll(delta.failedResponses);
+			if (this.successResponses != null) {
+				this.successResponses.keySet().removeAll(delta.failedResponses.keySet());
+			}
+		}
+		if (delta.successResponses != null) {
+			if (this.successResponses == null) {
+				this.successResponses = new HashMap<>();
+			}
+			this.successResponses.putAll(delta.successResponses);
+			// a retried task that failed before
+			if (this.failedResponses != null) {
+				this.failedResponses.keySet().removeAll(delta.successResponses.keySet());
+			}
+		}
+		if (this.successResponses != null) {
+			this.successCount = this.successResponses.size();
+		} else {
+			this.successCount += delta.successCount;
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link Object#toString()}
 	 */
@@ -171,6 +229,9 @@ public class LightningResponse implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private final int statusCode;
 		private final String errMsg;
+		// not serialized, clients that do not know the ErrorCode still read the message; the binary codec carries them
+		private final transient ErrorCode errorCode;
+		private final transient String errorDetail;
 
 		/**
 		 * Initialized a failed response.
@@ -180,6 +241,21 @@ public class LightningResponse implements Serializable {
 		public FailedResponse(int statusCode, String errMsg) {
 			this.statusCode = statusCode;
 			this.errMsg = errMsg;
+			this.errorCode = null;
+			this.errorDetail = null;
+		}
+
+		/**
+		 * Initialized a failed response with an error code and the error message built from it.
+		 * @param statusCode the HTTP status code
+		 * @param errorCode the error code
+		 * @param errorDetail the detail of the error, may be {@code null}
+		 */
+		public FailedResponse(int statusCode, ErrorCode errorCode, String errorDetail) {
+			this.statusCode = statusCode;
+			this.errMsg = errorCode != null ? errorCode.getMessage(errorDetail) : errorDetail;
+			this.errorCode = errorCode;
+			this.errorDetail = errorDetail;
 		}
 
 		/**
@@ -190,6 +266,23 @@ public class LightningResponse implements Serializable {
 			return this.errMsg;
 		}
 
+		/**
+		 * Get the code of the error related to the failure. The code is only sent to the clients that negotiated
+		 * the binary codec.
+		 * @return the error code or {@code null} if the failure only has a message
+		 */
+		public ErrorCode getErrorCode() {
+			return this.errorCode;
+		}
+
+		/**
+		 * Get the detail of the error related to the failure.
+		 * @return the error detail, may be {@code null}
+		 */
+		public String getErrorDetail() {
+			return this.errorDetail;
+		}
+
 		/**
 		 * Get the HTTP status code.
 		 * @return the HTTP status code
@@ -203,7 +296,7 @@ public class LightningResponse implements Serializable {
 		 */
 		@Override
 		public String toString() {
-			return String.format("Status [%d], Error Msg [%s]", this.statusCode, this.errMsg);
+			return String.format("Status [%d], Error Msg [%s]", this.statusCode, getErrMsg());
 		}
 	}
 
@@ -41,6 +41,10 @@ public class SystemStatus implements Serializable {
 	private String maxFileDescCount;
 	private String sysCPULoad;
 	private String processCPULoad;
+	private int establishedSocketCount;
+	private int timeWaitSocketCount;
+	private int ephemeralPortsInUse;
+	private int connectionHeadroom;
 	
 	private Map<String, String> cpuUsageMap;
 	
@@ -218,6 +222,38 @@ public class SystemStatus implements Serializable {
 		this.reservationLoadSize = reservationLoadSize;
 	}
 
+	public int getEstablishedSocketCount() {
+		return establishedSocketCount;
+	}
+
+	public void setEstablishedSocketCount(int establishedSocketCount) {
+		this.establishedSocketCount = establishedSocketCount;
+	}
+
+	public int getTimeWaitSocketCount() {
+		return timeWaitSocketCount;
+	}
+
+	public void setTimeWaitSocketCount(int timeWaitSocketCount) {
+		this.timeWaitSocketCount = timeWaitSocketCount;
+	}
+
+	public int getEphemeralPortsInUse() {
+		return ephemeralPortsInUse;
+	}
+
+	public void setEphemeralPortsInUse(int ephemeralPortsInUse) {
+		this.ephemeralPortsInUse = ephemeralPortsInUse;
+	}
+
+	public int getConnectionHeadroom() {
+		return connectionHeadroom;
+	}
+
+	public void setConnectionHeadroom(int connectionHeadroom) {
+		this.connectionHeadroom = connectionHeadroom;
+	}
+
 	public String getRegion() {
 		return region;
 	}
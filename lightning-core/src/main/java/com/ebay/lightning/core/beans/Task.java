@@ -1,7 +1,10 @@
 package com.ebay.lightning.core.beans;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
 import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
 
 /**
@@ -18,8 +21,12 @@ public class Task implements Serializable {
 
 	private String url;
 	private String errorMsg;
+	// not serialized, the error message is written instead so that clients without the ErrorCode can read the task
+	private transient ErrorCode errorCode;
+	private transient String errorDetail;
 	private TaskStatus status;
 	private transient Long lastTaskStatusUpdateTime = null;
+	private transient int index;
 
 	protected static final String DEFAULT_PROTOCOL = "http";
 	protected static final int DEFAULT_PORT = 80;
@@ -54,19 +61,56 @@ public class Task implements Serializable {
 	/**
 	 * Get the error encountered during task execution.
 	 * 
+	 * <p>The message is built from the {@link ErrorCode} and the error detail, unless it was set explicitly.</p>
 	 * @return the error if any encountered during task execution
 	 */
 	public String getErrorMsg() {
+		if (errorMsg == null && errorCode != null) {
+			return errorCode.getMessage(errorDetail);
+		}
 		return errorMsg;
 	}
 
 	/**
-	 * Set the error encountered during task execution.
+	 * Set the error encountered during task execution. Clears the error code.
 	 * 
 	 * @param errorMsg the error if any encountered during task execution
 	 */
 	public void setErrorMsg(String errorMsg) {
 		this.errorMsg = errorMsg;
+		this.errorCode = null;
+		this.errorDetail = null;
+	}
+
+	/**
+	 * Get the code of the error encountered during task execution.
+	 * 
+	 * @return the error code or {@code null} if there was no error or the error was set as a message
+	 */
+	public ErrorCode getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * Get the detail of the error encountered during task execution.
+	 * 
+	 * @return the error detail, may be {@code null}
+	 */
+	public String getErrorDetail() {
+		return errorDetail;
+	}
+
+	/**
+	 * Set the error encountered during task execution. The detail is interned so that tasks failing for the same
+	 * reason share it.
+	 * 
+	 * @param errorCode the error code
+	 * @param errorDetail the detail of the error, may be {@code null}
+	 */
+	public void setError(ErrorCode errorCode, String errorDetail) {
+		this.errorMsg = null;
+		this.errorCode = errorCode;
+		this.errorDetail = ErrorCode.internDetail(errorDetail);
 	}
 
 	/**
@@ -87,6 +131,22 @@ public class Task implements Serializable {
 		this.lastTaskStatusUpdateTime = lastTaskStatusUpdateTime;
 	}
 
+	/**
+	 * Get the position of the task in the request.
+	 * @return the position of the task in the request
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Set the position of the task in the request.
+	 * @param index the position of the task in the request
+	 */
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
 	/**
 	 * Get the URL to be executed.
 	 * 
@@ -105,6 +165,14 @@ public class Task implements Serializable {
 		this.url = url;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("url", getUrl());
+		fields.put("errorMsg", errorMsg == null && errorCode != null ? errorCode.getMessage(errorDetail) : errorMsg);
+		fields.put("status", status);
+		out.writeFields();
+	}
+
 	/**
 	 * Check if the task failed.
 	 * 
@@ -114,6 +182,7 @@ public class Task implements Serializable {
 		return (TaskStatus.CONNECT_FAILED.equals(status) ||
 				TaskStatus.READ_WRITE_FAILED.equals(status) ||
 				TaskStatus.FAILED.equals(status) ||
-				TaskStatus.TIMEDOUT.equals(status));
+				TaskStatus.TIMEDOUT.equals(status) ||
+				TaskStatus.STOPPED.equals(status));
 	}
 }
@@ -119,6 +119,21 @@ public class URLTask extends Task {
 		return this.uri.toString();
 	}
 
+	/**
+	 * Get the URL of the task. The full URL of a failed task is resolved when it is first read instead of on
+	 * every failure, and kept for the next reads.
+	 * @return the URL of the task if it failed or was set explicitly; {@code null} otherwise
+	 */
+	@Override
+	public String getUrl() {
+		String url = super.getUrl();
+		if (url == null && hasFailed()) {
+			url = getCompleteURL();
+			setUrl(url);
+		}
+		return url;
+	}
+
 	/**
 	 * Get the response body for the URL request.
 	 * @return the response body for the URL request
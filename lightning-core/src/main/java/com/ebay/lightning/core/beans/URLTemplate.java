@@ -0,0 +1,114 @@
+package com.ebay.lightning.core.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code URLTemplate} class is the compact form of a task list where the URLs differ only in a few parts, like
+ * the same path on many hosts or many paths on the same host. The template holds {@code {name}} placeholders and a
+ * list of values for every placeholder; the tasks are the cross product of the values, the last parameter varying
+ * fastest.
+ *
+ * <p>The core expands the tasks while executing the request, so neither the submit payload nor the queued request
+ * hold the {@link URLTask} objects.</p>
+ *
+ * @author shashukla
+ * @see LightningRequest
+ */
+public class URLTemplate implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String template;
+	private LinkedHashMap<String, List<String>> parameters = new LinkedHashMap<>();
+
+	public URLTemplate(String template) {
+		if (template == null || template.isEmpty()) {
+			throw new IllegalArgumentException("URL template cannot be empty.");
+		}
+		this.template = template;
+	}
+
+	/**
+	 * Add the values of a placeholder of the template.
+	 * @param name the placeholder name, without the braces
+	 * @param values the values substituted for the placeholder
+	 * @return this template
+	 * @throws IllegalArgumentException when the template has no such placeholder or there are no values
+	 */
+	public URLTemplate addParameter(String name, List<String> values) {
+		if (!template.contains("{" + name + "}")) {
+			throw new IllegalArgumentException("URL template has no placeholder {" + name + "}: " + template);
+		}
+		if (values == null || values.isEmpty()) {
+			throw new IllegalArgumentException("Parameter " + name + " of the URL template needs at least one value.");
+		}
+		parameters.put(name, new ArrayList<>(values));
+		return this;
+	}
+
+	/**
+	 * Get the URL with the {@code {name}} placeholders.
+	 * @return the URL template
+	 */
+	public String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Get the values of the placeholders in the order they were added.
+	 * @return the values by placeholder name
+	 */
+	public Map<String, List<String>> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Get the number of tasks the template expands to.
+	 * @return the product of the number of values of all parameters
+	 */
+	public int size() {
+		long size = 1;
+		for (List<String> values : parameters.values()) {
+			size *= values.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IllegalStateException("URL template expands to more than " + Integer.MAX_VALUE + " tasks");
+			}
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Create the task at the position of the expansion.
+	 * @param index the position of the task, from 0 to {@link #size()} - 1
+	 * @return the task with every placeholder replaced by its value
+	 */
+	public URLTask expand(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Task " + index + " of URL template with " + size() + " tasks");
+		}
+		List<String> names = new ArrayList<>(parameters.keySet());
+		String[] values = new String[names.size()];
+		int remainder = index;
+		for (int i = names.size() - 1; i >= 0; i--) {
+			List<String> parameterValues = parameters.get(names.get(i));
+			values[i] = parameterValues.get(remainder % parameterValues.size());
+			remainder /= parameterValues.size();
+		}
+		String url = template;
+		for (int i = 0; i < names.size(); i++) {
+			url = url.replace("{" + names.get(i) + "}", values[i]);
+		}
+		return new URLTask(url);
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link Object#toString()}
+	 */
+	@Override
+	public String toString() {
+		return "URLTemplate [template=" + template + ", size=" + size() + "]";
+	}
+}
@@ -3,6 +3,7 @@ package com.ebay.lightning.core.config;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
 import com.ebay.lightning.core.constants.LightningCoreConstants.HttpMethod;
 
 
@@ -26,6 +27,10 @@ public class RequestConfig implements Serializable {
 	private Integer retryConnectAccuracyPercent ;
 	private Integer proxyServerPort;
 	private Boolean retryFailedTasks;
+	private Integer maxFailures;
+	private Integer minSuccesses;
+	private Integer maxFailurePercent;
+	private Integer minSamplesForFailurePercent;
 	private String proxyServerHost;
 	private HttpMethod method;
 	
@@ -263,6 +268,104 @@ public class RequestConfig implements Serializable {
 		this.retryConnectAccuracyPercent = retryConnectAccuracyPercent;
 	}
 
+	/**
+	 * Get the number of failed tasks after which the request stops.
+	 * @return the maximum number of failed tasks or {@code null} to run all the tasks
+	 */
+	public Integer getMaxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * Stop the request as soon as more than this number of tasks failed. The tasks failed before the retry count,
+	 * and the tasks not executed yet are not executed.
+	 * @param maxFailures the maximum number of failed tasks or {@code null} to run all the tasks
+	 */
+	public void setMaxFailures(Integer maxFailures) {
+		this.maxFailures = maxFailures;
+	}
+
+	/**
+	 * Get the number of successful tasks after which the request stops.
+	 * @return the minimum number of successful tasks or {@code null} to run all the tasks
+	 */
+	public Integer getMinSuccesses() {
+		return minSuccesses;
+	}
+
+	/**
+	 * Stop the request as soon as this number of tasks succeeded, the tasks not executed yet are not executed.
+	 * @param minSuccesses the minimum number of successful tasks or {@code null} to run all the tasks
+	 */
+	public void setMinSuccesses(Integer minSuccesses) {
+		this.minSuccesses = minSuccesses;
+	}
+
+	/**
+	 * Get the percentage of failed tasks after which the request stops.
+	 * @return the maximum percentage of failed tasks or {@code null} to run all the tasks
+	 */
+	public Integer getMaxFailurePercent() {
+		return maxFailurePercent;
+	}
+
+	/**
+	 * Stop the request as soon as more than this percentage of the completed tasks failed, once at least
+	 * {@link #getMinSamplesForFailurePercent()} tasks completed.
+	 * @param maxFailurePercent the maximum percentage of failed tasks or {@code null} to run all the tasks
+	 */
+	public void setMaxFailurePercent(Integer maxFailurePercent) {
+		this.maxFailurePercent = maxFailurePercent;
+	}
+
+	/**
+	 * Get the number of completed tasks before the failure percentage is checked.
+	 * @return the minimum number of completed tasks for {@link #getMaxFailurePercent()}
+	 */
+	public Integer getMinSamplesForFailurePercent() {
+		return minSamplesForFailurePercent;
+	}
+
+	/**
+	 * Set the number of completed tasks before the failure percentage is checked, so that the first few failures
+	 * do not stop the request.
+	 * @param minSamplesForFailurePercent the minimum number of completed tasks for {@link #getMaxFailurePercent()}
+	 */
+	public void setMinSamplesForFailurePercent(Integer minSamplesForFailurePercent) {
+		this.minSamplesForFailurePercent = minSamplesForFailurePercent;
+	}
+
+	/**
+	 * Check if the request has any stop condition. The tasks left without a result when the request stops are
+	 * reported as failed with {@link ErrorCode#REQUEST_STOPPED}. Stop conditions are not supported for chained check
+	 * tasks, such a request is rejected on submit.
+	 * @return {@code true} if the request may stop before all its tasks are executed
+	 */
+	public boolean hasStopCondition() {
+		return maxFailures != null || minSuccesses != null || maxFailurePercent != null;
+	}
+
+	/**
+	 * Check if the stop conditions of the request are met by the tasks completed so far.
+	 * @param successCount the number of successful tasks
+	 * @param failureCount the number of failed tasks
+	 * @return {@code true} if the remaining tasks need not be executed
+	 */
+	public boolean isStopConditionMet(int successCount, int failureCount) {
+		if (maxFailures != null && failureCount > maxFailures) {
+			return true;
+		}
+		if (minSuccesses != null && successCount >= minSuccesses) {
+			return true;
+		}
+		if (maxFailurePercent != null) {
+			int samples = successCount + failureCount;
+			int minSamples = minSamplesForFailurePercent != null ? Math.max(1, minSamplesForFailurePercent) : 1;
+			return samples >= minSamples && failureCount * 100L > maxFailurePercent * (long) samples;
+		}
+		return false;
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link Object#toString()}
 	 */
@@ -272,7 +375,9 @@ public class RequestConfig implements Serializable {
 				+ ", slowUrlsConnectTimeoutMillis=" + slowUrlsConnectTimeoutMillis + ", slowUrlsReadWriteTimeoutMillis="
 				+ slowUrlsReadWriteTimeoutMillis + ", method=" + method + ", readAccuracyPercent=" + readAccuracyPercent 
 				+ ", connectAccuracyPercent=" + connectAccuracyPercent + ", proxyServerPort="
-				+ proxyServerPort + ", proxyServerHost=" + proxyServerHost + ", retryFailedTasks=" + retryFailedTasks + "]";
+				+ proxyServerPort + ", proxyServerHost=" + proxyServerHost + ", retryFailedTasks=" + retryFailedTasks
+				+ ", maxFailures=" + maxFailures + ", minSuccesses=" + minSuccesses + ", maxFailurePercent=" + maxFailurePercent
+				+ ", minSamplesForFailurePercent=" + minSamplesForFailurePercent + "]";
 	}
 
 	/**
@@ -37,8 +37,14 @@ public class SystemConfig {
 	private int reservationResponseExpireTimeInSec = 20;
 	private int timeToSleepBetweenEachQueueProcessInMillis = 100;
 	private int oldReservationCleanupReminderTimeInMillis = 2000;
+	private long streamingSubmitIdleTimeoutInMillis = TimeUnit.SECONDS.toMillis(30);
+	private long maxLongPollWaitInMillis = TimeUnit.SECONDS.toMillis(30);
+	private int minCompressedSizeInBytes = 1024;
 
 	private RetentionPolicy retentionPolicy;
+	private AdmissionPolicy admissionPolicy;
+	private JournalPolicy journalPolicy;
+	private AuditLogPolicy auditLogPolicy;
 	private int executorThreadPoolSize = DEFAULT_THREAD_POOL_SIZE;
 
 	private String updateSystemConfigStatusMsg;
@@ -49,6 +55,9 @@ public class SystemConfig {
 
 	public SystemConfig() {
 		retentionPolicy = new RetentionPolicy();
+		admissionPolicy = new AdmissionPolicy();
+		journalPolicy = new JournalPolicy();
+		auditLogPolicy = new AuditLogPolicy();
 		//load Default Request Configs 
 		RequestConfig defaultRCForGET = new RequestConfig();
 		defaultRCForGET.setReadAccuracyPercent(100);
@@ -288,6 +297,54 @@ public class SystemConfig {
 		this.oldReservationCleanupReminderTimeInMillis = oldReservationCleanupReminderTimeInMillis;
 	}
 
+	/**
+	 * Get the maximum time a streaming request waits for its next chunk of tasks before its task list is sealed.
+	 * @return the idle timeout of streaming requests
+	 */
+	public long getStreamingSubmitIdleTimeoutInMillis() {
+		return streamingSubmitIdleTimeoutInMillis;
+	}
+
+	/**
+	 * Set the maximum time a streaming request waits for its next chunk of tasks before its task list is sealed.
+	 * @param streamingSubmitIdleTimeoutInMillis the idle timeout of streaming requests
+	 */
+	public void setStreamingSubmitIdleTimeoutInMillis(long streamingSubmitIdleTimeoutInMillis) {
+		this.streamingSubmitIdleTimeoutInMillis = streamingSubmitIdleTimeoutInMillis;
+	}
+
+	/**
+	 * Get the maximum time a long poll is held waiting for the tasks of the request to complete.
+	 * @return the maximum wait of a long poll
+	 */
+	public long getMaxLongPollWaitInMillis() {
+		return maxLongPollWaitInMillis;
+	}
+
+	/**
+	 * Set the maximum time a long poll is held waiting for the tasks of the request to complete.
+	 * @param maxLongPollWaitInMillis the maximum wait of a long poll
+	 */
+	public void setMaxLongPollWaitInMillis(long maxLongPollWaitInMillis) {
+		this.maxLongPollWaitInMillis = maxLongPollWaitInMillis;
+	}
+
+	/**
+	 * Get the payload size below which the responses are not compressed for clients negotiating the codec.
+	 * @return the minimum size of a compressed payload
+	 */
+	public int getMinCompressedSizeInBytes() {
+		return minCompressedSizeInBytes;
+	}
+
+	/**
+	 * Set the payload size below which the responses are not compressed for clients negotiating the codec.
+	 * @param minCompressedSizeInBytes the minimum size of a compressed payload
+	 */
+	public void setMinCompressedSizeInBytes(int minCompressedSizeInBytes) {
+		this.minCompressedSizeInBytes = minCompressedSizeInBytes;
+	}
+
 	/**
 	 * Get the pool size of the executor service.
 	 * @return the pool size of the executor service
@@ -337,6 +394,54 @@ public class SystemConfig {
 	}
 	
 	
+	/**
+	 * Get the resource based admission policy for reservations.
+	 * @return the resource based admission policy
+	 */
+	public AdmissionPolicy getAdmissionPolicy() {
+		return admissionPolicy;
+	}
+
+	/**
+	 * Set the resource based admission policy for reservations.
+	 * @param admissionPolicy the resource based admission policy
+	 */
+	public void setAdmissionPolicy(AdmissionPolicy admissionPolicy) {
+		this.admissionPolicy = admissionPolicy;
+	}
+
+	/**
+	 * Get the policy for journaling accepted requests.
+	 * @return the policy for journaling accepted requests
+	 */
+	public JournalPolicy getJournalPolicy() {
+		return journalPolicy;
+	}
+
+	/**
+	 * Set the policy for journaling accepted requests.
+	 * @param journalPolicy the policy for journaling accepted requests
+	 */
+	public void setJournalPolicy(JournalPolicy journalPolicy) {
+		this.journalPolicy = journalPolicy;
+	}
+
+	/**
+	 * Get the policy for persisting the audit reports.
+	 * @return the policy for persisting the audit reports
+	 */
+	public AuditLogPolicy getAuditLogPolicy() {
+		return auditLogPolicy;
+	}
+
+	/**
+	 * Set the policy for persisting the audit reports.
+	 * @param auditLogPolicy the policy for persisting the audit reports
+	 */
+	public void setAuditLogPolicy(AuditLogPolicy auditLogPolicy) {
+		this.auditLogPolicy = auditLogPolicy;
+	}
+
 	public String getUpdateSystemConfigStatusMsg() {
 		return updateSystemConfigStatusMsg;
 	}
@@ -396,6 +501,24 @@ public class SystemConfig {
 		//Max number of audit report that can exist in the store
 		private long maxLightningReportRetentionCount = 50000;
 
+		//Move the task results of completed requests into primitive columns and release the task objects
+		private boolean compactCompletedTaskResults = false;
+
+		//Max estimated heap held by completed reports before the oldest are spilled to memory-mapped segments, 0 disables spilling
+		private long maxHeapReportSizeInBytes = 0;
+
+		//Max size of the compressed spilled reports before the oldest are removed, 0 for no limit
+		private long maxSpilledReportSizeInBytes = 256L * 1024 * 1024;
+
+		//Directory holding the memory-mapped segments of the spilled reports
+		private String spillDirectory = System.getProperty("java.io.tmpdir");
+
+		//Size of each memory-mapped spill segment
+		private long spillSegmentSizeInBytes = 32L * 1024 * 1024;
+
+		//Max size of the encoded responses of completed requests cached for polling, 0 disables the cache
+		private long maxCachedResponseSizeInBytes = 32L * 1024 * 1024;
+
 		/**
 		 * Get the retention time for request tasks.
 		 * @return the retention time for request tasks
@@ -443,6 +566,394 @@ public class SystemConfig {
 		public void setLightningReportRetentionTimeInMillis(long lightningReportRetentionTimeInMillis) {
 			this.lightningReportRetentionTimeInMillis = lightningReportRetentionTimeInMillis;
 		}
+
+		/**
+		 * Check if the task results of completed requests are stored in columnar form.
+		 * @return true if the task results of completed requests are compacted
+		 */
+		public boolean isCompactCompletedTaskResults() {
+			return compactCompletedTaskResults;
+		}
+
+		/**
+		 * Enable or disable the columnar storage of the task results of completed requests.
+		 * @param compactCompletedTaskResults true to compact the task results of completed requests
+		 */
+		public void setCompactCompletedTaskResults(boolean compactCompletedTaskResults) {
+			this.compactCompletedTaskResults = compactCompletedTaskResults;
+		}
+
+		/**
+		 * Get the heap budget for completed reports.
+		 * @return the heap budget for completed reports in bytes, 0 if spilling is disabled
+		 */
+		public long getMaxHeapReportSizeInBytes() {
+			return maxHeapReportSizeInBytes;
+		}
+
+		/**
+		 * Set the heap budget for completed reports.
+		 * @param maxHeapReportSizeInBytes the heap budget for completed reports in bytes, 0 to disable spilling
+		 */
+		public void setMaxHeapReportSizeInBytes(long maxHeapReportSizeInBytes) {
+			this.maxHeapReportSizeInBytes = maxHeapReportSizeInBytes;
+		}
+
+		/**
+		 * Get the size budget for the compressed spilled reports.
+		 * @return the size budget for the compressed spilled reports in bytes, 0 if unlimited
+		 */
+		public long getMaxSpilledReportSizeInBytes() {
+			return maxSpilledReportSizeInBytes;
+		}
+
+		/**
+		 * Set the size budget for the compressed spilled reports.
+		 * @param maxSpilledReportSizeInBytes the size budget for the compressed spilled reports in bytes, 0 for no limit
+		 */
+		public void setMaxSpilledReportSizeInBytes(long maxSpilledReportSizeInBytes) {
+			this.maxSpilledReportSizeInBytes = maxSpilledReportSizeInBytes;
+		}
+
+		/**
+		 * Get the directory of the spill segments.
+		 * @return the directory of the spill segments
+		 */
+		public String getSpillDirectory() {
+			return spillDirectory;
+		}
+
+		/**
+		 * Set the directory of the spill segments. The directory is applied when the execution data store is created.
+		 * @param spillDirectory the directory of the spill segments
+		 */
+		public void setSpillDirectory(String spillDirectory) {
+			this.spillDirectory = spillDirectory;
+		}
+
+		/**
+		 * Get the size of a spill segment.
+		 * @return the size of a spill segment in bytes
+		 */
+		public long getSpillSegmentSizeInBytes() {
+			return spillSegmentSizeInBytes;
+		}
+
+		/**
+		 * Set the size of a spill segment, a report larger than the segment size gets a segment of its own.
+		 * @param spillSegmentSizeInBytes the size of a spill segment in bytes
+		 */
+		public void setSpillSegmentSizeInBytes(long spillSegmentSizeInBytes) {
+			this.spillSegmentSizeInBytes = spillSegmentSizeInBytes;
+		}
+
+		/**
+		 * Get the memory budget for the encoded responses of completed requests cached for polling.
+		 * @return the memory budget for cached responses in bytes, 0 if the cache is disabled
+		 */
+		public long getMaxCachedResponseSizeInBytes() {
+			return maxCachedResponseSizeInBytes;
+		}
+
+		/**
+		 * Set the memory budget for the encoded responses of completed requests cached for polling. The budget is
+		 * applied when the execution data store is created.
+		 * @param maxCachedResponseSizeInBytes the memory budget for cached responses in bytes, 0 to disable the cache
+		 */
+		public void setMaxCachedResponseSizeInBytes(long maxCachedResponseSizeInBytes) {
+			this.maxCachedResponseSizeInBytes = maxCachedResponseSizeInBytes;
+		}
+	}
+
+	public static class AdmissionPolicy {
+		//Admit reservations and size worker batches based on file descriptor and ephemeral port headroom
+		private boolean enabled = true;
+
+		//File descriptors kept free for the web container, logs and other non task sockets
+		private int fileDescriptorReserve = 1024;
+
+		//Ephemeral ports kept free so that sockets in TIME_WAIT do not starve new connects
+		private int ephemeralPortReserve = 2048;
+
+		//Lower bound on the worker batch size when the headroom shrinks
+		private int minWorkerBatchSize = 100;
+
+		//Max age of the cached file descriptor and socket statistics
+		private long resourceSnapshotRefreshIntervalInMillis = 500;
+
+		/**
+		 * Check if resource based admission is enabled.
+		 * @return true if resource based admission is enabled
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * Set to enable resource based admission.
+		 * @param enabled enable resource based admission
+		 */
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * Get the number of file descriptors never handed out to workers.
+		 * @return the file descriptor reserve
+		 */
+		public int getFileDescriptorReserve() {
+			return fileDescriptorReserve;
+		}
+
+		/**
+		 * Set the number of file descriptors never handed out to workers.
+		 * @param fileDescriptorReserve the file descriptor reserve
+		 */
+		public void setFileDescriptorReserve(int fileDescriptorReserve) {
+			this.fileDescriptorReserve = fileDescriptorReserve;
+		}
+
+		/**
+		 * Get the number of ephemeral ports never handed out to workers.
+		 * @return the ephemeral port reserve
+		 */
+		public int getEphemeralPortReserve() {
+			return ephemeralPortReserve;
+		}
+
+		/**
+		 * Set the number of ephemeral ports never handed out to workers.
+		 * @param ephemeralPortReserve the ephemeral port reserve
+		 */
+		public void setEphemeralPortReserve(int ephemeralPortReserve) {
+			this.ephemeralPortReserve = ephemeralPortReserve;
+		}
+
+		/**
+		 * Get the minimum worker batch size.
+		 * @return the minimum worker batch size
+		 */
+		public int getMinWorkerBatchSize() {
+			return minWorkerBatchSize;
+		}
+
+		/**
+		 * Set the minimum worker batch size.
+		 * @param minWorkerBatchSize the minimum worker batch size
+		 */
+		public void setMinWorkerBatchSize(int minWorkerBatchSize) {
+			this.minWorkerBatchSize = minWorkerBatchSize;
+		}
+
+		/**
+		 * Get the refresh interval of the resource statistics.
+		 * @return the refresh interval of the resource statistics
+		 */
+		public long getResourceSnapshotRefreshIntervalInMillis() {
+			return resourceSnapshotRefreshIntervalInMillis;
+		}
+
+		/**
+		 * Set the refresh interval of the resource statistics.
+		 * @param resourceSnapshotRefreshIntervalInMillis the refresh interval of the resource statistics
+		 */
+		public void setResourceSnapshotRefreshIntervalInMillis(long resourceSnapshotRefreshIntervalInMillis) {
+			this.resourceSnapshotRefreshIntervalInMillis = resourceSnapshotRefreshIntervalInMillis;
+		}
+	}
+
+	public static class JournalPolicy {
+		//Journal accepted requests so that they survive a core restart
+		private boolean enabled = false;
+
+		//Directory holding the journal segments
+		private String directory = "./journal";
+
+		//Size of each memory-mapped journal segment
+		private long segmentSizeInBytes = 64L * 1024 * 1024;
+
+		//Max time a journal record waits to be group committed
+		private long groupCommitIntervalInMillis = 20;
+
+		//Execute the interrupted requests again after restart instead of marking them STOPPED
+		private boolean resumeInterruptedRequests = true;
+
+		/**
+		 * Check if the request journal is enabled.
+		 * @return true if the request journal is enabled
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * Set to enable the request journal.
+		 * @param enabled enable the request journal
+		 */
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * Get the journal directory.
+		 * @return the journal directory
+		 */
+		public String getDirectory() {
+			return directory;
+		}
+
+		/**
+		 * Set the journal directory.
+		 * @param directory the journal directory
+		 */
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		/**
+		 * Get the size of a journal segment.
+		 * @return the size of a journal segment
+		 */
+		public long getSegmentSizeInBytes() {
+			return segmentSizeInBytes;
+		}
+
+		/**
+		 * Set the size of a journal segment.
+		 * @param segmentSizeInBytes the size of a journal segment
+		 */
+		public void setSegmentSizeInBytes(long segmentSizeInBytes) {
+			this.segmentSizeInBytes = segmentSizeInBytes;
+		}
+
+		/**
+		 * Get the group commit interval.
+		 * @return the group commit interval
+		 */
+		public long getGroupCommitIntervalInMillis() {
+			return groupCommitIntervalInMillis;
+		}
+
+		/**
+		 * Set the group commit interval.
+		 * @param groupCommitIntervalInMillis the group commit interval
+		 */
+		public void setGroupCommitIntervalInMillis(long groupCommitIntervalInMillis) {
+			this.groupCommitIntervalInMillis = groupCommitIntervalInMillis;
+		}
+
+		/**
+		 * Check if interrupted requests are executed again after restart.
+		 * @return true if interrupted requests are executed again
+		 */
+		public boolean isResumeInterruptedRequests() {
+			return resumeInterruptedRequests;
+		}
+
+		/**
+		 * Set to execute interrupted requests again after restart.
+		 * @param resumeInterruptedRequests execute interrupted requests again
+		 */
+		public void setResumeInterruptedRequests(boolean resumeInterruptedRequests) {
+			this.resumeInterruptedRequests = resumeInterruptedRequests;
+		}
+	}
+
+	public static class AuditLogPolicy {
+		//Persist the audit report of every completed request to local segment files
+		private boolean enabled = false;
+
+		//Directory holding the audit log segments
+		private String directory = "./audit";
+
+		//Size after which a new audit log segment is started
+		private long segmentSizeInBytes = 16L * 1024 * 1024;
+
+		//Max time for which audit reports are kept on disk
+		private long retentionTimeInMillis = TimeUnit.DAYS.toMillis(28);
+
+		//Max number of audit reports returned by one query
+		private int maxQueryResults = 1000;
+
+		/**
+		 * Check if the audit log is enabled.
+		 * @return true if the audit log is enabled
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * Set to enable the audit log.
+		 * @param enabled enable the audit log
+		 */
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * Get the audit log directory.
+		 * @return the audit log directory
+		 */
+		public String getDirectory() {
+			return directory;
+		}
+
+		/**
+		 * Set the audit log directory.
+		 * @param directory the audit log directory
+		 */
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		/**
+		 * Get the size of an audit log segment.
+		 * @return the size of an audit log segment
+		 */
+		public long getSegmentSizeInBytes() {
+			return segmentSizeInBytes;
+		}
+
+		/**
+		 * Set the size of an audit log segment.
+		 * @param segmentSizeInBytes the size of an audit log segment
+		 */
+		public void setSegmentSizeInBytes(long segmentSizeInBytes) {
+			this.segmentSizeInBytes = segmentSizeInBytes;
+		}
+
+		/**
+		 * Get the retention time for persisted audit reports.
+		 * @return the retention time for persisted audit reports
+		 */
+		public long getRetentionTimeInMillis() {
+			return retentionTimeInMillis;
+		}
+
+		/**
+		 * Set the retention time for persisted audit reports.
+		 * @param retentionTimeInMillis the retention time for persisted audit reports
+		 */
+		public void setRetentionTimeInMillis(long retentionTimeInMillis) {
+			this.retentionTimeInMillis = retentionTimeInMillis;
+		}
+
+		/**
+		 * Get the maximum number of audit reports returned by a query.
+		 * @return the maximum number of audit reports returned by a query
+		 */
+		public int getMaxQueryResults() {
+			return maxQueryResults;
+		}
+
+		/**
+		 * Set the maximum number of audit reports returned by a query.
+		 * @param maxQueryResults the maximum number of audit reports returned by a query
+		 */
+		public void setMaxQueryResults(int maxQueryResults) {
+			this.maxQueryResults = maxQueryResults;
+		}
 	}
 
 	/**
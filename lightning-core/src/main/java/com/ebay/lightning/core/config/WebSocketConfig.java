@@ -0,0 +1,33 @@
+package com.ebay.lightning.core.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import com.ebay.lightning.core.controllers.ResultPushHandler;
+
+/**
+ * Registers the WebSocket endpoint pushing the results of the requests to the clients.
+ *
+ * @author shashukla
+ * @see ResultPushHandler
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+	public static final String PUSH_PATH = "/l/push";
+
+	@Autowired
+	private ResultPushHandler resultPushHandler;
+
+	/* (non-Javadoc)
+	 * @see {@link WebSocketConfigurer#registerWebSocketHandlers(WebSocketHandlerRegistry)}
+	 */
+	@Override
+	public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+		registry.addHandler(resultPushHandler, PUSH_PATH);
+	}
+}
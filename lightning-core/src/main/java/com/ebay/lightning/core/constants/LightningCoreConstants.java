@@ -2,6 +2,9 @@ package com.ebay.lightning.core.constants;
 
 import java.nio.charset.Charset;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 /**
  * Defines enum and constants.
  * 
@@ -22,10 +25,72 @@ public class LightningCoreConstants {
 	}
 
 	public static enum TaskStatus {
-		INIT, CONNECTED, WRITTEN, READ, CONNECT_FAILED, READ_WRITE_FAILED, SUCCESS, FAILED, TIMEDOUT
+		INIT, CONNECTED, WRITTEN, READ, CONNECT_FAILED, READ_WRITE_FAILED, SUCCESS, FAILED, TIMEDOUT, STOPPED
 	}
 
 	public enum HttpMethod {
 		GET, HEAD
 	};
+
+	/**
+	 * The reason a task failed. The human readable message is only built when it is read, from the message of the
+	 * code and an optional detail such as the exception message.
+	 */
+	public static enum ErrorCode {
+		INET_ADDRESS_NOT_FOUND("Inet Socket Address is null."),
+		CONNECT_FAILED("Connect failed : "),
+		HOST_NOT_RESOLVED("Hostname can't be resolved : "),
+		CONNECT_FAILURE("Connect failure : "),
+		CHANNEL_NOT_CONNECTED("Channel not connected & failed writing."),
+		READ_WRITE_FAILED("Read-Write Failure: "),
+		UNSUPPORTED_HTTP_METHOD("Unsupported HTTP Method"),
+		HTTP_ERROR("HTTP "),
+		BAD_HTTP_URL("Bad HTTP URL"),
+		CONNECTION_TIMEOUT("URL Connection Timeout Out with status: "),
+		REQUEST_TIMEOUT("URL Request Timeout Out. No Response Rcvd."),
+		REQUEST_STOPPED("Not completed, the stop condition of the request was met.");
+
+		private static final Interner<String> DETAILS = Interners.newWeakInterner();
+		private static final String[] HTTP_STATUS_CODES = new String[600];
+
+		static {
+			for (int i = 0; i < HTTP_STATUS_CODES.length; i++) {
+				HTTP_STATUS_CODES[i] = String.valueOf(i);
+			}
+		}
+
+		private final String message;
+
+		private ErrorCode(String message) {
+			this.message = message;
+		}
+
+		/**
+		 * Get the human readable message for the error.
+		 * @param detail the detail of the error, may be {@code null}
+		 * @return the error message
+		 */
+		public String getMessage(String detail) {
+			return detail != null ? message + detail : message;
+		}
+
+		/**
+		 * Get the shared instance of the error detail, so that the many tasks failing for the same reason hold a
+		 * single copy of the detail.
+		 * @param detail the detail of the error
+		 * @return the interned detail or {@code null} if the detail is {@code null}
+		 */
+		public static String internDetail(String detail) {
+			return detail != null ? DETAILS.intern(detail) : null;
+		}
+
+		/**
+		 * Get the shared detail for the HTTP status code.
+		 * @param statusCode the HTTP status code
+		 * @return the status code as a string
+		 */
+		public static String statusCodeDetail(int statusCode) {
+			return statusCode >= 0 && statusCode < HTTP_STATUS_CODES.length ? HTTP_STATUS_CODES[statusCode] : internDetail(String.valueOf(statusCode));
+		}
+	}
 }
@@ -4,28 +4,50 @@
 package com.ebay.lightning.core.controllers;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.ebay.lightning.core.async.Callback;
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.SystemStatus;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.services.TaskExecutionService;
+import com.ebay.lightning.core.store.AuditReportPage;
+import com.ebay.lightning.core.store.EncodedResponse;
 import com.ebay.lightning.core.store.LightningRequestReport;
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.ebay.lightning.core.utils.ExecutorUtil;
 import com.ebay.lightning.core.utils.ZipUtil;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 
 /**
  * REST based controller for the client to communicate with the seed. 
@@ -37,11 +59,23 @@ import com.google.gson.JsonObject;
 public class LightningController {
 
 	private static final Logger log = Logger.getLogger(LightningController.class);
+	private static final int LONG_POLL_THREAD_POOL_SIZE = 4;
+
+	// answers the long polls woken up by a worker, which must not be blocked by the response
+	private final ExecutorUtil longPollExecutor = new ExecutorUtil(LONG_POLL_THREAD_POOL_SIZE);
 
 	public LightningController() {
 		log.info("started");
 	}
 
+	/**
+	 * Shutdown the threads answering the long polls.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		longPollExecutor.shutdownNow();
+	}
+
 	/**
 	 * ECV check URL.
 	 * @return the ECV response
@@ -81,6 +115,71 @@ public class LightningController {
 		}
 	}
 
+	/**
+	 * Submit a request encoded with {@link BinaryCodec}.
+	 * @param request request to submit
+	 * @return the submit response
+	 */
+	@RequestMapping(value = "/submit", method = RequestMethod.POST, consumes = BinaryCodec.CONTENT_TYPE)
+	public String submitBinary(@RequestBody byte[] request) {
+		JsonObject resp = new JsonObject();
+		try {
+			LightningRequest fromReq = BinaryCodec.decodeRequest(ByteBuffer.wrap(request));
+			taskExecutionService.submit(fromReq);
+			resp.addProperty("status", "submitted");
+			log.info("Submitted Request" + fromReq.getSessionId());
+			return resp.toString();
+		} catch (Exception e) {
+			log.error("Error doing submit", e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Append a chunk of tasks to a streaming request. The chunk is a request with the session id of the streaming
+	 * request, only its tasks are used.
+	 * @param sessionId the session id of the streaming request
+	 * @param lastChunk {@code true} if no more tasks will be appended
+	 * @param chunk the zipped request holding the tasks to append
+	 * @return the append response
+	 */
+	@RequestMapping(value = "/submit/{sessionId}/append", method = RequestMethod.POST)
+	public String append(@PathVariable(value = "sessionId") String sessionId,
+			@RequestParam(value = "last", required = false, defaultValue = "false") boolean lastChunk, @RequestBody String chunk) {
+		try {
+			return appendChunk(sessionId, (LightningRequest) ZipUtil.unZip(chunk, LightningRequest.class), lastChunk);
+		} catch (Exception e) {
+			log.error("Error appending to " + sessionId, e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Append a chunk of tasks encoded with {@link BinaryCodec} to a streaming request.
+	 * @param sessionId the session id of the streaming request
+	 * @param lastChunk {@code true} if no more tasks will be appended
+	 * @param chunk the encoded request holding the tasks to append
+	 * @return the append response
+	 */
+	@RequestMapping(value = "/submit/{sessionId}/append", method = RequestMethod.POST, consumes = BinaryCodec.CONTENT_TYPE)
+	public String appendBinary(@PathVariable(value = "sessionId") String sessionId,
+			@RequestParam(value = "last", required = false, defaultValue = "false") boolean lastChunk, @RequestBody byte[] chunk) {
+		try {
+			return appendChunk(sessionId, BinaryCodec.decodeRequest(ByteBuffer.wrap(chunk)), lastChunk);
+		} catch (Exception e) {
+			log.error("Error appending to " + sessionId, e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	private String appendChunk(String sessionId, LightningRequest chunk, boolean lastChunk) {
+		Preconditions.checkArgument(sessionId.equals(chunk.getSessionId()), "Chunk of session %s appended to %s", chunk.getSessionId(), sessionId);
+		taskExecutionService.appendTasks(sessionId, chunk.getTasks(), lastChunk);
+		JsonObject resp = new JsonObject();
+		resp.addProperty("status", "appended");
+		return resp.toString();
+	}
+
 	/**
 	 * Get reservation for the load.
 	 * @param load the load
@@ -100,6 +199,23 @@ public class LightningController {
 		}
 	}
 
+	/**
+	 * Release a reservation that will not be used.
+	 * @param reservationId the id of the reservation receipt
+	 * @return {@code true} if the reservation was pending and is released
+	 */
+	@RequestMapping(value = "/reserve/cancel/{reservationId}", method = RequestMethod.GET, produces = "application/json")
+	public boolean cancelReservation(@PathVariable(value = "reservationId") String reservationId) {
+		try {
+			boolean cancelled = taskExecutionService.cancelReservation(reservationId);
+			log.info("Reservation " + reservationId + (cancelled ? " cancelled" : " not found"));
+			return cancelled;
+		} catch (Exception e) {
+			log.error("Error cancelling reservation", e);
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Poll the current status of the request in JSON format.
 	 * @param sessionId the session id for the request
@@ -120,19 +236,34 @@ public class LightningController {
 	}
 
 	/**
-	 * Poll the current status of the request in compressed format.
+	 * Poll the current status of the request in compressed format, or encoded with {@link BinaryCodec} if the client
+	 * accepts it.
+	 * 
+	 * The full response carries an {@code ETag}, a poll sending the tag of its previous response in
+	 * {@code If-None-Match} is answered with {@code 304 Not Modified} if no task completed since.
 	 * @param sessionId the session id for the request
 	 * @param pollDeltaOnly get full or changes only
+	 * @param accept the media types accepted by the client
+	 * @param acceptEncoding the compression codecs accepted by the client
+	 * @param ifNoneMatch the tag of the response the client holds
 	 * @return the status of request.
 	 */
-	@RequestMapping(value = "/poll/{sessionId}/{pollDeltaOnly}", method = RequestMethod.GET, produces = "application/zip")
-	public byte[] poll(@PathVariable(value = "sessionId") String sessionId, @PathVariable(value = "pollDeltaOnly") boolean pollDeltaOnly) {
+	@RequestMapping(value = "/poll/{sessionId}/{pollDeltaOnly}", method = RequestMethod.GET, produces = {"application/zip", BinaryCodec.CONTENT_TYPE})
+	public ResponseEntity<byte[]> poll(@PathVariable(value = "sessionId") String sessionId, @PathVariable(value = "pollDeltaOnly") boolean pollDeltaOnly,
+			@RequestHeader(value = "Accept", required = false) String accept,
+			@RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+			@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 		LightningResponse pollResults = null;
 		
 		try {
+			if (!pollDeltaOnly) {
+				EncodedResponse encodedResponse = taskExecutionService.pollEncodedResponse(sessionId, acceptsBinary(accept), acceptEncoding);
+				if (encodedResponse != null) {
+					return encodedEntity(encodedResponse, acceptsBinary(accept), acceptEncoding, ifNoneMatch);
+				}
+			}
 			pollResults = taskExecutionService.pollResponse(sessionId, pollDeltaOnly);
-			byte[] zippedBytes = ZipUtil.zipAsByteArray(pollResults);
-			return zippedBytes;
+			return responseEntity(pollResults, acceptsBinary(accept), acceptEncoding);
 		} catch (IOException e) {
 			log.error("Error in poll", e);
 			throw new RuntimeException(e);
@@ -140,18 +271,117 @@ public class LightningController {
 	}
 
 	/**
-	 * Get the detailed report for the request in compressed format.
+	 * Poll the tasks completed after the change log sequence number in JSON format.
+	 * @param sessionId the session id for the request
+	 * @param sequence the sequence number returned by the previous poll
+	 * @return the tasks completed after the sequence number
+	 */
+	@RequestMapping(value = "/poll/json/{sessionId}/since/{sequence}", method = RequestMethod.GET, produces = "application/json")
+	public LightningResponse pollJsonSince(@PathVariable(value = "sessionId") String sessionId,
+			@PathVariable(value = "sequence") int sequence) {
+		try {
+			return taskExecutionService.pollResponse(sessionId, sequence);
+		} catch (Exception e) {
+			log.error("Error in pollJsonSince", e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Poll the tasks completed after the change log sequence number in compressed format, or encoded with
+	 * {@link BinaryCodec} if the client accepts it.
+	 * @param sessionId the session id for the request
+	 * @param sequence the sequence number returned by the previous poll
+	 * @param accept the media types accepted by the client
+	 * @param acceptEncoding the compression codecs accepted by the client
+	 * @return the tasks completed after the sequence number
+	 */
+	@RequestMapping(value = "/poll/{sessionId}/since/{sequence}", method = RequestMethod.GET, produces = {"application/zip", BinaryCodec.CONTENT_TYPE})
+	public ResponseEntity<byte[]> pollSince(@PathVariable(value = "sessionId") String sessionId, @PathVariable(value = "sequence") int sequence,
+			@RequestHeader(value = "Accept", required = false) String accept,
+			@RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+		try {
+			LightningResponse pollResults = taskExecutionService.pollResponse(sessionId, sequence);
+			return responseEntity(pollResults, acceptsBinary(accept), acceptEncoding);
+		} catch (IOException e) {
+			log.error("Error in pollSince", e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Poll the tasks completed after the change log sequence numbers of several requests in one call, in
+	 * compressed format.
+	 * 
+	 * The payload is a JSON object of the sequence number of the previous poll by session id, the response is the
+	 * {@link LightningResponse} by session id. The unknown session ids are left out of the response.
+	 * @param payload the sequence numbers by session id
+	 * @param acceptEncoding the compression codecs accepted by the client
+	 * @return the tasks completed after the sequence numbers by session id
+	 */
+	@RequestMapping(value = "/poll/batch", method = RequestMethod.POST, produces = "application/zip")
+	public ResponseEntity<byte[]> pollBatch(@RequestBody String payload,
+			@RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+		try {
+			Map<String, Integer> fromSequences = new Gson().fromJson(payload, new TypeToken<Map<String, Integer>>() {
+			}.getType());
+			Preconditions.checkArgument(fromSequences != null, "No session ids to poll");
+			Map<String, LightningResponse> responses = new HashMap<>(taskExecutionService.pollResponses(fromSequences));
+			return zippedEntity(responses, acceptEncoding);
+		} catch (IOException e) {
+			log.error("Error in pollBatch", e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Long poll the tasks completed after the change log sequence number in compressed format, or encoded with
+	 * {@link BinaryCodec} if the client accepts it.
+	 *
+	 * <p>The poll is answered as soon as a task completes after the sequence number or the request completes. Until
+	 * then it is held without a servlet thread, at most for the wait requested by the client capped by
+	 * {@link SystemConfig#getMaxLongPollWaitInMillis()}, and answered with no tasks when the wait elapses.</p>
 	 * @param sessionId the session id for the request
+	 * @param sequence the sequence number returned by the previous poll
+	 * @param maxWaitInMillis the maximum time to hold the poll
+	 * @param accept the media types accepted by the client
+	 * @param acceptEncoding the compression codecs accepted by the client
+	 * @return the tasks completed after the sequence number
+	 */
+	@RequestMapping(value = "/poll/{sessionId}/since/{sequence}/wait", method = RequestMethod.GET, produces = {"application/zip", BinaryCodec.CONTENT_TYPE})
+	public DeferredResult<ResponseEntity<byte[]>> longPollSince(@PathVariable(value = "sessionId") String sessionId,
+			@PathVariable(value = "sequence") int sequence, @RequestParam(value = "maxWaitInMillis", required = false) Long maxWaitInMillis,
+			@RequestHeader(value = "Accept", required = false) String accept,
+			@RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
+		long maxWait = taskExecutionService.getSystemConfig().getMaxLongPollWaitInMillis();
+		if (maxWaitInMillis != null) {
+			maxWait = Math.min(maxWait, maxWaitInMillis);
+		}
+		LongPoll longPoll = new LongPoll(sessionId, sequence, acceptsBinary(accept), acceptEncoding, maxWait);
+		longPoll.start();
+		return longPoll.result;
+	}
+
+	/**
+	 * Get the detailed report for the request in compressed format, or encoded with {@link BinaryCodec} if the client
+	 * accepts it and the report can be encoded, see {@link BinaryCodec#canEncode(LightningRequestReport)}.
+	 * @param sessionId the session id for the request
+	 * @param accept the media types accepted by the client
+	 * @param acceptEncoding the compression codecs accepted by the client
 	 * @return the detailed report for the request
 	 */
-	@RequestMapping(value = "/audit/{sessionId}", method = RequestMethod.GET, produces = "application/zip")
-	public byte[] audit(@PathVariable(value = "sessionId") String sessionId) {
+	@RequestMapping(value = "/audit/{sessionId}", method = RequestMethod.GET, produces = {"application/zip", BinaryCodec.CONTENT_TYPE})
+	public ResponseEntity<byte[]> audit(@PathVariable(value = "sessionId") String sessionId,
+			@RequestHeader(value = "Accept", required = false) String accept,
+			@RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
 		LightningRequestReport report = null;
 		
 		try {
 			report = taskExecutionService.getReport(sessionId);
-			byte[] zippedBytes = ZipUtil.zipAsByteArray(report);
-			return zippedBytes;
+			if (report != null && acceptsBinary(accept) && BinaryCodec.canEncode(report)) {
+				return binaryEntity(BinaryCodec.encode(report));
+			}
+			return zippedEntity(report, acceptEncoding);
 		} catch (IOException e) {
 			log.error("Error in Audit", e);
 			throw new RuntimeException(e);
@@ -177,35 +407,107 @@ public class LightningController {
 	
 	/**
 	 * Get the list of detailed reports in store.
+	 * 
+	 * <p>When any of {@code from}, {@code to}, {@code offset} or {@code limit} is passed, the reports of the requests
+	 * completed in the time range are returned oldest first, one page at a time.</p>
 	 * @param sessionId the session id
+	 * @param fromTime the start of the time range in epoch millis
+	 * @param toTime the end of the time range in epoch millis
+	 * @param offset the number of reports to skip
+	 * @param limit the maximum number of reports to return
+	 * @param acceptEncoding the compression codecs accepted by the client
 	 * @return the list of detailed reports
 	 */
 	@RequestMapping(value = "/auditSummary", method = RequestMethod.GET, produces = "application/zip")
-	public byte[] auditSummary(@RequestParam(value = "sessionId", required = false, defaultValue = "") String sessionId) {
+	public ResponseEntity<byte[]> auditSummary(@RequestParam(value = "sessionId", required = false, defaultValue = "") String sessionId,
+			@RequestParam(value = "from", required = false) Long fromTime, @RequestParam(value = "to", required = false) Long toTime,
+			@RequestParam(value = "offset", required = false) Integer offset, @RequestParam(value = "limit", required = false) Integer limit,
+			@RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
 		List<LightningRequestReport> reports = null;
 
 		try {
-			reports = taskExecutionService.getAuditReports(sessionId);
-			byte[] zippedBytes = ZipUtil.zipAsByteArray(reports);
-			return zippedBytes;
+			if (sessionId.isEmpty() && (fromTime != null || toTime != null || offset != null || limit != null)) {
+				reports = taskExecutionService.getAuditReports(fromTime != null ? fromTime : 0L, toTime != null ? toTime : Long.MAX_VALUE,
+						offset != null ? offset : 0, limit != null ? limit : 0);
+			} else {
+				reports = taskExecutionService.getAuditReports(sessionId);
+			}
+			return zippedEntity(reports, acceptEncoding);
 		} catch (IOException e) {
 			log.error("Error in Audit", e);
 			throw new RuntimeException(e);
 		}
 	}
 	
+	/**
+	 * Get a page of the detailed reports of the requests completed in the time range, oldest first.
+	 * @param fromTime the start of the time range in epoch millis
+	 * @param toTime the end of the time range in epoch millis
+	 * @param cursor the cursor returned with the previous page, absent for the first page
+	 * @param limit the maximum number of reports to return
+	 * @return the page of detailed reports with the cursor of the next page
+	 */
+	@RequestMapping(value = "/auditSummary/page", method = RequestMethod.GET, produces = "application/zip")
+	public byte[] auditSummaryPage(@RequestParam(value = "from", required = false, defaultValue = "0") long fromTime,
+			@RequestParam(value = "to", required = false, defaultValue = "" + Long.MAX_VALUE) long toTime,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "limit", required = false, defaultValue = "0") int limit) {
+		try {
+			AuditReportPage page = taskExecutionService.getAuditReportPage(fromTime, toTime, cursor, limit);
+			return ZipUtil.zipAsByteArray(page);
+		} catch (Exception e) {
+			log.error("Error in auditSummaryPage", e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Stream the detailed reports of the requests completed in the time range, oldest first.
+	 * 
+	 * <p>The reports are written one page at a time to a compressed object stream terminated by {@code null}, see
+	 * {@link ZipUtil#unZipStream(java.io.InputStream, Class, com.ebay.lightning.core.async.Callback)}, so only one
+	 * page of reports is held in memory.</p>
+	 * @param fromTime the start of the time range in epoch millis
+	 * @param toTime the end of the time range in epoch millis
+	 * @param response the response to stream the reports to
+	 */
+	@RequestMapping(value = "/auditSummary/stream", method = RequestMethod.GET, produces = "application/zip")
+	public void auditSummaryStream(@RequestParam(value = "from", required = false, defaultValue = "0") long fromTime,
+			@RequestParam(value = "to", required = false, defaultValue = "" + Long.MAX_VALUE) long toTime, HttpServletResponse response) {
+		try {
+			response.setContentType("application/zip");
+			ObjectOutputStream objectOut = ZipUtil.openZippedObjectStream(response.getOutputStream());
+			String cursor = null;
+			do {
+				AuditReportPage page = taskExecutionService.getAuditReportPage(fromTime, toTime, cursor, 0);
+				for (LightningRequestReport report : page.getReports()) {
+					objectOut.writeObject(report);
+					// forget the written objects, the stream would otherwise hold every report until closed
+					objectOut.reset();
+				}
+				objectOut.flush();
+				cursor = page.getNextCursor();
+			} while (cursor != null);
+			objectOut.writeObject(null);
+			objectOut.close();
+		} catch (Exception e) {
+			log.error("Error in auditSummaryStream", e);
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * Get the system metrics including CPU, physical and JVM memory.
+	 * @param acceptEncoding the compression codecs accepted by the client
 	 * @return the lightning stats
 	 */
 	@RequestMapping(value = "/lightningStats", method = RequestMethod.GET, produces = "application/zip")
-	public byte[] getLightningStats() {
+	public ResponseEntity<byte[]> getLightningStats(@RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding) {
 		SystemStatus report = null;
 
 		try {
 			report = taskExecutionService.getLightningStats();
-			byte[] zippedBytes = ZipUtil.zipAsByteArray(report);
-			return zippedBytes;
+			return zippedEntity(report, acceptEncoding);
 		} catch (IOException e) {
 			log.error("Error in Audit", e);
 			throw new RuntimeException(e);
@@ -245,4 +547,142 @@ public class LightningController {
 			throw new RuntimeException(e);
 		}
 	}
-}
\ No newline at end of file
+
+	private static boolean acceptsBinary(String accept) {
+		return accept != null && accept.contains(BinaryCodec.CONTENT_TYPE);
+	}
+
+	private ResponseEntity<byte[]> responseEntity(LightningResponse response, boolean binary, String acceptEncoding) throws IOException {
+		if (binary) {
+			// the binary format has no null response, unlike the compressed one
+			return response != null ? binaryEntity(BinaryCodec.encode(response)) : new ResponseEntity<byte[]>(HttpStatus.NOT_FOUND);
+		}
+		return zippedEntity(response, acceptEncoding);
+	}
+
+	/**
+	 * Compress the object with the codec negotiated with the client, gzip if the client does not send
+	 * {@code Accept-Encoding}.
+	 */
+	private ResponseEntity<byte[]> zippedEntity(Object obj, String acceptEncoding) throws IOException {
+		if (acceptEncoding == null) {
+			return new ResponseEntity<byte[]>(ZipUtil.zipAsByteArray(obj), HttpStatus.OK);
+		}
+		byte[] serialized = ZipUtil.serialize(obj);
+		Codec codec = Codec.negotiate(acceptEncoding, serialized.length, taskExecutionService.getSystemConfig().getMinCompressedSizeInBytes());
+		HttpHeaders headers = new HttpHeaders();
+		setContentEncoding(headers, codec);
+		return new ResponseEntity<byte[]>(ZipUtil.compress(serialized, codec), headers, HttpStatus.OK);
+	}
+
+	private static void setContentEncoding(HttpHeaders headers, Codec codec) {
+		headers.set("Vary", "Accept-Encoding");
+		if (codec != Codec.IDENTITY) {
+			headers.set("Content-Encoding", codec.getEncoding());
+		}
+	}
+
+	private static ResponseEntity<byte[]> encodedEntity(EncodedResponse response, boolean binary, String acceptEncoding, String ifNoneMatch) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(response.getTag());
+		if (acceptEncoding != null && response.getCodec() != null) {
+			setContentEncoding(headers, response.getCodec());
+		}
+		if (response.getTag().equals(ifNoneMatch)) {
+			return new ResponseEntity<byte[]>(headers, HttpStatus.NOT_MODIFIED);
+		}
+		if (binary) {
+			headers.setContentType(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE));
+		}
+		return new ResponseEntity<byte[]>(response.getBytes(), headers, HttpStatus.OK);
+	}
+
+	private static ResponseEntity<byte[]> binaryEntity(ByteBuffer buffer) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE));
+		return new ResponseEntity<byte[]>(BinaryCodec.toByteArray(buffer), headers, HttpStatus.OK);
+	}
+
+	/**
+	 * A long poll waiting for the worker to complete a task of the request. The worker notifications that arrive
+	 * while a response is pending are coalesced into it.
+	 */
+	private class LongPoll implements Callback<LightningRequestReport>, Callable<Void>, Runnable {
+
+		private final String sessionId;
+		private final int sequence;
+		private final boolean binary;
+		private final String acceptEncoding;
+		private final DeferredResult<ResponseEntity<byte[]>> result;
+		private final AtomicBoolean respondPending = new AtomicBoolean();
+		private LightningRequestReport report;
+
+		private LongPoll(String sessionId, int sequence, boolean binary, String acceptEncoding, long maxWaitInMillis) {
+			this.sessionId = sessionId;
+			this.sequence = sequence;
+			this.binary = binary;
+			this.acceptEncoding = acceptEncoding;
+			this.result = new DeferredResult<>(maxWaitInMillis);
+			this.result.onTimeout(this);
+		}
+
+		private void start() {
+			report = taskExecutionService.getReport(sessionId);
+			if (report == null) {
+				respond(true);
+			} else if (!respond(false)) {
+				report.addProgressListener(this);
+				// a task may have completed before the listener was added
+				respond(false);
+			}
+		}
+
+		private boolean respond(boolean timedOut) {
+			if (result.isSetOrExpired() && !timedOut) {
+				return true;
+			}
+			try {
+				LightningResponse response = taskExecutionService.pollResponse(sessionId, sequence);
+				if (!timedOut && response != null && !response.isCompleted() && response.getSequence() <= sequence) {
+					return false;
+				}
+				result.setResult(responseEntity(response, binary, acceptEncoding));
+			} catch (Exception e) {
+				log.error("Error in longPollSince", e);
+				result.setErrorResult(new RuntimeException(e));
+			}
+			if (report != null) {
+				report.removeProgressListener(this);
+			}
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link Callback#notify(Object)}
+		 */
+		@Override
+		public void notify(LightningRequestReport data) {
+			if (!result.isSetOrExpired() && respondPending.compareAndSet(false, true)) {
+				longPollExecutor.submit(this);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link Callable#call()}
+		 */
+		@Override
+		public Void call() {
+			respondPending.set(false);
+			respond(false);
+			return null;
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link Runnable#run()}
+		 */
+		@Override
+		public void run() {
+			respond(true);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package com.ebay.lightning.core.controllers;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import com.ebay.lightning.core.async.Callback;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.services.TaskExecutionService;
+import com.ebay.lightning.core.store.LightningRequestReport;
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.ebay.lightning.core.utils.ExecutorUtil;
+import com.google.gson.JsonObject;
+
+/**
+ * The {@code ResultPushHandler} class pushes the results of the requests to the clients over a WebSocket connection,
+ * so that the clients need not poll {@link LightningController}.
+ *
+ * <p>The client subscribes to a request by sending its session id as a text message, a connection can subscribe to
+ * many requests. The handler pushes the tasks completed since the previous push as a {@link LightningResponse}
+ * encoded with {@link BinaryCodec}, one message as soon as the subscription is made and one after every batch the
+ * worker completes. The subscription ends with the push of the completed response.</p>
+ *
+ * <p>A subscription to an unknown request, or one that fails while pushing, ends with a text message
+ * {@code {"sessionId":"...","status":"failed","msg":"..."}}. The connection stays open for the other subscriptions,
+ * the client falls back to polling the request.</p>
+ *
+ * @author shashukla
+ * @see LightningRequestReport#addProgressListener(Callback)
+ */
+@Component
+public class ResultPushHandler extends AbstractWebSocketHandler {
+
+	private static final Logger log = Logger.getLogger(ResultPushHandler.class);
+	private static final int PUSH_THREAD_POOL_SIZE = 4;
+
+	@Autowired
+	private TaskExecutionService taskExecutionService;
+
+	private final ExecutorUtil executor = new ExecutorUtil(PUSH_THREAD_POOL_SIZE);
+	private final Map<String, Queue<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+	public ResultPushHandler() {
+
+	}
+
+	public ResultPushHandler(TaskExecutionService taskExecutionService) {
+		this.taskExecutionService = taskExecutionService;
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link AbstractWebSocketHandler#afterConnectionEstablished(WebSocketSession)}
+	 */
+	@Override
+	public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+		subscriptions.put(session.getId(), new ConcurrentLinkedQueue<Subscription>());
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link AbstractWebSocketHandler#handleTextMessage(WebSocketSession, TextMessage)}
+	 */
+	@Override
+	protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+		String sessionId = message.getPayload().trim();
+		LightningRequestReport report = taskExecutionService.getReport(sessionId);
+		if (report == null) {
+			sendError(session, sessionId, "Unknown session id " + sessionId);
+			return;
+		}
+		Subscription subscription = new Subscription(session, report);
+		Queue<Subscription> connectionSubscriptions = subscriptions.get(session.getId());
+		if (connectionSubscriptions != null) {
+			connectionSubscriptions.add(subscription);
+		}
+		report.addProgressListener(subscription);
+		// the request may have completed before the listener was added
+		subscription.notify(report);
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link AbstractWebSocketHandler#afterConnectionClosed(WebSocketSession, CloseStatus)}
+	 */
+	@Override
+	public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+		Queue<Subscription> connectionSubscriptions = subscriptions.remove(session.getId());
+		if (connectionSubscriptions != null) {
+			for (Subscription subscription : connectionSubscriptions) {
+				subscription.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Tell the client that the subscription to the request ended without the completed response.
+	 */
+	private void sendError(WebSocketSession session, String sessionId, String msg) {
+		JsonObject error = new JsonObject();
+		error.addProperty("sessionId", sessionId);
+		error.addProperty("status", "failed");
+		error.addProperty("msg", msg);
+		try {
+			synchronized (session) {
+				session.sendMessage(new TextMessage(error.toString()));
+			}
+		} catch (IOException e) {
+			log.warn("Error sending the subscription error of " + sessionId + " to " + session.getId(), e);
+		}
+	}
+
+	/**
+	 * Get the number of requests subscribed by a connection.
+	 * @param session the WebSocket connection
+	 * @return the number of active subscriptions of the connection
+	 */
+	public int getSubscriptionCount(WebSocketSession session) {
+		Queue<Subscription> connectionSubscriptions = subscriptions.get(session.getId());
+		return connectionSubscriptions != null ? connectionSubscriptions.size() : 0;
+	}
+
+	/**
+	 * Shutdown the threads pushing the results.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * The subscription of a connection to a request. The worker notifications that arrive while a push is pending
+	 * are coalesced into that push, so a slow client does not queue up messages.
+	 */
+	private class Subscription implements Callback<LightningRequestReport>, Callable<Void> {
+
+		private final WebSocketSession session;
+		private final LightningRequestReport report;
+		private final String sessionId;
+		private final AtomicBoolean pushPending = new AtomicBoolean();
+		private volatile boolean cancelled;
+		private int sequence;
+
+		private Subscription(WebSocketSession session, LightningRequestReport report) {
+			this.session = session;
+			this.report = report;
+			this.sessionId = report.getRequest().getSessionId();
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link Callback#notify(Object)}
+		 */
+		@Override
+		public void notify(LightningRequestReport data) {
+			if (!cancelled && pushPending.compareAndSet(false, true)) {
+				executor.submit(this);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see {@link Callable#call()}
+		 */
+		@Override
+		public synchronized Void call() {
+			pushPending.set(false);
+			if (cancelled) {
+				return null;
+			}
+			try {
+				LightningResponse response = taskExecutionService.pollResponse(sessionId, sequence);
+				if (response == null) {
+					cancel();
+					return null;
+				}
+				sequence = response.getSequence();
+				synchronized (session) {
+					session.sendMessage(new BinaryMessage(BinaryCodec.encode(response)));
+				}
+				if (response.isCompleted()) {
+					cancel();
+				}
+			} catch (IOException e) {
+				log.warn("Error pushing results of " + sessionId + " to " + session.getId(), e);
+				cancel();
+			} catch (RuntimeException e) {
+				log.error("Error preparing results of " + sessionId + " for " + session.getId(), e);
+				cancel();
+				sendError(session, sessionId, e.getMessage());
+			}
+			return null;
+		}
+
+		private void cancel() {
+			cancelled = true;
+			report.removeProgressListener(this);
+			Queue<Subscription> connectionSubscriptions = subscriptions.get(session.getId());
+			if (connectionSubscriptions != null) {
+				connectionSubscriptions.remove(this);
+			}
+		}
+	}
+}
@@ -3,16 +3,22 @@
  */
 package com.ebay.lightning.core.manager;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,21 +26,29 @@ import org.springframework.stereotype.Component;
 
 import com.ebay.lightning.core.async.Callback;
 import com.ebay.lightning.core.async.Reminder;
+import com.ebay.lightning.core.beans.ChainedURLTask;
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.SystemStatus;
+import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.config.RequestConfig;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
 import com.ebay.lightning.core.exception.ManagerQueueFullException;
 import com.ebay.lightning.core.exception.WorkQueueCapacityReachedException;
+import com.ebay.lightning.core.store.AuditReportPage;
+import com.ebay.lightning.core.store.EncodedResponse;
 import com.ebay.lightning.core.store.ExecutionDataStore;
 import com.ebay.lightning.core.store.LightningRequestReport;
+import com.ebay.lightning.core.store.RequestJournal;
+import com.ebay.lightning.core.utils.ChainedCheckTaskExecutionUtil;
 import com.ebay.lightning.core.utils.InetSocketAddressCache;
 import com.ebay.lightning.core.utils.LightningCoreUtil;
+import com.ebay.lightning.core.utils.ResourceMonitor;
 import com.ebay.lightning.core.workers.SocketBasedHTTPWorker;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * The {@code TaskExecutionManager} provides the actual implementation of request processing, reporting and storage.
@@ -61,18 +75,25 @@ public class TaskExecutionManager {
 	@SuppressWarnings("unused")
 	private Reminder reservationCleanupReminder = null;
 	private Thread queueReader;
+	private final ExecutorService streamingExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+			.setNameFormat("StreamingRequestThread-%d").setDaemon(true).build());
+	private final Set<LightningRequest> streamingRequests = Collections.newSetFromMap(new ConcurrentHashMap<LightningRequest, Boolean>());
 	private final InetSocketAddressCache inetcache;
+	private ResourceMonitor resourceMonitor;
+	private volatile RequestJournal requestJournal;
 	
 	@Autowired
 	public TaskExecutionManager(SystemConfig systemConfig, ExecutionDataStore dataStore, InetSocketAddressCache inetCache) {
 		this.systemConfig = !systemConfig.isLoadFromFile() ? systemConfig : systemConfig.loadFromFile();
 		this.dataStore = dataStore;
 		this.inetcache = inetCache;
+		this.resourceMonitor = new ResourceMonitor(this.systemConfig);
 		workQueue = new LinkedBlockingQueue<LightningRequest>(systemConfig.getMaxTaskCapacity());
 	}
 
 	/**
 	 * Initialized the {@code TaskExecutionManager} with reservation cleanup {@link Reminder} and request processing thread.
+	 * When the request journal is enabled, the requests interrupted by the previous shutdown are recovered first.
 	 */
 	@PostConstruct
 	public void start() {
@@ -83,6 +104,9 @@ public class TaskExecutionManager {
 				started = true;
 			}
 		}
+		if (systemConfig.getJournalPolicy() != null && systemConfig.getJournalPolicy().isEnabled()) {
+			recoverFromJournal();
+		}
 		reservationCleanupReminder = new Reminder("ReservationCleanupReminder", new Callback<String>() {
 			@Override
 			public void notify(String arg) {
@@ -109,37 +133,144 @@ public class TaskExecutionManager {
 
 			private void processEntireWorkQueue() {
 				while (!workQueue.isEmpty()) {
-					LightningRequest request = null;
+					//Just peak, it will be polled once it is no longer running
+					final LightningRequest request = workQueue.peek();
+					if (request.isStreaming()) {
+						// a streaming request idles between its chunks, it must not hold up the requests queued after it
+						streamingRequests.add(request);
+						workQueue.poll();
+						streamingExecutor.execute(new Runnable() {
+							@Override
+							public void run() {
+								try {
+									process(request);
+								} finally {
+									streamingRequests.remove(request);
+								}
+							}
+						});
+						continue;
+					}
 					try {
-						//Just peak, it will be polled only after successful completion
-						request = workQueue.peek();
-						LightningRequestReport report = dataStore.getReport(request.getSessionId());
-						report.setWorkDequeueTime(System.currentTimeMillis());
-						long startTime = System.currentTimeMillis();
-						report.setProcessStartTime(startTime);
-						loadDefaultsInRequestConfig(request);
-						SocketBasedHTTPWorker worker = new SocketBasedHTTPWorker(inetcache, dataStore, systemConfig, request.getRequestconfig());
-						worker.execute(request.getSessionId());
-						report.setTotalExecutionTimeInMillis(System.currentTimeMillis() - startTime);
-						log.info("\n\n" + report);
-
-						//all batches are executed, now remove the request from Q
+						process(request);
+					} finally {
 						workQueue.poll();
-					} catch (Exception e) {
-						log.fatal("Error processing " + request, e);
 					}
 				}
 			}
+		}, TASK_EXECUTION_MANAGER_THREAD);
+
+		queueReader.start();
+	}
+
+	/**
+	 * Execute the request and complete it even if its worker failed.
+	 * @param request the request to execute
+	 */
+	private void process(LightningRequest request) {
+		LightningRequestReport report = dataStore.getReport(request.getSessionId());
+		if (requestJournal != null) {
+			// the worker changes the tasks, the request is executed once the journal holds it
+			requestJournal.awaitRecorded(request.getSessionId());
+		}
+		long startTime = System.currentTimeMillis();
+		try {
+			report.setWorkDequeueTime(startTime);
+			report.setProcessStartTime(startTime);
+			loadDefaultsInRequestConfig(request);
+			SocketBasedHTTPWorker worker = new SocketBasedHTTPWorker(inetcache, dataStore, systemConfig, request.getRequestconfig());
+			worker.setResourceMonitor(resourceMonitor);
+			worker.execute(request.getSessionId());
+			log.info("\n\n" + report);
+		} catch (Exception e) {
+			log.fatal("Error processing " + request, e);
+		} finally {
+			complete(request, report, startTime);
+		}
+	}
 
-			private void loadDefaultsInRequestConfig(LightningRequest request) {
-				RequestConfig requestConfig = request.getRequestconfig() != null ? request.getRequestconfig() : new RequestConfig();
-				requestConfig.loadDefaultValues(systemConfig);
-				request.setRequestconfig(requestConfig);
+	/**
+	 * Complete the request, so that its report gets a final status and is evictable.
+	 */
+	private void complete(LightningRequest request, LightningRequestReport report, long startTime) {
+		try {
+			if (report != null) {
+				if (report.getStatus() != WorkStatus.DONE && report.getStatus() != WorkStatus.STOPPED) {
+					report.setStatus(WorkStatus.STOPPED);
+					report.notifyProgress();
+				}
+				report.setTotalExecutionTimeInMillis(System.currentTimeMillis() - startTime);
+				dataStore.markCompleted(request.getSessionId());
 			}
+			if (requestJournal != null) {
+				requestJournal.recordCompleted(request.getSessionId());
+			}
+		} catch (Exception e) {
+			log.fatal("Error completing " + request, e);
+		}
+	}
 
-		}, TASK_EXECUTION_MANAGER_THREAD);
+	private void loadDefaultsInRequestConfig(LightningRequest request) {
+		RequestConfig requestConfig = request.getRequestconfig() != null ? request.getRequestconfig() : new RequestConfig();
+		requestConfig.loadDefaultValues(systemConfig);
+		request.setRequestconfig(requestConfig);
+	}
 
-		queueReader.start();
+	/**
+	 * Stop the streaming requests and flush and close the request journal.
+	 */
+	@PreDestroy
+	public void stop() {
+		streamingExecutor.shutdownNow();
+		if (requestJournal != null) {
+			requestJournal.close();
+		}
+	}
+
+	/**
+	 * Replay the request journal and either queue the interrupted requests again or mark them
+	 * {@link WorkStatus#STOPPED} so that clients polling them get a final response.
+	 */
+	private void recoverFromJournal() {
+		boolean resume = systemConfig.getJournalPolicy().isResumeInterruptedRequests();
+		try {
+			RequestJournal journal = new RequestJournal(systemConfig.getJournalPolicy());
+			List<LightningRequest> interruptedRequests = journal.open();
+			for (LightningRequest request : interruptedRequests) {
+				resetTaskStatus(request);
+				LightningRequestReport report = dataStore.register(request);
+				report.setWorkEnqueueTime(System.currentTimeMillis());
+				if (resume && workQueue.offer(request)) {
+					report.setStatus(WorkStatus.IN_QUEUE);
+					journal.recordAccepted(request, report);
+				} else {
+					report.setStatus(WorkStatus.STOPPED);
+					dataStore.markCompleted(request.getSessionId());
+				}
+				log.info("Recovered interrupted request " + request.getSessionId() + " as " + report.getStatus());
+			}
+			journal.start();
+			requestJournal = journal;
+		} catch (IOException e) {
+			log.error("Unable to open request journal, accepted requests will not survive a restart", e);
+		}
+	}
+
+	/**
+	 * Clear the partial execution state recorded before the request got interrupted.
+	 */
+	private void resetTaskStatus(LightningRequest request) {
+		if (request.getTasks() != null) {
+			for (Task task : request.getTasks()) {
+				// chained tasks delegate their state to the current sub task, which is reset when the chain restarts
+				if (task instanceof ChainedURLTask) {
+					continue;
+				}
+				task.setStatus(null);
+				task.setErrorMsg(null);
+				task.setLastTaskStatusUpdateTime(null);
+			}
+		}
 	}
 
 	/* (non-Javadoc)
@@ -151,13 +282,22 @@ public class TaskExecutionManager {
 		int busyWithLoad = getSubmittedLoad() + getReservedLoad();
 		int leftoverCapacity = systemConfig.getMaxTaskCapacity() - busyWithLoad;
 
-		if (leftoverCapacity >= load) {
-			if (busyWithLoad > 0) {
+		// A worker keeps at most one batch of connections open, so that is what the OS has to accommodate.
+		// With less headroom than that the batches are shrunk (BUSY), below the minimum batch size connects would fail (DENIED).
+		int requiredConnections = Math.min(load, systemConfig.getWorkerBatchSize());
+		int minimumConnections = Math.min(requiredConnections, systemConfig.getAdmissionPolicy().getMinWorkerBatchSize());
+		int connectionHeadroom = resourceMonitor.getConnectionHeadroom();
+
+		if (leftoverCapacity >= load && connectionHeadroom >= minimumConnections) {
+			if (busyWithLoad > 0 || connectionHeadroom < requiredConnections) {
 				reserveResponse = new ReservationReceipt(ReservationReceipt.State.BUSY, UUID.randomUUID().toString(), load);
 			} else {
 				reserveResponse = new ReservationReceipt(ReservationReceipt.State.ACCEPTED, UUID.randomUUID().toString(), load);
 			}
 		} else {
+			if (leftoverCapacity >= load) {
+				log.warn("Denying reservation of " + load + " tasks, connection headroom is only " + connectionHeadroom);
+			}
 			reserveResponse = new ReservationReceipt(ReservationReceipt.State.DENIED, UUID.randomUUID().toString(), load);
 		}
 
@@ -167,19 +307,47 @@ public class TaskExecutionManager {
 		return reserveResponse;
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#cancelReservation(String)}
+	 */
+	public boolean cancelReservation(String reservationId) {
+		boolean cancelled = false;
+		for (ReservationReceipt reservation : reservationResponseLog.keySet()) {
+			if (reservation.getId().equals(reservationId)) {
+				cancelled |= reservationResponseLog.remove(reservation) != null;
+			}
+		}
+		return cancelled;
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link TaskExecutionService#submit(LightningRequest)}
 	 */
 	public void submit(LightningRequest request) {
 		Preconditions.checkState((request != null), "Request Cannot be null");
 		Preconditions.checkState((request.getReservationReciept() != null), "Reservation Reciept Cannot be null");
-		Preconditions.checkState(reservationResponseLog.containsKey(request.getReservationReciept()),
+		ReservationReceipt reservation = getReservation(request.getReservationReciept());
+		Preconditions.checkState(reservation != null,
 				"Unknown Reservation Reciept. Reservation is either expired or never created. %s", request.getReservationReciept());
+		// the load appended to a streaming request is capped by the reservation made here, not the one sent back
+		request.setReservationReciept(reservation);
 		Preconditions.checkState(!ReservationReceipt.State.DENIED.equals(request.getReservationReciept().getState()),
 				"Request submission is attemped on a Denied Reservation.");
+		if (request.getRequestconfig() != null && request.getRequestconfig().hasStopCondition() && request.getTasks() != null) {
+			Preconditions.checkArgument(!ChainedCheckTaskExecutionUtil.areChainedCheckTasks(request.getTasks()),
+					"Stop conditions are not supported for chained check tasks");
+		}
+		if (request.isStreaming()) {
+			Preconditions.checkArgument(request.getUrlTemplate() == null, "Tasks expanded from URL template cannot be streamed");
+			checkStreamable(request.getTasks());
+		}
 		try {
 			if (request.getTasks() != null) {
 				LightningRequestReport report = dataStore.register(request);
+				// serialized by the journal writer, the worker waits for the record before it changes the tasks
+				if (requestJournal != null) {
+					requestJournal.recordAccepted(request, report);
+				}
 				workQueue.add(request);
 				reservationResponseLog.remove(request.getReservationReciept());
 				report.setWorkEnqueueTime(System.currentTimeMillis());
@@ -192,6 +360,44 @@ public class TaskExecutionManager {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#appendTasks(String, List, boolean)}
+	 */
+	public void appendTasks(String sessionId, List<Task> tasks, boolean lastChunk) {
+		Preconditions.checkNotNull(tasks, "Tasks cannot be null");
+		LightningRequestReport report = dataStore.getReport(sessionId);
+		Preconditions.checkState(report != null && report.getRequest() != null, "Unknown session %s", sessionId);
+		checkStreamable(tasks);
+		report.appendTasks(tasks, lastChunk);
+		if (requestJournal != null) {
+			requestJournal.recordAppended(sessionId, tasks, lastChunk);
+		}
+	}
+
+	/**
+	 * Find the reservation made by {@link #reserve(int)} for the receipt sent by the client.
+	 * @return the reservation or {@code null} if it expired or was never made
+	 */
+	private ReservationReceipt getReservation(ReservationReceipt receipt) {
+		for (ReservationReceipt reservation : reservationResponseLog.keySet()) {
+			if (reservation.equals(receipt)) {
+				return reservation;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Chained tasks are executed in steps over the complete task list, so they cannot be appended.
+	 */
+	private void checkStreamable(List<Task> tasks) {
+		if (tasks != null) {
+			for (Task task : tasks) {
+				Preconditions.checkArgument(!(task instanceof ChainedURLTask), "Chained tasks cannot be streamed");
+			}
+		}
+	}
+
 	/**
 	 * Sleep for the specified amount of time.
 	 */
@@ -210,12 +416,22 @@ public class TaskExecutionManager {
 	private int getSubmittedLoad() {
 		int load = 0;
 		for (LightningRequest e : workQueue) {
-			load += e.getRequestSize();
+			load += getLoad(e);
+		}
+		for (LightningRequest e : streamingRequests) {
+			load += getLoad(e);
 		}
 	
 		return load;
 	}
 
+	/**
+	 * The tasks of a streaming request are appended later, so its load is the load it reserved.
+	 */
+	private static int getLoad(LightningRequest request) {
+		return request.isStreaming() ? Math.max(request.getRequestSize(), request.getReservationReciept().getLoad()) : request.getRequestSize();
+	}
+
 	/**
 	 * Get the total load of reservation made.
 	 * @return the total load of reservation made
@@ -238,12 +454,27 @@ public class TaskExecutionManager {
 		return dataStore.pollResults(sessionId, pollDeltaOnly);
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#pollResponse(String, int)}
+	 */
+	public LightningResponse pollResults(String sessionId, int fromSequence) {
+		return dataStore.pollResults(sessionId, fromSequence);
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#pollEncodedResponse(String, boolean, String)}
+	 */
+	public EncodedResponse pollEncodedResults(String sessionId, boolean binary, String acceptEncoding) throws IOException {
+		return dataStore.pollEncodedResults(sessionId, binary, acceptEncoding);
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link TaskExecutionService#getReport(String)}
 	 */
 	public LightningRequestReport getReport(String sessionId) {
 		LightningRequestReport report = dataStore.getReport(sessionId);
-		return report;
+		// the tasks of a completed request are compacted into columns, the report lists them again
+		return report != null ? report.toDetailedReport() : null;
 	}
 	
 	/* (non-Javadoc)
@@ -252,6 +483,20 @@ public class TaskExecutionManager {
 	public List<LightningRequestReport> getAuditReports(String sessionId) {
 		return dataStore.getAuditReports(sessionId);
 	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#getAuditReports(long, long, int, int)}
+	 */
+	public List<LightningRequestReport> getAuditReports(long fromTime, long toTime, int offset, int limit) {
+		return dataStore.getAuditReports(fromTime, toTime, offset, limit);
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#getAuditReportPage(long, long, String, int)}
+	 */
+	public AuditReportPage getAuditReportPage(long fromTime, long toTime, String cursor, int limit) {
+		return dataStore.getAuditReportPage(fromTime, toTime, cursor, limit);
+	}
 	
 	/* (non-Javadoc)
 	 * @see {@link TaskExecutionService#getLightningStats()}
@@ -264,6 +509,7 @@ public class TaskExecutionManager {
 		status.setLastReservationCleanup(systemConfig.getOldReservationCleanupReminderTimeInMillis());
 		LightningCoreUtil.getJVMMemory(status);
 		LightningCoreUtil.getCPUUsage(status);
+		resourceMonitor.updateSystemStatus(status);
 		status.setUpTime(System.currentTimeMillis() - status.getSystemStartTime());
 		status.setQueueLoadSize(getSubmittedLoad());
 		status.setReservationLoadSize(getReservedLoad());
@@ -310,6 +556,14 @@ public class TaskExecutionManager {
 		return this.systemConfig;
 	}
 
+	/**
+	 * Set the monitor used for resource based admission.
+	 * @param resourceMonitor the resource monitor
+	 */
+	public void setResourceMonitor(ResourceMonitor resourceMonitor) {
+		this.resourceMonitor = resourceMonitor;
+	}
+
 	/**
 	 * Get the current reservation list.
 	 * @return the current reservation list
@@ -1,13 +1,18 @@
 package com.ebay.lightning.core.services;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.SystemStatus;
+import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.manager.TaskExecutionManager;
+import com.ebay.lightning.core.store.AuditReportPage;
+import com.ebay.lightning.core.store.EncodedResponse;
 import com.ebay.lightning.core.store.LightningRequestReport;
 
 /**
@@ -27,6 +32,17 @@ public interface TaskExecutionService {
 	 */
 	public void submit(LightningRequest request);
 
+	/**
+	 * Append a chunk of tasks to a streaming request submitted by {@link #submit(LightningRequest)} method.
+	 * 
+	 * The tasks of the request start executing as soon as they are submitted, the appended tasks are executed
+	 * after the tasks already known. The request completes after the last chunk is executed.
+	 * @param sessionId the session id of the {@code LightningRequest}
+	 * @param tasks the tasks to append, may be empty for the last chunk
+	 * @param lastChunk {@code true} if no more tasks will be appended
+	 */
+	public void appendTasks(String sessionId, List<Task> tasks, boolean lastChunk);
+
 	/**
 	 * Poll the current execution state for the request submitted by #{@link #submit(LightningRequest)} method.
 	 * 
@@ -37,6 +53,38 @@ public interface TaskExecutionService {
 	 */
 	public LightningResponse pollResponse(String sessionId, boolean pollDeltaOnly);
 
+	/**
+	 * Poll the tasks completed after the change log sequence number for the request submitted by
+	 * #{@link #submit(LightningRequest)} method.
+	 * 
+	 * The cost of the call is proportional to the number of tasks completed since the previous poll.
+	 * @param sessionId the session id of the {@code LightningRequest}
+	 * @param fromSequence the {@link LightningResponse#getSequence()} of the previous poll, 0 for the first poll
+	 * @return {@code LightningResponse} that has the tasks completed after {@code fromSequence}
+	 */
+	public LightningResponse pollResponse(String sessionId, int fromSequence);
+
+	/**
+	 * Poll the tasks completed after the change log sequence numbers of several requests at once.
+	 * @param fromSequences the {@link LightningResponse#getSequence()} of the previous poll of each session id
+	 * @return the {@code LightningResponse} with the tasks completed after the sequence number by session id, the
+	 * unknown session ids are left out
+	 */
+	public Map<String, LightningResponse> pollResponses(Map<String, Integer> fromSequences);
+
+	/**
+	 * Poll the complete execution state for the request submitted by #{@link #submit(LightningRequest)} method,
+	 * encoded for the client.
+	 * 
+	 * The encoded response of a completed request is cached, so repeated polls of a finished request are cheap.
+	 * @param sessionId the session id of the {@code LightningRequest}
+	 * @param binary encode with {@code BinaryCodec} if {@code true} and compress if {@code false}
+	 * @param acceptEncoding the {@code Accept-Encoding} of the client to choose the compression codec
+	 * @return {@code EncodedResponse} that has the current state of task execution and its tag
+	 * @throws IOException if the response cannot be compressed
+	 */
+	public EncodedResponse pollEncodedResponse(String sessionId, boolean binary, String acceptEncoding) throws IOException;
+
 	/**
 	 * Get the detailed execution report for the request.
 	 * 
@@ -54,6 +102,15 @@ public interface TaskExecutionService {
 	 * @return the reservation receipt containing either of the state ACCEPTED, DENIED, BUSY
 	 */
 	public ReservationReceipt reserve(int load);
+
+	/**
+	 * Release a reservation that will not be used, so that its load is available to other requests before the
+	 * reservation expires.
+	 * 
+	 * @param reservationId the id of the reservation receipt
+	 * @return {@code true} if the reservation was pending and is released
+	 */
+	public boolean cancelReservation(String reservationId);
 	
 	/**
 	 * Get the detailed execution reports.
@@ -62,6 +119,28 @@ public interface TaskExecutionService {
 	 * @return the list of {@code LightningRequestReport} available in the store 
 	 */
 	public List<LightningRequestReport> getAuditReports(String sessionId);
+
+	/**
+	 * Get the execution summaries of the requests completed in a time range, oldest first.
+	 * 
+	 * @param fromTime the start of the range in epoch millis, inclusive
+	 * @param toTime the end of the range in epoch millis, inclusive
+	 * @param offset the number of matching summaries to skip
+	 * @param limit the maximum number of summaries to return
+	 * @return the list of {@code LightningRequestReport} audit summaries in the range
+	 */
+	public List<LightningRequestReport> getAuditReports(long fromTime, long toTime, int offset, int limit);
+
+	/**
+	 * Get a page of the execution summaries of the requests completed in a time range, oldest first.
+	 * 
+	 * @param fromTime the start of the range in epoch millis, inclusive
+	 * @param toTime the end of the range in epoch millis, inclusive
+	 * @param cursor the cursor returned with the previous page or {@code null} for the first page
+	 * @param limit the maximum number of summaries to return
+	 * @return the page of {@code LightningRequestReport} audit summaries with the cursor of the next page
+	 */
+	public AuditReportPage getAuditReportPage(long fromTime, long toTime, String cursor, int limit);
 	
 	/**
 	 * Get the system metrics including CPU, physical and JVM memory.
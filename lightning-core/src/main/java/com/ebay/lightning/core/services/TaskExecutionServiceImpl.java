@@ -1,6 +1,10 @@
 package com.ebay.lightning.core.services;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
@@ -10,8 +14,11 @@ import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.SystemStatus;
+import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.manager.TaskExecutionManager;
+import com.ebay.lightning.core.store.AuditReportPage;
+import com.ebay.lightning.core.store.EncodedResponse;
 import com.ebay.lightning.core.store.LightningRequestReport;
 
 
@@ -43,6 +50,14 @@ public class TaskExecutionServiceImpl implements TaskExecutionService {
 	public void submit(LightningRequest request) {
 		taskExecutionManager.submit(request);
 	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#appendTasks(String, List, boolean)}
+	 */
+	@Override
+	public void appendTasks(String sessionId, List<Task> tasks, boolean lastChunk) {
+		taskExecutionManager.appendTasks(sessionId, tasks, lastChunk);
+	}
 	
 	/* (non-Javadoc)
 	 * @see {@link TaskExecutionService#pollResponse(String, boolean)}
@@ -52,6 +67,37 @@ public class TaskExecutionServiceImpl implements TaskExecutionService {
 		return taskExecutionManager.pollResults(sessionId, pollDeltaOnly);
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#pollResponse(String, int)}
+	 */
+	@Override
+	public LightningResponse pollResponse(String sessionId, int fromSequence) {
+		return taskExecutionManager.pollResults(sessionId, fromSequence);
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#pollResponses(Map)}
+	 */
+	@Override
+	public Map<String, LightningResponse> pollResponses(Map<String, Integer> fromSequences) {
+		Map<String, LightningResponse> responses = new HashMap<>();
+		for (Entry<String, Integer> fromSequence : fromSequences.entrySet()) {
+			LightningResponse response = taskExecutionManager.pollResults(fromSequence.getKey(), fromSequence.getValue());
+			if (response != null) {
+				responses.put(fromSequence.getKey(), response);
+			}
+		}
+		return responses;
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#pollEncodedResponse(String, boolean, String)}
+	 */
+	@Override
+	public EncodedResponse pollEncodedResponse(String sessionId, boolean binary, String acceptEncoding) throws IOException {
+		return taskExecutionManager.pollEncodedResults(sessionId, binary, acceptEncoding);
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link TaskExecutionService#reserve(int)}
 	 */
@@ -60,6 +106,14 @@ public class TaskExecutionServiceImpl implements TaskExecutionService {
 		return taskExecutionManager.reserve(load);
 	}
 
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#cancelReservation(String)}
+	 */
+	@Override
+	public boolean cancelReservation(String reservationId) {
+		return taskExecutionManager.cancelReservation(reservationId);
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link TaskExecutionService#getReport(String)}
 	 */
@@ -99,4 +153,20 @@ public class TaskExecutionServiceImpl implements TaskExecutionService {
 	public List<LightningRequestReport> getAuditReports(String sessionId) {
 		return taskExecutionManager.getAuditReports(sessionId);
 	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#getAuditReports(long, long, int, int)}
+	 */
+	@Override
+	public List<LightningRequestReport> getAuditReports(long fromTime, long toTime, int offset, int limit) {
+		return taskExecutionManager.getAuditReports(fromTime, toTime, offset, limit);
+	}
+
+	/* (non-Javadoc)
+	 * @see {@link TaskExecutionService#getAuditReportPage(long, long, String, int)}
+	 */
+	@Override
+	public AuditReportPage getAuditReportPage(long fromTime, long toTime, String cursor, int limit) {
+		return taskExecutionManager.getAuditReportPage(fromTime, toTime, cursor, limit);
+	}
 }
@@ -0,0 +1,564 @@
+package com.ebay.lightning.core.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import com.ebay.lightning.core.config.SystemConfig.AuditLogPolicy;
+import com.ebay.lightning.core.constants.LightningCoreConstants;
+import com.ebay.lightning.core.utils.ZipUtil;
+
+/**
+ * The {@code AuditLogStore} persists the audit data of completed requests in append-only segment files so that
+ * the performance history of the core outlives the in-memory {@link ExecutionDataStore} and restarts.
+ *
+ * Each record is {@code [length][crc32][completion time][session id][audit report]}. The segments are scanned on
+ * {@link #open()} to rebuild an index by completion time and an index by session id; queries use the indexes and
+ * read only the records they return. The number of records per minute of completion time is indexed as well, so a
+ * query with an offset skips whole minutes instead of walking every skipped record. Segments are deleted as a whole
+ * once every record in them is older than {@link AuditLogPolicy#getRetentionTimeInMillis()}.
+ *
+ * Reports are handed over to a writer thread, which compresses and appends them, so completing a request does not
+ * wait for the disk. A segment is forced to the storage device when it is rolled and when the store is closed.
+ *
+ * @author shashukla
+ */
+public class AuditLogStore {
+
+	private static final Logger log = Logger.getLogger(AuditLogStore.class);
+
+	private static final String SEGMENT_PREFIX = "audit-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int RECORD_HEADER_SIZE = 4 + 4 + 8 + 2;
+	private static final String AUDIT_LOG_WRITER_THREAD = "AuditLogWriterThread";
+	private static final long WRITER_POLL_INTERVAL_IN_MILLIS = 100;
+	private static final long COUNT_BUCKET_WIDTH_IN_MILLIS = 60000;
+
+	private final AuditLogPolicy policy;
+	private final File directory;
+	private final ConcurrentSkipListMap<RecordKey, RecordLocation> timeIndex = new ConcurrentSkipListMap<>();
+	private final Map<String, RecordLocation> sessionIndex = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, FileChannel> segments = new ConcurrentSkipListMap<>();
+	// segment id to the latest completion time recorded in it
+	private final Map<Long, Long> segmentMaxTime = new ConcurrentHashMap<>();
+	// start of a minute of completion time to the number of records that completed in it
+	private final ConcurrentSkipListMap<Long, AtomicInteger> recordCountPerBucket = new ConcurrentSkipListMap<>();
+	private final AtomicLong recordSequence = new AtomicLong();
+	private final BlockingQueue<PendingRecord> pendingRecords = new LinkedBlockingQueue<>();
+	private Thread writer;
+	private volatile boolean running;
+	// records queued and records taken off the queue, the latter guarded by this
+	private final AtomicLong appendedRecords = new AtomicLong();
+	private long takenRecords;
+
+	private long currentSegmentId = -1;
+	private long currentPosition;
+
+	/**
+	 * Initialize the store in the directory configured by the {@link AuditLogPolicy}.
+	 * @param policy the audit log configuration
+	 */
+	public AuditLogStore(AuditLogPolicy policy) {
+		this.policy = policy;
+		this.directory = new File(policy.getDirectory());
+	}
+
+	/**
+	 * Index the existing segments and start a new segment for writing.
+	 * @throws IOException when the directory or segment cannot be created
+	 */
+	public synchronized void open() throws IOException {
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create audit log directory " + directory.getAbsolutePath());
+		}
+		long lastSegmentId = -1;
+		for (File segment : listSegments()) {
+			long segmentId = getSegmentId(segment);
+			FileChannel channel = new RandomAccessFile(segment, "rw").getChannel();
+			segments.put(segmentId, channel);
+			indexSegment(segmentId, channel);
+			lastSegmentId = segmentId;
+		}
+		rollSegment(lastSegmentId + 1);
+		log.info("Indexed " + timeIndex.size() + " audit reports from " + segments.size() + " audit log segments");
+		running = true;
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				// not interrupted to stop, an interrupt would close the segment channel being written
+				while (running) {
+					try {
+						PendingRecord record = pendingRecords.poll(WRITER_POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+						if (record != null) {
+							writeGroup(record);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					} catch (Exception e) {
+						log.error("Error writing to audit log", e);
+					}
+				}
+			}
+		}, AUDIT_LOG_WRITER_THREAD);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queue the audit report of a completed request to be appended by the writer thread.
+	 * @param auditReport the audit data of the request, it must not be changed afterwards
+	 * @param completionTime the time the request completed
+	 */
+	public void append(LightningRequestReport auditReport, long completionTime) {
+		appendedRecords.incrementAndGet();
+		pendingRecords.add(new PendingRecord(auditReport, completionTime));
+	}
+
+	/**
+	 * Append the queued audit reports, so that the queries see them.
+	 */
+	public synchronized void flush() {
+		long appended = appendedRecords.get();
+		writeGroup(null);
+		// a record taken by the writer thread is written once the writer gets the lock
+		while (takenRecords < appended && writer != null && writer.isAlive()) {
+			try {
+				wait(WRITER_POLL_INTERVAL_IN_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private synchronized void writeGroup(PendingRecord firstRecord) {
+		List<PendingRecord> records = new ArrayList<>();
+		if (firstRecord != null) {
+			records.add(firstRecord);
+		}
+		pendingRecords.drainTo(records);
+		for (PendingRecord record : records) {
+			write(record.auditReport, record.completionTime);
+		}
+		takenRecords += records.size();
+		notifyAll();
+	}
+
+	private void write(LightningRequestReport auditReport, long completionTime) {
+		if (currentSegmentId < 0) {
+			return;
+		}
+		String sessionId = auditReport.getRequest().getSessionId();
+		try {
+			byte[] payload = ZipUtil.zipAsByteArray(auditReport);
+			byte[] sessionIdBytes = sessionId.getBytes(LightningCoreConstants.DEFAULT_CHARSET);
+			if (currentPosition > 0 && currentPosition + RECORD_HEADER_SIZE + sessionIdBytes.length + payload.length > policy.getSegmentSizeInBytes()) {
+				rollSegment(currentSegmentId + 1);
+			}
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + sessionIdBytes.length + payload.length);
+			record.putInt(payload.length);
+			record.putInt((int) crc.getValue());
+			record.putLong(completionTime);
+			record.putShort((short) sessionIdBytes.length);
+			record.put(sessionIdBytes);
+			record.put(payload);
+			record.flip();
+			FileChannel channel = segments.get(currentSegmentId);
+			long position = currentPosition;
+			while (record.hasRemaining()) {
+				currentPosition += channel.write(record, currentPosition);
+			}
+			index(new RecordLocation(currentSegmentId, position, record.capacity(), completionTime, sessionId));
+		} catch (IOException e) {
+			log.error("Unable to append audit report " + sessionId, e);
+		}
+	}
+
+	/**
+	 * Get the persisted audit report of the request.
+	 * @param sessionId the request id
+	 * @return the audit report or {@code null} if it is not in the store
+	 */
+	public LightningRequestReport get(String sessionId) {
+		RecordLocation location = sessionIndex.get(sessionId);
+		return location != null ? read(location) : null;
+	}
+
+	/**
+	 * Get the audit reports of the requests completed in the time range, oldest first.
+	 * @param fromTime the start of the range, inclusive
+	 * @param toTime the end of the range, inclusive
+	 * @param offset the number of matching reports to skip
+	 * @param limit the maximum number of reports to return, capped by {@link AuditLogPolicy#getMaxQueryResults()}
+	 * @return the audit reports in the range
+	 */
+	public List<LightningRequestReport> query(long fromTime, long toTime, int offset, int limit) {
+		List<LightningRequestReport> reports = new ArrayList<>();
+		if (fromTime > toTime) {
+			return reports;
+		}
+		int maxResults = limit > 0 ? Math.min(limit, policy.getMaxQueryResults()) : policy.getMaxQueryResults();
+		RecordKey toKey = new RecordKey(toTime, Long.MAX_VALUE);
+		RecordKey fromKey = new RecordKey(fromTime, Long.MIN_VALUE);
+		int skip = Math.max(0, offset);
+		long bucket = bucketOf(fromTime);
+		if (skip > 0 && bucket < fromTime) {
+			// the first minute is only partly in the range, count its records in the range
+			int count = timeIndex.subMap(fromKey, true, new RecordKey(Math.min(bucket + COUNT_BUCKET_WIDTH_IN_MILLIS - 1, toTime), Long.MAX_VALUE), true).size();
+			if (count <= skip) {
+				skip -= count;
+				fromKey = new RecordKey(bucket + COUNT_BUCKET_WIDTH_IN_MILLIS, Long.MIN_VALUE);
+			}
+		}
+		if (bucketOf(fromKey.completionTime) >= fromKey.completionTime) {
+			// the minutes entirely in the range are skipped by their record count
+			for (Map.Entry<Long, AtomicInteger> count : recordCountPerBucket.tailMap(fromKey.completionTime, true).entrySet()) {
+				long bucketEnd = count.getKey() + COUNT_BUCKET_WIDTH_IN_MILLIS;
+				if (skip == 0 || bucketEnd - 1 > toTime || count.getValue().get() > skip) {
+					break;
+				}
+				skip -= count.getValue().get();
+				fromKey = new RecordKey(bucketEnd, Long.MIN_VALUE);
+			}
+		}
+		if (fromKey.compareTo(toKey) > 0) {
+			return reports;
+		}
+		ConcurrentNavigableMap<RecordKey, RecordLocation> range = timeIndex.subMap(fromKey, true, toKey, true);
+		int skipped = 0;
+		for (RecordLocation location : range.values()) {
+			if (skipped++ < skip) {
+				continue;
+			}
+			if (reports.size() >= maxResults) {
+				break;
+			}
+			LightningRequestReport report = read(location);
+			if (report != null) {
+				reports.add(report);
+			}
+		}
+		return reports;
+	}
+
+	/**
+	 * Get a page of the audit reports of the requests completed in the time range, oldest first. Unlike
+	 * {@link #query(long, long, int, int)} the cursor seeks straight to the page in the index.
+	 * @param fromTime the start of the range, inclusive
+	 * @param toTime the end of the range, inclusive
+	 * @param cursor the cursor returned with the previous page or {@code null} for the first page
+	 * @param limit the maximum number of reports to return, capped by {@link AuditLogPolicy#getMaxQueryResults()}
+	 * @return the page of audit reports
+	 */
+	public AuditReportPage query(long fromTime, long toTime, String cursor, int limit) {
+		List<LightningRequestReport> reports = new ArrayList<>();
+		RecordKey fromKey = new RecordKey(fromTime, Long.MIN_VALUE);
+		RecordKey toKey = new RecordKey(toTime, Long.MAX_VALUE);
+		boolean fromInclusive = true;
+		if (cursor != null) {
+			long[] position = AuditReportPage.decodeCursor(cursor);
+			RecordKey cursorKey = new RecordKey(position[0], position[1]);
+			if (cursorKey.compareTo(fromKey) >= 0) {
+				fromKey = cursorKey;
+				fromInclusive = false;
+			}
+		}
+		if (fromKey.compareTo(toKey) > 0) {
+			return new AuditReportPage(reports, null);
+		}
+		int maxResults = limit > 0 ? Math.min(limit, policy.getMaxQueryResults()) : policy.getMaxQueryResults();
+		ConcurrentNavigableMap<RecordKey, RecordLocation> range = timeIndex.subMap(fromKey, fromInclusive, toKey, true);
+		RecordKey lastKey = null;
+		for (Map.Entry<RecordKey, RecordLocation> entry : range.entrySet()) {
+			if (reports.size() >= maxResults) {
+				break;
+			}
+			lastKey = entry.getKey();
+			LightningRequestReport report = read(entry.getValue());
+			if (report != null) {
+				reports.add(report);
+			}
+		}
+		String nextCursor = null;
+		if (lastKey != null && range.higherKey(lastKey) != null) {
+			nextCursor = AuditReportPage.encodeCursor(lastKey.completionTime, lastKey.sequence);
+		}
+		return new AuditReportPage(reports, nextCursor);
+	}
+
+	/**
+	 * Get the number of audit reports in the store.
+	 * @return the number of audit reports
+	 */
+	public int size() {
+		return timeIndex.size();
+	}
+
+	/**
+	 * Delete the segments, except the one being written, whose records are all older than the retention time.
+	 * @param currentTime the time to evaluate the retention against
+	 */
+	public synchronized void deleteExpiredSegments(long currentTime) {
+		long expiryTime = currentTime - policy.getRetentionTimeInMillis();
+		for (Iterator<Map.Entry<Long, FileChannel>> iterator = segments.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Long, FileChannel> segment = iterator.next();
+			long segmentId = segment.getKey();
+			Long maxTime = segmentMaxTime.get(segmentId);
+			if (segmentId == currentSegmentId || (maxTime != null && maxTime >= expiryTime)) {
+				continue;
+			}
+			// every record of the segment completed at or before its latest completion time
+			for (Iterator<RecordLocation> locations = timeIndex.headMap(new RecordKey(maxTime != null ? maxTime : Long.MIN_VALUE, Long.MAX_VALUE), true)
+					.values().iterator(); locations.hasNext();) {
+				RecordLocation location = locations.next();
+				if (location.segmentId == segmentId) {
+					locations.remove();
+					countRecord(location.completionTime, -1);
+					sessionIndex.remove(location.sessionId, location);
+				}
+			}
+			iterator.remove();
+			segmentMaxTime.remove(segmentId);
+			close(segmentId, segment.getValue());
+			File file = getSegmentFile(segmentId);
+			log.info("Deleting expired audit log segment " + file);
+			if (!file.delete()) {
+				log.warn("Unable to delete audit log segment " + file);
+			}
+		}
+	}
+
+	/**
+	 * Append the queued audit reports, stop the writer thread and close all the segments.
+	 */
+	public void close() {
+		running = false;
+		if (writer != null) {
+			try {
+				// a record taken by the writer has to be written before the segment is closed
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+		synchronized (this) {
+			FileChannel current = segments.get(currentSegmentId);
+			if (current != null) {
+				force(currentSegmentId, current);
+			}
+			for (Map.Entry<Long, FileChannel> segment : segments.entrySet()) {
+				close(segment.getKey(), segment.getValue());
+			}
+			segments.clear();
+			currentSegmentId = -1;
+		}
+	}
+
+	private void index(RecordLocation location) {
+		location.key = new RecordKey(location.completionTime, recordSequence.incrementAndGet());
+		timeIndex.put(location.key, location);
+		countRecord(location.completionTime, 1);
+		RecordLocation previous = sessionIndex.put(location.sessionId, location);
+		if (previous != null && timeIndex.remove(previous.key) != null) {
+			// keep only the latest execution of a session
+			countRecord(previous.completionTime, -1);
+		}
+		Long maxTime = segmentMaxTime.get(location.segmentId);
+		if (maxTime == null || maxTime < location.completionTime) {
+			segmentMaxTime.put(location.segmentId, location.completionTime);
+		}
+	}
+
+	private void countRecord(long completionTime, int delta) {
+		long bucket = bucketOf(completionTime);
+		AtomicInteger count = recordCountPerBucket.get(bucket);
+		if (count == null) {
+			count = new AtomicInteger();
+			recordCountPerBucket.put(bucket, count);
+		}
+		if (count.addAndGet(delta) <= 0) {
+			recordCountPerBucket.remove(bucket);
+		}
+	}
+
+	private static long bucketOf(long time) {
+		return time - time % COUNT_BUCKET_WIDTH_IN_MILLIS;
+	}
+
+	private void indexSegment(long segmentId, FileChannel channel) {
+		try {
+			long position = 0;
+			long size = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+			while (position + RECORD_HEADER_SIZE <= size) {
+				header.clear();
+				channel.read(header, position);
+				header.flip();
+				int length = header.getInt();
+				header.getInt();
+				long completionTime = header.getLong();
+				short sessionIdLength = header.getShort();
+				int recordSize = RECORD_HEADER_SIZE + sessionIdLength + length;
+				if (length <= 0 || sessionIdLength <= 0 || position + recordSize > size) {
+					break;
+				}
+				ByteBuffer sessionId = ByteBuffer.allocate(sessionIdLength);
+				channel.read(sessionId, position + RECORD_HEADER_SIZE);
+				index(new RecordLocation(segmentId, position, recordSize, completionTime,
+						new String(sessionId.array(), LightningCoreConstants.DEFAULT_CHARSET)));
+				position += recordSize;
+			}
+		} catch (IOException e) {
+			log.error("Unable to index audit log segment " + segmentId, e);
+		}
+	}
+
+	private LightningRequestReport read(RecordLocation location) {
+		FileChannel channel = segments.get(location.segmentId);
+		if (channel == null) {
+			return null;
+		}
+		try {
+			ByteBuffer record = ByteBuffer.allocate(location.length);
+			while (record.hasRemaining()) {
+				if (channel.read(record, location.position + record.position()) < 0) {
+					return null;
+				}
+			}
+			record.flip();
+			int length = record.getInt();
+			int checksum = record.getInt();
+			record.getLong();
+			short sessionIdLength = record.getShort();
+			record.position(record.position() + sessionIdLength);
+			byte[] payload = new byte[length];
+			record.get(payload);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			if ((int) crc.getValue() != checksum) {
+				log.warn("Corrupt audit record for " + location.sessionId);
+				return null;
+			}
+			return (LightningRequestReport) ZipUtil.unZipByteArray(payload, LightningRequestReport.class);
+		} catch (Exception e) {
+			log.error("Unable to read audit report " + location.sessionId, e);
+			return null;
+		}
+	}
+
+	private void rollSegment(long segmentId) throws IOException {
+		FileChannel previous = segments.get(currentSegmentId);
+		if (previous != null) {
+			force(currentSegmentId, previous);
+		}
+		FileChannel channel = new RandomAccessFile(getSegmentFile(segmentId), "rw").getChannel();
+		segments.put(segmentId, channel);
+		currentSegmentId = segmentId;
+		currentPosition = channel.size();
+	}
+
+	private void force(long segmentId, FileChannel channel) {
+		try {
+			channel.force(false);
+		} catch (IOException e) {
+			log.warn("Unable to force audit log segment " + segmentId, e);
+		}
+	}
+
+	private void close(long segmentId, FileChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			log.warn("Unable to close audit log segment " + segmentId, e);
+		}
+	}
+
+	private List<File> listSegments() {
+		File[] files = directory.listFiles();
+		List<File> auditSegments = new ArrayList<>();
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX)) {
+					auditSegments.add(file);
+				}
+			}
+		}
+		File[] sorted = auditSegments.toArray(new File[auditSegments.size()]);
+		Arrays.sort(sorted);
+		return Arrays.asList(sorted);
+	}
+
+	private File getSegmentFile(long segmentId) {
+		return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+	}
+
+	private static long getSegmentId(File segment) {
+		String name = segment.getName();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private static class PendingRecord {
+		private final LightningRequestReport auditReport;
+		private final long completionTime;
+
+		PendingRecord(LightningRequestReport auditReport, long completionTime) {
+			this.auditReport = auditReport;
+			this.completionTime = completionTime;
+		}
+	}
+
+	private static class RecordKey implements Comparable<RecordKey> {
+		private final long completionTime;
+		private final long sequence;
+
+		RecordKey(long completionTime, long sequence) {
+			this.completionTime = completionTime;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(RecordKey other) {
+			int result = Long.compare(completionTime, other.completionTime);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	private static class RecordLocation {
+		private final long segmentId;
+		private final long position;
+		private final int length;
+		private final long completionTime;
+		private final String sessionId;
+		private RecordKey key;
+
+		RecordLocation(long segmentId, long position, int length, long completionTime, String sessionId) {
+			this.segmentId = segmentId;
+			this.position = position;
+			this.length = length;
+			this.completionTime = completionTime;
+			this.sessionId = sessionId;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.ebay.lightning.core.store;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The {@code AuditReportPage} is one page of the audit reports of the requests completed in a time range.
+ *
+ * The reports are ordered by completion time. {@link #getNextCursor()} marks the position after the last report
+ * of the page and is passed back to fetch the next page; it is {@code null} on the last page. Cursors are opaque
+ * and valid for the lifetime of the core that issued them.
+ *
+ * @author shashukla
+ */
+public class AuditReportPage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final char CURSOR_SEPARATOR = '-';
+
+	private List<LightningRequestReport> reports;
+	private String nextCursor;
+
+	/**
+	 * Initialize the page.
+	 * @param reports the audit reports of the page
+	 * @param nextCursor the cursor of the next page or {@code null} if this is the last page
+	 */
+	public AuditReportPage(List<LightningRequestReport> reports, String nextCursor) {
+		this.reports = reports;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Get the audit reports of the page.
+	 * @return the audit reports
+	 */
+	public List<LightningRequestReport> getReports() {
+		return reports;
+	}
+
+	/**
+	 * Get the cursor of the next page.
+	 * @return the cursor of the next page or {@code null} if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Encode the position of a report in the completion order as a cursor.
+	 * @param completionTime the completion time of the report
+	 * @param sequence the sequence number that orders reports completed in the same millisecond
+	 * @return the cursor
+	 */
+	static String encodeCursor(long completionTime, long sequence) {
+		return Long.toString(completionTime, Character.MAX_RADIX) + CURSOR_SEPARATOR + Long.toString(sequence, Character.MAX_RADIX);
+	}
+
+	/**
+	 * Decode a cursor created by {@link #encodeCursor(long, long)}.
+	 * @param cursor the cursor
+	 * @return the completion time and the sequence number
+	 * @throws IllegalArgumentException when the cursor is malformed
+	 */
+	static long[] decodeCursor(String cursor) {
+		int separator = cursor.lastIndexOf(CURSOR_SEPARATOR);
+		try {
+			if (separator > 0) {
+				return new long[] { Long.parseLong(cursor.substring(0, separator), Character.MAX_RADIX),
+						Long.parseLong(cursor.substring(separator + 1), Character.MAX_RADIX) };
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Invalid audit cursor " + cursor);
+	}
+}
@@ -0,0 +1,78 @@
+package com.ebay.lightning.core.store;
+
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
+
+/**
+ * The {@code EncodedResponse} is the complete {@link LightningResponse} of a request encoded for the client, either
+ * compressed or with {@link BinaryCodec}, along with the tag identifying its content.
+ *
+ * The tag changes whenever a task of the request completes or the status of the request changes, so a client that
+ * holds the response of a tag need not fetch it again.
+ *
+ * @author shashukla
+ */
+public class EncodedResponse {
+
+	private final byte[] bytes;
+	private final String tag;
+	private final Codec codec;
+	private final int serializedSize;
+
+	/**
+	 * Initialize the response encoded with {@link BinaryCodec}.
+	 * @param response the response that was encoded
+	 * @param bytes the encoded response
+	 */
+	public EncodedResponse(LightningResponse response, byte[] bytes) {
+		this(response, bytes, null, bytes.length);
+	}
+
+	/**
+	 * Initialize the response compressed with the codec.
+	 * @param response the response that was encoded
+	 * @param bytes the compressed response
+	 * @param codec the compression codec, {@code null} for the {@link BinaryCodec} format
+	 * @param serializedSize the size of the response before compression
+	 */
+	public EncodedResponse(LightningResponse response, byte[] bytes, Codec codec, int serializedSize) {
+		this.bytes = bytes;
+		this.codec = codec;
+		this.serializedSize = serializedSize;
+		this.tag = "\"" + response.getStatus() + "-" + response.getSequence() + "-" + response.getTotalCount()
+				+ (codec != null ? "-" + codec.getEncoding() : "") + "\"";
+	}
+
+	/**
+	 * Get the encoded response.
+	 * @return the encoded response
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Get the tag identifying the content of the response, quoted to be used as an HTTP entity tag.
+	 * @return the tag of the response
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * Get the codec the response is compressed with.
+	 * @return the compression codec, {@code null} for the {@link BinaryCodec} format
+	 */
+	public Codec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Get the size of the response before compression.
+	 * @return the serialized size of the response
+	 */
+	public int getSerializedSize() {
+		return serializedSize;
+	}
+}
@@ -1,12 +1,23 @@
 package com.ebay.lightning.core.store;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -15,13 +26,38 @@ import com.ebay.lightning.core.async.Callback;
 import com.ebay.lightning.core.async.Reminder;
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
 import com.ebay.lightning.core.config.SystemConfig;
+import com.ebay.lightning.core.config.SystemConfig.AuditLogPolicy;
 import com.ebay.lightning.core.config.SystemConfig.RetentionPolicy;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.ebay.lightning.core.utils.BinaryCodec;
 import com.ebay.lightning.core.utils.LightningCoreUtil;
+import com.ebay.lightning.core.utils.ZipUtil;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * The {@code ExecutionDataStore} holds the report for the requests executed. The report gets cleaned based on
- * {@link SystemConfig#getAuditCleanupFrequencyInSec()} interval and {@link RetentionPolicy}.
+ * {@link SystemConfig#getAuditCleanupFrequencyInSec()} interval and {@link RetentionPolicy}. Only completed reports,
+ * see {@link #markCompleted(String)}, are subject to the cleanup.
+ *
+ * When {@link RetentionPolicy#getMaxHeapReportSizeInBytes()} is set, the oldest completed reports are compressed into
+ * the memory-mapped segments of a {@link SpilledReportStore} once the budget is exceeded, leaving only their audit data
+ * as objects. A report that cannot be spilled stays on heap. The reports are
+ * spilled by a background thread, so completing a request never waits for the compression. Polls and reports of
+ * spilled sessions are served from the spilled copy.
+ *
+ * When the {@link AuditLogPolicy} is enabled, the audit data of every completed report is also persisted to an
+ * {@link AuditLogStore}, which serves the time range queries and sessions no longer in store.
+ *
+ * The encoded complete responses of completed requests are cached up to
+ * {@link RetentionPolicy#getMaxCachedResponseSizeInBytes()}, so repeated polls of a finished request do not encode
+ * the response again.
  * 
  * @author shashukla
  */
@@ -30,7 +66,24 @@ public class ExecutionDataStore {
 
 	private static final Logger log = Logger.getLogger(ExecutionDataStore.class);
 	private final Map<String, LightningRequestReport> requestReportStore = new ConcurrentHashMap<>();
+	// completed reports ordered by completion time, the report and task retention pop from the front
+	private final ConcurrentSkipListSet<CompletedReport> completedReports = new ConcurrentSkipListSet<>();
+	private final ConcurrentSkipListSet<CompletedReport> reportsWithTasks = new ConcurrentSkipListSet<>();
+	// the index entry of every completed session, so that a request is only indexed once
+	private final Map<String, CompletedReport> completedSessions = new ConcurrentHashMap<>();
+	private final AtomicInteger completedReportCount = new AtomicInteger();
+	private final AtomicLong completionSequence = new AtomicLong();
+	// completed reports held as objects and spilled reports, both ordered by completion time
+	private final ConcurrentSkipListSet<CompletedReport> heapReports = new ConcurrentSkipListSet<>();
+	private final ConcurrentSkipListSet<CompletedReport> spilledOrder = new ConcurrentSkipListSet<>();
+	private final AtomicLong heapReportSizeInBytes = new AtomicLong();
+	private final SpilledReportStore spilledReports;
+	private final ExecutorService spillExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+			.setNameFormat("ReportSpillThread").setDaemon(true).build());
+	private final AtomicBoolean spillScheduled = new AtomicBoolean();
 	private final SystemConfig config;
+	private final Cache<String, EncodedResponse> encodedResponses;
+	private AuditLogStore auditLog;
 	private Reminder executionDataStoreCleanupReminder;
 
 	/**
@@ -40,46 +93,28 @@ public class ExecutionDataStore {
 	@Autowired
 	public ExecutionDataStore(SystemConfig sysConfig) {
 		this.config = sysConfig;
+		spilledReports = new SpilledReportStore(config.getRetentionPolicy());
+		encodedResponses = CacheBuilder.newBuilder().maximumWeight(Math.max(0, config.getRetentionPolicy().getMaxCachedResponseSizeInBytes()))
+				.weigher(new Weigher<String, EncodedResponse>() {
+					@Override
+					public int weigh(String key, EncodedResponse value) {
+						return value.getBytes().length;
+					}
+				}).build();
+		if (config.getAuditLogPolicy() != null && config.getAuditLogPolicy().isEnabled()) {
+			try {
+				AuditLogStore store = new AuditLogStore(config.getAuditLogPolicy());
+				store.open();
+				auditLog = store;
+			} catch (IOException e) {
+				log.error("Unable to open audit log, audit history will not survive a restart", e);
+			}
+		}
 		executionDataStoreCleanupReminder = new Reminder("ExecutionDataStoreCleanupReminder", new Callback<String>() {
 			@Override
 			public void notify(String t) {
 				try {
-					RetentionPolicy retentionPolicy = config.getRetentionPolicy();
-					TreeMap<Long, String> chronologicallyOrderedSessionIds = new TreeMap<Long, String>();
-
-					//Time Based Cleanup
-					for (Iterator<Entry<String, LightningRequestReport>> iterator = requestReportStore.entrySet().iterator(); iterator.hasNext();) {
-						Entry<String, LightningRequestReport> e = iterator.next();
-						LightningRequestReport report = e.getValue();
-						long executionEndTime = report.getWorkDequeueTime() + report.getTotalExecutionTimeInMillis();
-						long reportLifeTimeInMillis = System.currentTimeMillis() - executionEndTime;
-						if (reportLifeTimeInMillis > retentionPolicy.getLightningReportRetentionTimeInMillis()) {
-							//Clean Lightning Report
-							log.info("Time Based Cleanup, actualLife/allowed=" + reportLifeTimeInMillis + "/"
-									+ retentionPolicy.getLightningReportRetentionTimeInMillis() + ", Removing: " + e.getKey());
-							iterator.remove();
-						} else {
-							if (reportLifeTimeInMillis > retentionPolicy.getTaskRetentionTimeInMillis()) {
-								//Clean Task Details
-								log.info("Time Based Cleanup, actualLife/allowed=" + reportLifeTimeInMillis + "/"
-										+ retentionPolicy.getTaskRetentionTimeInMillis() + ", Removing tasks for: " + e.getKey());
-								report.retainAudiDataOnly();
-							}
-							chronologicallyOrderedSessionIds.put(reportLifeTimeInMillis, e.getKey());
-						}
-					}
-
-					//Count Based cleanup
-					int index = 0;
-					if (chronologicallyOrderedSessionIds.size() > retentionPolicy.getMaxLightningReportRetentionCount()) {
-						for (Entry<Long, String> e : chronologicallyOrderedSessionIds.entrySet()) {
-							if (++index > retentionPolicy.getMaxLightningReportRetentionCount()) {
-								log.info("Count Based Cleanup, total/allowed=" + chronologicallyOrderedSessionIds.size() + "/"
-										+ retentionPolicy.getMaxLightningReportRetentionCount() + " Removing: " + e.getValue());
-								requestReportStore.remove(e.getValue());
-							}
-						}
-					}
+					cleanup(System.currentTimeMillis());
 				} catch (Exception e) {
 					log.fatal("Execution data store cleanup failed", e);
 				}
@@ -88,6 +123,210 @@ public class ExecutionDataStore {
 		}, (long) config.getAuditCleanupFrequencyInSec(), true);
 	}
 
+	/**
+	 * Evict the reports and task details that are past the {@link RetentionPolicy}. Completed reports are
+	 * indexed by completion time, so only the evicted reports are visited.
+	 * @param currentTime the time to evaluate the retention against
+	 */
+	synchronized void cleanup(long currentTime) {
+		RetentionPolicy retentionPolicy = config.getRetentionPolicy();
+
+		//Time Based Cleanup
+		CompletedReport oldest;
+		while ((oldest = firstEntry(completedReports)) != null
+				&& currentTime - oldest.completionTime > retentionPolicy.getLightningReportRetentionTimeInMillis()) {
+			//Clean Lightning Report
+			log.info("Time Based Cleanup, actualLife/allowed=" + (currentTime - oldest.completionTime) + "/"
+					+ retentionPolicy.getLightningReportRetentionTimeInMillis() + ", Removing: " + oldest.sessionId);
+			evict(oldest);
+		}
+		while ((oldest = firstEntry(reportsWithTasks)) != null
+				&& currentTime - oldest.completionTime > retentionPolicy.getTaskRetentionTimeInMillis()) {
+			//Clean Task Details
+			log.info("Time Based Cleanup, actualLife/allowed=" + (currentTime - oldest.completionTime) + "/"
+					+ retentionPolicy.getTaskRetentionTimeInMillis() + ", Removing tasks for: " + oldest.sessionId);
+			reportsWithTasks.remove(oldest);
+			retainAuditDataOnly(oldest);
+		}
+
+		//Count Based cleanup
+		while (completedReportCount.get() > retentionPolicy.getMaxLightningReportRetentionCount()
+				&& (oldest = firstEntry(completedReports)) != null) {
+			log.info("Count Based Cleanup, total/allowed=" + completedReportCount.get() + "/"
+					+ retentionPolicy.getMaxLightningReportRetentionCount() + " Removing: " + oldest.sessionId);
+			evict(oldest);
+		}
+		enforceSpillBudget();
+		scheduleSpill();
+		if (auditLog != null) {
+			auditLog.deleteExpiredSegments(currentTime);
+		}
+	}
+
+	private void evict(CompletedReport completedReport) {
+		if (completedReports.remove(completedReport)) {
+			completedReportCount.decrementAndGet();
+		}
+		reportsWithTasks.remove(completedReport);
+		if (heapReports.remove(completedReport)) {
+			heapReportSizeInBytes.addAndGet(-completedReport.heapSize);
+		}
+		if (spilledOrder.remove(completedReport)) {
+			spilledReports.remove(completedReport.sessionId);
+		}
+		requestReportStore.remove(completedReport.sessionId, completedReport.report);
+		completedSessions.remove(completedReport.sessionId, completedReport);
+		invalidateEncodedResponses(completedReport.sessionId);
+	}
+
+	private void invalidateEncodedResponses(String sessionId) {
+		encodedResponses.invalidate(encodedResponseKey(sessionId, null));
+		for (Codec codec : Codec.values()) {
+			encodedResponses.invalidate(encodedResponseKey(sessionId, codec));
+		}
+	}
+
+	private static String encodedResponseKey(String sessionId, Codec codec) {
+		return sessionId + "#" + (codec != null ? codec.getEncoding() : "binary");
+	}
+
+	private void retainAuditDataOnly(CompletedReport completedReport) {
+		invalidateEncodedResponses(completedReport.sessionId);
+		if (spilledOrder.contains(completedReport)) {
+			// the audit data is small, bring it back on heap instead of rewriting the spilled copy
+			LightningRequestReport report = spilledReports.get(completedReport.sessionId);
+			if (report == null) {
+				return;
+			}
+			report.retainAudiDataOnly();
+			requestReportStore.replace(completedReport.sessionId, completedReport.report, report);
+			completedReport.report = report;
+			spilledOrder.remove(completedReport);
+			spilledReports.remove(completedReport.sessionId);
+			addToHeap(completedReport);
+		} else {
+			completedReport.report.retainAudiDataOnly();
+			if (heapReports.remove(completedReport)) {
+				heapReportSizeInBytes.addAndGet(-completedReport.heapSize);
+				addToHeap(completedReport);
+			}
+		}
+	}
+
+	private void addToHeap(CompletedReport completedReport) {
+		completedReport.heapSize = config.getRetentionPolicy().getMaxHeapReportSizeInBytes() > 0 ? completedReport.report.estimateSize() : 0;
+		heapReportSizeInBytes.addAndGet(completedReport.heapSize);
+		heapReports.add(completedReport);
+	}
+
+	/**
+	 * Spill the reports on the spill thread if the heap budget is exceeded.
+	 */
+	private void scheduleSpill() {
+		long maxHeapReportSize = config.getRetentionPolicy().getMaxHeapReportSizeInBytes();
+		if (maxHeapReportSize > 0 && heapReportSizeInBytes.get() > maxHeapReportSize && spillScheduled.compareAndSet(false, true)) {
+			spillExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					// reports completed from now on schedule another run
+					spillScheduled.set(false);
+					try {
+						spillOverBudget();
+					} catch (Exception e) {
+						log.error("Unable to spill completed reports", e);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Spill the oldest completed reports until the heap budget is met, then drop the oldest spilled reports until
+	 * the spill budget is met. A report is compressed without holding the store lock and only published if it was
+	 * neither evicted nor trimmed meanwhile. The audit data of a spilled report stays on heap for the audit summary.
+	 */
+	void spillOverBudget() {
+		RetentionPolicy retentionPolicy = config.getRetentionPolicy();
+		while (true) {
+			CompletedReport oldest;
+			LightningRequestReport report;
+			WorkStatus status;
+			synchronized (this) {
+				if (retentionPolicy.getMaxHeapReportSizeInBytes() <= 0 || heapReportSizeInBytes.get() <= retentionPolicy.getMaxHeapReportSizeInBytes()
+						|| (oldest = firstEntry(heapReports)) == null) {
+					enforceSpillBudget();
+					return;
+				}
+				// the report keeps counting against the budget until it is spilled
+				heapReports.remove(oldest);
+				report = oldest.report;
+				status = report.getStatus();
+			}
+			byte[] bytes = SpilledReportStore.serialize(oldest.sessionId, report);
+			synchronized (this) {
+				heapReportSizeInBytes.addAndGet(-oldest.heapSize);
+				if (bytes == null || !completedReports.contains(oldest) || requestReportStore.get(oldest.sessionId) != report) {
+					continue;
+				}
+				if (status != report.getStatus()) {
+					// the tasks were cleaned up while the report was compressed, spill the audit data instead
+					addToHeap(oldest);
+					continue;
+				}
+				try {
+					spilledReports.put(oldest.sessionId, bytes, report.getSequence());
+				} catch (IOException e) {
+					// keep the report on heap, the next completed report retries the spill
+					log.error("Unable to spill report " + oldest.sessionId + ", keeping it on heap", e);
+					addToHeap(oldest);
+					enforceSpillBudget();
+					return;
+				}
+				LightningRequestReport auditReport = LightningRequestReport.getAuditReport(report);
+				// publish the spilled copy before replacing the report, readers look at the spilled reports first
+				requestReportStore.replace(oldest.sessionId, report, auditReport);
+				oldest.report = auditReport;
+				spilledOrder.add(oldest);
+			}
+		}
+	}
+
+	private void enforceSpillBudget() {
+		RetentionPolicy retentionPolicy = config.getRetentionPolicy();
+		CompletedReport oldest;
+		while (retentionPolicy.getMaxSpilledReportSizeInBytes() > 0 && spilledReports.getSizeInBytes() > retentionPolicy.getMaxSpilledReportSizeInBytes()
+				&& (oldest = firstEntry(spilledOrder)) != null) {
+			log.info("Memory Based Cleanup, spilled/allowed=" + spilledReports.getSizeInBytes() + "/"
+					+ retentionPolicy.getMaxSpilledReportSizeInBytes() + " Removing: " + oldest.sessionId);
+			evict(oldest);
+		}
+	}
+
+	/**
+	 * Get the size of the compressed spilled reports.
+	 * @return the size of the spilled reports in bytes
+	 */
+	public long getSpilledReportSizeInBytes() {
+		return spilledReports.getSizeInBytes();
+	}
+
+	/**
+	 * Get the estimated heap held by the completed reports that are not spilled. Only tracked while spilling is
+	 * enabled.
+	 * @return the estimated size of the completed reports in bytes
+	 */
+	public long getHeapReportSizeInBytes() {
+		return heapReportSizeInBytes.get();
+	}
+
+	private static CompletedReport firstEntry(ConcurrentSkipListSet<CompletedReport> reports) {
+		try {
+			return reports.first();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * Poll the response for the request.
 	 * @param sessionId the request id
@@ -95,6 +334,10 @@ public class ExecutionDataStore {
 	 * @return the response for the request
 	 */
 	public LightningResponse pollResults(String sessionId, boolean pollDeltaOnly) {
+		LightningResponse spilledResponse = pollSpilledResults(sessionId, -1);
+		if (spilledResponse != null) {
+			return spilledResponse;
+		}
 		LightningRequestReport report = requestReportStore.get(sessionId);
 		if (report != null) {
 			return report.generateResposne(pollDeltaOnly);
@@ -103,13 +346,132 @@ public class ExecutionDataStore {
 		}
 	}
 
+	/**
+	 * Poll the complete response for the request encoded for the client. The encoded response of a completed request
+	 * is cached per codec, later polls negotiating the same codec get the same bytes until the report is cleaned up.
+	 * @param sessionId the request id
+	 * @param binary encode with {@link BinaryCodec} instead of compressing the response
+	 * @param acceptEncoding the codecs accepted by the client, see {@link Codec#negotiate(String, int, int)}
+	 * @return the encoded response for the request, {@code null} if the request is not in store
+	 * @throws IOException if the response cannot be compressed
+	 */
+	public EncodedResponse pollEncodedResults(String sessionId, boolean binary, String acceptEncoding) throws IOException {
+		EncodedResponse encodedResponse = getCachedEncodedResponse(sessionId, binary, acceptEncoding);
+		if (encodedResponse != null) {
+			return encodedResponse;
+		}
+		LightningResponse response = pollResults(sessionId, false);
+		if (response == null) {
+			return null;
+		}
+		if (binary) {
+			encodedResponse = new EncodedResponse(response, BinaryCodec.toByteArray(BinaryCodec.encode(response)));
+		} else {
+			byte[] serialized = ZipUtil.serialize(response);
+			Codec codec = Codec.negotiate(acceptEncoding, serialized.length, config.getMinCompressedSizeInBytes());
+			encodedResponse = new EncodedResponse(response, ZipUtil.compress(serialized, codec), codec, serialized.length);
+		}
+		if (response.isCompleted()) {
+			encodedResponses.put(encodedResponseKey(sessionId, encodedResponse.getCodec()), encodedResponse);
+		}
+		return encodedResponse;
+	}
+
+	private EncodedResponse getCachedEncodedResponse(String sessionId, boolean binary, String acceptEncoding) {
+		if (binary) {
+			return encodedResponses.getIfPresent(encodedResponseKey(sessionId, null));
+		}
+		for (Codec codec : Codec.values()) {
+			EncodedResponse cached = encodedResponses.getIfPresent(encodedResponseKey(sessionId, codec));
+			if (cached != null) {
+				// every cached codec compresses the same serialized response, so any of them gives its size
+				Codec negotiated = Codec.negotiate(acceptEncoding, cached.getSerializedSize(), config.getMinCompressedSizeInBytes());
+				return negotiated == codec ? cached : encodedResponses.getIfPresent(encodedResponseKey(sessionId, negotiated));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Poll the tasks completed after the change log sequence number.
+	 * @param sessionId the request id
+	 * @param fromSequence the sequence number returned by the previous poll
+	 * @return the response with the tasks completed after {@code fromSequence}
+	 */
+	public LightningResponse pollResults(String sessionId, int fromSequence) {
+		LightningResponse spilledResponse = pollSpilledResults(sessionId, Math.max(0, fromSequence));
+		if (spilledResponse != null) {
+			return spilledResponse;
+		}
+		LightningRequestReport report = getReport(sessionId);
+		if (report != null) {
+			return report.generateResponse(fromSequence);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Poll a spilled report. The change log is not spilled, only its last sequence number: a client that polled up to
+	 * it gets an empty response, any other poll gets the complete response, which is final for a completed request.
+	 * @param fromSequence the sequence number of the previous poll, negative for the complete response
+	 * @return the response or {@code null} if the report is not spilled
+	 */
+	private LightningResponse pollSpilledResults(String sessionId, int fromSequence) {
+		LightningRequestReport spilledReport = spilledReports.get(sessionId);
+		int sequence = spilledReports.getSequence(sessionId);
+		if (spilledReport == null || sequence < 0) {
+			return null;
+		}
+		LightningResponse response;
+		if (fromSequence >= sequence) {
+			response = new LightningResponse(sessionId, spilledReport.getStatus());
+			response.setFailedResponses(new HashMap<Integer, FailedResponse>());
+			response.setSuccessResponses(new HashMap<Integer, SuccessResponse>());
+			response.setTotalCount(spilledReport.getRequest().getRequestSize());
+		} else {
+			response = spilledReport.generateResposne(false);
+		}
+		response.setSequence(sequence);
+		return response;
+	}
+
+	/**
+	 * Notify the store that the request is no longer running. The report is indexed by its completion time for the
+	 * retention cleanup and the task results are moved to a {@link TaskResultColumns} if enabled by the
+	 * {@link RetentionPolicy}. Marking a request that is already completed has no effect.
+	 * @param sessionId the request id
+	 */
+	public synchronized void markCompleted(String sessionId) {
+		LightningRequestReport report = requestReportStore.get(sessionId);
+		CompletedReport existing = completedSessions.get(sessionId);
+		if (report != null && (existing == null || existing.report != report)) {
+			if (config.getRetentionPolicy().isCompactCompletedTaskResults()) {
+				report.compactTaskResults();
+			}
+			long completionTime = report.getTotalExecutionTimeInMillis() != null
+					? report.getWorkDequeueTime() + report.getTotalExecutionTimeInMillis() : System.currentTimeMillis();
+			CompletedReport completedReport = new CompletedReport(completionTime, completionSequence.incrementAndGet(), sessionId, report);
+			if (auditLog != null) {
+				auditLog.append(LightningRequestReport.getAuditReport(report), completionTime);
+			}
+			completedSessions.put(sessionId, completedReport);
+			completedReports.add(completedReport);
+			completedReportCount.incrementAndGet();
+			reportsWithTasks.add(completedReport);
+			addToHeap(completedReport);
+			scheduleSpill();
+		}
+	}
+
 	/**
 	 * Get the detailed response for the request.
 	 * @param sessionId the request id
 	 * @return the detailed response for the request
 	 */
 	public LightningRequestReport getReport(String sessionId) {
-		return requestReportStore.get(sessionId);
+		LightningRequestReport spilledReport = spilledReports.get(sessionId);
+		return spilledReport != null ? spilledReport : requestReportStore.get(sessionId);
 	}
 
 	/**
@@ -118,7 +480,105 @@ public class ExecutionDataStore {
 	 * @return the audit data
 	 */
 	public List<LightningRequestReport> getAuditReports(String sessionId) {
-		return LightningCoreUtil.getAuditReports(requestReportStore, sessionId);
+		List<LightningRequestReport> reports = LightningCoreUtil.getAuditReports(requestReportStore, sessionId);
+		if (reports.isEmpty() && auditLog != null && StringUtils.isNotEmpty(sessionId)) {
+			LightningRequestReport report = auditLog.get(sessionId);
+			if (report != null) {
+				reports.add(report);
+			}
+		}
+		return reports;
+	}
+
+	/**
+	 * Get the audit data of the requests completed in the time range, oldest first. The persisted audit log is
+	 * queried when enabled, otherwise the completed reports in store.
+	 * @param fromTime the start of the range in epoch millis, inclusive
+	 * @param toTime the end of the range in epoch millis, inclusive
+	 * @param offset the number of matching reports to skip
+	 * @param limit the maximum number of reports to return, capped by {@link AuditLogPolicy#getMaxQueryResults()}
+	 * @return the audit data
+	 */
+	public List<LightningRequestReport> getAuditReports(long fromTime, long toTime, int offset, int limit) {
+		if (auditLog != null) {
+			return auditLog.query(fromTime, toTime, offset, limit);
+		}
+		List<LightningRequestReport> reports = new ArrayList<>();
+		if (fromTime > toTime) {
+			return reports;
+		}
+		int maxQueryResults = config.getAuditLogPolicy().getMaxQueryResults();
+		int maxResults = limit > 0 ? Math.min(limit, maxQueryResults) : maxQueryResults;
+		int skipped = 0;
+		for (CompletedReport completedReport : completedReports.subSet(new CompletedReport(fromTime, Long.MIN_VALUE, null, null), true,
+				new CompletedReport(toTime, Long.MAX_VALUE, null, null), true)) {
+			if (skipped++ < offset) {
+				continue;
+			}
+			if (reports.size() >= maxResults) {
+				break;
+			}
+			reports.add(LightningRequestReport.getAuditReport(completedReport.report));
+		}
+		return reports;
+	}
+
+	/**
+	 * Get a page of the audit data of the requests completed in the time range, oldest first. The persisted audit
+	 * log is queried when enabled, otherwise the completed reports in store.
+	 * @param fromTime the start of the range in epoch millis, inclusive
+	 * @param toTime the end of the range in epoch millis, inclusive
+	 * @param cursor the cursor returned with the previous page or {@code null} for the first page
+	 * @param limit the maximum number of reports to return, capped by {@link AuditLogPolicy#getMaxQueryResults()}
+	 * @return the page of audit data
+	 */
+	public AuditReportPage getAuditReportPage(long fromTime, long toTime, String cursor, int limit) {
+		if (auditLog != null) {
+			return auditLog.query(fromTime, toTime, cursor, limit);
+		}
+		List<LightningRequestReport> reports = new ArrayList<>();
+		CompletedReport fromKey = new CompletedReport(fromTime, Long.MIN_VALUE, null, null);
+		CompletedReport toKey = new CompletedReport(toTime, Long.MAX_VALUE, null, null);
+		boolean fromInclusive = true;
+		if (cursor != null) {
+			long[] position = AuditReportPage.decodeCursor(cursor);
+			CompletedReport cursorKey = new CompletedReport(position[0], position[1], null, null);
+			if (cursorKey.compareTo(fromKey) >= 0) {
+				fromKey = cursorKey;
+				fromInclusive = false;
+			}
+		}
+		if (fromKey.compareTo(toKey) > 0) {
+			return new AuditReportPage(reports, null);
+		}
+		int maxQueryResults = config.getAuditLogPolicy().getMaxQueryResults();
+		int maxResults = limit > 0 ? Math.min(limit, maxQueryResults) : maxQueryResults;
+		NavigableSet<CompletedReport> range = completedReports.subSet(fromKey, fromInclusive, toKey, true);
+		CompletedReport last = null;
+		for (CompletedReport completedReport : range) {
+			if (reports.size() >= maxResults) {
+				break;
+			}
+			last = completedReport;
+			reports.add(LightningRequestReport.getAuditReport(completedReport.report));
+		}
+		String nextCursor = null;
+		if (last != null && range.higher(last) != null) {
+			nextCursor = AuditReportPage.encodeCursor(last.completionTime, last.sequence);
+		}
+		return new AuditReportPage(reports, nextCursor);
+	}
+
+	/**
+	 * Stop the spill thread and close the audit log.
+	 */
+	@PreDestroy
+	public void close() {
+		spillExecutor.shutdownNow();
+		spilledReports.close();
+		if (auditLog != null) {
+			auditLog.close();
+		}
 	}
 
 	/**
@@ -129,6 +589,32 @@ public class ExecutionDataStore {
 	public LightningRequestReport register(LightningRequest request) {
 		LightningRequestReport report = new LightningRequestReport(request);
 		requestReportStore.put(request.getSessionId(), report);
+		spilledReports.remove(request.getSessionId());
+		invalidateEncodedResponses(request.getSessionId());
 		return report;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Index entry of a completed report; the sequence number keeps reports completed in the same millisecond apart.
+	 */
+	private static class CompletedReport implements Comparable<CompletedReport> {
+		private final long completionTime;
+		private final long sequence;
+		private final String sessionId;
+		private volatile LightningRequestReport report;
+		private long heapSize;
+
+		CompletedReport(long completionTime, long sequence, String sessionId, LightningRequestReport report) {
+			this.completionTime = completionTime;
+			this.sequence = sequence;
+			this.sessionId = sessionId;
+			this.report = report;
+		}
+
+		@Override
+		public int compareTo(CompletedReport other) {
+			int result = Long.compare(completionTime, other.completionTime);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -1,10 +1,14 @@
 package com.ebay.lightning.core.store;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import com.ebay.lightning.core.async.Callback;
 import com.ebay.lightning.core.beans.BatchReport;
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
@@ -12,6 +16,7 @@ import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
 import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
 import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.beans.URLTemplate;
 import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
 import com.google.common.base.Preconditions;
 
@@ -23,10 +28,13 @@ import com.google.common.base.Preconditions;
 public class LightningRequestReport implements Serializable {
 
 	private static final long serialVersionUID = 1L;
+	private static final int REPORT_SIZE_ESTIMATE = 1024;
+	private static final int BATCH_REPORT_SIZE_ESTIMATE = 256;
+	private static final int TASK_SIZE_ESTIMATE = 400;
 
 	private LightningRequest request;
 	private Map<Integer, BatchReport> batchReport = new ConcurrentHashMap<Integer, BatchReport>();
-	private WorkStatus status;
+	private volatile WorkStatus status;
 	private long workEnqueueTime;
 	private long workDequeueTime;
 	private Long totalExecutionTimeInMillis;
@@ -34,6 +42,10 @@ public class LightningRequestReport implements Serializable {
 	private Long processStartTime;
 	private long processEndTime;
 	private LightningResponse response;
+	private volatile TaskResultColumns taskResults;
+	private transient TaskChangeLog changeLog;
+	private transient int lastPolledSequence;
+	private transient volatile List<Callback<LightningRequestReport>> progressListeners;
 	
 	public LightningRequestReport(){
 		
@@ -45,6 +57,20 @@ public class LightningRequestReport implements Serializable {
 	 */
 	public LightningRequestReport(LightningRequest request) {
 		this.request = request;
+		List<Task> tasks = request.getTasks();
+		if (tasks != null) {
+			int index = 0;
+			for (Task task : tasks) {
+				task.setIndex(index++);
+			}
+			// the tasks of a streaming request are appended later, the reservation covers all of them
+			int maxTasks = request.isStreaming() ? Math.max(tasks.size(), getReservedLoad(request)) : Math.max(tasks.size(), request.getRequestSize());
+			this.changeLog = new TaskChangeLog(maxTasks);
+		}
+	}
+
+	private static int getReservedLoad(LightningRequest request) {
+		return request.getReservationReciept() != null ? request.getReservationReciept().getLoad() : 0;
 	}
 
 	/**
@@ -113,16 +139,249 @@ public class LightningRequestReport implements Serializable {
 		this.workEnqueueTime = workEnqueueTime;
 	}
 
+	/**
+	 * Record that the task reached its final status. Must only be called by the worker executing the request.
+	 * @param task the completed task
+	 */
+	public void recordCompletedTask(Task task) {
+		if (changeLog != null) {
+			changeLog.append(task.getIndex());
+		}
+	}
+
+	/**
+	 * Register a listener notified whenever tasks of the request complete and once the request is no longer running.
+	 * The listener is called on the worker thread and must not block.
+	 * @param listener the listener to notify with this report
+	 */
+	public synchronized void addProgressListener(Callback<LightningRequestReport> listener) {
+		if (progressListeners == null) {
+			progressListeners = new CopyOnWriteArrayList<>();
+		}
+		progressListeners.add(listener);
+	}
+
+	/**
+	 * Unregister a listener added by {@link #addProgressListener(Callback)}.
+	 * @param listener the listener to remove
+	 */
+	public void removeProgressListener(Callback<LightningRequestReport> listener) {
+		List<Callback<LightningRequestReport>> listeners = progressListeners;
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Notify the progress listeners. Must only be called by the worker executing the request.
+	 */
+	public void notifyProgress() {
+		List<Callback<LightningRequestReport>> listeners = progressListeners;
+		if (listeners != null) {
+			for (Callback<LightningRequestReport> listener : listeners) {
+				listener.notify(this);
+			}
+		}
+	}
+
+	/**
+	 * Append a chunk of tasks to a streaming request while it is being executed.
+	 * @param tasks the tasks to append
+	 * @param lastChunk seal the task list of the request after appending the tasks
+	 * @throws IllegalStateException when the task list is sealed or the tasks exceed the reserved load
+	 */
+	public synchronized void appendTasks(List<Task> tasks, boolean lastChunk) {
+		Preconditions.checkState(request.isStreaming(), "Tasks of request %s are sealed", request.getSessionId());
+		int index = request.getTasks().size();
+		Preconditions.checkState(index + tasks.size() <= getReservedLoad(request),
+				"Appending %s tasks exceeds the reserved load of request %s", tasks.size(), request.getSessionId());
+		for (Task task : tasks) {
+			task.setIndex(index++);
+		}
+		request.addTasks(tasks);
+		if (lastChunk) {
+			request.setStreaming(false);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Wait for the tasks appended to a streaming request. The task list is sealed when no task is appended within
+	 * the idle timeout, so that an abandoned request still completes.
+	 * @param fromIndex the index of the first task not taken yet
+	 * @param idleTimeoutInMillis the maximum time to wait for the next chunk
+	 * @return a copy of the tasks from {@code fromIndex}, empty once the task list is sealed and all tasks are taken
+	 * @throws InterruptedException when interrupted while waiting
+	 */
+	public synchronized List<Task> awaitTasks(int fromIndex, long idleTimeoutInMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + idleTimeoutInMillis;
+		List<Task> tasks = request.getTasks();
+		while (tasks.size() <= fromIndex && request.isStreaming()) {
+			long waitMillis = deadline - System.currentTimeMillis();
+			if (waitMillis <= 0) {
+				request.setStreaming(false);
+				break;
+			}
+			wait(waitMillis);
+		}
+		return new ArrayList<>(tasks.subList(Math.min(fromIndex, tasks.size()), tasks.size()));
+	}
+
+	/**
+	 * Seal the task list of a streaming request that stopped early, the tasks appended afterwards are rejected.
+	 */
+	public synchronized void sealTasks() {
+		request.setStreaming(false);
+		notifyAll();
+	}
+
+	/**
+	 * Check if all the tasks of the request are known.
+	 * @return {@code false} while more tasks can be appended to a streaming request
+	 */
+	public synchronized boolean isTasksSealed() {
+		return request == null || (!request.isStreaming() && !hasUnexpandedTasks());
+	}
+
+	private boolean hasUnexpandedTasks() {
+		return request.getUrlTemplate() != null && request.getTasks() != null && request.getTasks().size() < request.getUrlTemplate().size();
+	}
+
+	/**
+	 * Expand the next tasks of a request submitted as a {@link URLTemplate}.
+	 * @param maxTasks the maximum number of tasks to expand
+	 * @return the expanded tasks, empty once all tasks of the template are expanded
+	 */
+	public synchronized List<Task> expandTasks(int maxTasks) {
+		URLTemplate template = request.getUrlTemplate();
+		Preconditions.checkState(template != null, "Request %s has no URL template", request.getSessionId());
+		int fromIndex = request.getTasks().size();
+		int toIndex = (int) Math.min(template.size(), (long) fromIndex + maxTasks);
+		List<Task> tasks = new ArrayList<>(Math.max(0, toIndex - fromIndex));
+		for (int index = fromIndex; index < toIndex; index++) {
+			URLTask task = template.expand(index);
+			task.setIndex(index);
+			tasks.add(task);
+		}
+		request.addTasks(tasks);
+		return tasks;
+	}
+
+	/**
+	 * Get the columnar task results of the request.
+	 * @return the columnar task results or {@code null} if the tasks have not been compacted
+	 */
+	public TaskResultColumns getTaskResults() {
+		return taskResults;
+	}
+
+	/**
+	 * Move the results of the completed request into a {@link TaskResultColumns} and release the task objects.
+	 * Responses are generated from the columns afterwards. Requests that are still running are left untouched.
+	 */
+	public synchronized void compactTaskResults() {
+		if (taskResults == null && isWorkCompleted(status) && !WorkStatus.CLEANED_UP.equals(status) && request.getTasks() != null) {
+			taskResults = TaskResultColumns.compact(request.getTasks(), processStartTime != null ? processStartTime : workDequeueTime);
+			request.getTasks().clear();
+		}
+	}
+
+	/**
+	 * Get the report with the tasks of its request. The tasks of a compacted request are rebuilt from its
+	 * {@link TaskResultColumns} into a copy of the report, the report itself stays compacted.
+	 * @return this report if it is not compacted, otherwise a copy with the rebuilt tasks
+	 */
+	public LightningRequestReport toDetailedReport() {
+		TaskResultColumns columns = taskResults;
+		if (columns == null || request == null) {
+			return this;
+		}
+		LightningRequest detailedRequest = new LightningRequest(request.getSessionId(), columns.toTasks(), request.getReservationReciept());
+		detailedRequest.setRequestType(request.getRequestType());
+		detailedRequest.setServingHostIp(request.getServingHostIp());
+		detailedRequest.setRequestconfig(request.getRequestconfig());
+		if (request.getUrlTemplate() != null) {
+			detailedRequest.setUrlTemplate(request.getUrlTemplate());
+		}
+		LightningRequestReport detailed = new LightningRequestReport();
+		detailed.request = detailedRequest;
+		detailed.batchReport = batchReport;
+		detailed.status = status;
+		detailed.workEnqueueTime = workEnqueueTime;
+		detailed.workDequeueTime = workDequeueTime;
+		detailed.totalExecutionTimeInMillis = totalExecutionTimeInMillis;
+		detailed.lastReportGenerationTime = lastReportGenerationTime;
+		detailed.processStartTime = processStartTime;
+		detailed.processEndTime = processEndTime;
+		detailed.response = response;
+		return detailed;
+	}
+
+	/**
+	 * Get the change log sequence number of the tasks completed so far.
+	 * @return the sequence number, 0 if the report has no change log
+	 */
+	int getSequence() {
+		TaskChangeLog log = changeLog;
+		return log != null ? log.size() : 0;
+	}
+
+	/**
+	 * Estimate the heap used by the report, including its tasks or columnar task results.
+	 * @return the estimated size in bytes
+	 */
+	public long estimateSize() {
+		long size = REPORT_SIZE_ESTIMATE + (long) batchReport.size() * BATCH_REPORT_SIZE_ESTIMATE;
+		TaskResultColumns columns = taskResults;
+		if (columns != null) {
+			size += columns.estimateSize();
+		} else if (request != null && request.getTasks() != null) {
+			synchronized (this) {
+				for (Task task : request.getTasks()) {
+					size += TASK_SIZE_ESTIMATE;
+					if (task instanceof URLTask && ((URLTask) task).getBody() != null) {
+						size += 2L * ((URLTask) task).getBody().length();
+					}
+				}
+			}
+		}
+		return size;
+	}
+
 	/**
 	 * Generate the response for the request.
-	 * @param pollDeltaOnly gets only the latest changes if set to {@code true}; gets the complete response if
-	 * set to {@code false}
+	 * @param pollDeltaOnly gets only the tasks completed since the last delta poll if set to {@code true}; gets the
+	 * complete response if set to {@code false}
 	 * @return the response for the request
 	 */
 	LightningResponse generateResposne(boolean pollDeltaOnly) {
 		Preconditions.checkNotNull(request.getTasks(), "Response cannot be generated because request.getTasks()");
+		if (pollDeltaOnly && changeLog != null) {
+			synchronized (this) {
+				LightningResponse lightningResponse = generateResponse(lastPolledSequence);
+				lastPolledSequence = lightningResponse.getSequence();
+				return lightningResponse;
+			}
+		}
+		TaskResultColumns columns = taskResults;
+		if (columns != null) {
+			return generateResponse(columns, null, changeLog != null ? changeLog.size() : 0);
+		}
+		synchronized (this) {
+			// the tasks may have been compacted while waiting for the lock
+			if (taskResults != null) {
+				return generateResposne(false);
+			}
+			return generateResponseFromTasks(pollDeltaOnly);
+		}
+	}
+
+	private LightningResponse generateResponseFromTasks(boolean pollDeltaOnly) {
 		Long thisReportGenerationTime = System.currentTimeMillis();
-		LightningResponse lightningResponse = new LightningResponse(request.getSessionId(), status);
+		// read the status before the log size, a completed status guarantees every task has been logged
+		WorkStatus currentStatus = status;
+		LightningResponse lightningResponse = new LightningResponse(request.getSessionId(), currentStatus);
+		lightningResponse.setSequence(changeLog != null ? changeLog.size() : 0);
 		int index = 0;
 		Map<Integer, FailedResponse> failedResponses = new HashMap<>();
 		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
@@ -135,38 +394,126 @@ public class LightningRequestReport implements Serializable {
 				isTaskUpdatedbeforeThisRepGenStart = task.getLastTaskStatusUpdateTime() <= thisReportGenerationTime;
 			}
 			boolean addDeltaDetails = !pollDeltaOnly || (isTaskUpdatedAfterLastRepGen && isTaskUpdatedbeforeThisRepGenStart);
-			if (task.getStatus() != null && addDeltaDetails) {
-				switch (task.getStatus()) {
-				case CONNECT_FAILED:
-				case FAILED:
-				case READ_WRITE_FAILED:
-					failedResponses.put(index, new LightningResponse.FailedResponse(((URLTask) task).getStatusCode(), task.getErrorMsg()));
-					break;
-				case TIMEDOUT:
-					if(isWorkCompleted(status)) {
-						failedResponses.put(index, new LightningResponse.FailedResponse(((URLTask) task).getStatusCode(), task.getErrorMsg()));
-					}
-					break;
-				case SUCCESS:
-					successResponses.put(index, new LightningResponse.SuccessResponse(((URLTask) task).getBody()));
-					((URLTask) task).setBody("");
-					successCount++;
-					break;
-				default:
-					break;
-				}
+			if (addDeltaDetails && addTaskResponse(task, index, currentStatus, failedResponses, successResponses)) {
+				successCount++;
 			}
 			index++;
 		}
 		lastReportGenerationTime = thisReportGenerationTime;
 		lightningResponse.setFailedResponses(failedResponses);
 		lightningResponse.setSuccessResponses(successResponses);
-		lightningResponse.setTotalCount(request.getTasks().size());
+		lightningResponse.setTotalCount(request.getRequestSize());
+		lightningResponse.setSuccessCount(successCount);
+		return lightningResponse;
+	}
+
+	/**
+	 * Generate the response for the tasks completed after the change log sequence number.
+	 *
+	 * The cost is proportional to the number of tasks completed since {@code fromSequence}, not to the request size.
+	 * @param fromSequence the sequence number returned by {@link LightningResponse#getSequence()} of the previous poll
+	 * @return the response with the tasks completed after {@code fromSequence}
+	 */
+	LightningResponse generateResponse(int fromSequence) {
+		Preconditions.checkNotNull(request.getTasks(), "Response cannot be generated because request.getTasks()");
+		if (changeLog == null) {
+			return generateResposne(false);
+		}
+		WorkStatus currentStatus = status;
+		int toSequence = changeLog.size();
+		TaskResultColumns columns = taskResults;
+		if (columns != null) {
+			int startSequence = Math.min(Math.max(0, fromSequence), toSequence);
+			int[] indexes = new int[toSequence - startSequence];
+			for (int sequence = startSequence; sequence < toSequence; sequence++) {
+				indexes[sequence - startSequence] = changeLog.get(sequence);
+			}
+			return generateResponse(columns, indexes, toSequence);
+		}
+		synchronized (this) {
+			// the tasks may have been compacted while waiting for the lock
+			if (taskResults != null) {
+				return generateResponse(fromSequence);
+			}
+			return generateResponseFromTasks(currentStatus, fromSequence, toSequence);
+		}
+	}
+
+	private LightningResponse generateResponseFromTasks(WorkStatus currentStatus, int fromSequence, int toSequence) {
+		LightningResponse lightningResponse = new LightningResponse(request.getSessionId(), currentStatus);
+		Map<Integer, FailedResponse> failedResponses = new HashMap<>();
+		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
+		int successCount = 0;
+		List<Task> tasks = request.getTasks();
+		for (int sequence = Math.max(0, fromSequence); sequence < toSequence; sequence++) {
+			int index = changeLog.get(sequence);
+			if (addTaskResponse(tasks.get(index), index, WorkStatus.DONE, failedResponses, successResponses)) {
+				successCount++;
+			}
+		}
+		lightningResponse.setFailedResponses(failedResponses);
+		lightningResponse.setSuccessResponses(successResponses);
+		lightningResponse.setTotalCount(request.getRequestSize());
 		lightningResponse.setSuccessCount(successCount);
-		lightningResponse.setStatus(status);
+		lightningResponse.setSequence(toSequence);
+		return lightningResponse;
+	}
+
+	/**
+	 * Generate the response from the columnar task results; only completed requests are compacted so every task
+	 * status is final.
+	 * @param indexes the task indexes to include or {@code null} for all tasks
+	 */
+	private LightningResponse generateResponse(TaskResultColumns columns, int[] indexes, int sequence) {
+		LightningResponse lightningResponse = new LightningResponse(request.getSessionId(), status);
+		Map<Integer, SuccessResponse> successResponses = columns.getSuccessResponses(indexes);
+		lightningResponse.setFailedResponses(columns.getFailedResponses(indexes));
+		lightningResponse.setSuccessResponses(successResponses);
+		lightningResponse.setTotalCount(columns.size());
+		lightningResponse.setSuccessCount(indexes != null ? successResponses.size() : columns.getSuccessCount());
+		lightningResponse.setSequence(sequence);
 		return lightningResponse;
 	}
 
+	/**
+	 * Add the task to the success or failed responses based on its status.
+	 * @return {@code true} if the task was added as a successful response
+	 */
+	private boolean addTaskResponse(Task task, int index, WorkStatus workStatus, Map<Integer, FailedResponse> failedResponses,
+			Map<Integer, SuccessResponse> successResponses) {
+		if (task.getStatus() == null) {
+			return false;
+		}
+		switch (task.getStatus()) {
+		case CONNECT_FAILED:
+		case FAILED:
+		case READ_WRITE_FAILED:
+		case STOPPED:
+			failedResponses.put(index, createFailedResponse((URLTask) task));
+			break;
+		case TIMEDOUT:
+			// a timed out task may still succeed on retry, it is final only once the work is completed
+			if (isWorkCompleted(workStatus)) {
+				failedResponses.put(index, createFailedResponse((URLTask) task));
+			}
+			break;
+		case SUCCESS:
+			successResponses.put(index, new LightningResponse.SuccessResponse(((URLTask) task).getBody()));
+			((URLTask) task).setBody("");
+			return true;
+		default:
+			break;
+		}
+		return false;
+	}
+
+	private static FailedResponse createFailedResponse(URLTask task) {
+		if (task.getErrorCode() != null) {
+			return new FailedResponse(task.getStatusCode(), task.getErrorCode(), task.getErrorDetail());
+		}
+		return new FailedResponse(task.getStatusCode(), task.getErrorMsg());
+	}
+
 	/* (non-Javadoc)
 	 * @see {@link Object#toString()}
 	 */
@@ -247,9 +594,11 @@ public class LightningRequestReport implements Serializable {
 	void retainAudiDataOnly() {
 		if (!WorkStatus.CLEANED_UP.equals(status)) {
 			this.response = generateResposne(false);
-			response.getFailedResponses().clear();
-			response.getSuccessResponses().clear();
+			response.setFailedResponses(new HashMap<Integer, FailedResponse>());
+			response.setSuccessResponses(new HashMap<Integer, SuccessResponse>());
 			request.getTasks().clear();
+			this.taskResults = null;
+			this.changeLog = null;
 			this.status = WorkStatus.CLEANED_UP;
 		}
 	}
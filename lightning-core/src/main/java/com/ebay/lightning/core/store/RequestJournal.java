@@ -0,0 +1,455 @@
+package com.ebay.lightning.core.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.config.SystemConfig.JournalPolicy;
+import com.ebay.lightning.core.constants.LightningCoreConstants;
+import com.ebay.lightning.core.utils.ZipUtil;
+
+/**
+ * The {@code RequestJournal} is an append-only, memory-mapped log of accepted requests and their completion
+ * markers. It allows the {@code TaskExecutionManager} to find the requests that were queued or running when the
+ * core went down.
+ *
+ * Records are handed over to a single writer thread and written sequentially; the writer forces the mapped segment
+ * once per drained group. The requests are serialized by the writer under the lock of their report, so the submit
+ * path only pays for an enqueue, and a request is handed over to a worker once {@link #awaitRecorded(String)}
+ * returns. The tasks appended to a streaming request are journaled as separate records with the appended chunk only.
+ * Each record is {@code [length][crc32][type][payload]} and replay stops at the first torn or zero length record of
+ * a segment.
+ *
+ * Segments are rolled once full and deleted as soon as every request accepted in them, and in all older segments,
+ * has completed.
+ *
+ * @author shashukla
+ */
+public class RequestJournal {
+
+	private static final Logger log = Logger.getLogger(RequestJournal.class);
+
+	private static final String JOURNAL_WRITER_THREAD = "RequestJournalWriterThread";
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final byte RECORD_ACCEPTED = 1;
+	private static final byte RECORD_COMPLETED = 2;
+	private static final byte RECORD_APPENDED = 3;
+	private static final int RECORD_HEADER_SIZE = 9;
+
+	private final JournalPolicy policy;
+	private final File directory;
+	private final BlockingQueue<JournalEntry> pendingEntries = new LinkedBlockingQueue<>();
+	private final ConcurrentMap<String, JournalEntry> pendingAccepts = new ConcurrentHashMap<>();
+
+	// Segment id to the number of requests accepted in it that are yet to complete; only touched by the writer
+	private final TreeMap<Long, Integer> openRequestsPerSegment = new TreeMap<>();
+	private final Map<String, Long> openRequestSegment = new HashMap<>();
+	private final List<File> replayedSegments = new ArrayList<>();
+
+	private long currentSegmentId;
+	private RandomAccessFile segmentFile;
+	private MappedByteBuffer segmentBuffer;
+	private Thread writer;
+	private volatile boolean running;
+
+	/**
+	 * Initialize the journal in the directory configured by the {@link JournalPolicy}.
+	 * @param policy the journal configuration
+	 */
+	public RequestJournal(JournalPolicy policy) {
+		this.policy = policy;
+		this.directory = new File(policy.getDirectory());
+	}
+
+	/**
+	 * Replay the existing segments and open a fresh segment for writing.
+	 *
+	 * The replayed segments are deleted by {@link #start()}, so the caller has to record the requests it wants to
+	 * keep again before starting the journal.
+	 * @return the requests that were accepted but never completed, in the order they were accepted
+	 * @throws IOException when the journal directory or segment cannot be created
+	 */
+	public synchronized List<LightningRequest> open() throws IOException {
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create journal directory " + directory.getAbsolutePath());
+		}
+		Map<String, LightningRequest> interruptedRequests = new LinkedHashMap<>();
+		long lastSegmentId = -1;
+		for (File segment : listSegments()) {
+			replaySegment(segment, interruptedRequests);
+			replayedSegments.add(segment);
+			lastSegmentId = getSegmentId(segment);
+		}
+		rollSegment(lastSegmentId + 1, 0);
+		log.info("Replayed " + replayedSegments.size() + " journal segments, interrupted requests: " + interruptedRequests.size());
+		return new ArrayList<>(interruptedRequests.values());
+	}
+
+	/**
+	 * Persist the records added since {@link #open()}, delete the replayed segments and start the writer thread.
+	 */
+	public synchronized void start() {
+		flush();
+		for (File segment : replayedSegments) {
+			if (!segment.delete()) {
+				log.warn("Unable to delete replayed journal segment " + segment);
+			}
+		}
+		replayedSegments.clear();
+		running = true;
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (running) {
+					try {
+						JournalEntry entry = pendingEntries.poll(policy.getGroupCommitIntervalInMillis(), TimeUnit.MILLISECONDS);
+						if (entry != null) {
+							writeGroup(entry);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					} catch (Exception e) {
+						log.error("Error writing to request journal", e);
+					}
+				}
+			}
+		}, JOURNAL_WRITER_THREAD);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Record that the request has been accepted for execution. The request is serialized by the writer, it has to be
+	 * handed over to a worker only once {@link #awaitRecorded(String)} returned.
+	 * @param request the accepted request
+	 * @param lock the lock held by whoever changes the task list of the request, the report of the request
+	 */
+	public void recordAccepted(LightningRequest request, Object lock) {
+		JournalEntry entry = new JournalEntry(RECORD_ACCEPTED, request.getSessionId(), request, lock);
+		pendingAccepts.put(request.getSessionId(), entry);
+		pendingEntries.add(entry);
+	}
+
+	/**
+	 * Record the tasks appended to a streaming request.
+	 * @param sessionId the session id of the request
+	 * @param tasks the appended tasks, with their index in the request
+	 * @param lastChunk {@code true} if the task list of the request is complete
+	 */
+	public void recordAppended(String sessionId, List<Task> tasks, boolean lastChunk) {
+		int fromIndex = tasks.isEmpty() ? 0 : tasks.get(0).getIndex();
+		AppendedTasks appendedTasks = new AppendedTasks(sessionId, fromIndex, new ArrayList<>(tasks), lastChunk);
+		pendingEntries.add(new JournalEntry(RECORD_APPENDED, sessionId, appendedTasks, appendedTasks));
+	}
+
+	/**
+	 * Wait for the accept record of the request to be written.
+	 * @param sessionId the session id of the request
+	 */
+	public void awaitRecorded(String sessionId) {
+		JournalEntry entry = pendingAccepts.get(sessionId);
+		if (entry == null) {
+			return;
+		}
+		try {
+			entry.written.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Record that the request is no longer running.
+	 * @param sessionId the session id of the request
+	 */
+	public void recordCompleted(String sessionId) {
+		pendingEntries.add(new JournalEntry(RECORD_COMPLETED, sessionId, sessionId.getBytes(LightningCoreConstants.DEFAULT_CHARSET)));
+	}
+
+	/**
+	 * Write all the pending records as one group and force them to the storage device.
+	 */
+	public void flush() {
+		writeGroup(null);
+	}
+
+	private synchronized void writeGroup(JournalEntry firstEntry) {
+		List<JournalEntry> entries = new ArrayList<>();
+		if (firstEntry != null) {
+			entries.add(firstEntry);
+		}
+		pendingEntries.drainTo(entries);
+		if (entries.isEmpty()) {
+			return;
+		}
+		try {
+			if (segmentBuffer == null) {
+				return;
+			}
+			for (JournalEntry entry : entries) {
+				byte[] payload;
+				try {
+					payload = entry.serialize();
+				} catch (IOException e) {
+					log.error("Unable to journal request " + entry.sessionId, e);
+					continue;
+				}
+				write(entry, payload);
+			}
+			segmentBuffer.force();
+			deleteCompletedSegments();
+		} catch (IOException e) {
+			log.error("Unable to write " + entries.size() + " journal records", e);
+		} finally {
+			// a request is not held up by a journal that failed to write it
+			for (JournalEntry entry : entries) {
+				if (entry.type == RECORD_ACCEPTED) {
+					pendingAccepts.remove(entry.sessionId, entry);
+					entry.written.countDown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flush the pending records and stop the writer thread.
+	 */
+	public void close() {
+		running = false;
+		if (writer != null) {
+			writer.interrupt();
+			try {
+				// a record taken by the writer has to be written before the segment is closed
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+		synchronized (this) {
+			closeSegment();
+		}
+	}
+
+	private void write(JournalEntry entry, byte[] payload) throws IOException {
+		int recordSize = RECORD_HEADER_SIZE + payload.length;
+		// keep room for the zero length marker that terminates the segment
+		if (segmentBuffer.remaining() < recordSize + 4) {
+			rollSegment(currentSegmentId + 1, recordSize + 4);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		segmentBuffer.putInt(payload.length);
+		segmentBuffer.putInt((int) crc.getValue());
+		segmentBuffer.put(entry.type);
+		segmentBuffer.put(payload);
+
+		if (entry.type == RECORD_ACCEPTED) {
+			Long previousSegmentId = openRequestSegment.put(entry.sessionId, currentSegmentId);
+			if (previousSegmentId != null) {
+				// accepted again, the request no longer holds its previous segment
+				incrementOpenRequests(previousSegmentId, -1);
+			}
+			incrementOpenRequests(currentSegmentId, 1);
+		} else if (entry.type == RECORD_COMPLETED) {
+			Long segmentId = openRequestSegment.remove(entry.sessionId);
+			if (segmentId != null) {
+				incrementOpenRequests(segmentId, -1);
+			}
+		}
+	}
+
+	private void incrementOpenRequests(long segmentId, int delta) {
+		Integer count = openRequestsPerSegment.get(segmentId);
+		openRequestsPerSegment.put(segmentId, (count != null ? count : 0) + delta);
+	}
+
+	/**
+	 * Delete the oldest segments as long as they hold no running request; a completion marker can only live in a
+	 * segment newer than its accept record, so deleting in order never resurrects a completed request.
+	 */
+	private void deleteCompletedSegments() {
+		while (!openRequestsPerSegment.isEmpty()) {
+			Map.Entry<Long, Integer> oldest = openRequestsPerSegment.firstEntry();
+			if (oldest.getKey() == currentSegmentId || oldest.getValue() > 0) {
+				break;
+			}
+			openRequestsPerSegment.remove(oldest.getKey());
+			File segment = getSegmentFile(oldest.getKey());
+			if (!segment.delete()) {
+				log.warn("Unable to delete journal segment " + segment);
+			}
+		}
+	}
+
+	private void rollSegment(long segmentId, int minimumSize) throws IOException {
+		if (segmentBuffer != null) {
+			segmentBuffer.force();
+		}
+		closeSegment();
+		currentSegmentId = segmentId;
+		if (!openRequestsPerSegment.containsKey(segmentId)) {
+			openRequestsPerSegment.put(segmentId, 0);
+		}
+		segmentFile = new RandomAccessFile(getSegmentFile(segmentId), "rw");
+		long segmentSize = Math.max(policy.getSegmentSizeInBytes(), minimumSize);
+		segmentBuffer = segmentFile.getChannel().map(MapMode.READ_WRITE, 0, segmentSize);
+	}
+
+	private void closeSegment() {
+		if (segmentFile != null) {
+			try {
+				segmentFile.close();
+			} catch (IOException e) {
+				log.warn("Unable to close journal segment " + currentSegmentId, e);
+			}
+			segmentFile = null;
+			segmentBuffer = null;
+		}
+	}
+
+	private void replaySegment(File segment, Map<String, LightningRequest> interruptedRequests) {
+		try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+			MappedByteBuffer buffer = file.getChannel().map(MapMode.READ_ONLY, 0, file.length());
+			while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				byte type = buffer.get();
+				if (length <= 0 || length > buffer.remaining()) {
+					break;
+				}
+				byte[] payload = new byte[length];
+				buffer.get(payload);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					log.warn("Torn record in journal segment " + segment + ", skipping rest of the segment");
+					break;
+				}
+				if (type == RECORD_ACCEPTED) {
+					LightningRequest request = (LightningRequest) ZipUtil.unZipByteArray(payload, LightningRequest.class);
+					if (request != null) {
+						interruptedRequests.put(request.getSessionId(), request);
+					}
+				} else if (type == RECORD_APPENDED) {
+					AppendedTasks appendedTasks = (AppendedTasks) ZipUtil.unZipByteArray(payload, AppendedTasks.class);
+					LightningRequest request = appendedTasks != null ? interruptedRequests.get(appendedTasks.sessionId) : null;
+					if (request != null) {
+						// the accept record is written after the submit and may already hold the appended tasks
+						int known = Math.max(0, request.getTasks().size() - appendedTasks.fromIndex);
+						if (known < appendedTasks.tasks.size()) {
+							request.addTasks(appendedTasks.tasks.subList(known, appendedTasks.tasks.size()));
+						}
+						if (appendedTasks.lastChunk) {
+							request.setStreaming(false);
+						}
+					}
+				} else if (type == RECORD_COMPLETED) {
+					interruptedRequests.remove(new String(payload, LightningCoreConstants.DEFAULT_CHARSET));
+				}
+			}
+		} catch (Exception e) {
+			log.error("Unable to replay journal segment " + segment, e);
+		}
+	}
+
+	private List<File> listSegments() {
+		File[] segments = directory.listFiles();
+		List<File> journalSegments = new ArrayList<>();
+		if (segments != null) {
+			for (File segment : segments) {
+				if (segment.getName().startsWith(SEGMENT_PREFIX) && segment.getName().endsWith(SEGMENT_SUFFIX)) {
+					journalSegments.add(segment);
+				}
+			}
+		}
+		File[] sorted = journalSegments.toArray(new File[journalSegments.size()]);
+		Arrays.sort(sorted);
+		return Arrays.asList(sorted);
+	}
+
+	private File getSegmentFile(long segmentId) {
+		return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+	}
+
+	private static long getSegmentId(File segment) {
+		String name = segment.getName();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private static class JournalEntry {
+		private final byte type;
+		private final String sessionId;
+		private final byte[] payload;
+		private final Object record;
+		private final Object lock;
+		private final CountDownLatch written = new CountDownLatch(1);
+
+		JournalEntry(byte type, String sessionId, byte[] payload) {
+			this.type = type;
+			this.sessionId = sessionId;
+			this.payload = payload;
+			this.record = null;
+			this.lock = null;
+		}
+
+		JournalEntry(byte type, String sessionId, Object record, Object lock) {
+			this.type = type;
+			this.sessionId = sessionId;
+			this.payload = null;
+			this.record = record;
+			this.lock = lock;
+		}
+
+		private byte[] serialize() throws IOException {
+			if (payload != null) {
+				return payload;
+			}
+			synchronized (lock) {
+				return ZipUtil.zipAsByteArray(record);
+			}
+		}
+	}
+
+	/**
+	 * The chunk of tasks appended to a streaming request.
+	 */
+	private static class AppendedTasks implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String sessionId;
+		private final int fromIndex;
+		private final List<Task> tasks;
+		private final boolean lastChunk;
+
+		AppendedTasks(String sessionId, int fromIndex, List<Task> tasks, boolean lastChunk) {
+			this.sessionId = sessionId;
+			this.fromIndex = fromIndex;
+			this.tasks = tasks;
+			this.lastChunk = lastChunk;
+		}
+	}
+}
@@ -0,0 +1,317 @@
+package com.ebay.lightning.core.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.ebay.lightning.core.config.SystemConfig.RetentionPolicy;
+import com.ebay.lightning.core.utils.ZipUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The {@code SpilledReportStore} holds completed {@link LightningRequestReport}s as compressed bytes outside the heap.
+ *
+ * Each report is serialized and compressed with {@link ZipUtil} and appended to a memory-mapped segment file in the
+ * {@link RetentionPolicy#getSpillDirectory()}, so a spilled report costs a small index entry on heap and its
+ * compressed size in the page cache, which the OS writes back to the file under memory pressure. The spilled bytes
+ * are never modified; a segment file is deleted once every report in it was removed. The segments are scratch space,
+ * the spilled reports do not survive a restart.
+ *
+ * The change log of a report is not spilled, only its last sequence number is kept. A sequence poll of a spilled
+ * report gets the complete response, or an empty response if the client already polled up to the last sequence.
+ *
+ * A report read from the store is decoded once and kept for a short while, so the polls that a client sends in a
+ * burst do not each decompress and deserialize the report again. The decoded reports are shared by the readers.
+ *
+ * @author shashukla
+ */
+public class SpilledReportStore {
+
+	private static final Logger log = Logger.getLogger(SpilledReportStore.class);
+	private static final String SEGMENT_PREFIX = "lightning-spill-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final int MAX_DECODED_REPORTS = 16;
+	private static final long DECODED_REPORT_EXPIRY_IN_MILLIS = 2000;
+
+	private final File directory;
+	private final long segmentSizeInBytes;
+	private final Map<String, SpilledReport> spilledReports = new ConcurrentHashMap<>();
+	private final Cache<String, LightningRequestReport> decodedReports = CacheBuilder.newBuilder().maximumSize(MAX_DECODED_REPORTS)
+			.expireAfterAccess(DECODED_REPORT_EXPIRY_IN_MILLIS, TimeUnit.MILLISECONDS).build();
+	private final AtomicLong sizeInBytes = new AtomicLong();
+	// guarded by this
+	private final Set<Segment> segments = new HashSet<>();
+	private Segment currentSegment;
+
+	/**
+	 * Create the store, the segment files are created on the first spill.
+	 * @param retentionPolicy the policy with the spill directory and segment size
+	 */
+	public SpilledReportStore(RetentionPolicy retentionPolicy) {
+		this.directory = new File(retentionPolicy.getSpillDirectory());
+		this.segmentSizeInBytes = retentionPolicy.getSpillSegmentSizeInBytes();
+	}
+
+	/**
+	 * Serialize and compress the report, to be stored with {@link #put(String, byte[], int)}.
+	 * @param sessionId the request id
+	 * @param report the completed report
+	 * @return the compressed report or {@code null} if the report could not be serialized
+	 */
+	public static byte[] serialize(String sessionId, LightningRequestReport report) {
+		try {
+			return ZipUtil.zipAsByteArray(report);
+		} catch (IOException | RuntimeException e) {
+			log.error("Unable to spill report " + sessionId, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Append the compressed report to the current segment, a new segment is mapped when the current one is full.
+	 * @param sessionId the request id
+	 * @param bytes the report compressed by {@link #serialize(String, LightningRequestReport)}
+	 * @param sequence the last change log sequence number of the report
+	 * @throws IOException if the segment cannot be created, mapped or written; the store is left unchanged
+	 */
+	public synchronized void put(String sessionId, byte[] bytes, int sequence) throws IOException {
+		Segment segment = currentSegment;
+		if (segment == null || segment.remaining() < bytes.length) {
+			segment = createSegment(bytes.length);
+			Segment fullSegment = currentSegment;
+			currentSegment = segment;
+			if (fullSegment != null && fullSegment.liveReports == 0) {
+				deleteSegment(fullSegment);
+			}
+		}
+		SpilledReport spilledReport = new SpilledReport(segment, segment.append(bytes), bytes.length, sequence);
+		sizeInBytes.addAndGet(bytes.length);
+		SpilledReport previous = spilledReports.put(sessionId, spilledReport);
+		decodedReports.invalidate(sessionId);
+		if (previous != null) {
+			release(previous);
+		}
+	}
+
+	/**
+	 * Check if the report of the request is spilled.
+	 * @param sessionId the request id
+	 * @return {@code true} if the report is spilled
+	 */
+	public boolean contains(String sessionId) {
+		return spilledReports.containsKey(sessionId);
+	}
+
+	/**
+	 * Get the last change log sequence number of the spilled report.
+	 * @param sessionId the request id
+	 * @return the last sequence number or -1 if the report is not spilled
+	 */
+	public int getSequence(String sessionId) {
+		SpilledReport spilledReport = spilledReports.get(sessionId);
+		return spilledReport != null ? spilledReport.sequence : -1;
+	}
+
+	/**
+	 * Read the spilled report, decoding it only if it was not read recently.
+	 * @param sessionId the request id
+	 * @return the report or {@code null} if the report is not spilled or cannot be read
+	 */
+	public LightningRequestReport get(String sessionId) {
+		LightningRequestReport report = decodedReports.getIfPresent(sessionId);
+		if (report != null) {
+			return report;
+		}
+		SpilledReport spilledReport = spilledReports.get(sessionId);
+		if (spilledReport == null) {
+			return null;
+		}
+		try {
+			report = (LightningRequestReport) ZipUtil.unZipByteArray(spilledReport.read(), LightningRequestReport.class);
+		} catch (Exception | InternalError e) {
+			log.error("Unable to read spilled report " + sessionId, e);
+			return null;
+		}
+		// a report removed while it was decoded must not come back through the cache
+		if (report != null) {
+			decodedReports.put(sessionId, report);
+			if (spilledReports.get(sessionId) != spilledReport) {
+				decodedReports.invalidate(sessionId);
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Remove the spilled report, the segment holding it is deleted if no other report is left in it.
+	 * @param sessionId the request id
+	 * @return {@code true} if a spilled report was removed
+	 */
+	public synchronized boolean remove(String sessionId) {
+		SpilledReport spilledReport = spilledReports.remove(sessionId);
+		decodedReports.invalidate(sessionId);
+		if (spilledReport != null) {
+			release(spilledReport);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the number of spilled reports.
+	 * @return the number of spilled reports
+	 */
+	public int size() {
+		return spilledReports.size();
+	}
+
+	/**
+	 * Get the size of the spilled reports.
+	 * @return the size of the spilled reports in bytes
+	 */
+	public long getSizeInBytes() {
+		return sizeInBytes.get();
+	}
+
+	/**
+	 * Get the number of segment files in use.
+	 * @return the number of segment files
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Remove every spilled report and delete the segment files.
+	 */
+	public synchronized void close() {
+		spilledReports.clear();
+		decodedReports.invalidateAll();
+		sizeInBytes.set(0);
+		for (Segment segment : segments) {
+			segment.delete();
+		}
+		segments.clear();
+		currentSegment = null;
+	}
+
+	private void release(SpilledReport spilledReport) {
+		sizeInBytes.addAndGet(-spilledReport.length);
+		Segment segment = spilledReport.segment;
+		segment.liveReports--;
+		if (segment.liveReports == 0) {
+			// nothing is appended before the written bytes, so an empty current segment is not worth keeping either
+			if (segment == currentSegment) {
+				currentSegment = null;
+			}
+			deleteSegment(segment);
+		}
+	}
+
+	private Segment createSegment(int minimumSize) throws IOException {
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create spill directory " + directory.getAbsolutePath());
+		}
+		File file = File.createTempFile(SEGMENT_PREFIX, SEGMENT_SUFFIX, directory);
+		long segmentSize = Math.min(Integer.MAX_VALUE, Math.max(segmentSizeInBytes, minimumSize));
+		// the mapping stays valid after the file is closed
+		try (RandomAccessFile segmentFile = new RandomAccessFile(file, "rw")) {
+			Segment segment = new Segment(file, segmentFile.getChannel().map(MapMode.READ_WRITE, 0, segmentSize));
+			segments.add(segment);
+			return segment;
+		} catch (IOException | RuntimeException e) {
+			if (!file.delete()) {
+				log.warn("Unable to delete spill segment " + file);
+			}
+			throw e;
+		}
+	}
+
+	private void deleteSegment(Segment segment) {
+		segments.remove(segment);
+		segment.delete();
+	}
+
+	/**
+	 * A memory-mapped segment file; the bytes up to the write position are never modified, so readers copy them
+	 * without holding the store lock. The mapping is released by the garbage collector once no reader holds it.
+	 */
+	private static class Segment {
+		private final File file;
+		private final MappedByteBuffer buffer;
+		// guarded by the store
+		private int position;
+		private int liveReports;
+
+		private Segment(File file, MappedByteBuffer buffer) {
+			this.file = file;
+			this.buffer = buffer;
+		}
+
+		private int remaining() {
+			return buffer.capacity() - position;
+		}
+
+		private int append(byte[] bytes) throws IOException {
+			ByteBuffer target = buffer.duplicate();
+			target.position(position);
+			try {
+				target.put(bytes);
+			} catch (InternalError e) {
+				// a fault on the mapped memory, e.g. the disk is full
+				throw new IOException("Unable to write spill segment " + file, e);
+			}
+			int offset = position;
+			position += bytes.length;
+			liveReports++;
+			return offset;
+		}
+
+		private byte[] read(int offset, int length) {
+			ByteBuffer source = buffer.duplicate();
+			source.position(offset);
+			byte[] bytes = new byte[length];
+			source.get(bytes);
+			return bytes;
+		}
+
+		private void delete() {
+			if (!file.delete()) {
+				log.warn("Unable to delete spill segment " + file);
+			}
+		}
+	}
+
+	/**
+	 * The location of a spilled report and its last change log sequence number.
+	 */
+	private static class SpilledReport {
+		private final Segment segment;
+		private final int offset;
+		private final int length;
+		private final int sequence;
+
+		private SpilledReport(Segment segment, int offset, int length, int sequence) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.sequence = sequence;
+		}
+
+		private byte[] read() {
+			return segment.read(offset, length);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.ebay.lightning.core.store;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@code TaskChangeLog} is the per request, append-only log of task indexes that reached their final status.
+ * The position of an entry in the log is its sequence number, which clients use as the cursor for delta polls.
+ *
+ * The log has a single writer, the worker executing the request, and any number of readers. Entries are stored
+ * in fixed size chunks that are never moved once allocated, and an entry is published by the volatile write of
+ * the log size, so neither appends nor reads take a lock.
+ *
+ * @author shashukla
+ */
+public class TaskChangeLog {
+
+	private static final int CHUNK_SHIFT = 12;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final AtomicReferenceArray<int[]> chunks;
+	private volatile int size;
+
+	/**
+	 * Initialize the log for a request.
+	 * @param maxEntries the maximum number of entries, each task is logged at most once per execution attempt
+	 */
+	public TaskChangeLog(int maxEntries) {
+		this.chunks = new AtomicReferenceArray<>(Math.max(1, (maxEntries + CHUNK_SIZE - 1) >>> CHUNK_SHIFT));
+	}
+
+	/**
+	 * Append a task index to the log. Must only be called by the thread executing the request.
+	 * @param taskIndex the index of the task in the request
+	 */
+	public void append(int taskIndex) {
+		int sequence = size;
+		int chunkIndex = sequence >>> CHUNK_SHIFT;
+		if (chunkIndex >= chunks.length()) {
+			throw new IllegalStateException("Task change log is full at " + sequence + " entries");
+		}
+		int[] chunk = chunks.get(chunkIndex);
+		if (chunk == null) {
+			chunk = new int[CHUNK_SIZE];
+			chunks.set(chunkIndex, chunk);
+		}
+		chunk[sequence & CHUNK_MASK] = taskIndex;
+		size = sequence + 1;
+	}
+
+	/**
+	 * Get the sequence number the next entry will be written at.
+	 * @return the number of entries in the log
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the task index logged at the sequence number. Only sequence numbers below a previously read
+	 * {@link #size()} are guaranteed to be visible.
+	 * @param sequence the sequence number of the entry
+	 * @return the task index
+	 */
+	public int get(int sequence) {
+		return chunks.get(sequence >>> CHUNK_SHIFT)[sequence & CHUNK_MASK];
+	}
+}
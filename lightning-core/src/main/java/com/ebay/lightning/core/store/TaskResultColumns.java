@@ -0,0 +1,443 @@
+package com.ebay.lightning.core.store;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import com.ebay.lightning.core.beans.ChainedURLTask;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
+import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
+
+/**
+ * The {@code TaskResultColumns} is the compact, read-only form of the task results of a completed request.
+ *
+ * The status, HTTP status code and completion time of every task are held in primitive arrays indexed by the task
+ * index, and errors are interned into a per request table, so a completed request costs a few bytes per task
+ * instead of a {@link URLTask} with its URI and strings. Response bodies, which only exist for GET requests, are kept
+ * in a sparse map. The URL of every task is kept so that the audit of the request can list its tasks, see
+ * {@link #toTasks()}.
+ *
+ * The success and failed response maps handed out by {@link #getFailedResponses(int[])} and
+ * {@link #getSuccessResponses(int[])} are views that create the {@link FailedResponse} and {@link SuccessResponse}
+ * entries as they are read, and are written as a plain {@link HashMap} when serialized.
+ *
+ * @author shashukla
+ */
+public class TaskResultColumns implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final byte NO_STATUS = -1;
+	private static final short NO_ERROR = -1;
+	private static final int NO_TIME = -1;
+	private static final int ENTRY_SIZE_ESTIMATE = 64;
+	private static final int ERROR_SIZE_ESTIMATE = 128;
+	private static final TaskStatus[] TASK_STATUSES = TaskStatus.values();
+
+	private final long baseTime;
+	private final byte[] statuses;
+	private final short[] statusCodes;
+	private final int[] completionTimeOffsets;
+	private final short[] errorIds;
+	private final String[] urls;
+	private final List<TaskError> errorTable = new ArrayList<>();
+	private final Map<Integer, TaskError> overflowErrors = new HashMap<>();
+	private final Map<Integer, String> bodies = new HashMap<>();
+	private int successCount;
+
+	private TaskResultColumns(int size, long baseTime) {
+		this.baseTime = baseTime;
+		this.statuses = new byte[size];
+		this.statusCodes = new short[size];
+		this.completionTimeOffsets = new int[size];
+		this.errorIds = new short[size];
+		this.urls = new String[size];
+	}
+
+	/**
+	 * Copy the results of the tasks into columns.
+	 * @param tasks the executed tasks of the request
+	 * @param baseTime the time task completion times are stored relative to, usually the process start time
+	 * @return the columnar task results
+	 */
+	public static TaskResultColumns compact(List<Task> tasks, long baseTime) {
+		TaskResultColumns columns = new TaskResultColumns(tasks.size(), baseTime);
+		Map<TaskError, Short> errorIdsByError = new HashMap<>();
+		int index = 0;
+		for (Task task : tasks) {
+			columns.add(index++, task, errorIdsByError);
+		}
+		return columns;
+	}
+
+	private void add(int index, Task task, Map<TaskError, Short> errorIdsByError) {
+		TaskStatus status = task.getStatus();
+		statuses[index] = status != null ? (byte) status.ordinal() : NO_STATUS;
+		Long updateTime = task.getLastTaskStatusUpdateTime();
+		completionTimeOffsets[index] = updateTime != null ? (int) Math.max(0, updateTime - baseTime) : NO_TIME;
+		errorIds[index] = NO_ERROR;
+		urls[index] = getUrl(task);
+		if (task instanceof URLTask) {
+			URLTask urlTask = (URLTask) task;
+			statusCodes[index] = (short) urlTask.getStatusCode();
+			if (TaskStatus.SUCCESS.equals(status) && urlTask.getBody() != null && !urlTask.getBody().isEmpty()) {
+				bodies.put(index, urlTask.getBody());
+			}
+		}
+		if (TaskStatus.SUCCESS.equals(status)) {
+			successCount++;
+		}
+		if (task.getErrorCode() != null || task.getErrorMsg() != null) {
+			TaskError error = task.getErrorCode() != null ? new TaskError(task.getErrorCode(), task.getErrorDetail(), null)
+					: new TaskError(null, null, task.getErrorMsg());
+			Short errorId = errorIdsByError.get(error);
+			if (errorId == null && errorTable.size() < Short.MAX_VALUE) {
+				errorId = (short) errorTable.size();
+				errorTable.add(error);
+				errorIdsByError.put(error, errorId);
+			}
+			if (errorId != null) {
+				errorIds[index] = errorId;
+			} else {
+				overflowErrors.put(index, error);
+			}
+		}
+	}
+
+	private static String getUrl(Task task) {
+		if (task instanceof ChainedURLTask) {
+			// the URL of the last sub task executed, the one the status is about
+			URLTask current = ((ChainedURLTask) task).getCurrentUrlTask();
+			return current != null ? current.getCompleteURL() : task.getUrl();
+		}
+		return task instanceof URLTask ? ((URLTask) task).getCompleteURL() : task.getUrl();
+	}
+
+	/**
+	 * Rebuild the tasks of the request from the columns, with their URL, index and result, for the audit of the
+	 * request. The tasks are new objects, the columns are not changed.
+	 * @return the tasks in the order of their index
+	 */
+	public List<Task> toTasks() {
+		List<Task> tasks = new ArrayList<>(size());
+		for (int index = 0; index < size(); index++) {
+			Task task;
+			if (urls[index] != null && !urls[index].isEmpty()) {
+				URLTask urlTask = new URLTask(urls[index]);
+				urlTask.setStatusCode(statusCodes[index]);
+				urlTask.setBody(bodies.get(index));
+				task = urlTask;
+			} else {
+				task = new Task();
+				task.setUrl(urls[index]);
+			}
+			task.setIndex(index);
+			task.setStatus(getStatus(index));
+			long completionTime = getCompletionTime(index);
+			task.setLastTaskStatusUpdateTime(completionTime != NO_TIME ? completionTime : null);
+			TaskError error = getError(index);
+			if (error != null && error.errorCode != null) {
+				task.setError(error.errorCode, error.errorDetail);
+			} else if (error != null) {
+				task.setErrorMsg(error.errorMsg);
+			}
+			tasks.add(task);
+		}
+		return tasks;
+	}
+
+	/**
+	 * Get the number of tasks.
+	 * @return the number of tasks
+	 */
+	public int size() {
+		return statuses.length;
+	}
+
+	/**
+	 * Get the number of successful tasks.
+	 * @return the number of successful tasks
+	 */
+	public int getSuccessCount() {
+		return successCount;
+	}
+
+	/**
+	 * Get the number of distinct errors.
+	 * @return the size of the interned error table
+	 */
+	public int getDistinctErrorCount() {
+		return errorTable.size() + overflowErrors.size();
+	}
+
+	/**
+	 * Estimate the heap used by the columns.
+	 * @return the estimated size in bytes
+	 */
+	public long estimateSize() {
+		long size = (long) size() * (1 + 2 + 4 + 2) + (errorTable.size() + overflowErrors.size()) * ERROR_SIZE_ESTIMATE;
+		for (String url : urls) {
+			size += url != null ? ENTRY_SIZE_ESTIMATE + 2L * url.length() : 0;
+		}
+		for (String body : bodies.values()) {
+			size += ENTRY_SIZE_ESTIMATE + 2L * body.length();
+		}
+		return size;
+	}
+
+	/**
+	 * Get the final status of the task.
+	 * @param index the task index
+	 * @return the task status or {@code null} if the task was never executed
+	 */
+	public TaskStatus getStatus(int index) {
+		byte status = statuses[index];
+		return status != NO_STATUS ? TASK_STATUSES[status] : null;
+	}
+
+	/**
+	 * Get the HTTP status code of the task.
+	 * @param index the task index
+	 * @return the HTTP status code
+	 */
+	public int getStatusCode(int index) {
+		return statusCodes[index];
+	}
+
+	/**
+	 * Get the error message of the task.
+	 * @param index the task index
+	 * @return the error message or {@code null} if there was no error
+	 */
+	public String getErrorMsg(int index) {
+		TaskError error = getError(index);
+		return error != null ? error.getErrorMsg() : null;
+	}
+
+	private TaskError getError(int index) {
+		short errorId = errorIds[index];
+		return errorId != NO_ERROR ? errorTable.get(errorId) : overflowErrors.get(index);
+	}
+
+	/**
+	 * Get the response body of the task.
+	 * @param index the task index
+	 * @return the response body or {@code null} if the task had no body
+	 */
+	public String getBody(int index) {
+		return bodies.get(index);
+	}
+
+	/**
+	 * Get the time at which the task reached its final status.
+	 * @param index the task index
+	 * @return the completion time or -1 if the task status was never updated
+	 */
+	public long getCompletionTime(int index) {
+		int offset = completionTimeOffsets[index];
+		return offset != NO_TIME ? baseTime + offset : NO_TIME;
+	}
+
+	/**
+	 * Check if the task completed with a failure.
+	 * @param index the task index
+	 * @return {@code true} if the task failed, timed out or was stopped
+	 */
+	public boolean isFailed(int index) {
+		TaskStatus status = getStatus(index);
+		return TaskStatus.CONNECT_FAILED.equals(status) || TaskStatus.FAILED.equals(status) || TaskStatus.READ_WRITE_FAILED.equals(status)
+				|| TaskStatus.TIMEDOUT.equals(status) || TaskStatus.STOPPED.equals(status);
+	}
+
+	/**
+	 * Check if the task completed successfully.
+	 * @param index the task index
+	 * @return {@code true} if the task succeeded
+	 */
+	public boolean isSuccess(int index) {
+		return TaskStatus.SUCCESS.equals(getStatus(index));
+	}
+
+	/**
+	 * Get the failed responses of the tasks.
+	 * @param indexes the task indexes to look at or {@code null} for all tasks
+	 * @return a view of the failed responses keyed by task index
+	 */
+	public Map<Integer, FailedResponse> getFailedResponses(int[] indexes) {
+		return new FailedResponseView(this, select(indexes, false));
+	}
+
+	/**
+	 * Get the successful responses of the tasks.
+	 * @param indexes the task indexes to look at or {@code null} for all tasks
+	 * @return a view of the successful responses keyed by task index
+	 */
+	public Map<Integer, SuccessResponse> getSuccessResponses(int[] indexes) {
+		return new SuccessResponseView(this, select(indexes, true));
+	}
+
+	private int[] select(int[] indexes, boolean success) {
+		int count = indexes != null ? indexes.length : size();
+		int[] selected = new int[count];
+		int selectedCount = 0;
+		for (int i = 0; i < count; i++) {
+			int index = indexes != null ? indexes[i] : i;
+			if (success ? isSuccess(index) : isFailed(index)) {
+				selected[selectedCount++] = index;
+			}
+		}
+		selected = Arrays.copyOf(selected, selectedCount);
+		Arrays.sort(selected);
+		return selected;
+	}
+
+	/**
+	 * Read only map over a sorted set of task indexes that creates its values on access.
+	 */
+	private abstract static class ColumnView<V> extends AbstractMap<Integer, V> implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		protected final TaskResultColumns columns;
+		private final int[] indexes;
+
+		ColumnView(TaskResultColumns columns, int[] indexes) {
+			this.columns = columns;
+			this.indexes = indexes;
+		}
+
+		protected abstract V valueAt(int index);
+
+		@Override
+		public int size() {
+			return indexes.length;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof Integer && Arrays.binarySearch(indexes, (Integer) key) >= 0;
+		}
+
+		@Override
+		public V get(Object key) {
+			return containsKey(key) ? valueAt((Integer) key) : null;
+		}
+
+		@Override
+		public Set<Entry<Integer, V>> entrySet() {
+			return new AbstractSet<Entry<Integer, V>>() {
+				@Override
+				public Iterator<Entry<Integer, V>> iterator() {
+					return new Iterator<Entry<Integer, V>>() {
+						private int position = 0;
+
+						@Override
+						public boolean hasNext() {
+							return position < indexes.length;
+						}
+
+						@Override
+						public Entry<Integer, V> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							int index = indexes[position++];
+							return new SimpleImmutableEntry<>(index, valueAt(index));
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException("Task result views are read only");
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return indexes.length;
+				}
+			};
+		}
+
+		protected Object writeReplace() {
+			return new HashMap<>(this);
+		}
+	}
+
+	private static class FailedResponseView extends ColumnView<FailedResponse> {
+		private static final long serialVersionUID = 1L;
+
+		FailedResponseView(TaskResultColumns columns, int[] indexes) {
+			super(columns, indexes);
+		}
+
+		@Override
+		protected FailedResponse valueAt(int index) {
+			TaskError error = columns.getError(index);
+			if (error != null && error.errorCode != null) {
+				return new FailedResponse(columns.getStatusCode(index), error.errorCode, error.errorDetail);
+			}
+			return new FailedResponse(columns.getStatusCode(index), error != null ? error.errorMsg : null);
+		}
+	}
+
+	private static class SuccessResponseView extends ColumnView<SuccessResponse> {
+		private static final long serialVersionUID = 1L;
+
+		SuccessResponseView(TaskResultColumns columns, int[] indexes) {
+			super(columns, indexes);
+		}
+
+		@Override
+		protected SuccessResponse valueAt(int index) {
+			return new SuccessResponse(columns.getBody(index));
+		}
+	}
+
+	/**
+	 * An entry of the interned error table; either an error code with its detail or an explicit message.
+	 */
+	private static class TaskError implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final ErrorCode errorCode;
+		private final String errorDetail;
+		private final String errorMsg;
+
+		TaskError(ErrorCode errorCode, String errorDetail, String errorMsg) {
+			this.errorCode = errorCode;
+			this.errorDetail = errorDetail;
+			this.errorMsg = errorMsg;
+		}
+
+		String getErrorMsg() {
+			return errorCode != null ? errorCode.getMessage(errorDetail) : errorMsg;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(errorCode, errorDetail, errorMsg);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TaskError)) {
+				return false;
+			}
+			TaskError other = (TaskError) obj;
+			return errorCode == other.errorCode && Objects.equals(errorDetail, other.errorDetail) && Objects.equals(errorMsg, other.errorMsg);
+		}
+	}
+}
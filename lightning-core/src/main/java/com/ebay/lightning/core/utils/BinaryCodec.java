@@ -0,0 +1,754 @@
+package com.ebay.lightning.core.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ebay.lightning.core.beans.BatchReport;
+import com.ebay.lightning.core.beans.ChainedURLTask;
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.beans.URLTemplate;
+import com.ebay.lightning.core.config.RequestConfig;
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
+import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.ebay.lightning.core.store.LightningRequestReport;
+
+/**
+ * Helper class to encode {@link LightningRequest}, {@link LightningResponse} and {@link LightningRequestReport} in
+ * a compact binary format, the alternative to the Java serialization of {@link ZipUtil}.
+ *
+ * <p>Every message starts with a two byte magic, the format version and the message type. The fields follow in a
+ * fixed order: integers are zig-zag varints, strings are UTF-8 prefixed with their length and enums are written by
+ * name, so that constants can be added or reordered. The {@link RequestConfig} is written as named fields and unknown
+ * fields are skipped, so that fields can be added to it without a new version. A decoder rejects messages with a
+ * newer version than {@link #VERSION}; version 2 added the streaming flag and version 3 the {@link URLTemplate} of
+ * the request, both absent from older messages, and version 4 replaced the enum ordinals by names. Counts and
+ * lengths are checked against the bytes left, so a corrupt message fails with an {@link IllegalArgumentException}
+ * instead of allocating for a bogus size. The binary format is negotiated with the {@link #CONTENT_TYPE} content type so that clients without it
+ * keep using {@link ZipUtil}.</p>
+ *
+ * @author shashukla
+ * @see ZipUtil
+ */
+public class BinaryCodec {
+
+	public static final String CONTENT_TYPE = "application/x-lightning-binary";
+	public static final byte VERSION = 4;
+
+	private static final byte MAGIC_0 = 'L';
+	private static final byte MAGIC_1 = 'B';
+	private static final byte TYPE_REQUEST = 1;
+	private static final byte TYPE_RESPONSE = 2;
+	private static final byte TYPE_REPORT = 3;
+	private static final byte TASK_URL = 0;
+	private static final byte TASK_CHAINED_URL = 1;
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_INT = 1;
+	private static final byte VALUE_LONG = 2;
+	private static final byte VALUE_BOOLEAN = 3;
+	private static final byte VALUE_STRING = 4;
+	private static final byte VALUE_ENUM = 5;
+	private static final byte VERSION_STREAMING_REQUEST = 2;
+	private static final byte VERSION_URL_TEMPLATE = 3;
+	private static final byte VERSION_ENUM_NAMES = 4;
+	private static final int HEADER_SIZE = 4;
+	private static final int URL_TASK_SIZE_ESTIMATE = 64;
+
+	private static final TaskStatus[] TASK_STATUSES = TaskStatus.values();
+	private static final WorkStatus[] WORK_STATUSES = WorkStatus.values();
+	private static final ErrorCode[] ERROR_CODES = ErrorCode.values();
+	private static final ReservationReceipt.State[] RESERVATION_STATES = ReservationReceipt.State.values();
+	private static final Map<String, Field> REQUEST_CONFIG_FIELDS = getRequestConfigFields();
+
+	private BinaryCodec() {
+	}
+
+	/**
+	 * Check if the data is a message encoded by this codec.
+	 * @param data the data
+	 * @return {@code true} if the data starts with the magic of the codec
+	 */
+	public static boolean isEncoded(byte[] data) {
+		return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+	}
+
+	/**
+	 * Encode the request with its tasks.
+	 * @param request the request
+	 * @return the encoded request, positioned at the start of the message
+	 * @throws IllegalArgumentException when a task is neither an {@link URLTask} nor a {@link ChainedURLTask}
+	 */
+	public static ByteBuffer encode(LightningRequest request) {
+		List<Task> tasks = request.getTasks();
+		Encoder encoder = new Encoder(HEADER_SIZE + 256 + (tasks != null ? tasks.size() * URL_TASK_SIZE_ESTIMATE : 0), TYPE_REQUEST);
+		writeRequest(encoder, request);
+		return encoder.finish();
+	}
+
+	/**
+	 * Encode the response.
+	 * @param response the response
+	 * @return the encoded response, positioned at the start of the message
+	 */
+	public static ByteBuffer encode(LightningResponse response) {
+		int size = (response.getFailedResponses() != null ? response.getFailedResponses().size() : 0)
+				+ (response.getSuccessResponses() != null ? response.getSuccessResponses().size() : 0);
+		Encoder encoder = new Encoder(HEADER_SIZE + 64 + size * 16, TYPE_RESPONSE);
+		writeResponse(encoder, response);
+		return encoder.finish();
+	}
+
+	/**
+	 * Check if the report can be encoded. The columnar task results of compacted reports and the final response of
+	 * cleaned up reports are not part of the format; such reports are sent with {@link ZipUtil}.
+	 * @param report the report
+	 * @return {@code true} if {@link #encode(LightningRequestReport)} encodes the report without loss
+	 */
+	public static boolean canEncode(LightningRequestReport report) {
+		return report.getTaskResults() == null && !WorkStatus.CLEANED_UP.equals(report.getStatus());
+	}
+
+	/**
+	 * Encode the report with its request and batch reports.
+	 * @param report the report
+	 * @return the encoded report, positioned at the start of the message
+	 * @throws IllegalArgumentException when the report cannot be encoded, see {@link #canEncode(LightningRequestReport)}
+	 */
+	public static ByteBuffer encode(LightningRequestReport report) {
+		if (!canEncode(report)) {
+			throw new IllegalArgumentException("Compacted or cleaned up reports cannot be encoded");
+		}
+		LightningRequest request = report.getRequest();
+		int taskCount = request != null && request.getTasks() != null ? request.getTasks().size() : 0;
+		Encoder encoder = new Encoder(HEADER_SIZE + 256 + taskCount * URL_TASK_SIZE_ESTIMATE, TYPE_REPORT);
+		encoder.writeBoolean(request != null);
+		if (request != null) {
+			synchronized (report) {
+				writeRequest(encoder, request);
+			}
+		}
+		encoder.writeEnum(report.getStatus());
+		encoder.writeNullableLong(report.getWorkEnqueueTime());
+		encoder.writeNullableLong(report.getWorkDequeueTime());
+		encoder.writeNullableLong(report.getTotalExecutionTimeInMillis());
+		encoder.writeNullableLong(report.getProcessStartTime());
+		encoder.writeLong(report.getProcessEndTime());
+		Map<Integer, BatchReport> batchReports = report.getBatchReport();
+		encoder.writeCount(batchReports != null ? batchReports.size() : -1);
+		if (batchReports != null) {
+			for (Map.Entry<Integer, BatchReport> entry : batchReports.entrySet()) {
+				encoder.writeInt(entry.getKey());
+				writeBatchReport(encoder, entry.getValue());
+			}
+		}
+		return encoder.finish();
+	}
+
+	/**
+	 * Decode a request.
+	 * @param buffer the encoded request
+	 * @return the request
+	 * @throws IllegalArgumentException when the buffer does not hold an encoded request
+	 */
+	public static LightningRequest decodeRequest(ByteBuffer buffer) {
+		byte version = readHeader(buffer, TYPE_REQUEST);
+		try {
+			return readRequest(buffer, version);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated lightning request", e);
+		}
+	}
+
+	/**
+	 * Decode a response.
+	 * @param buffer the encoded response
+	 * @return the response
+	 * @throws IllegalArgumentException when the buffer does not hold an encoded response
+	 */
+	public static LightningResponse decodeResponse(ByteBuffer buffer) {
+		byte version = readHeader(buffer, TYPE_RESPONSE);
+		try {
+			return readResponse(buffer, version);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated lightning response", e);
+		}
+	}
+
+	/**
+	 * Decode a report.
+	 * @param buffer the encoded report
+	 * @return the report
+	 * @throws IllegalArgumentException when the buffer does not hold an encoded report
+	 */
+	public static LightningRequestReport decodeReport(ByteBuffer buffer) {
+		byte version = readHeader(buffer, TYPE_REPORT);
+		try {
+			LightningRequestReport report = new LightningRequestReport();
+			if (readBoolean(buffer)) {
+				report.setRequest(readRequest(buffer, version));
+			}
+			report.setStatus(readEnum(buffer, WORK_STATUSES, version));
+			Long enqueueTime = readNullableLong(buffer);
+			if (enqueueTime != null) {
+				report.setWorkEnqueueTime(enqueueTime);
+			}
+			Long dequeueTime = readNullableLong(buffer);
+			if (dequeueTime != null) {
+				report.setWorkDequeueTime(dequeueTime);
+			}
+			report.setTotalExecutionTimeInMillis(readNullableLong(buffer));
+			report.setProcessStartTime(readNullableLong(buffer));
+			report.setProcessEndTime(readLong(buffer));
+			int batchCount = readCount(buffer);
+			if (batchCount >= 0) {
+				Map<Integer, BatchReport> batchReports = new ConcurrentHashMap<>();
+				for (int i = 0; i < batchCount; i++) {
+					int batchId = readInt(buffer);
+					batchReports.put(batchId, readBatchReport(buffer));
+				}
+				report.setBatchReport(batchReports);
+			}
+			return report;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated lightning report", e);
+		}
+	}
+
+	/**
+	 * Copy the remaining bytes of the buffer.
+	 * @param buffer the buffer
+	 * @return the remaining bytes
+	 */
+	public static byte[] toByteArray(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+
+	private static void writeRequest(Encoder encoder, LightningRequest request) {
+		encoder.writeString(request.getSessionId());
+		encoder.writeString(request.getRequestType());
+		encoder.writeString(request.getServingHostIp());
+		ReservationReceipt receipt = request.getReservationReciept();
+		encoder.writeBoolean(receipt != null);
+		if (receipt != null) {
+			encoder.writeEnum(receipt.getState());
+			encoder.writeString(receipt.getId());
+			encoder.writeInt(receipt.getLoad());
+			encoder.writeInt(receipt.getBusyWithLoad());
+		}
+		RequestConfig config = request.getRequestconfig();
+		encoder.writeBoolean(config != null);
+		if (config != null) {
+			writeRequestConfig(encoder, config);
+		}
+		List<Task> tasks = request.getTasks();
+		encoder.writeCount(tasks != null ? tasks.size() : -1);
+		if (tasks != null) {
+			for (Task task : tasks) {
+				writeTask(encoder, task);
+			}
+		}
+		encoder.writeBoolean(request.isStreaming());
+		URLTemplate template = request.getUrlTemplate();
+		encoder.writeBoolean(template != null);
+		if (template != null) {
+			encoder.writeString(template.getTemplate());
+			encoder.writeCount(template.getParameters().size());
+			for (Map.Entry<String, List<String>> parameter : template.getParameters().entrySet()) {
+				encoder.writeString(parameter.getKey());
+				encoder.writeCount(parameter.getValue().size());
+				for (String value : parameter.getValue()) {
+					encoder.writeString(value);
+				}
+			}
+		}
+	}
+
+	private static LightningRequest readRequest(ByteBuffer buffer, byte version) {
+		LightningRequest request = new LightningRequest(readString(buffer));
+		request.setRequestType(readString(buffer));
+		request.setServingHostIp(readString(buffer));
+		if (readBoolean(buffer)) {
+			ReservationReceipt.State state = readEnum(buffer, RESERVATION_STATES, version);
+			String id = readString(buffer);
+			ReservationReceipt receipt = new ReservationReceipt(state, id, readInt(buffer));
+			receipt.setBusyWithLoad(readInt(buffer));
+			request.setReservationReciept(receipt);
+		}
+		if (readBoolean(buffer)) {
+			request.setRequestconfig(readRequestConfig(buffer, version));
+		}
+		int taskCount = readCount(buffer);
+		if (taskCount > 0) {
+			List<Task> tasks = new ArrayList<>(taskCount);
+			for (int i = 0; i < taskCount; i++) {
+				tasks.add(readTask(buffer, version));
+			}
+			request.setTasks(tasks);
+		}
+		if (version >= VERSION_STREAMING_REQUEST) {
+			request.setStreaming(readBoolean(buffer));
+		}
+		if (version >= VERSION_URL_TEMPLATE && readBoolean(buffer)) {
+			URLTemplate template = new URLTemplate(readString(buffer));
+			int parameterCount = readCount(buffer);
+			for (int i = 0; i < parameterCount; i++) {
+				String name = readString(buffer);
+				int valueCount = readCount(buffer);
+				List<String> values = new ArrayList<>(valueCount);
+				for (int j = 0; j < valueCount; j++) {
+					values.add(readString(buffer));
+				}
+				template.addParameter(name, values);
+			}
+			request.setUrlTemplate(template);
+		}
+		return request;
+	}
+
+	private static void writeRequestConfig(Encoder encoder, RequestConfig config) {
+		List<Field> presentFields = new ArrayList<>(REQUEST_CONFIG_FIELDS.size());
+		for (Field field : REQUEST_CONFIG_FIELDS.values()) {
+			if (getField(field, config) != null) {
+				presentFields.add(field);
+			}
+		}
+		encoder.writeCount(presentFields.size());
+		for (Field field : presentFields) {
+			encoder.writeString(field.getName());
+			encoder.writeValue(getField(field, config));
+		}
+	}
+
+	private static RequestConfig readRequestConfig(ByteBuffer buffer, byte version) {
+		RequestConfig config = new RequestConfig();
+		int count = readCount(buffer);
+		for (int i = 0; i < count; i++) {
+			String name = readString(buffer);
+			Object value = readValue(buffer, version);
+			Field field = REQUEST_CONFIG_FIELDS.get(name);
+			// fields added by newer clients are skipped
+			if (field != null) {
+				if (field.getType().isEnum() && value != null) {
+					value = toEnumConstant(field.getType().getEnumConstants(), value, name);
+				}
+				try {
+					field.set(config, value);
+				} catch (IllegalAccessException | IllegalArgumentException e) {
+					throw new IllegalArgumentException("Invalid request config field " + name, e);
+				}
+			}
+		}
+		return config;
+	}
+
+	private static Object toEnumConstant(Object[] constants, Object value, String fieldName) {
+		for (int i = 0; i < constants.length; i++) {
+			if (value.equals(((Enum<?>) constants[i]).name()) || value.equals(i)) {
+				return constants[i];
+			}
+		}
+		throw new IllegalArgumentException("Invalid request config field " + fieldName + " " + value);
+	}
+
+	private static Map<String, Field> getRequestConfigFields() {
+		Map<String, Field> fields = new LinkedHashMap<>();
+		for (Field field : RequestConfig.class.getDeclaredFields()) {
+			if (!Modifier.isStatic(field.getModifiers())) {
+				field.setAccessible(true);
+				fields.put(field.getName(), field);
+			}
+		}
+		return fields;
+	}
+
+	private static Object getField(Field field, Object target) {
+		try {
+			return field.get(target);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeTask(Encoder encoder, Task task) {
+		if (task instanceof ChainedURLTask) {
+			ChainedURLTask chainedTask = (ChainedURLTask) task;
+			encoder.writeByte(TASK_CHAINED_URL);
+			List<URLTask> urlTasks = chainedTask.getUrlTasks();
+			encoder.writeCount(urlTasks.size());
+			for (URLTask urlTask : urlTasks) {
+				writeUrlTask(encoder, urlTask);
+			}
+			encoder.writeInt(urlTasks.indexOf(chainedTask.getCurrentUrlTask()));
+		} else if (task instanceof URLTask) {
+			encoder.writeByte(TASK_URL);
+			writeUrlTask(encoder, (URLTask) task);
+		} else {
+			throw new IllegalArgumentException("Unsupported task type " + (task != null ? task.getClass().getName() : null));
+		}
+	}
+
+	private static Task readTask(ByteBuffer buffer, byte version) {
+		byte type = buffer.get();
+		if (type == TASK_URL) {
+			return readUrlTask(buffer, version);
+		} else if (type == TASK_CHAINED_URL) {
+			ChainedURLTask chainedTask;
+			try {
+				chainedTask = new ChainedURLTask();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			int count = readCount(buffer);
+			for (int i = 0; i < count; i++) {
+				chainedTask.addUrlTask(readUrlTask(buffer, version));
+			}
+			int current = readInt(buffer);
+			for (int i = 0; i <= current && chainedTask.hasNext(); i++) {
+				chainedTask.moveToNext();
+			}
+			return chainedTask;
+		}
+		throw new IllegalArgumentException("Unknown task type " + type);
+	}
+
+	private static void writeUrlTask(Encoder encoder, URLTask task) {
+		encoder.writeString(task.getCompleteURL());
+		encoder.writeBoolean(task.isUseProxyServer());
+		encoder.writeEnum(task.getStatus());
+		encoder.writeInt(task.getStatusCode());
+		encoder.writeString(task.getBody());
+		ErrorCode errorCode = task.getErrorCode();
+		encoder.writeEnum(errorCode);
+		encoder.writeString(errorCode != null ? task.getErrorDetail() : task.getErrorMsg());
+	}
+
+	private static URLTask readUrlTask(ByteBuffer buffer, byte version) {
+		URLTask task = new URLTask(readString(buffer));
+		task.setUseProxyServer(readBoolean(buffer));
+		TaskStatus status = readEnum(buffer, TASK_STATUSES, version);
+		if (status != null) {
+			task.setStatus(status);
+		}
+		task.setStatusCode(readInt(buffer));
+		task.setBody(readString(buffer));
+		ErrorCode errorCode = readEnum(buffer, ERROR_CODES, version);
+		String error = readString(buffer);
+		if (errorCode != null) {
+			task.setError(errorCode, error);
+		} else if (error != null) {
+			task.setErrorMsg(error);
+		}
+		return task;
+	}
+
+	private static void writeResponse(Encoder encoder, LightningResponse response) {
+		encoder.writeString(response.getSessionId());
+		encoder.writeEnum(response.getStatus());
+		encoder.writeInt(response.getTotalCount());
+		encoder.writeInt(response.getSuccessCount());
+		encoder.writeInt(response.getSequence());
+		Map<Integer, FailedResponse> failedResponses = response.getFailedResponses();
+		encoder.writeCount(failedResponses != null ? failedResponses.size() : -1);
+		if (failedResponses != null) {
+			for (Map.Entry<Integer, FailedResponse> entry : failedResponses.entrySet()) {
+				FailedResponse failedResponse = entry.getValue();
+				encoder.writeInt(entry.getKey());
+				encoder.writeInt(failedResponse.getStatusCode());
+				encoder.writeEnum(failedResponse.getErrorCode());
+				encoder.writeString(failedResponse.getErrorCode() != null ? failedResponse.getErrorDetail() : failedResponse.getErrMsg());
+			}
+		}
+		Map<Integer, SuccessResponse> successResponses = response.getSuccessResponses();
+		encoder.writeCount(successResponses != null ? successResponses.size() : -1);
+		if (successResponses != null) {
+			for (Map.Entry<Integer, SuccessResponse> entry : successResponses.entrySet()) {
+				encoder.writeInt(entry.getKey());
+				encoder.writeString(entry.getValue().getBody());
+			}
+		}
+	}
+
+	private static LightningResponse readResponse(ByteBuffer buffer, byte version) {
+		String sessionId = readString(buffer);
+		LightningResponse response = new LightningResponse(sessionId, readEnum(buffer, WORK_STATUSES, version));
+		response.setTotalCount(readInt(buffer));
+		response.setSuccessCount(readInt(buffer));
+		response.setSequence(readInt(buffer));
+		int failedCount = readCount(buffer);
+		if (failedCount >= 0) {
+			Map<Integer, FailedResponse> failedResponses = new HashMap<>(Math.max(16, failedCount * 4 / 3 + 1));
+			for (int i = 0; i < failedCount; i++) {
+				int index = readInt(buffer);
+				int statusCode = readInt(buffer);
+				ErrorCode errorCode = readEnum(buffer, ERROR_CODES, version);
+				String error = readString(buffer);
+				failedResponses.put(index, errorCode != null ? new FailedResponse(statusCode, errorCode, ErrorCode.internDetail(error))
+						: new FailedResponse(statusCode, error));
+			}
+			response.setFailedResponses(failedResponses);
+		}
+		int successCount = readCount(buffer);
+		if (successCount >= 0) {
+			Map<Integer, SuccessResponse> successResponses = new HashMap<>(Math.max(16, successCount * 4 / 3 + 1));
+			for (int i = 0; i < successCount; i++) {
+				int index = readInt(buffer);
+				successResponses.put(index, new SuccessResponse(readString(buffer)));
+			}
+			response.setSuccessResponses(successResponses);
+		}
+		return response;
+	}
+
+	private static void writeBatchReport(Encoder encoder, BatchReport batchReport) {
+		encoder.writeInt(batchReport.getBatchId());
+		encoder.writeInt(batchReport.getBatchSize());
+		encoder.writeLong(batchReport.getExecutionTime());
+		encoder.writeInt(batchReport.getSuccessCount());
+		encoder.writeInt(batchReport.getConnectFailureCount());
+		encoder.writeInt(batchReport.getReadWriteFailureCount());
+		encoder.writeInt(batchReport.getCurrentInetCacheSize());
+		encoder.writeLong(batchReport.getConnectTimeInMillis());
+		encoder.writeLong(batchReport.getReadWriteTimeInMillis());
+		encoder.writeLong(batchReport.getInetSocketAddressCreateTimeInMillis());
+		encoder.writeLong(batchReport.getCleanupTimeInMillis());
+	}
+
+	private static BatchReport readBatchReport(ByteBuffer buffer) {
+		int batchId = readInt(buffer);
+		BatchReport batchReport = new BatchReport(readInt(buffer));
+		batchReport.setBatchId(batchId);
+		batchReport.setExecutionTime(readLong(buffer));
+		batchReport.setSuccessCount(readInt(buffer));
+		batchReport.setConnectFailureCount(readInt(buffer));
+		batchReport.setReadWriteFailureCount(readInt(buffer));
+		batchReport.setCurrentInetCacheSize(readInt(buffer));
+		batchReport.setConnectTimeInMillis(readLong(buffer));
+		batchReport.setReadWriteTimeInMillis(readLong(buffer));
+		batchReport.setInetSocketAddressCreateTimeInMillis(readLong(buffer));
+		batchReport.setCleanupTimeInMillis(readLong(buffer));
+		return batchReport;
+	}
+
+	private static byte readHeader(ByteBuffer buffer, byte expectedType) {
+		if (buffer.remaining() < HEADER_SIZE || buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1) {
+			throw new IllegalArgumentException("Not a lightning binary message");
+		}
+		byte version = buffer.get();
+		if (version > VERSION) {
+			throw new IllegalArgumentException("Unsupported lightning binary version " + version);
+		}
+		byte type = buffer.get();
+		if (type != expectedType) {
+			throw new IllegalArgumentException("Unexpected lightning binary message type " + type);
+		}
+		return version;
+	}
+
+	private static Object readValue(ByteBuffer buffer, byte version) {
+		byte tag = buffer.get();
+		switch (tag) {
+		case VALUE_NULL:
+			return null;
+		case VALUE_INT:
+			return readInt(buffer);
+		case VALUE_LONG:
+			return readLong(buffer);
+		case VALUE_BOOLEAN:
+			return readBoolean(buffer);
+		case VALUE_STRING:
+			return readString(buffer);
+		case VALUE_ENUM:
+			return version >= VERSION_ENUM_NAMES ? readString(buffer) : (Object) readInt(buffer);
+		default:
+			throw new IllegalArgumentException("Unknown value type " + tag);
+		}
+	}
+
+	private static boolean readBoolean(ByteBuffer buffer) {
+		return buffer.get() != 0;
+	}
+
+	private static long readLong(ByteBuffer buffer) {
+		long raw = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			raw |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return (raw >>> 1) ^ -(raw & 1);
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	private static int readInt(ByteBuffer buffer) {
+		return (int) readLong(buffer);
+	}
+
+	private static int readCount(ByteBuffer buffer) {
+		int count = readInt(buffer) - 1;
+		// every element takes at least a byte
+		if (count < -1 || count > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid count " + count + " with " + buffer.remaining() + " bytes left");
+		}
+		return count;
+	}
+
+	private static Long readNullableLong(ByteBuffer buffer) {
+		return readBoolean(buffer) ? readLong(buffer) : null;
+	}
+
+	private static <E extends Enum<E>> E readEnum(ByteBuffer buffer, E[] values, byte version) {
+		if (version >= VERSION_ENUM_NAMES) {
+			String name = readString(buffer);
+			if (name == null) {
+				return null;
+			}
+			for (E value : values) {
+				if (value.name().equals(name)) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("Unknown " + values.getClass().getComponentType().getSimpleName() + " " + name);
+		}
+		int ordinal = readInt(buffer) - 1;
+		if (ordinal < 0) {
+			return null;
+		}
+		if (ordinal >= values.length) {
+			throw new IllegalArgumentException("Unknown " + values.getClass().getComponentType().getSimpleName() + " " + ordinal);
+		}
+		return values[ordinal];
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = readCount(buffer);
+		if (length < 0) {
+			return null;
+		}
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	/**
+	 * Writes a message to a heap buffer that grows as needed.
+	 */
+	private static class Encoder {
+		private ByteBuffer buffer;
+
+		Encoder(int initialSize, byte type) {
+			buffer = ByteBuffer.allocate(initialSize);
+			buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put(type);
+		}
+
+		ByteBuffer finish() {
+			buffer.flip();
+			return buffer;
+		}
+
+		void writeByte(byte value) {
+			ensureCapacity(1);
+			buffer.put(value);
+		}
+
+		void writeBoolean(boolean value) {
+			writeByte((byte) (value ? 1 : 0));
+		}
+
+		void writeLong(long value) {
+			ensureCapacity(10);
+			long raw = (value << 1) ^ (value >> 63);
+			while ((raw & ~0x7FL) != 0) {
+				buffer.put((byte) ((raw & 0x7F) | 0x80));
+				raw >>>= 7;
+			}
+			buffer.put((byte) raw);
+		}
+
+		void writeInt(int value) {
+			writeLong(value);
+		}
+
+		void writeCount(int count) {
+			writeInt(count + 1);
+		}
+
+		void writeNullableLong(Long value) {
+			writeBoolean(value != null);
+			if (value != null) {
+				writeLong(value);
+			}
+		}
+
+		void writeEnum(Enum<?> value) {
+			writeString(value != null ? value.name() : null);
+		}
+
+		void writeValue(Object value) {
+			if (value == null) {
+				writeByte(VALUE_NULL);
+			} else if (value instanceof Integer) {
+				writeByte(VALUE_INT);
+				writeInt((Integer) value);
+			} else if (value instanceof Long) {
+				writeByte(VALUE_LONG);
+				writeLong((Long) value);
+			} else if (value instanceof Boolean) {
+				writeByte(VALUE_BOOLEAN);
+				writeBoolean((Boolean) value);
+			} else if (value instanceof String) {
+				writeByte(VALUE_STRING);
+				writeString((String) value);
+			} else if (value instanceof Enum) {
+				writeByte(VALUE_ENUM);
+				writeEnum((Enum<?>) value);
+			} else {
+				throw new IllegalArgumentException("Unsupported value type " + value.getClass().getName());
+			}
+		}
+
+		void writeString(String value) {
+			if (value == null) {
+				writeCount(-1);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeCount(bytes.length);
+			ensureCapacity(bytes.length);
+			buffer.put(bytes);
+		}
+
+		private void ensureCapacity(int size) {
+			if (buffer.remaining() < size) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+				buffer.flip();
+				grown.put(buffer);
+				buffer = grown;
+			}
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package com.ebay.lightning.core.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The {@code LZCodec} is a pure Java LZ77 block compressor in the style of LZ4. It trades compression ratio for
+ * speed, a single pass with a hash table of recent 4 byte sequences and no entropy coding, which makes it several
+ * times cheaper than deflate on the serialized responses where bandwidth is not the bottleneck.
+ *
+ * <p>The compressed block starts with a magic, the codec version and the uncompressed length, followed by sequences of
+ * a token, the literals and the offset of the match. The last sequence has literals only.</p>
+ *
+ * @author shashukla
+ * @see ZipUtil.Codec#LZ
+ */
+public class LZCodec {
+
+	private static final byte MAGIC_0 = 'L';
+	private static final byte MAGIC_1 = 'Z';
+	private static final byte VERSION = 1;
+	private static final int HEADER_SIZE = 7;
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_LOG = 14;
+	private static final int RUN_MASK = 0x0F;
+	// a byte of the block extends a match by at most 255 bytes
+	private static final int MAX_EXPANSION_RATIO = 255;
+
+	private LZCodec() {
+	}
+
+	/**
+	 * Check if the data is a block compressed by this codec.
+	 * @param data the data
+	 * @return {@code true} if the data starts with the magic of the codec
+	 */
+	public static boolean isEncoded(byte[] data) {
+		return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC_0 && data[1] == MAGIC_1 && data[2] == VERSION;
+	}
+
+	/**
+	 * Compress the data.
+	 * @param src the data to compress
+	 * @return the compressed block
+	 */
+	public static byte[] compress(byte[] src) {
+		int length = src.length;
+		byte[] dst = new byte[HEADER_SIZE + length + length / 255 + 16];
+		dst[0] = MAGIC_0;
+		dst[1] = MAGIC_1;
+		dst[2] = VERSION;
+		writeInt(dst, 3, length);
+		int d = HEADER_SIZE;
+
+		int[] table = new int[1 << HASH_LOG];
+		Arrays.fill(table, -1);
+		int anchor = 0;
+		int i = 0;
+		while (i + MIN_MATCH <= length) {
+			int sequence = readInt(src, i);
+			int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+			int ref = table[hash];
+			table[hash] = i;
+			if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+				i++;
+				continue;
+			}
+			int matchLength = MIN_MATCH;
+			while (i + matchLength < length && src[ref + matchLength] == src[i + matchLength]) {
+				matchLength++;
+			}
+			d = writeLiterals(dst, d, src, anchor, i - anchor, matchLength - MIN_MATCH);
+			dst[d++] = (byte) (i - ref);
+			dst[d++] = (byte) ((i - ref) >>> 8);
+			if (matchLength - MIN_MATCH >= RUN_MASK) {
+				d = writeLength(dst, d, matchLength - MIN_MATCH - RUN_MASK);
+			}
+			i += matchLength;
+			anchor = i;
+		}
+		d = writeLiterals(dst, d, src, anchor, length - anchor, 0);
+		return Arrays.copyOf(dst, d);
+	}
+
+	/**
+	 * Extract the data from the compressed block.
+	 * @param src the compressed block
+	 * @return the extracted data
+	 * @throws IOException when the block is not compressed by this codec or is corrupt
+	 */
+	public static byte[] decompress(byte[] src) throws IOException {
+		if (!isEncoded(src)) {
+			throw new IOException("Not in LZ format");
+		}
+		int length = readInt(src, 3);
+		// the header is not trusted to size the buffer, payloads are detected as LZ on submit
+		if (length < 0 || length > (long) (src.length - HEADER_SIZE) * MAX_EXPANSION_RATIO) {
+			throw new IOException("Corrupt LZ block, invalid length " + length + " for " + src.length + " bytes");
+		}
+		byte[] dst = new byte[length];
+		int s = HEADER_SIZE;
+		int d = 0;
+		try {
+			while (true) {
+				int token = src[s++] & 0xFF;
+				int literalLength = token >>> 4;
+				if (literalLength == RUN_MASK) {
+					int b;
+					do {
+						b = src[s++] & 0xFF;
+						literalLength += b;
+					} while (b == 0xFF);
+				}
+				System.arraycopy(src, s, dst, d, literalLength);
+				s += literalLength;
+				d += literalLength;
+				if (s == src.length) {
+					break;
+				}
+				int offset = (src[s++] & 0xFF) | ((src[s++] & 0xFF) << 8);
+				int matchLength = token & RUN_MASK;
+				if (matchLength == RUN_MASK) {
+					int b;
+					do {
+						b = src[s++] & 0xFF;
+						matchLength += b;
+					} while (b == 0xFF);
+				}
+				matchLength += MIN_MATCH;
+				int ref = d - offset;
+				if (offset == 0 || ref < 0) {
+					throw new IOException("Corrupt LZ block, invalid offset " + offset + " at " + d);
+				}
+				// the match may overlap the bytes it produces, copy one at a time
+				for (int end = d + matchLength; d < end;) {
+					dst[d++] = dst[ref++];
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Corrupt LZ block", e);
+		}
+		if (d != dst.length) {
+			throw new IOException("Corrupt LZ block, extracted " + d + " of " + dst.length + " bytes");
+		}
+		return dst;
+	}
+
+	private static int writeLiterals(byte[] dst, int d, byte[] src, int from, int literalLength, int matchToken) {
+		int token = Math.min(matchToken, RUN_MASK);
+		if (literalLength >= RUN_MASK) {
+			dst[d++] = (byte) ((RUN_MASK << 4) | token);
+			d = writeLength(dst, d, literalLength - RUN_MASK);
+		} else {
+			dst[d++] = (byte) ((literalLength << 4) | token);
+		}
+		System.arraycopy(src, from, dst, d, literalLength);
+		return d + literalLength;
+	}
+
+	private static int writeLength(byte[] dst, int d, int length) {
+		while (length >= 0xFF) {
+			dst[d++] = (byte) 0xFF;
+			length -= 0xFF;
+		}
+		dst[d++] = (byte) length;
+		return d;
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) | ((buffer[offset + 2] & 0xFF) << 8)
+				| (buffer[offset + 3] & 0xFF);
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+}
@@ -0,0 +1,279 @@
+package com.ebay.lightning.core.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+
+import com.ebay.lightning.core.beans.SystemStatus;
+import com.ebay.lightning.core.config.SystemConfig;
+import com.ebay.lightning.core.config.SystemConfig.AdmissionPolicy;
+
+/**
+ * The {@code ResourceMonitor} tracks the OS resources that actually bound the number of URL tasks a core can
+ * execute concurrently: open file descriptors, ephemeral ports and sockets lingering in TIME_WAIT.
+ *
+ * File descriptor counts are read from the {@link OperatingSystemMXBean} and socket states are parsed from
+ * {@code /proc/net/tcp} and {@code /proc/net/tcp6}. On platforms where either source is missing the
+ * corresponding limit is treated as unbounded, so admission falls back to the task count alone.
+ *
+ * Snapshots are cached for {@link AdmissionPolicy#getResourceSnapshotRefreshIntervalInMillis()} as parsing the
+ * socket tables is not free on a busy host.
+ *
+ * @author shashukla
+ */
+public class ResourceMonitor {
+
+	private static final Logger log = Logger.getLogger(ResourceMonitor.class);
+
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	private static final String[] PROC_NET_TCP_FILES = { "/proc/net/tcp", "/proc/net/tcp6" };
+	private static final String PROC_LOCAL_PORT_RANGE_FILE = "/proc/sys/net/ipv4/ip_local_port_range";
+
+	private static final int TCP_ESTABLISHED = 0x01;
+	private static final int TCP_TIME_WAIT = 0x06;
+	private static final int TCP_LISTEN = 0x0A;
+
+	private final SystemConfig systemConfig;
+	private volatile ResourceUsage lastUsage;
+
+	/**
+	 * Initialize the {@code ResourceMonitor} with the admission thresholds in the {@link SystemConfig}.
+	 * @param systemConfig the configuration holding the {@link AdmissionPolicy}
+	 */
+	public ResourceMonitor(SystemConfig systemConfig) {
+		this.systemConfig = systemConfig;
+	}
+
+	/**
+	 * Get the number of additional connections this core can open before running out of file descriptors or
+	 * ephemeral ports, after leaving the configured reserve untouched.
+	 * @return the connection headroom or {@link #UNBOUNDED} if the limits cannot be determined
+	 */
+	public int getConnectionHeadroom() {
+		AdmissionPolicy policy = systemConfig.getAdmissionPolicy();
+		if (policy == null || !policy.isEnabled()) {
+			return UNBOUNDED;
+		}
+		ResourceUsage usage = getResourceUsage();
+		long headroom = UNBOUNDED;
+		if (usage.getMaxFileDescriptorCount() > 0) {
+			headroom = Math.min(headroom,
+					usage.getMaxFileDescriptorCount() - usage.getOpenFileDescriptorCount() - policy.getFileDescriptorReserve());
+		}
+		if (usage.getEphemeralPortCount() > 0) {
+			headroom = Math.min(headroom,
+					usage.getEphemeralPortCount() - usage.getEphemeralPortsInUse() - policy.getEphemeralPortReserve());
+		}
+		return (int) Math.max(0, headroom);
+	}
+
+	/**
+	 * Get the number of connections a worker may keep in flight given the current headroom.
+	 * @param configuredBatchSize the batch size configured for the worker
+	 * @return the batch size capped by the connection headroom, but never below the configured minimum
+	 */
+	public int getInFlightLimit(int configuredBatchSize) {
+		int headroom = getConnectionHeadroom();
+		if (headroom >= configuredBatchSize) {
+			return configuredBatchSize;
+		}
+		int minBatchSize = systemConfig.getAdmissionPolicy().getMinWorkerBatchSize();
+		return Math.min(configuredBatchSize, Math.max(headroom, minBatchSize));
+	}
+
+	/**
+	 * Update the file descriptor and socket statistics to the report.
+	 * @param status the report to be updated
+	 */
+	public void updateSystemStatus(SystemStatus status) {
+		ResourceUsage usage = getResourceUsage();
+		status.setEstablishedSocketCount(usage.getEstablishedSocketCount());
+		status.setTimeWaitSocketCount(usage.getTimeWaitSocketCount());
+		status.setEphemeralPortsInUse(usage.getEphemeralPortsInUse());
+		status.setConnectionHeadroom(getConnectionHeadroom());
+	}
+
+	/**
+	 * Get the latest resource usage, refreshing the cached snapshot if it is stale.
+	 * @return the resource usage snapshot
+	 */
+	public ResourceUsage getResourceUsage() {
+		ResourceUsage usage = lastUsage;
+		long refreshInterval = systemConfig.getAdmissionPolicy() != null
+				? systemConfig.getAdmissionPolicy().getResourceSnapshotRefreshIntervalInMillis() : 0;
+		if (usage == null || System.currentTimeMillis() - usage.getCaptureTime() >= refreshInterval) {
+			usage = captureResourceUsage();
+			lastUsage = usage;
+		}
+		return usage;
+	}
+
+	/**
+	 * Read the file descriptor and socket statistics from the OS.
+	 * @return the resource usage snapshot
+	 */
+	ResourceUsage captureResourceUsage() {
+		ResourceUsage usage = new ResourceUsage();
+		OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+		usage.openFileDescriptorCount = invokeLongGetter(osBean, "getOpenFileDescriptorCount");
+		usage.maxFileDescriptorCount = invokeLongGetter(osBean, "getMaxFileDescriptorCount");
+
+		int[] portRange = readLocalPortRange(PROC_LOCAL_PORT_RANGE_FILE);
+		if (portRange != null) {
+			usage.ephemeralPortCount = portRange[1] - portRange[0] + 1;
+		}
+		for (String file : PROC_NET_TCP_FILES) {
+			parseSocketTable(file, portRange, usage);
+		}
+		return usage;
+	}
+
+	/**
+	 * Parse a {@code /proc/net/tcp} style socket table and accumulate the socket state counts.
+	 * @param fileName the socket table to parse
+	 * @param portRange the ephemeral port range or {@code null} if unknown
+	 * @param usage the snapshot to update
+	 */
+	static void parseSocketTable(String fileName, int[] portRange, ResourceUsage usage) {
+		File file = new File(fileName);
+		if (!file.canRead()) {
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			// first line is the header
+			String line = reader.readLine();
+			while ((line = reader.readLine()) != null) {
+				String[] columns = line.trim().split("\\s+");
+				if (columns.length < 4) {
+					continue;
+				}
+				int state = Integer.parseInt(columns[3], 16);
+				if (state == TCP_ESTABLISHED) {
+					usage.establishedSocketCount++;
+				} else if (state == TCP_TIME_WAIT) {
+					usage.timeWaitSocketCount++;
+				}
+				if (portRange != null && state != TCP_LISTEN) {
+					String localAddress = columns[1];
+					int localPort = Integer.parseInt(localAddress.substring(localAddress.indexOf(':') + 1), 16);
+					if (localPort >= portRange[0] && localPort <= portRange[1]) {
+						usage.ephemeralPortsInUse++;
+					}
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			log.warn("Unable to parse socket table " + fileName + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Read the ephemeral port range.
+	 * @param fileName the file holding the range as two whitespace separated numbers
+	 * @return the lower and upper bound of the range or {@code null} if unavailable
+	 */
+	static int[] readLocalPortRange(String fileName) {
+		File file = new File(fileName);
+		if (!file.canRead()) {
+			return null;
+		}
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line = reader.readLine();
+			if (line != null) {
+				String[] bounds = line.trim().split("\\s+");
+				if (bounds.length == 2) {
+					return new int[] { Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]) };
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			log.warn("Unable to read local port range " + fileName + ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	private static long invokeLongGetter(OperatingSystemMXBean osBean, String methodName) {
+		try {
+			Method method = osBean.getClass().getMethod(methodName);
+			method.setAccessible(true);
+			Object value = method.invoke(osBean);
+			return value instanceof Number ? ((Number) value).longValue() : -1;
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * The {@code ResourceUsage} is a point in time snapshot of the connection related resources of the host.
+	 */
+	public static class ResourceUsage {
+		private final long captureTime = System.currentTimeMillis();
+		private long openFileDescriptorCount = -1;
+		private long maxFileDescriptorCount = -1;
+		private int ephemeralPortCount = -1;
+		private int ephemeralPortsInUse;
+		private int establishedSocketCount;
+		private int timeWaitSocketCount;
+
+		/**
+		 * Get the time at which the snapshot was taken.
+		 * @return the capture time
+		 */
+		public long getCaptureTime() {
+			return captureTime;
+		}
+
+		/**
+		 * Get the number of open file descriptors of the process.
+		 * @return the open file descriptor count or -1 if unknown
+		 */
+		public long getOpenFileDescriptorCount() {
+			return openFileDescriptorCount;
+		}
+
+		/**
+		 * Get the file descriptor limit of the process.
+		 * @return the file descriptor limit or -1 if unknown
+		 */
+		public long getMaxFileDescriptorCount() {
+			return maxFileDescriptorCount;
+		}
+
+		/**
+		 * Get the size of the ephemeral port range.
+		 * @return the size of the ephemeral port range or -1 if unknown
+		 */
+		public int getEphemeralPortCount() {
+			return ephemeralPortCount;
+		}
+
+		/**
+		 * Get the number of non listening sockets bound to an ephemeral port.
+		 * @return the number of ephemeral ports in use
+		 */
+		public int getEphemeralPortsInUse() {
+			return ephemeralPortsInUse;
+		}
+
+		/**
+		 * Get the number of established TCP sockets.
+		 * @return the established socket count
+		 */
+		public int getEstablishedSocketCount() {
+			return establishedSocketCount;
+		}
+
+		/**
+		 * Get the number of TCP sockets in TIME_WAIT.
+		 * @return the TIME_WAIT socket count
+		 */
+		public int getTimeWaitSocketCount() {
+			return timeWaitSocketCount;
+		}
+	}
+}
@@ -4,27 +4,48 @@
 package com.ebay.lightning.core.utils;
 
 import java.io.BufferedReader;
-import java.io.DataOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.IOUtils;
 
+import com.google.common.base.Preconditions;
+
 /**
  * Helper class to execute HTTP GET, HTTP POST calls.
  * 
+ * The connections are persistent: every response body is read to the end and closed, never disconnected, so the
+ * socket goes back to the keep-alive pool of {@link HttpURLConnection} and the next call to the same host reuses it.
+ * The pool keeps {@code http.maxConnections} idle connections per host, 5 unless the system property is set, see
+ * {@link #setMaxIdleConnectionsPerHost(int)}. The pool is shared by the whole JVM and only bounds the idle
+ * connections: more concurrent calls to a host open more sockets, and the sockets beyond the bound are closed once
+ * idle. Every response body is buffered in full before it is returned.
+ * 
+ * The timeouts can be set per endpoint with {@link #setTimeouts(String, int, int)}, other URLs use the default
+ * timeouts.
+ * 
  * @author shashukla
  *
  */
 public class UrlUtils {
 
 	private static final int TIMEOUT_10_SECS = 10000;
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	private static final String MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
+
+	private final int connectTimeoutInMillis;
+	private final int readTimeoutInMillis;
+	private final Map<String, int[]> timeoutsByPath = new ConcurrentHashMap<>();
 
 	public static enum ContentType {
 		TEXT_PLAIN("text/plain"), XML("text/xml"), APPLICATION_JSON("application/json");
@@ -44,6 +65,44 @@ public class UrlUtils {
 		}
 	}
 
+	public UrlUtils() {
+		this(TIMEOUT_10_SECS, TIMEOUT_10_SECS);
+	}
+
+	/**
+	 * Initialize with the default timeouts of the calls.
+	 * @param connectTimeoutInMillis the default connect timeout
+	 * @param readTimeoutInMillis the default read timeout
+	 */
+	public UrlUtils(int connectTimeoutInMillis, int readTimeoutInMillis) {
+		this.connectTimeoutInMillis = connectTimeoutInMillis;
+		this.readTimeoutInMillis = readTimeoutInMillis;
+	}
+
+	/**
+	 * Set the number of idle connections kept per host by the keep-alive pool of {@link HttpURLConnection}. The pool
+	 * is shared by the whole JVM and reads the {@code http.maxConnections} system property once, so the size only
+	 * applies if it is set before the JVM makes its first HTTP call.
+	 * @param maxIdleConnectionsPerHost the number of idle connections kept per host
+	 */
+	public static void setMaxIdleConnectionsPerHost(int maxIdleConnectionsPerHost) {
+		Preconditions.checkArgument(maxIdleConnectionsPerHost > 0, "The number of idle connections must be positive");
+		System.setProperty(MAX_CONNECTIONS_PROPERTY, String.valueOf(maxIdleConnectionsPerHost));
+	}
+
+	/**
+	 * Set the timeouts of the calls to an endpoint. The endpoint is matched by the path of the URL, so the host of
+	 * the URL may be a template like {@code http://{host}:8989/l/poll}; the longest matching path wins.
+	 * @param url the URL of the endpoint, the calls to URLs under its path use the timeouts
+	 * @param connectTimeoutInMillis the connect timeout
+	 * @param readTimeoutInMillis the read timeout
+	 */
+	public void setTimeouts(String url, int connectTimeoutInMillis, int readTimeoutInMillis) {
+		if (url != null) {
+			timeoutsByPath.put(getPath(url), new int[] { connectTimeoutInMillis, readTimeoutInMillis });
+		}
+	}
+
 	/**
 	 * Get the HTTP content for the URL as string.
 	 * @param url the URL
@@ -52,9 +111,9 @@ public class UrlUtils {
 	 */
 	public String get(String url) throws Exception {
 		HttpURLConnection yc = connect(url);
-		return IOUtils.toString(yc.getInputStream());
+		return new String(readBody(yc), Charset.defaultCharset());
 	}
-	
+
 	/**
 	 * Initiate connection for the URL.
 	 * @param url the URL
@@ -65,11 +124,80 @@ public class UrlUtils {
 	private HttpURLConnection connect(String url) throws MalformedURLException, IOException {
 		URL alertUrl = new URL(url);
 		HttpURLConnection yc = (HttpURLConnection) alertUrl.openConnection();
-		yc.setConnectTimeout(TIMEOUT_10_SECS);
-		yc.setReadTimeout(TIMEOUT_10_SECS);
+		int[] timeouts = getTimeouts(alertUrl.getPath());
+		yc.setConnectTimeout(timeouts[0]);
+		yc.setReadTimeout(timeouts[1]);
 		return yc;
 	}
-	
+
+	private int[] getTimeouts(String path) {
+		String matchedPath = null;
+		for (String endpointPath : timeoutsByPath.keySet()) {
+			if (path.startsWith(endpointPath) && (matchedPath == null || endpointPath.length() > matchedPath.length())) {
+				matchedPath = endpointPath;
+			}
+		}
+		return matchedPath != null ? timeoutsByPath.get(matchedPath) : new int[] { connectTimeoutInMillis, readTimeoutInMillis };
+	}
+
+	private static String getPath(String url) {
+		int authority = url.indexOf("://");
+		int path = url.indexOf('/', authority >= 0 ? authority + 3 : 0);
+		if (path < 0) {
+			return "/";
+		}
+		int query = url.indexOf('?', path);
+		return query >= 0 ? url.substring(path, query) : url.substring(path);
+	}
+
+	/**
+	 * Read the response body to the end and close it, which returns the connection to the keep-alive pool. The body
+	 * is read straight into an array of the content length when the length is known.
+	 * @param connection the connection
+	 * @return the response body
+	 * @throws IOException when the call fails
+	 */
+	private static byte[] readBody(HttpURLConnection connection) throws IOException {
+		InputStream in;
+		try {
+			in = connection.getInputStream();
+		} catch (IOException e) {
+			discardErrorBody(connection);
+			throw e;
+		}
+		try {
+			int length = connection.getContentLength();
+			if (length < 0) {
+				return IOUtils.toByteArray(in);
+			}
+			byte[] body = new byte[length];
+			new DataInputStream(in).readFully(body);
+			return body;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the error body of a failed call, the connection is only reused once its body is consumed.
+	 * @param connection the connection
+	 */
+	private static void discardErrorBody(HttpURLConnection connection) {
+		InputStream err = connection.getErrorStream();
+		if (err == null) {
+			return;
+		}
+		try {
+			byte[] buffer = new byte[4096];
+			while (err.read(buffer) >= 0) {
+				// discard
+			}
+			err.close();
+		} catch (IOException e) {
+			// the connection is not reused
+		}
+	}
+
 	/**
 	 * Get the HTTP content for the URL as byte array.
 	 * @param url the URL
@@ -78,7 +206,78 @@ public class UrlUtils {
 	 */
 	public byte[] getByteArray(String url) throws Exception {
 		HttpURLConnection yc = connect(url);
-		return IOUtils.toByteArray(yc.getInputStream());
+		return readBody(yc);
+	}
+
+	/**
+	 * Get the HTTP content for the URL as byte array.
+	 * @param url the URL
+	 * @param headerParams headers for the call
+	 * @return the HTTP content as byte array
+	 * @throws Exception when the URL fails
+	 */
+	public byte[] getByteArray(String url, Map<String, String> headerParams) throws Exception {
+		HttpURLConnection yc = connect(url);
+		if (headerParams != null) {
+			for (Entry<String, String> headerParam : headerParams.entrySet()) {
+				yc.addRequestProperty(headerParam.getKey(), headerParam.getValue());
+			}
+		}
+		return readBody(yc);
+	}
+
+	/**
+	 * Get the HTTP content for a POST HTTP URL with a binary payload.
+	 * @param targetURL the POST HTTP URL
+	 * @param contentType content type of the payload
+	 * @param payload post payload
+	 * @return the HTTP content from the response
+	 * @throws Exception when the URL fails
+	 */
+	public String postBytes(String targetURL, String contentType, byte[] payload) throws Exception {
+		HttpURLConnection connection = connect(targetURL);
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", contentType);
+		connection.setFixedLengthStreamingMode(payload.length);
+		connection.setUseCaches(false);
+		connection.setDoInput(true);
+		connection.setDoOutput(true);
+
+		OutputStream out = connection.getOutputStream();
+		out.write(payload);
+		out.close();
+
+		return new String(readBody(connection), Charset.defaultCharset());
+	}
+
+	/**
+	 * Get the HTTP content as byte array for a POST HTTP URL with a binary payload.
+	 * @param targetURL the POST HTTP URL
+	 * @param contentType content type of the payload
+	 * @param headerParams headers for the call
+	 * @param payload post payload
+	 * @return the HTTP content as byte array
+	 * @throws Exception when the URL fails
+	 */
+	public byte[] postForByteArray(String targetURL, String contentType, Map<String, String> headerParams, byte[] payload) throws Exception {
+		HttpURLConnection connection = connect(targetURL);
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", contentType);
+		if (headerParams != null) {
+			for (Entry<String, String> headerParam : headerParams.entrySet()) {
+				connection.addRequestProperty(headerParam.getKey(), headerParam.getValue());
+			}
+		}
+		connection.setFixedLengthStreamingMode(payload.length);
+		connection.setUseCaches(false);
+		connection.setDoInput(true);
+		connection.setDoOutput(true);
+
+		OutputStream out = connection.getOutputStream();
+		out.write(payload);
+		out.close();
+
+		return readBody(connection);
 	}
 
 	/**
@@ -91,46 +290,46 @@ public class UrlUtils {
 	 * @throws Exception when the URL fails
 	 */
 	public String post(String targetURL, ContentType contentType, Map<String, String> headerParams, String payload) throws Exception {
-		HttpURLConnection connection = null;
-		try {
-			URL url = new URL(targetURL);
-			connection = (HttpURLConnection) url.openConnection();
-			connection.setConnectTimeout(TIMEOUT_10_SECS);
-			connection.setReadTimeout(TIMEOUT_10_SECS);
-			connection.setRequestMethod("POST");
-			connection.setRequestProperty("Content-Type", contentType != null ? contentType.toString() : ContentType.TEXT_PLAIN.toString());
-			connection.setRequestProperty("Content-Length", "" + Integer.toString(payload.getBytes().length));
-			connection.setRequestProperty("Content-Language", "en-US");
-			if (headerParams != null && headerParams.size() > 0) {
-				for(Entry<String, String> headerParam : headerParams.entrySet()){
-					connection.addRequestProperty(headerParam.getKey(), headerParam.getValue());
-				}
+		// the payload characters are written as single bytes, the compressed payloads are ISO-8859-1 strings
+		byte[] body = payload.getBytes(ISO_8859_1);
+		HttpURLConnection connection = connect(targetURL);
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", contentType != null ? contentType.toString() : ContentType.TEXT_PLAIN.toString());
+		connection.setRequestProperty("Content-Language", "en-US");
+		if (headerParams != null && headerParams.size() > 0) {
+			for(Entry<String, String> headerParam : headerParams.entrySet()){
+				connection.addRequestProperty(headerParam.getKey(), headerParam.getValue());
 			}
+		}
 
-			connection.setUseCaches(false);
-			connection.setDoInput(true);
-			connection.setDoOutput(true);
+		// stream the payload instead of buffering it to compute the length
+		connection.setFixedLengthStreamingMode(body.length);
+		connection.setUseCaches(false);
+		connection.setDoInput(true);
+		connection.setDoOutput(true);
 
-			DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
-			wr.writeBytes(payload);
-			wr.flush();
-			wr.close();
+		OutputStream out = connection.getOutputStream();
+		out.write(body);
+		out.close();
 
-			InputStream is = connection.getInputStream();
-			BufferedReader rd = new BufferedReader(new InputStreamReader(is));
+		InputStream is;
+		try {
+			is = connection.getInputStream();
+		} catch (IOException e) {
+			discardErrorBody(connection);
+			throw e;
+		}
+		BufferedReader rd = new BufferedReader(new InputStreamReader(is));
+		try {
 			String line;
-			StringBuffer response = new StringBuffer();
+			StringBuilder response = new StringBuilder();
 			while ((line = rd.readLine()) != null) {
 				response.append(line);
 				response.append('\r');
 			}
-			rd.close();
 			return response.toString();
-
 		} finally {
-			if (connection != null) {
-				connection.disconnect();
-			}
+			rd.close();
 		}
 	}
 
@@ -4,22 +4,147 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.log4j.Logger;
 
+import com.ebay.lightning.core.async.Callback;
+
 /**
  * Helper class to compress and extract String and Object data.
  * 
+ * Objects are compressed with gzip unless a {@link Codec} is given. The codec of a payload is detected from its
+ * leading bytes on extraction, so the extract methods read every codec.
+ * 
  * @author shashukla
  *
  */
 public class ZipUtil {
+
+	/**
+	 * The compression codecs of the serialized objects, named by their HTTP content coding for the
+	 * {@code Accept-Encoding} and {@code Content-Encoding} negotiation.
+	 */
+	public enum Codec {
+		/** No compression, for payloads too small to gain from it or links where bandwidth is plentiful. */
+		IDENTITY("identity"),
+		/** zlib stream at the fastest deflate level. */
+		DEFLATE("deflate"),
+		/** gzip at the default deflate level, the codec used when none is negotiated. */
+		GZIP("gzip"),
+		/** The {@link LZCodec}, much cheaper than deflate at a lower compression ratio. */
+		LZ("x-lightning-lz");
+
+		private final String encoding;
+
+		private Codec(String encoding) {
+			this.encoding = encoding;
+		}
+
+		/**
+		 * Get the HTTP content coding of the codec.
+		 * @return the content coding
+		 */
+		public String getEncoding() {
+			return encoding;
+		}
+
+		/**
+		 * Get the codec of the HTTP content coding.
+		 * @param encoding the content coding
+		 * @return the codec or {@code null} if the content coding is not supported
+		 */
+		public static Codec forEncoding(String encoding) {
+			for (Codec codec : values()) {
+				if (codec.encoding.equalsIgnoreCase(encoding)) {
+					return codec;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Build the {@code Accept-Encoding} header value for the codecs.
+		 * @param codecs the codecs in order of preference
+		 * @return the header value
+		 */
+		public static String toAcceptEncoding(Codec... codecs) {
+			StringBuilder acceptEncoding = new StringBuilder();
+			for (Codec codec : codecs) {
+				if (acceptEncoding.length() > 0) {
+					acceptEncoding.append(", ");
+				}
+				acceptEncoding.append(codec.encoding);
+			}
+			return acceptEncoding.toString();
+		}
+
+		/**
+		 * Choose the codec for a payload from the codecs accepted by the client. A client that does not send
+		 * {@code Accept-Encoding} gets {@link #GZIP}. Payloads smaller than {@code minCompressedSizeInBytes} are
+		 * not compressed unless the client refuses {@code identity}, larger payloads get the supported codec with
+		 * the highest quality value, the first one listed by the client on a tie.
+		 * @param acceptEncoding the {@code Accept-Encoding} header of the client
+		 * @param payloadSize the size of the serialized payload
+		 * @param minCompressedSizeInBytes the size below which payloads are not compressed
+		 * @return the codec for the payload
+		 */
+		public static Codec negotiate(String acceptEncoding, int payloadSize, int minCompressedSizeInBytes) {
+			if (acceptEncoding == null) {
+				return GZIP;
+			}
+			Codec preferred = null;
+			double preferredQuality = 0;
+			Double identityQuality = null;
+			Double anyQuality = null;
+			for (String coding : acceptEncoding.split(",")) {
+				String[] params = coding.split(";");
+				String encoding = params[0].trim().toLowerCase(Locale.ENGLISH);
+				double quality = getQuality(params);
+				if (IDENTITY.encoding.equals(encoding)) {
+					identityQuality = quality;
+				} else if ("*".equals(encoding)) {
+					anyQuality = quality;
+				}
+				Codec codec = forEncoding(encoding);
+				if (codec != null && quality > preferredQuality) {
+					preferred = codec;
+					preferredQuality = quality;
+				}
+			}
+			// identity is acceptable unless refused by name, or by the wildcard when it is not named
+			boolean identityAccepted = identityQuality != null ? identityQuality > 0 : anyQuality == null || anyQuality > 0;
+			if (payloadSize < minCompressedSizeInBytes && identityAccepted) {
+				return IDENTITY;
+			}
+			return preferred != null ? preferred : (identityAccepted ? IDENTITY : GZIP);
+		}
+
+		private static double getQuality(String[] params) {
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						return Double.parseDouble(param.substring(2));
+					} catch (NumberFormatException e) {
+						return 1;
+					}
+				}
+			}
+			return 1;
+		}
+	}
 	/**
 	 * 
 	 */
@@ -118,6 +243,95 @@ public class ZipUtil {
 		return baos;
 	}
 
+	/**
+	 * Compress the object to String with the codec.
+	 * @param obj the object to compress
+	 * @param codec the compression codec
+	 * @return object compressed as string
+	 * @throws IOException when the compression fails
+	 */
+	public static String zip(Object obj, Codec codec) throws IOException {
+		return new String(compress(serialize(obj), codec), ISO_8859_1);
+	}
+
+	/**
+	 * Serialize the object without compression, to choose the {@link Codec} by the payload size.
+	 * @param obj the object to serialize
+	 * @return the serialized object
+	 * @throws IOException when the serialization fails
+	 */
+	public static byte[] serialize(Object obj) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream objectOut = new ObjectOutputStream(baos);
+		try {
+			objectOut.writeObject(obj);
+		} finally {
+			closeOutputStream(objectOut);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Compress the object serialized by {@link #serialize(Object)} with the codec.
+	 * @param serialized the serialized object
+	 * @param codec the compression codec
+	 * @return the compressed byte array
+	 * @throws IOException when the compression fails
+	 */
+	public static byte[] compress(byte[] serialized, Codec codec) throws IOException {
+		if (codec == Codec.IDENTITY) {
+			return serialized;
+		}
+		if (codec == Codec.LZ) {
+			return LZCodec.compress(serialized);
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(serialized.length / 2 + 16);
+		Deflater deflater = codec == Codec.DEFLATE ? new Deflater(Deflater.BEST_SPEED) : null;
+		try {
+			DeflaterOutputStream out = deflater != null ? new DeflaterOutputStream(baos, deflater) : new GZIPOutputStream(baos);
+			out.write(serialized);
+			out.close();
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Compress the object to byte array with the codec.
+	 * @param obj the object to compress
+	 * @param codec the compression codec
+	 * @return compressed byte array
+	 * @throws IOException when the compression fails
+	 */
+	public static byte[] zipAsByteArray(Object obj, Codec codec) throws IOException {
+		return compress(serialize(obj), codec);
+	}
+
+	/**
+	 * Open the stream extracting the data compressed with any {@link Codec}, detected from the leading bytes.
+	 * @param data the compressed data
+	 * @return the extracted stream
+	 * @throws IOException when the data cannot be extracted
+	 */
+	private static InputStream openCompressedStream(byte[] data) throws IOException {
+		if (LZCodec.isEncoded(data)) {
+			return new ByteArrayInputStream(LZCodec.decompress(data));
+		}
+		if (data.length >= 2) {
+			if (((data[0] & 0xFF) | ((data[1] & 0xFF) << 8)) == GZIPInputStream.GZIP_MAGIC) {
+				return new GZIPInputStream(new ByteArrayInputStream(data));
+			}
+			// zlib header: deflate method and a check sum that is a multiple of 31
+			if ((data[0] & 0x0F) == Deflater.DEFLATED && (((data[0] & 0xFF) << 8) | (data[1] & 0xFF)) % 31 == 0) {
+				return new InflaterInputStream(new ByteArrayInputStream(data));
+			}
+		}
+		return new ByteArrayInputStream(data);
+	}
+
 	/**
 	 * Extract the object from the compressed string
 	 * @param zippedOutputData compressed data
@@ -127,9 +341,7 @@ public class ZipUtil {
 	 */
 	public static Object unZip(String zippedOutputData, Class<?> classname) throws Exception {
 		Object myObj = null;
-		ByteArrayInputStream bais = new ByteArrayInputStream(zippedOutputData.getBytes(ISO_8859_1));
-		GZIPInputStream gzipIn = new GZIPInputStream(bais);
-		ObjectInputStream objectIn = new ObjectInputStream(gzipIn);
+		ObjectInputStream objectIn = new ObjectInputStream(openCompressedStream(zippedOutputData.getBytes(ISO_8859_1)));
 
 		try {
 			myObj = objectIn.readObject();
@@ -173,9 +385,7 @@ public class ZipUtil {
 	 */
 	public static Object unZipByteArray(byte[] zippedOutputData) throws Exception {
 		Object myObj = null;
-		ByteArrayInputStream bais = new ByteArrayInputStream(zippedOutputData);
-		GZIPInputStream gzipIn = new GZIPInputStream(bais);
-		ObjectInputStream objectIn = new ObjectInputStream(gzipIn);
+		ObjectInputStream objectIn = new ObjectInputStream(openCompressedStream(zippedOutputData));
 		
 		try {
 			myObj = objectIn.readObject();
@@ -188,6 +398,42 @@ public class ZipUtil {
 		return myObj;
 	}
 	
+	/**
+	 * Open a compressed object stream to write objects one at a time. Flushing the returned stream flushes the
+	 * compressed data written so far; the writer ends the stream with a {@code null} object and closes it.
+	 * @param out the stream to write the compressed data to
+	 * @return the object stream
+	 * @throws IOException when the stream cannot be opened
+	 */
+	public static ObjectOutputStream openZippedObjectStream(OutputStream out) throws IOException {
+		return new ObjectOutputStream(new GZIPOutputStream(out, true));
+	}
+
+	/**
+	 * Extract the objects written by {@link #openZippedObjectStream(OutputStream)} one at a time.
+	 * @param in the compressed object stream
+	 * @param classname the class name of the extracted objects
+	 * @param callback notified with each extracted object
+	 * @return the number of objects extracted
+	 * @throws Exception when the data extraction fails
+	 */
+	public static <T> int unZipStream(InputStream in, Class<T> classname, Callback<T> callback) throws Exception {
+		ObjectInputStream objectIn = new ObjectInputStream(new GZIPInputStream(in));
+		int count = 0;
+		
+		try {
+			Object myObj;
+			while ((myObj = objectIn.readObject()) != null) {
+				callback.notify(classname.cast(myObj));
+				count++;
+			}
+		} finally {
+			closeInputStream(objectIn);
+		}
+		
+		return count;
+	}
+	
 	/**
 	 * Closes the input stream object
 	 * @param objectIn the input stream
@@ -30,6 +30,7 @@ import com.ebay.lightning.core.beans.URLTask;
 import com.ebay.lightning.core.config.RequestConfig;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.constants.LightningCoreConstants;
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
 import com.ebay.lightning.core.constants.LightningCoreConstants.HttpMethod;
 import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
 import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
@@ -39,6 +40,7 @@ import com.ebay.lightning.core.store.LightningRequestReport;
 import com.ebay.lightning.core.utils.ChainedCheckTaskExecutionUtil;
 import com.ebay.lightning.core.utils.ExecutorUtil;
 import com.ebay.lightning.core.utils.InetSocketAddressCache;
+import com.ebay.lightning.core.utils.ResourceMonitor;
 
 /**
  * {@code SocketBasedHTTPWorker} is a java nio based implementation of {@code Worker} for URL execution.
@@ -54,6 +56,11 @@ import com.ebay.lightning.core.utils.InetSocketAddressCache;
  * 
  * The class also has retry mechanism to execute failed URL tasks again with higher timeout values. 
  * 
+ * The request stops early once the stop conditions of its {@link RequestConfig} are met, for example a quorum of
+ * successful tasks or too many failures: the open channels are closed and the remaining tasks, including the timed
+ * out tasks not yet run again by the retry pass, are not executed. They are reported as {@link TaskStatus#STOPPED}
+ * with {@link ErrorCode#REQUEST_STOPPED}.
+ * 
  * @author shashukla
  * @see InetSocketAddressCache
  * @see ExecutionDataStore
@@ -68,6 +75,7 @@ public class SocketBasedHTTPWorker implements Worker {
 
 	private RequestConfig requestConfig;
 	private int batchId = 0;
+	private long streamingSubmitIdleTimeoutInMillis;
 	private int batchSize;
 	private int initialBatchSize;
 	private int connCount;
@@ -75,6 +83,10 @@ public class SocketBasedHTTPWorker implements Worker {
 	private int successCount;
 	private int connectFailureCount;
 	private int readWriteFailureCount;
+	private int requestSuccessCount;
+	private int requestFailureCount;
+	private boolean retrying;
+	private boolean stopped;
 
 	private int connectTimeoutMillis;
 	private int readWriteTimeoutMillis;
@@ -90,6 +102,7 @@ public class SocketBasedHTTPWorker implements Worker {
 	private long readWriteTimeInMillis;
 
 	private InetSocketAddressCache inetCache;
+	private ResourceMonitor resourceMonitor;
 	private static ExecutorUtil executorUtil = new ExecutorUtil(SystemConfig.DEFAULT_THREAD_POOL_SIZE);
 	private static final byte[] HTTP_HEADER_END_PATTERN = new byte[]{13,10,13,10};
 	private ExecutionDataStore executionStore;
@@ -127,6 +140,27 @@ public class SocketBasedHTTPWorker implements Worker {
 		this.connectAccuracyPercent = requestConfig.getConnectAccuracyPercent();
 		this.batchSize = systemConfig.getWorkerBatchSize();
 		this.initialBatchSize = this.batchSize;
+		this.streamingSubmitIdleTimeoutInMillis = systemConfig.getStreamingSubmitIdleTimeoutInMillis();
+	}
+
+	/**
+	 * Cap the number of connections kept in flight by a single batch.
+	 * @param maxInFlightConnections the maximum number of concurrently open connections
+	 */
+	public void setMaxInFlightConnections(int maxInFlightConnections) {
+		if (maxInFlightConnections > 0 && maxInFlightConnections < this.initialBatchSize) {
+			this.initialBatchSize = maxInFlightConnections;
+			this.batchSize = maxInFlightConnections;
+		}
+	}
+
+	/**
+	 * Set the monitor asked for the connection headroom before each batch, the batch size shrinks while the core
+	 * runs low on file descriptors or ephemeral ports and grows back up to the configured batch size.
+	 * @param resourceMonitor the resource monitor of the core
+	 */
+	public void setResourceMonitor(ResourceMonitor resourceMonitor) {
+		this.resourceMonitor = resourceMonitor;
 	}
 
 	/**
@@ -229,21 +263,23 @@ public class SocketBasedHTTPWorker implements Worker {
 		try {
 			List<Task> tasks = report.getRequest().getTasks();
 			if (tasks != null && sessionId != null) {
-				if (ChainedCheckTaskExecutionUtil.areChainedCheckTasks(tasks)) {
+				if (!report.isTasksSealed()) {
+					executeStreaming(report);
+				} else if (ChainedCheckTaskExecutionUtil.areChainedCheckTasks(tasks)) {
 					ChainedCheckTaskExecutionUtil util = new ChainedCheckTaskExecutionUtil(tasks);
 					while (util.hasMoreSubTasks()) {
 						List<Task> subTasks = util.getSubNextTasks();
-						executeInBatch(report, subTasks);
+						executeInBatch(report, subTasks, false);
 					}
 					updateIncompleteTasksStatus(tasks);
+					// the status of a chained task is final only after its last sub task
+					logCompletedTasks(report, tasks, true);
 				} else {
-					executeInBatch(report, tasks);
-					List<Task> tasksToRetry = updateIncompleteTasksStatus(tasks);
-					
-					if (requestConfig.isRetryFailedTasks() && !tasksToRetry.isEmpty()) {
-						configureWorkerForRetry();
-						executeInBatch(report, tasksToRetry);
-						updateIncompleteTasksStatus(tasksToRetry);
+					executeInBatch(report, tasks, true);
+					if (stopped) {
+						logCompletedTasks(report, updateStoppedTasksStatus(tasks, false), true);
+					} else {
+						retryIncompleteTasks(report, updateIncompleteTasksStatus(tasks));
 					}
 				}
 				report.setStatus(WorkStatus.DONE);
@@ -256,11 +292,70 @@ public class SocketBasedHTTPWorker implements Worker {
 		}finally{
 			clearSelector();
 		}
+		report.notifyProgress();
 
 		this.currentState = WorkerState.IDLE;
 		return this.currentState;
 	}
 
+	/**
+	 * Execute the tasks chunk by chunk as they are appended to a streaming request or expanded from the URL template,
+	 * the failed tasks are retried once the task list is sealed.
+	 * @param report the report of the request
+	 * @throws InterruptedException when interrupted while waiting for the next chunk
+	 */
+	private void executeStreaming(LightningRequestReport report) throws InterruptedException {
+		List<Task> tasksToRetry = new ArrayList<>();
+		int executedTasks = 0;
+		List<Task> chunk = nextChunk(report, executedTasks);
+		while (!chunk.isEmpty()) {
+			executeInBatch(report, chunk, true);
+			if (stopped) {
+				report.sealTasks();
+				List<Task> stoppedTasks = new ArrayList<>(chunk);
+				stoppedTasks.addAll(report.awaitTasks(executedTasks + chunk.size(), 0));
+				tasksToRetry.addAll(updateStoppedTasksStatus(stoppedTasks, false));
+				logCompletedTasks(report, tasksToRetry, true);
+				return;
+			}
+			tasksToRetry.addAll(updateIncompleteTasksStatus(chunk));
+			executedTasks += chunk.size();
+			chunk = nextChunk(report, executedTasks);
+		}
+		retryIncompleteTasks(report, tasksToRetry);
+	}
+
+	/**
+	 * Retry the timed out tasks if the request config allows it and log the tasks that are left timed out. The tasks
+	 * not retried because the stop condition was met during the retry pass are logged as stopped.
+	 * @param report the report of the request
+	 * @param tasksToRetry the tasks that timed out in the first pass
+	 */
+	private void retryIncompleteTasks(LightningRequestReport report, List<Task> tasksToRetry) {
+		if (requestConfig.isRetryFailedTasks() && !tasksToRetry.isEmpty()) {
+			configureWorkerForRetry();
+			executeInBatch(report, tasksToRetry, true);
+			if (stopped) {
+				logCompletedTasks(report, updateStoppedTasksStatus(tasksToRetry, true), true);
+				return;
+			}
+			tasksToRetry = updateIncompleteTasksStatus(tasksToRetry);
+		}
+		logCompletedTasks(report, tasksToRetry, true);
+	}
+
+	/**
+	 * Get the tasks after the executed ones. A template is expanded one batch at a time once the tasks expanded
+	 * before, by an interrupted execution, are executed.
+	 */
+	private List<Task> nextChunk(LightningRequestReport report, int executedTasks) throws InterruptedException {
+		List<Task> chunk = report.awaitTasks(executedTasks, streamingSubmitIdleTimeoutInMillis);
+		if (chunk.isEmpty() && report.getRequest().getUrlTemplate() != null) {
+			chunk = report.expandTasks(initialBatchSize);
+		}
+		return chunk;
+	}
+
 	/**
 	 * Get the list of failed tasks after execution.
 	 * @param tasks the list of tasks executed
@@ -270,17 +365,14 @@ public class SocketBasedHTTPWorker implements Worker {
 		List<Task> tasksToRetry = new ArrayList<>();
 		for (Task task : tasks) {
 			if (task != null) {
-				URLTask urlTask = (URLTask) task;
 				if (TaskStatus.INIT.equals(task.getStatus()) || TaskStatus.CONNECTED.equals(task.getStatus())) {
-					task.setErrorMsg("URL Connection Timeout Out with status: " + task.getStatus());
+					task.setError(ErrorCode.CONNECTION_TIMEOUT, task.getStatus().name());
 					task.setStatus(TaskStatus.TIMEDOUT);
-					task.setUrl(urlTask.getCompleteURL()); // adding respective URL to taskInfo in case of any error
 					tasksToRetry.add(task);
 				} else if (TaskStatus.WRITTEN.equals(task.getStatus())) {
 					readWriteFailureCount++;
 					task.setStatus(TaskStatus.TIMEDOUT);
-					task.setErrorMsg("URL Request Timeout Out. No Response Rcvd.");
-					task.setUrl(urlTask.getCompleteURL()); // adding respective URL to taskInfo in case of any error
+					task.setError(ErrorCode.REQUEST_TIMEOUT, null);
 					tasksToRetry.add(task);
 				}
 			}
@@ -288,19 +380,76 @@ public class SocketBasedHTTPWorker implements Worker {
 		return tasksToRetry;
 	}
 
+	/**
+	 * Mark the tasks left without a result by an early stop as stopped, so that the response accounts for every task.
+	 * @param tasks the tasks of the request
+	 * @param retryPass {@code true} if the tasks were stopped in the retry pass, a timed out task was then not run
+	 *        again and is stopped as well
+	 * @return the tasks that reached their final status, the stopped tasks and the timed out tasks not retried
+	 */
+	private List<Task> updateStoppedTasksStatus(List<Task> tasks, boolean retryPass) {
+		List<Task> completedTasks = new ArrayList<>();
+		for (Task task : tasks) {
+			if (task == null) {
+				continue;
+			}
+			TaskStatus status = task.getStatus();
+			if (status == null || TaskStatus.INIT.equals(status) || TaskStatus.CONNECTED.equals(status) || TaskStatus.WRITTEN.equals(status)
+					|| TaskStatus.READ.equals(status) || (retryPass && TaskStatus.TIMEDOUT.equals(status))) {
+				task.setError(ErrorCode.REQUEST_STOPPED, null);
+				task.setStatus(TaskStatus.STOPPED);
+				completedTasks.add(task);
+			} else if (TaskStatus.TIMEDOUT.equals(status)) {
+				completedTasks.add(task);
+			}
+		}
+		return completedTasks;
+	}
+
+	/**
+	 * Log the tasks that reached their final status to the change log of the report.
+	 * @param report the report of the request
+	 * @param tasks the tasks to check
+	 * @param includeTimedOut log timed out tasks as well, they are final only when they will not be retried
+	 */
+	private void logCompletedTasks(LightningRequestReport report, List<Task> tasks, boolean includeTimedOut) {
+		for (Task task : tasks) {
+			TaskStatus status = task.getStatus();
+			if (status == null) {
+				continue;
+			}
+			switch (status) {
+			case CONNECT_FAILED:
+			case READ_WRITE_FAILED:
+			case SUCCESS:
+			case FAILED:
+			case STOPPED:
+				report.recordCompletedTask(task);
+				break;
+			case TIMEDOUT:
+				if (includeTimedOut) {
+					report.recordCompletedTask(task);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
 	/**
 	 * Execute the list of tasks in batches and store the result.
 	 * @param report object to store the execution result data
 	 * @param tasks list of tasks to be executed
+	 * @param logCompletedTasks log the tasks completed in each batch to the change log of the report, the sub tasks of
+	 *            chained checks are not logged and do not count towards the stop conditions
 	 */
-	private void executeInBatch(LightningRequestReport report, List<Task> tasks) {
+	private void executeInBatch(LightningRequestReport report, List<Task> tasks, boolean logCompletedTasks) {
 		currentState = WorkerState.RUNNING;
 		report.setStatus(WorkStatus.RUNNING);
 		int counter = 0;
-		int localBatchId = 0;
-		if (tasks.size() < batchSize) {
-			batchSize = tasks.size();
-		}
+		int batchStart = 0;
+		batchSize = nextBatchSize(tasks.size());
 		if(tasks.size() > 0)
 			prepareSelector();
 
@@ -326,19 +475,17 @@ public class SocketBasedHTTPWorker implements Worker {
 					if (inetAddress == null) {
 						connectFailureCount++;
 						urlTask.setStatus(TaskStatus.CONNECT_FAILED);
-						task.setErrorMsg("Inet Socket Address is null.");
-						task.setUrl(urlTask.getCompleteURL()); // adding respective URL to taskInfo in case of any error
+						task.setError(ErrorCode.INET_ADDRESS_NOT_FOUND, null);
 					} else {
 						channels.add(createSocketChannel(inetAddress, this.selector, urlTask));
 					}
 				} catch (Exception e) {
 					connectFailureCount++;
 					urlTask.setStatus(TaskStatus.CONNECT_FAILED);
-					task.setErrorMsg("Connect failed : " + e.getMessage());
-					task.setUrl(urlTask.getCompleteURL()); // adding respective URL to taskInfo in case of any error
+					task.setError(ErrorCode.CONNECT_FAILED, e.getMessage());
 				}
-				if (counter == batchSize || (counter + (localBatchId * batchSize)) == tasks.size()) {
-					int completedTasks = counter + (localBatchId * batchSize);
+				if (counter == batchSize || batchStart + counter == tasks.size()) {
+					int completedTasks = batchStart + counter;
 					if (completedTasks == tasks.size()) {
 						batchSize = counter;
 					}
@@ -351,7 +498,16 @@ public class SocketBasedHTTPWorker implements Worker {
 					processConnect();
 					batchReport.setConnectFailureCount(connectFailureCount);
 					batchReport.setConnectTimeInMillis(connectTimeInMillis);
-					processReadWrite();
+					processReadWrite(logCompletedTasks);
+					if (logCompletedTasks) {
+						List<Task> batchTasks = tasks.subList(completedTasks - counter, completedTasks);
+						logCompletedTasks(report, batchTasks, false);
+						report.notifyProgress();
+						countCompletedTasks(batchTasks);
+						if (!stopped && requestConfig.isStopConditionMet(requestSuccessCount, requestFailureCount)) {
+							stop(report);
+						}
+					}
 					batchReport.setExecutionTime(System.currentTimeMillis() - processStartTime);
 					batchReport.setCurrentInetCacheSize((int) inetCache.getInetCache().size());
 					batchReport.setSuccessCount(successCount);
@@ -363,18 +519,74 @@ public class SocketBasedHTTPWorker implements Worker {
 					clearSelector();
 					closeChannels(channels);
 					channels.clear();
-					if(completedTasks < tasks.size())  // create selector only if there are more tasks to be processed.
+					if (!stopped && completedTasks < tasks.size()) { // create selector only if there are more tasks to be processed.
+						batchSize = nextBatchSize(tasks.size() - completedTasks);
 						prepareSelector();
+					}
 					counter = 0;
 					batchId++;
-					localBatchId++;
+					batchStart = completedTasks;
 					batchReport.setCleanupTimeInMillis(System.currentTimeMillis() - processStartTime);
 					processStartTime = System.currentTimeMillis();
+					if (stopped) {
+						break;
+					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * Get the size of the next batch, asking the resource monitor for the current connection headroom.
+	 * @param remainingTasks the number of tasks left to execute
+	 * @return the number of tasks to execute in the next batch
+	 */
+	private int nextBatchSize(int remainingTasks) {
+		int limit = resourceMonitor != null ? resourceMonitor.getInFlightLimit(initialBatchSize) : initialBatchSize;
+		return Math.min(limit, remainingTasks);
+	}
+
+	/**
+	 * Add the tasks of a completed batch to the counts of the request. The tasks that did not succeed in the first
+	 * execution count as failures until they succeed on retry.
+	 * @param batchTasks the tasks of the batch
+	 */
+	private void countCompletedTasks(List<Task> batchTasks) {
+		int batchSuccessCount = 0;
+		for (Task task : batchTasks) {
+			if (TaskStatus.SUCCESS.equals(task.getStatus())) {
+				batchSuccessCount++;
+			}
+		}
+		requestSuccessCount += batchSuccessCount;
+		if (retrying) {
+			requestFailureCount -= batchSuccessCount;
+		} else {
+			requestFailureCount += batchTasks.size() - batchSuccessCount;
+		}
+	}
+
+	/**
+	 * Check the stop conditions with the tasks completed in the batch being executed.
+	 * @return {@code true} if the remaining tasks need not be executed
+	 */
+	private boolean isStopConditionMetInBatch() {
+		int failureCount = retrying ? requestFailureCount - successCount
+				: requestFailureCount + connectFailureCount + readWriteFailureCount;
+		return requestConfig.isStopConditionMet(requestSuccessCount + successCount, failureCount);
+	}
+
+	/**
+	 * Stop the request, the tasks in flight and the tasks not executed yet are marked {@link TaskStatus#STOPPED} once
+	 * the batch returns.
+	 * @param report the report of the request
+	 */
+	private void stop(LightningRequestReport report) {
+		stopped = true;
+		log.info("Stop condition met for request Id : " + report.getRequest().getSessionId() + " after " + requestSuccessCount
+				+ " successes and " + requestFailureCount + " failures");
+	}
+
 	/**
 	 * Caches the {@link InetSocketAddress} of all the hosts in the task list.
 	 * @param tasks the list of tasks to be cached
@@ -454,8 +666,7 @@ public class SocketBasedHTTPWorker implements Worker {
 			connectFailureCount++;
 			socketChannel.close();
 			task.setStatus(TaskStatus.CONNECT_FAILED);
-			task.setErrorMsg("Hostname can't be resolved : " + ex.getMessage());
-			task.setUrl(task.getCompleteURL()); // adding respective URL to taskInfo in case of any error
+			task.setError(ErrorCode.HOST_NOT_RESOLVED, ex.getMessage());
 			inetCacheToInvalidate.add(task.getHost() + ":" + task.getPort());//TODO invalidate this AFTER all the batches are done 
 		}
 		return socketChannel;
@@ -511,8 +722,7 @@ public class SocketBasedHTTPWorker implements Worker {
 						connectFailureCount++;
 						URLTask task = (URLTask) selKey.attachment();
 						task.setStatus(TaskStatus.CONNECT_FAILED);
-						task.setErrorMsg("Connect failure : " + e.getMessage());
-						task.setUrl(task.getCompleteURL()); // adding respective URL to taskInfo in case of any error
+						task.setError(ErrorCode.CONNECT_FAILURE, e.getMessage());
 					}
 				} else {
 					processReadWrite(selKey);
@@ -552,14 +762,16 @@ public class SocketBasedHTTPWorker implements Worker {
 		} else {
 			connectFailureCount++;
 			attachement.setStatus(TaskStatus.CONNECT_FAILED);
-			attachement.setErrorMsg("Channel not connected & failed writing.");
+			attachement.setError(ErrorCode.CHANNEL_NOT_CONNECTED, null);
 		}
 	}
 
 	/**
 	 * Gather the metrics for read/write operation.
+	 * @param checkStopCondition stop reading as soon as the stop conditions of the request are met
 	 */
-	private void processReadWrite() {
+	private void processReadWrite(boolean checkStopCondition) {
+		boolean hasStopCondition = checkStopCondition && requestConfig.hasStopCondition();
 		long processStartTime = System.currentTimeMillis();
 		while (true) {
 			try {
@@ -573,6 +785,9 @@ public class SocketBasedHTTPWorker implements Worker {
 			long processTime = System.currentTimeMillis() - processStartTime;
 			if (readCount >= connCount) {
 				break;
+			} else if (hasStopCondition && isStopConditionMetInBatch()) {
+				// the channels still in flight are closed with the batch
+				break;
 			} else if (((readCount * 100) / connCount >= readAccuracyPercent) && processTime >= readWriteTimeoutMillis) {
 				break;
 			} else if (((readCount * 100) / connCount >= readAccuracyPercent) || processTime >= slowUrlsReadWriteTimeoutMillis) {
@@ -610,7 +825,7 @@ public class SocketBasedHTTPWorker implements Worker {
 		} catch (Exception e) {
 			readWriteFailureCount++;
 			attachement.setStatus(TaskStatus.READ_WRITE_FAILED);
-			attachement.setErrorMsg("Read-Write Failure: " + e.getMessage());
+			attachement.setError(ErrorCode.READ_WRITE_FAILED, e.getMessage());
 		}
 		return false;
 	}
@@ -629,7 +844,7 @@ public class SocketBasedHTTPWorker implements Worker {
 		} else {
 			readWriteFailureCount++;
 			task.setStatus(TaskStatus.FAILED);
-			task.setErrorMsg("Unsupported HTTP Method" + requestConfig.getMethod());
+			task.setError(ErrorCode.UNSUPPORTED_HTTP_METHOD, String.valueOf(requestConfig.getMethod()));
 		}
 	}
 
@@ -663,13 +878,11 @@ public class SocketBasedHTTPWorker implements Worker {
 		} else if (responseCode >= 100 && responseCode <= 511) {
 			readWriteFailureCount++;
 			task.setStatus(TaskStatus.FAILED);
-			task.setErrorMsg("HTTP " + responseCode);
-			task.setUrl(task.getCompleteURL()); // adding respective URL to taskInfo in case of any error
+			task.setError(ErrorCode.HTTP_ERROR, ErrorCode.statusCodeDetail(responseCode));
 		} else {
 			readWriteFailureCount++;
 			task.setStatus(TaskStatus.FAILED);
-			task.setErrorMsg("Bad HTTP URL");
-			task.setUrl(task.getCompleteURL()); // adding respective URL to taskInfo in case of any error
+			task.setError(ErrorCode.BAD_HTTP_URL, null);
 		}
 		return false;
 	}
@@ -824,7 +1037,7 @@ public class SocketBasedHTTPWorker implements Worker {
 		this.readAccuracyPercent = requestConfig.getRetryReadAccuracyPercent();
 		this.slowUrlsConnectTimeoutMillis = requestConfig.getRetrySlowUrlsConnectTimeoutMillis();
 		this.slowUrlsReadWriteTimeoutMillis = requestConfig.getRetrySlowUrlsReadWriteTimeoutMillis();
-		this.batchSize = this.initialBatchSize;
+		this.retrying = true;
 	}
 	
 
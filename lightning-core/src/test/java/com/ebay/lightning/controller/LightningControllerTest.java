@@ -2,15 +2,28 @@ package com.ebay.lightning.controller;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import junit.framework.Assert;
@@ -32,6 +45,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.util.NestedServletException;
 
+import com.ebay.lightning.core.async.Callback;
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
@@ -44,8 +58,13 @@ import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
 import com.ebay.lightning.core.controllers.LightningController;
 import com.ebay.lightning.core.services.TaskExecutionService;
+import com.ebay.lightning.core.store.AuditReportPage;
+import com.ebay.lightning.core.store.EncodedResponse;
 import com.ebay.lightning.core.store.LightningRequestReport;
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.ebay.lightning.core.utils.LZCodec;
 import com.ebay.lightning.core.utils.ZipUtil;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
 import com.google.gson.Gson;
 import com.google.gson.JsonParser;
 
@@ -109,6 +128,29 @@ public class LightningControllerTest {
 		Assert.assertEquals("submitted", new JsonParser().parse(content).getAsJsonObject().get("status").getAsString());
 	}
 	
+	@Test
+	public void testSubmitBinary() throws Exception{
+		int load = 10;
+		LightningRequest request = new LightningRequest("sessionId", generateTasks(load), new ReservationReceipt(ReservationReceipt.State.ACCEPTED,"1", load));
+		byte[] payload = BinaryCodec.toByteArray(BinaryCodec.encode(request));
+		MvcResult result = mockMvc.perform(post("/l/submit").content(payload).contentType(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE))
+				.accept(MediaType.APPLICATION_JSON)).andReturn();
+		String content = result.getResponse().getContentAsString();
+		Assert.assertEquals("submitted", new JsonParser().parse(content).getAsJsonObject().get("status").getAsString());
+	}
+	
+	@Test
+	public void testAppendBinary() throws Exception{
+		int load = 10;
+		LightningRequest chunk = new LightningRequest("sessionId", generateTasks(load), new ReservationReceipt(ReservationReceipt.State.ACCEPTED,"1", load));
+		byte[] payload = BinaryCodec.toByteArray(BinaryCodec.encode(chunk));
+		MvcResult result = mockMvc.perform(post("/l/submit/sessionId/append?last=true").content(payload)
+				.contentType(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE)).accept(MediaType.APPLICATION_JSON)).andReturn();
+		String content = result.getResponse().getContentAsString();
+		Assert.assertEquals("appended", new JsonParser().parse(content).getAsJsonObject().get("status").getAsString());
+		verify(taskExecutionService).appendTasks(eq("sessionId"), anyListOf(Task.class), eq(true));
+	}
+
 	@Test
 	public void testSubmitError() throws Exception{
 		int load = 10;
@@ -157,6 +199,132 @@ public class LightningControllerTest {
 		Assert.assertEquals(response.getSessionId(), unzipResponse.getSessionId());
 	}
 	
+	@Test
+	public void testPollNotModified() throws Exception{
+		String sessionId = "session1";
+		LightningResponse response = new LightningResponse(sessionId, WorkStatus.DONE);
+		EncodedResponse encodedResponse = new EncodedResponse(response, BinaryCodec.toByteArray(BinaryCodec.encode(response)));
+		when(taskExecutionService.pollEncodedResponse(sessionId, true, null)).thenReturn(encodedResponse);
+		MvcResult result = mockMvc.perform(get(String.format("/l/poll/%s/%s", sessionId, false))
+				.accept(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE))).andReturn();
+		Assert.assertEquals(200, result.getResponse().getStatus());
+		Assert.assertEquals(encodedResponse.getTag(), result.getResponse().getHeader("ETag"));
+		Assert.assertEquals(BinaryCodec.CONTENT_TYPE, result.getResponse().getContentType());
+		Assert.assertEquals(WorkStatus.DONE, BinaryCodec.decodeResponse(ByteBuffer.wrap(result.getResponse().getContentAsByteArray())).getStatus());
+
+		result = mockMvc.perform(get(String.format("/l/poll/%s/%s", sessionId, false)).header("If-None-Match", encodedResponse.getTag())
+				.accept(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE))).andReturn();
+		Assert.assertEquals(304, result.getResponse().getStatus());
+		Assert.assertEquals(0, result.getResponse().getContentAsByteArray().length);
+	}
+
+	@Test
+	public void testPollBinary() throws Exception{
+		String sessionId = "session1";
+		LightningResponse response = new LightningResponse(sessionId, WorkStatus.RUNNING);
+		response.setSequence(7);
+		when(taskExecutionService.pollResponse(sessionId, 3)).thenReturn(response);
+		MvcResult result = mockMvc.perform(get(String.format("/l/poll/%s/since/%d", sessionId, 3))
+				.accept(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE), MediaType.parseMediaType("application/zip"))).andReturn();
+		Assert.assertEquals(BinaryCodec.CONTENT_TYPE, result.getResponse().getContentType());
+		LightningResponse decoded = BinaryCodec.decodeResponse(ByteBuffer.wrap(result.getResponse().getContentAsByteArray()));
+		Assert.assertEquals(7, decoded.getSequence());
+	}
+
+	@Test
+	public void testPollBinaryUnknownSession() throws Exception{
+		MvcResult result = mockMvc.perform(get(String.format("/l/poll/%s/since/%d", "unknown", 3))
+				.accept(MediaType.parseMediaType(BinaryCodec.CONTENT_TYPE))).andReturn();
+		Assert.assertEquals(404, result.getResponse().getStatus());
+	}
+	
+	@Test
+	public void testPollSince() throws Exception{
+		String sessionId = "session1";
+		LightningResponse response = new LightningResponse(sessionId, WorkStatus.RUNNING);
+		response.setSequence(42);
+		when(taskExecutionService.pollResponse(sessionId, 10)).thenReturn(response);
+		MvcResult result = mockMvc.perform(get(String.format("/l/poll/%s/since/%d", sessionId, 10))).andReturn();
+		byte[] content = result.getResponse().getContentAsByteArray();
+		LightningResponse unzipResponse = (LightningResponse) ZipUtil.unZipByteArray(content, LightningResponse.class);
+		Assert.assertEquals(42, unzipResponse.getSequence());
+
+		result = mockMvc.perform(get(String.format("/l/poll/json/%s/since/%d", sessionId, 10)).accept(MediaType.APPLICATION_JSON)).andReturn();
+		Assert.assertEquals(42, new JsonParser().parse(result.getResponse().getContentAsString()).getAsJsonObject().get("sequence").getAsInt());
+	}
+
+	@Test
+	public void testPollSinceNegotiatedCodec() throws Exception{
+		String sessionId = "session1";
+		LightningResponse response = new LightningResponse(sessionId, WorkStatus.RUNNING);
+		response.setSequence(42);
+		SystemConfig config = new SystemConfig();
+		when(taskExecutionService.getSystemConfig()).thenReturn(config);
+		when(taskExecutionService.pollResponse(sessionId, 10)).thenReturn(response);
+		// too small to be worth compressing
+		MvcResult result = mockMvc.perform(get(String.format("/l/poll/%s/since/%d", sessionId, 10)).header("Accept-Encoding", "x-lightning-lz, gzip")).andReturn();
+		Assert.assertNull(result.getResponse().getHeader("Content-Encoding"));
+		Assert.assertEquals("Accept-Encoding", result.getResponse().getHeader("Vary"));
+		Assert.assertEquals(42, ((LightningResponse) ZipUtil.unZipByteArray(result.getResponse().getContentAsByteArray(), LightningResponse.class)).getSequence());
+
+		config.setMinCompressedSizeInBytes(0);
+		result = mockMvc.perform(get(String.format("/l/poll/%s/since/%d", sessionId, 10)).header("Accept-Encoding", "x-lightning-lz, gzip")).andReturn();
+		Assert.assertEquals(Codec.LZ.getEncoding(), result.getResponse().getHeader("Content-Encoding"));
+		Assert.assertTrue(LZCodec.isEncoded(result.getResponse().getContentAsByteArray()));
+		Assert.assertEquals(42, ((LightningResponse) ZipUtil.unZipByteArray(result.getResponse().getContentAsByteArray(), LightningResponse.class)).getSequence());
+	}
+
+	@Test
+	public void testPollBatch() throws Exception{
+		LightningResponse running = new LightningResponse("session1", WorkStatus.RUNNING);
+		running.setSequence(5);
+		LightningResponse done = new LightningResponse("session2", WorkStatus.DONE);
+		done.setSequence(8);
+		Map<String, LightningResponse> responses = new HashMap<>();
+		responses.put("session1", running);
+		responses.put("session2", done);
+		Map<String, Integer> fromSequences = new HashMap<>();
+		fromSequences.put("session1", 3);
+		fromSequences.put("session2", 0);
+		fromSequences.put("unknown", 0);
+		when(taskExecutionService.pollResponses(fromSequences)).thenReturn(responses);
+
+		MvcResult result = mockMvc.perform(post("/l/poll/batch").content(new Gson().toJson(fromSequences))).andReturn();
+		Map<String, LightningResponse> polled = (Map<String, LightningResponse>) ZipUtil.unZipByteArray(result.getResponse().getContentAsByteArray(), Map.class);
+		Assert.assertEquals(2, polled.size());
+		Assert.assertEquals(5, polled.get("session1").getSequence());
+		Assert.assertTrue(polled.get("session2").isCompleted());
+	}
+
+	@Test
+	public void testLongPollSince() throws Exception{
+		String sessionId = "session1";
+		LightningRequestReport report = new LightningRequestReport(new LightningRequest(sessionId, generateTasks(2), new ReservationReceipt(State.ACCEPTED, "1", 2)));
+		LightningResponse noChange = new LightningResponse(sessionId, WorkStatus.RUNNING);
+		noChange.setSequence(10);
+		LightningResponse response = new LightningResponse(sessionId, WorkStatus.RUNNING);
+		response.setSequence(11);
+		when(taskExecutionService.getSystemConfig()).thenReturn(new SystemConfig());
+		when(taskExecutionService.getReport(sessionId)).thenReturn(report);
+		when(taskExecutionService.pollResponse(sessionId, 10)).thenReturn(noChange, noChange, response);
+
+		MvcResult result = mockMvc.perform(get(String.format("/l/poll/%s/since/%d/wait", sessionId, 10))).andExpect(request().asyncStarted()).andReturn();
+		verify(taskExecutionService, times(2)).pollResponse(sessionId, 10);
+		report.notifyProgress();
+		// the response is produced off the notifying worker thread
+		result.getAsyncResult(5000);
+		result = mockMvc.perform(asyncDispatch(result)).andReturn();
+		LightningResponse unzipResponse = (LightningResponse) ZipUtil.unZipByteArray(result.getResponse().getContentAsByteArray(), LightningResponse.class);
+		Assert.assertEquals(11, unzipResponse.getSequence());
+
+		// the tasks completed before the poll are returned without waiting
+		when(taskExecutionService.pollResponse(sessionId, 10)).thenReturn(response);
+		result = mockMvc.perform(get(String.format("/l/poll/%s/since/%d/wait", sessionId, 10))).andExpect(request().asyncStarted()).andReturn();
+		result = mockMvc.perform(asyncDispatch(result)).andReturn();
+		unzipResponse = (LightningResponse) ZipUtil.unZipByteArray(result.getResponse().getContentAsByteArray(), LightningResponse.class);
+		Assert.assertEquals(11, unzipResponse.getSequence());
+	}
+
 	@Test
 	public void testAuditJson() throws Exception{
 		String sessionId = "session1";
@@ -207,6 +375,41 @@ public class LightningControllerTest {
 		Assert.assertEquals(WorkStatus.DONE, unzipResponse.getStatus());
 	}
 	
+	@Test
+	public void testAuditSummaryStream() throws Exception{
+		List<LightningRequestReport> firstPage = new ArrayList<LightningRequestReport>();
+		List<LightningRequestReport> secondPage = new ArrayList<LightningRequestReport>();
+		for (int i = 0; i < 3; i++) {
+			LightningRequestReport report = new LightningRequestReport();
+			report.setStatus(WorkStatus.DONE);
+			(i < 2 ? firstPage : secondPage).add(report);
+		}
+		when(taskExecutionService.getAuditReportPage(eq(100L), eq(Long.MAX_VALUE), (String) isNull(), anyInt())).thenReturn(new AuditReportPage(firstPage, "next"));
+		when(taskExecutionService.getAuditReportPage(anyLong(), anyLong(), eq("next"), anyInt())).thenReturn(new AuditReportPage(secondPage, null));
+		MvcResult result = mockMvc.perform(get("/l/auditSummary/stream?from=100")).andReturn();
+		final List<LightningRequestReport> reports = new ArrayList<LightningRequestReport>();
+		int count = ZipUtil.unZipStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()), LightningRequestReport.class,
+				new Callback<LightningRequestReport>() {
+					@Override
+					public void notify(LightningRequestReport report) {
+						reports.add(report);
+					}
+				});
+		Assert.assertEquals(3, count);
+		Assert.assertEquals(WorkStatus.DONE, reports.get(2).getStatus());
+	}
+
+	@Test
+	public void testAuditSummaryPage() throws Exception{
+		List<LightningRequestReport> reports = new ArrayList<LightningRequestReport>();
+		reports.add(new LightningRequestReport());
+		when(taskExecutionService.getAuditReportPage(0L, Long.MAX_VALUE, "abc-1", 10)).thenReturn(new AuditReportPage(reports, "abc-2"));
+		MvcResult result = mockMvc.perform(get("/l/auditSummary/page?cursor=abc-1&limit=10")).andReturn();
+		AuditReportPage page = (AuditReportPage) ZipUtil.unZipByteArray(result.getResponse().getContentAsByteArray(), AuditReportPage.class);
+		Assert.assertEquals(1, page.getReports().size());
+		Assert.assertEquals("abc-2", page.getNextCursor());
+	}
+	
 	@Test
 	public void testLightningStats() throws Exception{
 		long freeMem = 100l;
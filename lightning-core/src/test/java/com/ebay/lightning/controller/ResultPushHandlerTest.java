@@ -0,0 +1,172 @@
+package com.ebay.lightning.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.ReservationReceipt.State;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.config.SystemConfig;
+import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.ebay.lightning.core.controllers.ResultPushHandler;
+import com.ebay.lightning.core.services.TaskExecutionService;
+import com.ebay.lightning.core.store.ExecutionDataStore;
+import com.ebay.lightning.core.store.LightningRequestReport;
+import com.ebay.lightning.core.utils.BinaryCodec;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class ResultPushHandlerTest {
+
+	private TaskExecutionService taskExecutionService;
+	private ResultPushHandler handler;
+	private WebSocketSession session;
+	private ExecutionDataStore dataStore;
+	private LightningRequestReport report;
+
+	@Before
+	public void setup() throws Exception {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		dataStore = new ExecutionDataStore(new SystemConfig());
+		report = dataStore.register(new LightningRequest("session", tasks, new ReservationReceipt(State.ACCEPTED, "1", 4)));
+		report.setStatus(WorkStatus.RUNNING);
+
+		taskExecutionService = mock(TaskExecutionService.class);
+		when(taskExecutionService.getReport("session")).thenReturn(report);
+		when(taskExecutionService.pollResponse(eq("session"), anyInt())).thenAnswer(new Answer<LightningResponse>() {
+			@Override
+			public LightningResponse answer(InvocationOnMock invocation) throws Throwable {
+				return dataStore.pollResults("session", (Integer) invocation.getArguments()[1]);
+			}
+		});
+		handler = new ResultPushHandler(taskExecutionService);
+		session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("connection");
+		handler.afterConnectionEstablished(session);
+	}
+
+	@After
+	public void cleanup() {
+		handler.shutdown();
+		dataStore.close();
+	}
+
+	@Test
+	public void testPushUntilCompleted() throws Exception {
+		handler.handleMessage(session, new TextMessage("session"));
+		ArgumentCaptor<WebSocketMessage> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(session, timeout(5000).times(1)).sendMessage(captor.capture());
+		assertEquals(WorkStatus.RUNNING, decode(captor.getValue()).getStatus());
+		assertEquals(1, handler.getSubscriptionCount(session));
+
+		completeTask(0);
+		completeTask(1);
+		report.notifyProgress();
+		captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(session, timeout(5000).times(2)).sendMessage(captor.capture());
+		assertEquals(2, decode(captor.getValue()).getSuccessCount());
+
+		completeTask(2);
+		completeTask(3);
+		report.setStatus(WorkStatus.DONE);
+		report.notifyProgress();
+		captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(session, timeout(5000).times(3)).sendMessage(captor.capture());
+		LightningResponse response = decode(captor.getValue());
+		assertTrue(response.isCompleted());
+		assertEquals(2, response.getSuccessCount());
+		// the subscription is dropped after the last message is sent
+		long deadline = System.currentTimeMillis() + 5000;
+		while (handler.getSubscriptionCount(session) > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, handler.getSubscriptionCount(session));
+	}
+
+	@Test
+	public void testConnectionClosed() throws Exception {
+		handler.handleMessage(session, new TextMessage("session"));
+		verify(session, timeout(5000).times(1)).sendMessage(any(WebSocketMessage.class));
+		handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+		assertEquals(0, handler.getSubscriptionCount(session));
+		report.setStatus(WorkStatus.DONE);
+		report.notifyProgress();
+		Thread.sleep(100);
+		verify(session, timeout(5000).times(1)).sendMessage(any(WebSocketMessage.class));
+	}
+
+	@Test
+	public void testUnknownSession() throws Exception {
+		handler.handleMessage(session, new TextMessage("unknown"));
+		ArgumentCaptor<WebSocketMessage> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(session).sendMessage(captor.capture());
+		assertError("unknown", captor.getValue());
+		verify(session, never()).close(any(CloseStatus.class));
+
+		// the connection still serves the other subscriptions
+		handler.handleMessage(session, new TextMessage("session"));
+		captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(session, timeout(5000).times(2)).sendMessage(captor.capture());
+		assertEquals(WorkStatus.RUNNING, decode(captor.getValue()).getStatus());
+	}
+
+	@Test
+	public void testPushFailure() throws Exception {
+		when(taskExecutionService.pollResponse(eq("session"), anyInt())).thenThrow(new IllegalStateException("Report cleaned up"));
+		handler.handleMessage(session, new TextMessage("session"));
+		ArgumentCaptor<WebSocketMessage> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+		verify(session, timeout(5000).times(1)).sendMessage(captor.capture());
+		assertError("session", captor.getValue());
+		assertEquals(0, handler.getSubscriptionCount(session));
+		verify(session, never()).close(any(CloseStatus.class));
+	}
+
+	private void assertError(String sessionId, WebSocketMessage<?> message) {
+		assertTrue(message instanceof TextMessage);
+		JsonObject error = new JsonParser().parse(((TextMessage) message).getPayload()).getAsJsonObject();
+		assertEquals(sessionId, error.get("sessionId").getAsString());
+		assertEquals("failed", error.get("status").getAsString());
+	}
+
+	private void completeTask(int index) {
+		Task task = report.getRequest().getTasks().get(index);
+		((URLTask) task).setStatus(TaskStatus.SUCCESS);
+		report.recordCompletedTask(task);
+	}
+
+	private LightningResponse decode(WebSocketMessage<?> message) {
+		assertFalse(message instanceof TextMessage);
+		return BinaryCodec.decodeResponse(((BinaryMessage) message).getPayload());
+	}
+}
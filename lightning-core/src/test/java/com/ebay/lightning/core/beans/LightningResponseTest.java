@@ -0,0 +1,58 @@
+package com.ebay.lightning.core.beans;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+
+public class LightningResponseTest {
+
+	@Test
+	public void testMergeDelta() {
+		LightningResponse response = createResponse(WorkStatus.RUNNING, 2, 0, 1);
+		response.merge(createResponse(WorkStatus.DONE, 4, 2, 3));
+		Assert.assertEquals(WorkStatus.DONE, response.getStatus());
+		Assert.assertEquals(4, response.getSequence());
+		Assert.assertEquals(4, response.getSuccessCount());
+		Assert.assertEquals(4, response.getSuccessResponses().size());
+	}
+
+	@Test
+	public void testMergeFullResponse() {
+		LightningResponse response = createResponse(WorkStatus.RUNNING, 2, 0, 1);
+		// a report without a change log answers the delta poll with all its tasks
+		response.merge(createResponse(WorkStatus.DONE, 0, 0, 1, 2));
+		Assert.assertEquals(3, response.getSuccessCount());
+		Assert.assertEquals(3, response.getSuccessResponses().size());
+	}
+
+	@Test
+	public void testMergeRetriedTask() {
+		LightningResponse response = createResponse(WorkStatus.RUNNING, 1);
+		Map<Integer, FailedResponse> failedResponses = new HashMap<>();
+		failedResponses.put(0, new FailedResponse(0, "timed out"));
+		response.setFailedResponses(failedResponses);
+		response.merge(createResponse(WorkStatus.DONE, 2, 0));
+		Assert.assertEquals(1, response.getSuccessCount());
+		Assert.assertTrue(response.getFailedResponses().isEmpty());
+	}
+
+	private LightningResponse createResponse(WorkStatus status, int sequence, int... successIndexes) {
+		LightningResponse response = new LightningResponse("session", status);
+		response.setSequence(sequence);
+		response.setTotalCount(4);
+		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
+		for (int index : successIndexes) {
+			successResponses.put(index, new SuccessResponse("body-" + index));
+		}
+		response.setSuccessResponses(successResponses);
+		response.setSuccessCount(successIndexes.length);
+		return response;
+	}
+}
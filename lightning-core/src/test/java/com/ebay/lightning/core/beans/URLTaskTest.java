@@ -0,0 +1,75 @@
+package com.ebay.lightning.core.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
+import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
+import com.ebay.lightning.core.utils.ZipUtil;
+
+public class URLTaskTest {
+
+	private static final String URL = "http://localhost:8989/test";
+
+	@Test
+	public void testErrorCodeRendering() {
+		URLTask task = new URLTask(URL);
+		task.setStatus(TaskStatus.FAILED);
+		task.setStatusCode(404);
+		task.setError(ErrorCode.HTTP_ERROR, ErrorCode.statusCodeDetail(404));
+		assertEquals("HTTP 404", task.getErrorMsg());
+		assertEquals(ErrorCode.HTTP_ERROR, task.getErrorCode());
+
+		task.setErrorMsg("custom");
+		assertEquals("custom", task.getErrorMsg());
+		assertNull(task.getErrorCode());
+
+		task.setErrorMsg(null);
+		assertNull(task.getErrorMsg());
+	}
+
+	@Test
+	public void testErrorDetailIsInterned() {
+		URLTask first = new URLTask(URL);
+		URLTask second = new URLTask(URL);
+		first.setError(ErrorCode.CONNECT_FAILED, new String("Connection refused"));
+		second.setError(ErrorCode.CONNECT_FAILED, new String("Connection refused"));
+		assertSame(first.getErrorDetail(), second.getErrorDetail());
+		assertEquals("Connect failed : Connection refused", second.getErrorMsg());
+	}
+
+	@Test
+	public void testUrlResolvedForFailedTask() {
+		URLTask task = new URLTask(URL);
+		assertNull(task.getUrl());
+		task.setStatus(TaskStatus.CONNECT_FAILED);
+		task.setError(ErrorCode.HOST_NOT_RESOLVED, null);
+		assertEquals(URL, task.getUrl());
+	}
+
+	@Test
+	public void testFailedResponseKeepsMessageOnTheWire() throws Exception {
+		FailedResponse response = new FailedResponse(0, ErrorCode.READ_WRITE_FAILED, "Connection reset");
+		assertEquals(ErrorCode.READ_WRITE_FAILED, response.getErrorCode());
+		FailedResponse copy = (FailedResponse) ZipUtil.unZipByteArray(ZipUtil.zipAsByteArray(response), FailedResponse.class);
+		assertNull(copy.getErrorCode());
+		assertEquals("Read-Write Failure: Connection reset", copy.getErrMsg());
+		assertEquals("legacy", new FailedResponse(0, "legacy").getErrMsg());
+	}
+
+	@Test
+	public void testFailedTaskKeepsMessageOnTheWire() throws Exception {
+		URLTask task = new URLTask(URL);
+		task.setStatus(TaskStatus.FAILED);
+		task.setError(ErrorCode.HTTP_ERROR, ErrorCode.statusCodeDetail(500));
+		URLTask copy = (URLTask) ZipUtil.unZipByteArray(ZipUtil.zipAsByteArray(task), URLTask.class);
+		assertNull(copy.getErrorCode());
+		assertEquals("HTTP 500", copy.getErrorMsg());
+		assertEquals(URL, copy.getUrl());
+		assertSame(task.getUrl(), task.getUrl());
+	}
+}
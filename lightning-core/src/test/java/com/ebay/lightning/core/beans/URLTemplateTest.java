@@ -0,0 +1,33 @@
+package com.ebay.lightning.core.beans;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class URLTemplateTest {
+
+	@Test
+	public void testExpandCrossProduct() {
+		URLTemplate template = new URLTemplate("http://{host}:8080/{path}/ecv")
+				.addParameter("host", Arrays.asList("host1", "host2", "host3"))
+				.addParameter("path", Arrays.asList("a", "b"));
+		assertEquals(6, template.size());
+		assertEquals("http://host1:8080/a/ecv", template.expand(0).getCompleteURL());
+		assertEquals("http://host1:8080/b/ecv", template.expand(1).getCompleteURL());
+		assertEquals("http://host3:8080/b/ecv", template.expand(5).getCompleteURL());
+		assertEquals("host2", template.expand(2).getHost());
+		assertEquals(1, new URLTemplate("http://localhost/ecv").size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownPlaceholder() {
+		new URLTemplate("http://{host}/ecv").addParameter("port", Arrays.asList("80"));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testExpandOutOfRange() {
+		new URLTemplate("http://{host}/ecv").addParameter("host", Arrays.asList("host1")).expand(1);
+	}
+}
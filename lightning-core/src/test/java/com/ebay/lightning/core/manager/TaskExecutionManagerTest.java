@@ -4,6 +4,7 @@
 package com.ebay.lightning.core.manager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
@@ -11,6 +12,7 @@ import static org.mockito.Mockito.mock;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,10 +29,13 @@ import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.SystemStatus;
 import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.beans.URLTemplate;
+import com.ebay.lightning.core.config.RequestConfig;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.store.ExecutionDataStore;
 import com.ebay.lightning.core.store.LightningRequestReport;
 import com.ebay.lightning.core.utils.InetSocketAddressCache;
+import com.ebay.lightning.core.utils.ResourceMonitor;
 import com.ebay.lightning.core.utils.SmartCache;
 
 /**
@@ -103,6 +108,27 @@ public class TaskExecutionManagerTest {
 		Assert.assertTrue(auditReports.size() >= 1);
 	}
 	
+	@Test
+	public void testSubmitAndPollSinceSequence() throws Exception {
+		int load = 10;
+		String sessionId = submit(load);
+		int sequence = 0;
+		int polledTasks = 0;
+		LightningResponse response = null;
+		do {
+			Thread.sleep(100);
+			response = taskExecutionManager.pollResults(sessionId, sequence);
+			assertTrue(response.getSequence() >= sequence);
+			polledTasks += response.getFailedResponses().size() + response.getSuccessResponses().size();
+			sequence = response.getSequence();
+		} while (!response.isCompleted());
+		response = taskExecutionManager.pollResults(sessionId, sequence);
+		polledTasks += response.getFailedResponses().size() + response.getSuccessResponses().size();
+		assertEquals(load, polledTasks);
+		assertEquals(load, taskExecutionManager.pollResults(sessionId, 0).getFailedResponses().size()
+				+ taskExecutionManager.pollResults(sessionId, 0).getSuccessResponses().size());
+	}
+
 	@Test
 	public void testSubmitChainedTasks() throws Exception {
 		int load = 3;
@@ -124,6 +150,98 @@ public class TaskExecutionManagerTest {
 		Assert.assertTrue(auditReports.size() >= 1);
 	}
 
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectStopConditionForChainedTasks() throws Exception {
+		ReservationReceipt reservationRcpt = taskExecutionManager.reserve(3);
+		LightningRequest request = new LightningRequest(UUID.randomUUID().toString(), createChainedTasks(3), reservationRcpt);
+		RequestConfig config = new RequestConfig();
+		config.setMaxFailures(1);
+		request.setRequestconfig(config);
+		taskExecutionManager.submit(request);
+	}
+
+	@Test
+	public void testSubmitStreaming() throws Exception {
+		int load = 10;
+		String sessionId = UUID.randomUUID().toString();
+		ReservationReceipt reservationRcpt = taskExecutionManager.reserve(load);
+		LightningRequest request = new LightningRequest(sessionId, createTasks(4), reservationRcpt);
+		request.setStreaming(true);
+		taskExecutionManager.submit(request);
+		Thread.sleep(500);
+		LightningResponse response = taskExecutionManager.pollResults(sessionId, 0);
+		Assert.assertFalse(response.isCompleted());
+		assertEquals(4, response.getFailedResponses().size() + response.getSuccessResponses().size());
+
+		taskExecutionManager.appendTasks(sessionId, createTasks(4), false);
+		taskExecutionManager.appendTasks(sessionId, createTasks(2), true);
+		Exception expectedException = null;
+		try {
+			taskExecutionManager.appendTasks(sessionId, createTasks(1), true);
+		} catch (IllegalStateException e) {
+			expectedException = e;
+		}
+		assertNotNull(expectedException);
+		do {
+			Thread.sleep(100);
+			response = taskExecutionManager.pollResults(sessionId, 0);
+		} while (!response.isCompleted());
+		assertEquals(load, response.getTotalCount());
+		assertEquals(load, response.getFailedResponses().size() + response.getSuccessResponses().size());
+	}
+
+	@Test
+	public void testStreamingDoesNotHoldUpQueue() throws Exception {
+		String streamingSessionId = UUID.randomUUID().toString();
+		ReservationReceipt reservationRcpt = taskExecutionManager.reserve(4);
+		// a receipt sent back with a bigger load than reserved
+		ReservationReceipt forgedRcpt = new ReservationReceipt(reservationRcpt.getState(), reservationRcpt.getId(), MAX_TASK_CAPACITY);
+		LightningRequest request = new LightningRequest(streamingSessionId, createTasks(2), forgedRcpt);
+		request.setStreaming(true);
+		taskExecutionManager.submit(request);
+		Exception expectedException = null;
+		try {
+			taskExecutionManager.appendTasks(streamingSessionId, createTasks(4), false);
+		} catch (IllegalStateException e) {
+			expectedException = e;
+		}
+		assertNotNull(expectedException);
+
+		String sessionId = submit(2);
+		LightningResponse response = null;
+		do {
+			Thread.sleep(100);
+			response = taskExecutionManager.pollResults(sessionId, false);
+		} while (!response.isCompleted());
+		Assert.assertFalse(taskExecutionManager.pollResults(streamingSessionId, 0).isCompleted());
+
+		taskExecutionManager.appendTasks(streamingSessionId, createTasks(2), true);
+		do {
+			Thread.sleep(100);
+			response = taskExecutionManager.pollResults(streamingSessionId, 0);
+		} while (!response.isCompleted());
+		assertEquals(4, response.getTotalCount());
+	}
+
+	@Test
+	public void testSubmitUrlTemplate() throws Exception {
+		URLTemplate template = new URLTemplate("http://localhost:8989/l/{path}?id={id}").addParameter("path", Arrays.asList("ecv", "reserve"))
+				.addParameter("id", Arrays.asList("1", "2", "3"));
+		// expand and execute the template in two batches
+		systemConfig.setWorkerBatchSize(4);
+		String sessionId = UUID.randomUUID().toString();
+		ReservationReceipt reservationRcpt = taskExecutionManager.reserve(template.size());
+		taskExecutionManager.submit(new LightningRequest(sessionId, template, reservationRcpt));
+		LightningResponse response = null;
+		do {
+			Thread.sleep(100);
+			response = taskExecutionManager.pollResults(sessionId, false);
+		} while (!response.isCompleted());
+		assertEquals(template.size(), response.getTotalCount());
+		assertEquals(template.size(), response.getFailedResponses().size() + response.getSuccessResponses().size());
+		assertEquals(template.size(), taskExecutionManager.getReport(sessionId).getRequest().getTasks().size());
+	}
+
 	private List<Task> createTasks(int load) throws Exception {
 		List<Task> tasks = new ArrayList<>();
 		for (int i = 0; i < load; i++)
@@ -174,6 +292,32 @@ public class TaskExecutionManagerTest {
 		assertEquals(ReservationReceipt.State.DENIED, resp.getState());
 	}
 
+	@Test
+	public void testCancelReservation() {
+		ReservationReceipt resp = taskExecutionManager.reserve(MAX_TASK_CAPACITY);
+		assertEquals(ReservationReceipt.State.ACCEPTED, resp.getState());
+		assertEquals(ReservationReceipt.State.DENIED, taskExecutionManager.reserve(1).getState());
+
+		assertTrue(taskExecutionManager.cancelReservation(resp.getId()));
+		assertFalse(taskExecutionManager.cancelReservation(resp.getId()));
+		assertEquals(ReservationReceipt.State.ACCEPTED, taskExecutionManager.reserve(1).getState());
+	}
+
+	@Test
+	public void testReserveWithoutConnectionHeadroom() {
+		ResourceMonitor resourceMonitor = mock(ResourceMonitor.class);
+		taskExecutionManager.setResourceMonitor(resourceMonitor);
+
+		Mockito.when(resourceMonitor.getConnectionHeadroom()).thenReturn(0);
+		ReservationReceipt resp = taskExecutionManager.reserve(MAX_TASK_CAPACITY);
+		assertEquals(ReservationReceipt.State.DENIED, resp.getState());
+
+		systemConfig.getAdmissionPolicy().setMinWorkerBatchSize(MAX_TASK_CAPACITY / 2);
+		Mockito.when(resourceMonitor.getConnectionHeadroom()).thenReturn(MAX_TASK_CAPACITY / 2);
+		resp = taskExecutionManager.reserve(MAX_TASK_CAPACITY);
+		assertEquals(ReservationReceipt.State.BUSY, resp.getState());
+	}
+
 	@Test
 	public void testReservationExpiry() {
 		//Test
@@ -0,0 +1,148 @@
+package com.ebay.lightning.core.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.ReservationReceipt.State;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.config.SystemConfig.AuditLogPolicy;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+
+public class AuditLogStoreTest {
+
+	private File auditDirectory;
+	private AuditLogPolicy policy;
+
+	@Before
+	public void setup() throws Exception {
+		auditDirectory = File.createTempFile("lightning", "audit");
+		auditDirectory.delete();
+		policy = new AuditLogPolicy();
+		policy.setEnabled(true);
+		policy.setDirectory(auditDirectory.getAbsolutePath());
+		policy.setSegmentSizeInBytes(2048);
+		policy.setRetentionTimeInMillis(1000);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		FileUtils.deleteDirectory(auditDirectory);
+	}
+
+	@Test
+	public void testQueryByCompletionTime() throws Exception {
+		AuditLogStore auditLog = new AuditLogStore(policy);
+		auditLog.open();
+		for (int i = 0; i < 20; i++) {
+			auditLog.append(createAuditReport("session" + i), 1000 + i);
+		}
+		auditLog.flush();
+		assertEquals(20, auditLog.size());
+
+		List<LightningRequestReport> reports = auditLog.query(1005, 1014, 2, 5);
+		assertEquals(5, reports.size());
+		assertEquals("session7", reports.get(0).getRequest().getSessionId());
+		assertEquals("session11", reports.get(4).getRequest().getSessionId());
+		assertEquals(WorkStatus.DONE, reports.get(0).getStatus());
+		assertEquals(3, auditLog.query(1017, Long.MAX_VALUE, 0, 0).size());
+
+		auditLog.append(createAuditReport("session3"), 1020);
+		auditLog.flush();
+		assertEquals(20, auditLog.size());
+		assertEquals(0, auditLog.query(1003, 1003, 0, 0).size());
+		auditLog.close();
+	}
+
+	@Test
+	public void testQueryByCursor() throws Exception {
+		AuditLogStore auditLog = new AuditLogStore(policy);
+		auditLog.open();
+		for (int i = 0; i < 10; i++) {
+			auditLog.append(createAuditReport("session" + i), 1000 + i / 2);
+		}
+		auditLog.flush();
+
+		List<String> sessionIds = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			AuditReportPage page = auditLog.query(1001, 1003, cursor, 2);
+			for (LightningRequestReport report : page.getReports()) {
+				sessionIds.add(report.getRequest().getSessionId());
+			}
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+		assertEquals(3, pages);
+		assertEquals(6, sessionIds.size());
+		assertEquals("session2", sessionIds.get(0));
+		assertEquals("session7", sessionIds.get(5));
+		auditLog.close();
+	}
+
+	@Test
+	public void testQueryOffsetAcrossMinutes() throws Exception {
+		policy.setSegmentSizeInBytes(64 * 1024);
+		AuditLogStore auditLog = new AuditLogStore(policy);
+		auditLog.open();
+		for (int i = 0; i < 200; i++) {
+			auditLog.append(createAuditReport("session" + i), 600000 + i * 1000L);
+		}
+		auditLog.flush();
+
+		// the range starts and ends within a minute, the offset skips whole minutes
+		List<LightningRequestReport> reports = auditLog.query(630500, 750000, 100, 3);
+		assertEquals(3, reports.size());
+		assertEquals("session131", reports.get(0).getRequest().getSessionId());
+		assertEquals("session133", reports.get(2).getRequest().getSessionId());
+		assertEquals("session150", auditLog.query(630500, 750000, 119, 0).get(0).getRequest().getSessionId());
+		assertEquals(0, auditLog.query(630500, 750000, 120, 0).size());
+		assertEquals("session10", auditLog.query(0, Long.MAX_VALUE, 10, 1).get(0).getRequest().getSessionId());
+		auditLog.close();
+	}
+
+	@Test
+	public void testReopenAndExpireSegments() throws Exception {
+		AuditLogStore auditLog = new AuditLogStore(policy);
+		auditLog.open();
+		for (int i = 0; i < 20; i++) {
+			auditLog.append(createAuditReport("session" + i), 1000 + i * 100);
+		}
+		auditLog.close();
+
+		auditLog = new AuditLogStore(policy);
+		auditLog.open();
+		assertEquals(20, auditLog.size());
+		assertEquals("session4", auditLog.get("session4").getRequest().getSessionId());
+
+		auditLog.deleteExpiredSegments(3000);
+		assertNull(auditLog.get("session0"));
+		assertNotNull(auditLog.get("session19"));
+		int remaining = auditLog.size();
+		assertEquals(remaining, auditLog.query(0, Long.MAX_VALUE, 0, 0).size());
+		auditLog.close();
+	}
+
+	private LightningRequestReport createAuditReport(String sessionId) {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			tasks.add(new URLTask("http://localhost:8989/" + i));
+		}
+		LightningRequestReport report = new LightningRequestReport(new LightningRequest(sessionId, tasks, new ReservationReceipt(State.ACCEPTED, "1", 5)));
+		report.setStatus(WorkStatus.DONE);
+		return LightningRequestReport.getAuditReport(report);
+	}
+}
@@ -6,7 +6,9 @@ import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 
+import java.io.File;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -20,14 +22,19 @@ import org.mockito.Mockito;
 import com.ebay.lightning.core.beans.LightningRequest;
 import com.ebay.lightning.core.beans.LightningResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.ReservationReceipt.State;
 import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.beans.URLTask;
 import com.ebay.lightning.core.config.SystemConfig;
 import com.ebay.lightning.core.config.SystemConfig.RetentionPolicy;
+import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
 import com.ebay.lightning.core.manager.TaskExecutionManager;
 import com.ebay.lightning.core.manager.TaskExecutionManagerTest;
+import com.ebay.lightning.core.utils.BinaryCodec;
 import com.ebay.lightning.core.utils.InetSocketAddressCache;
 import com.ebay.lightning.core.utils.SmartCache;
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
 
 public class ExecutionDataStoreTest {
 	private static final Logger log = Logger.getLogger(TaskExecutionManagerTest.class);
@@ -130,6 +137,177 @@ public class ExecutionDataStoreTest {
 		assertNull(secondResponse);
 	}
 	
+	@Test
+	public void testCleanupEvictsInCompletionOrder() throws Exception {
+		SystemConfig config = new SystemConfig();
+		config.setAuditCleanupFrequencyInSec(3600);
+		config.getRetentionPolicy().setTaskRetentionTimeInMillis(TASK_RETENTION_TIME_IN_MILLIS);
+		config.getRetentionPolicy().setLightningReportRetentionTimeInMillis(LIGHTNING_REPORT_RETENTION_TIME_IN_MILLIS);
+		config.getRetentionPolicy().setMaxLightningReportRetentionCount(2);
+		ExecutionDataStore store = new ExecutionDataStore(config);
+		long now = System.currentTimeMillis();
+		// the first two reports complete in the same millisecond
+		String[] sessionIds = { "first", "second", "third", "fourth" };
+		long[] completionTimes = { now, now, now + 1000, now + 3000 };
+		for (int i = 0; i < sessionIds.length; i++) {
+			LightningRequestReport report = store.register(new LightningRequest(sessionIds[i], createTasks(1), new ReservationReceipt(State.ACCEPTED, "1", 1)));
+			report.setWorkDequeueTime(completionTimes[i]);
+			report.setTotalExecutionTimeInMillis(0L);
+			report.setStatus(WorkStatus.DONE);
+			store.markCompleted(sessionIds[i]);
+		}
+		String running = "running";
+		store.register(new LightningRequest(running, createTasks(1), new ReservationReceipt(State.ACCEPTED, "1", 1)));
+
+		store.cleanup(now + 1);
+		assertNull(store.getReport("first"));
+		assertNull(store.getReport("second"));
+		assertNotNull(store.getReport("third"));
+		assertNotNull(store.getReport(running));
+		assertEquals(WorkStatus.DONE, store.getReport("third").getStatus());
+
+		store.cleanup(now + 1000 + TASK_RETENTION_TIME_IN_MILLIS + 1);
+		assertEquals(WorkStatus.CLEANED_UP, store.getReport("third").getStatus());
+		assertEquals(WorkStatus.DONE, store.getReport("fourth").getStatus());
+
+		store.cleanup(now + 1000 + LIGHTNING_REPORT_RETENTION_TIME_IN_MILLIS + 1);
+		assertNull(store.getReport("third"));
+		assertNotNull(store.getReport("fourth"));
+		assertNotNull(store.getReport(running));
+	}
+
+	@Test
+	public void testMarkCompletedIsIdempotent() throws Exception {
+		SystemConfig config = new SystemConfig();
+		config.setAuditCleanupFrequencyInSec(3600);
+		config.getRetentionPolicy().setLightningReportRetentionTimeInMillis(LIGHTNING_REPORT_RETENTION_TIME_IN_MILLIS);
+		config.getRetentionPolicy().setMaxHeapReportSizeInBytes(Long.MAX_VALUE);
+		ExecutionDataStore store = new ExecutionDataStore(config);
+		long now = System.currentTimeMillis();
+		LightningRequestReport report = store.register(new LightningRequest("session", createTasks(2), new ReservationReceipt(State.ACCEPTED, "1", 2)));
+		report.setWorkDequeueTime(now);
+		report.setTotalExecutionTimeInMillis(0L);
+		report.setStatus(WorkStatus.DONE);
+		store.markCompleted("session");
+		long heapSize = store.getHeapReportSizeInBytes();
+		Assert.assertTrue(heapSize > 0);
+		store.markCompleted("session");
+		assertEquals(heapSize, store.getHeapReportSizeInBytes());
+
+		store.cleanup(now + LIGHTNING_REPORT_RETENTION_TIME_IN_MILLIS + 1);
+		assertNull(store.getReport("session"));
+		assertEquals(0, store.getHeapReportSizeInBytes());
+	}
+
+	@Test
+	public void testSpillCompletedReports() throws Exception {
+		SystemConfig config = new SystemConfig();
+		config.setAuditCleanupFrequencyInSec(3600);
+		config.getRetentionPolicy().setTaskRetentionTimeInMillis(TASK_RETENTION_TIME_IN_MILLIS);
+		config.getRetentionPolicy().setMaxHeapReportSizeInBytes(1);
+		File spillDirectory = File.createTempFile("lightning", "spill");
+		spillDirectory.delete();
+		config.getRetentionPolicy().setSpillDirectory(spillDirectory.getAbsolutePath());
+		ExecutionDataStore store = new ExecutionDataStore(config);
+		long now = System.currentTimeMillis();
+		String[] sessionIds = { "first", "second" };
+		for (int i = 0; i < sessionIds.length; i++) {
+			List<Task> tasks = createTasks(10);
+			LightningRequestReport report = store.register(new LightningRequest(sessionIds[i], tasks, new ReservationReceipt(State.ACCEPTED, "1", 10)));
+			for (Task task : tasks) {
+				task.setStatus(TaskStatus.SUCCESS);
+				report.recordCompletedTask(task);
+			}
+			report.setWorkDequeueTime(now + i);
+			report.setTotalExecutionTimeInMillis(0L);
+			report.setStatus(WorkStatus.DONE);
+			store.markCompleted(sessionIds[i]);
+		}
+		awaitSpilled(store);
+		assertEquals(0, store.getHeapReportSizeInBytes());
+		long spilledSize = store.getSpilledReportSizeInBytes();
+		Assert.assertTrue(spilledSize > 0);
+
+		assertEquals(1, spillDirectory.list().length);
+		LightningResponse response = store.pollResults("first", true);
+		assertEquals(10, response.getSuccessResponses().size());
+		assertEquals(10, response.getSequence());
+		// the change log is not spilled, the last sequence is kept
+		assertEquals(10, store.pollResults("first", 4).getSuccessResponses().size());
+		response = store.pollResults("first", 10);
+		assertEquals(0, response.getSuccessResponses().size());
+		assertEquals(10, response.getSequence());
+		assertEquals(WorkStatus.DONE, response.getStatus());
+		// the polls of a burst share the decoded report
+		Assert.assertSame(store.getReport("first"), store.getReport("first"));
+		assertEquals(WorkStatus.DONE, store.getReport("first").getStatus());
+		assertEquals(10, store.getReport("first").getRequest().getTasks().size());
+		assertEquals(1, store.getAuditReports("second").size());
+
+		store.cleanup(now + TASK_RETENTION_TIME_IN_MILLIS + 1);
+		awaitSpilled(store);
+		assertEquals(WorkStatus.CLEANED_UP, store.getReport("first").getStatus());
+		Assert.assertTrue(store.getSpilledReportSizeInBytes() < spilledSize);
+
+		config.getRetentionPolicy().setMaxSpilledReportSizeInBytes(1);
+		store.cleanup(now);
+		assertEquals(0, store.getSpilledReportSizeInBytes());
+		assertNull(store.getReport("first"));
+		assertNull(store.pollResults("second", false));
+		assertEquals(0, spillDirectory.list().length);
+		store.close();
+		spillDirectory.delete();
+	}
+
+	@Test
+	public void testCacheEncodedResponseOfCompletedRequest() throws Exception {
+		SystemConfig config = new SystemConfig();
+		config.setAuditCleanupFrequencyInSec(3600);
+		config.getRetentionPolicy().setTaskRetentionTimeInMillis(TASK_RETENTION_TIME_IN_MILLIS);
+		ExecutionDataStore store = new ExecutionDataStore(config);
+		long now = System.currentTimeMillis();
+		List<Task> tasks = createTasks(2);
+		for (Task task : tasks) {
+			task.setStatus(TaskStatus.SUCCESS);
+		}
+		LightningRequestReport report = store.register(new LightningRequest("session", tasks, new ReservationReceipt(State.ACCEPTED, "1", 2)));
+		report.setStatus(WorkStatus.RUNNING);
+		EncodedResponse running = store.pollEncodedResults("session", true, null);
+		Assert.assertNotSame(running, store.pollEncodedResults("session", true, null));
+
+		report.setWorkDequeueTime(now);
+		report.setTotalExecutionTimeInMillis(0L);
+		report.setStatus(WorkStatus.DONE);
+		store.markCompleted("session");
+		EncodedResponse done = store.pollEncodedResults("session", true, null);
+		Assert.assertFalse(running.getTag().equals(done.getTag()));
+		Assert.assertSame(done, store.pollEncodedResults("session", true, null));
+		EncodedResponse gzip = store.pollEncodedResults("session", false, null);
+		Assert.assertNotSame(done, gzip);
+		assertEquals(Codec.GZIP, gzip.getCodec());
+		Assert.assertSame(gzip, store.pollEncodedResults("session", false, "gzip, identity;q=0"));
+		EncodedResponse lz = store.pollEncodedResults("session", false, "x-lightning-lz;q=1.0, gzip;q=0.5, identity;q=0");
+		assertEquals(Codec.LZ, lz.getCodec());
+		Assert.assertSame(lz, store.pollEncodedResults("session", false, "x-lightning-lz, identity;q=0"));
+		// clients using different codecs do not evict each other
+		Assert.assertSame(gzip, store.pollEncodedResults("session", false, null));
+		Assert.assertSame(lz, store.pollEncodedResults("session", false, "x-lightning-lz, identity;q=0"));
+
+		store.cleanup(now + TASK_RETENTION_TIME_IN_MILLIS + 1);
+		EncodedResponse cleanedUp = store.pollEncodedResults("session", true, null);
+		Assert.assertNotSame(done, cleanedUp);
+		assertEquals(WorkStatus.CLEANED_UP, BinaryCodec.decodeResponse(ByteBuffer.wrap(cleanedUp.getBytes())).getStatus());
+		assertNull(store.pollEncodedResults("unknown", true, null));
+	}
+
+	private void awaitSpilled(ExecutionDataStore store) throws InterruptedException {
+		// the reports are spilled by the spill thread
+		long deadline = System.currentTimeMillis() + 5000;
+		while (store.getHeapReportSizeInBytes() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
 	private List<Task> createTasks(int load) throws Exception {
 		List<Task> resp = new ArrayList<>();
 		for (int i = 0; i < load; i++) {
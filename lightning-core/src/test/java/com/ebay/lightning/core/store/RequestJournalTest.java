@@ -0,0 +1,187 @@
+package com.ebay.lightning.core.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.config.SystemConfig.JournalPolicy;
+
+public class RequestJournalTest {
+
+	private File journalDirectory;
+	private JournalPolicy policy;
+
+	@Before
+	public void setup() throws Exception {
+		journalDirectory = File.createTempFile("lightning", "journal");
+		journalDirectory.delete();
+		policy = new JournalPolicy();
+		policy.setEnabled(true);
+		policy.setDirectory(journalDirectory.getAbsolutePath());
+		policy.setSegmentSizeInBytes(4096);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		FileUtils.deleteDirectory(journalDirectory);
+	}
+
+	@Test
+	public void testReplayInterruptedRequests() throws Exception {
+		RequestJournal journal = new RequestJournal(policy);
+		assertTrue(journal.open().isEmpty());
+		journal.start();
+		recordAccepted(journal, createRequest("session1", 5));
+		recordAccepted(journal, createRequest("session2", 5));
+		recordAccepted(journal, createRequest("session3", 5));
+		journal.recordCompleted("session2");
+		journal.close();
+
+		journal = new RequestJournal(policy);
+		List<LightningRequest> interrupted = journal.open();
+		assertEquals(2, interrupted.size());
+		assertEquals("session1", interrupted.get(0).getSessionId());
+		assertEquals("session3", interrupted.get(1).getSessionId());
+		assertEquals(5, interrupted.get(1).getTasks().size());
+
+		// only session3 is recorded again, session1 is dropped once the replayed segments are deleted
+		recordAccepted(journal, interrupted.get(1));
+		journal.start();
+		journal.close();
+
+		journal = new RequestJournal(policy);
+		interrupted = journal.open();
+		assertEquals(1, interrupted.size());
+		assertEquals("session3", interrupted.get(0).getSessionId());
+		journal.close();
+	}
+
+	@Test
+	public void testCompletedSegmentsAreDeleted() throws Exception {
+		RequestJournal journal = new RequestJournal(policy);
+		journal.open();
+		journal.start();
+		for (int i = 0; i < 20; i++) {
+			recordAccepted(journal, createRequest("session" + i, 50));
+			journal.flush();
+		}
+		assertTrue(journalDirectory.listFiles().length > 1);
+		for (int i = 0; i < 20; i++) {
+			journal.recordCompleted("session" + i);
+		}
+		journal.flush();
+		assertEquals(1, journalDirectory.listFiles().length);
+		journal.close();
+
+		journal = new RequestJournal(policy);
+		assertTrue(journal.open().isEmpty());
+		journal.close();
+	}
+
+	@Test
+	public void testSegmentsAreDeletedAfterRequestAcceptedAgain() throws Exception {
+		RequestJournal journal = new RequestJournal(policy);
+		journal.open();
+		journal.start();
+		LightningRequest request = createRequest("session0", 50);
+		recordAccepted(journal, request);
+		for (int i = 1; i < 20; i++) {
+			recordAccepted(journal, createRequest("session" + i, 50));
+			journal.flush();
+		}
+		// a request accepted again moves to the current segment
+		recordAccepted(journal, request);
+		for (int i = 0; i < 20; i++) {
+			journal.recordCompleted("session" + i);
+		}
+		journal.flush();
+		assertEquals(1, journalDirectory.listFiles().length);
+		journal.close();
+	}
+
+	@Test
+	public void testReplayAppendedTasks() throws Exception {
+		RequestJournal journal = new RequestJournal(policy);
+		journal.open();
+		journal.start();
+		LightningRequest request = createRequest("session1", 2);
+		request.setStreaming(true);
+		recordAccepted(journal, request);
+		journal.awaitRecorded("session1");
+		journal.recordAppended("session1", appendTasks(request, 3), false);
+		// appended before the accept record is written, the record already holds the tasks
+		LightningRequest other = createRequest("session2", 2);
+		other.setStreaming(true);
+		recordAccepted(journal, other);
+		List<Task> chunk = appendTasks(other, 1);
+		journal.recordAppended("session2", chunk, true);
+		journal.recordAppended("session1", appendTasks(request, 1), true);
+		journal.close();
+
+		journal = new RequestJournal(policy);
+		List<LightningRequest> interrupted = journal.open();
+		assertEquals(2, interrupted.size());
+		assertEquals(6, interrupted.get(0).getTasks().size());
+		assertFalse(interrupted.get(0).isStreaming());
+		assertEquals(3, interrupted.get(1).getTasks().size());
+		assertFalse(interrupted.get(1).isStreaming());
+		journal.close();
+	}
+
+	@Test
+	public void testTornRecordIsIgnored() throws Exception {
+		RequestJournal journal = new RequestJournal(policy);
+		journal.open();
+		journal.start();
+		recordAccepted(journal, createRequest("session1", 5));
+		journal.close();
+
+		File segment = journalDirectory.listFiles()[0];
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(20);
+			file.write(new byte[] { 1, 2, 3, 4 });
+		}
+
+		journal = new RequestJournal(policy);
+		assertTrue(journal.open().isEmpty());
+		journal.close();
+	}
+
+	private List<Task> appendTasks(LightningRequest request, int taskCount) {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < taskCount; i++) {
+			Task task = new URLTask("http://localhost:8989/l/ecv?id=" + request.getTasks().size());
+			task.setIndex(request.getTasks().size() + i);
+			tasks.add(task);
+		}
+		request.addTasks(tasks);
+		return tasks;
+	}
+
+	private void recordAccepted(RequestJournal journal, LightningRequest request) {
+		journal.recordAccepted(request, request);
+	}
+
+	private LightningRequest createRequest(String sessionId, int taskCount) {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < taskCount; i++) {
+			tasks.add(new URLTask("http://localhost:8989/l/ecv?id=" + i));
+		}
+		ReservationReceipt receipt = new ReservationReceipt(ReservationReceipt.State.ACCEPTED, sessionId, taskCount);
+		return new LightningRequest(sessionId, tasks, receipt);
+	}
+}
@@ -0,0 +1,115 @@
+package com.ebay.lightning.core.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.config.SystemConfig.RetentionPolicy;
+
+public class SpilledReportStoreTest {
+
+	private File spillDirectory;
+	private RetentionPolicy policy;
+
+	@Before
+	public void setup() throws Exception {
+		spillDirectory = File.createTempFile("lightning", "spill");
+		spillDirectory.delete();
+		policy = new RetentionPolicy();
+		policy.setSpillDirectory(spillDirectory.getAbsolutePath());
+		policy.setSpillSegmentSizeInBytes(4096);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		FileUtils.deleteDirectory(spillDirectory);
+	}
+
+	@Test
+	public void testSpillIntoSegments() throws Exception {
+		SpilledReportStore store = new SpilledReportStore(policy);
+		byte[] first = spill(store, "first", 5);
+		assertEquals(1, store.getSegmentCount());
+		assertEquals(1, spillDirectory.list().length);
+		assertEquals(first.length, store.getSizeInBytes());
+		assertEquals(5, store.getSequence("first"));
+		assertEquals(5, store.get("first").getRequest().getTasks().size());
+
+		// a report larger than the segment size gets a segment of its own
+		byte[] large = spill(store, "large", 200);
+		assertTrue(large.length > policy.getSpillSegmentSizeInBytes());
+		assertEquals(2, store.getSegmentCount());
+		assertEquals(200, store.get("large").getRequest().getTasks().size());
+		assertEquals(5, store.get("first").getRequest().getTasks().size());
+
+		// the full segment is deleted once its last report is removed
+		assertTrue(store.remove("first"));
+		assertFalse(store.remove("first"));
+		assertEquals(1, store.getSegmentCount());
+		assertEquals(1, spillDirectory.list().length);
+		assertEquals(large.length, store.getSizeInBytes());
+		assertNull(store.get("first"));
+		assertEquals(-1, store.getSequence("first"));
+
+		store.close();
+		assertEquals(0, spillDirectory.list().length);
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	public void testReplaceSpilledReport() throws Exception {
+		SpilledReportStore store = new SpilledReportStore(policy);
+		spill(store, "session", 5);
+		byte[] replaced = spill(store, "session", 3);
+		assertEquals(1, store.size());
+		assertEquals(replaced.length, store.getSizeInBytes());
+		assertEquals(3, store.get("session").getRequest().getTasks().size());
+		store.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testSpillFailure() throws Exception {
+		File file = File.createTempFile("lightning", "spill");
+		try {
+			// the spill directory cannot be created over a file
+			policy.setSpillDirectory(new File(file, "spill").getAbsolutePath());
+			SpilledReportStore store = new SpilledReportStore(policy);
+			try {
+				spill(store, "session", 5);
+			} finally {
+				assertEquals(0, store.size());
+				assertEquals(0, store.getSizeInBytes());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private byte[] spill(SpilledReportStore store, String sessionId, int load) throws IOException {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < load; i++) {
+			tasks.add(new URLTask("http://localhost:8989/l/ecv/" + UUID.randomUUID()));
+		}
+		LightningRequestReport report = new LightningRequestReport(new LightningRequest(sessionId, tasks, new ReservationReceipt(
+				ReservationReceipt.State.ACCEPTED, "1", load)));
+		byte[] bytes = SpilledReportStore.serialize(sessionId, report);
+		store.put(sessionId, bytes, load);
+		return bytes;
+	}
+}
@@ -0,0 +1,30 @@
+package com.ebay.lightning.core.store;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TaskChangeLogTest {
+
+	@Test
+	public void testAppendAcrossChunks() {
+		int entries = 10000;
+		TaskChangeLog changeLog = new TaskChangeLog(entries);
+		assertEquals(0, changeLog.size());
+		for (int i = 0; i < entries; i++) {
+			changeLog.append(entries - i);
+		}
+		assertEquals(entries, changeLog.size());
+		for (int i = 0; i < entries; i++) {
+			assertEquals(entries - i, changeLog.get(i));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAppendBeyondCapacity() {
+		TaskChangeLog changeLog = new TaskChangeLog(1);
+		for (int i = 0; i <= 4096; i++) {
+			changeLog.append(i);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.ebay.lightning.core.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.ReservationReceipt.State;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.ebay.lightning.core.utils.ZipUtil;
+
+public class TaskResultColumnsTest {
+
+	private static final int TASK_COUNT = 1000;
+
+	@Test
+	public void testCompactMatchesTaskResponse() {
+		LightningResponse expected = createCompletedReport().generateResposne(false);
+		LightningRequestReport report = createCompletedReport();
+		report.compactTaskResults();
+
+		assertNotNull(report.getTaskResults());
+		assertTrue(report.getRequest().getTasks().isEmpty());
+		assertEquals(2, report.getTaskResults().getDistinctErrorCount());
+
+		LightningResponse response = report.generateResposne(false);
+		assertEquals(expected.getTotalCount(), response.getTotalCount());
+		assertEquals(expected.getSuccessCount(), response.getSuccessCount());
+		assertEquals(expected.getSequence(), response.getSequence());
+		assertEquals(expected.getFailedResponses().size(), response.getFailedResponses().size());
+		assertEquals(expected.getSuccessResponses().size(), response.getSuccessResponses().size());
+		for (Map.Entry<Integer, FailedResponse> entry : expected.getFailedResponses().entrySet()) {
+			FailedResponse failedResponse = response.getFailedResponses().get(entry.getKey());
+			assertEquals(entry.getValue().getStatusCode(), failedResponse.getStatusCode());
+			assertEquals(entry.getValue().getErrMsg(), failedResponse.getErrMsg());
+		}
+		assertNull(response.getFailedResponses().get(0));
+		assertEquals("body-0", response.getSuccessResponses().get(0).getBody());
+	}
+
+	@Test
+	public void testPollSinceSequenceAfterCompaction() {
+		LightningRequestReport report = createCompletedReport();
+		report.compactTaskResults();
+
+		LightningResponse response = report.generateResponse(TASK_COUNT - 10);
+		assertEquals(TASK_COUNT, response.getSequence());
+		assertEquals(10, response.getFailedResponses().size() + response.getSuccessResponses().size());
+		assertEquals(response.getSuccessResponses().size(), response.getSuccessCount());
+		assertEquals(0, report.generateResponse(TASK_COUNT).getFailedResponses().size());
+	}
+
+	@Test
+	public void testSerializedViewIsPlainMap() throws Exception {
+		LightningRequestReport report = createCompletedReport();
+		report.compactTaskResults();
+		LightningResponse response = report.generateResposne(false);
+
+		LightningResponse copy = (LightningResponse) ZipUtil.unZipByteArray(ZipUtil.zipAsByteArray(response), LightningResponse.class);
+		assertEquals(HashMap.class, copy.getFailedResponses().getClass());
+		assertEquals(response.getFailedResponses().size(), copy.getFailedResponses().size());
+		assertEquals("HTTP 404", copy.getFailedResponses().get(1).getErrMsg());
+	}
+
+	@Test
+	public void testDetailedReportRebuildsTasks() {
+		LightningRequestReport report = createCompletedReport();
+		report.compactTaskResults();
+
+		LightningRequestReport detailed = report.toDetailedReport();
+		List<Task> tasks = detailed.getRequest().getTasks();
+		assertEquals(TASK_COUNT, tasks.size());
+		assertTrue(report.getRequest().getTasks().isEmpty());
+		assertEquals(report.getStatus(), detailed.getStatus());
+
+		URLTask success = (URLTask) tasks.get(2);
+		assertEquals(2, success.getIndex());
+		assertEquals("http://localhost:8989/2", success.getCompleteURL());
+		assertEquals(TaskStatus.SUCCESS, success.getStatus());
+		assertEquals(200, success.getStatusCode());
+		assertEquals("body-2", success.getBody());
+
+		URLTask failed = (URLTask) tasks.get(1);
+		assertEquals("http://localhost:8989/1", failed.getCompleteURL());
+		assertEquals(TaskStatus.FAILED, failed.getStatus());
+		assertEquals(404, failed.getStatusCode());
+		assertEquals("HTTP 404", failed.getErrorMsg());
+		assertEquals(TaskStatus.CONNECT_FAILED, tasks.get(3).getStatus());
+	}
+
+	@Test
+	public void testRunningRequestIsNotCompacted() {
+		LightningRequestReport report = createCompletedReport();
+		report.setStatus(WorkStatus.RUNNING);
+		report.compactTaskResults();
+		assertNull(report.getTaskResults());
+		assertEquals(TASK_COUNT, report.getRequest().getTasks().size());
+	}
+
+	private LightningRequestReport createCompletedReport() {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < TASK_COUNT; i++) {
+			URLTask task = new URLTask("http://localhost:8989/" + i);
+			if (i % 2 == 0) {
+				task.setStatus(TaskStatus.SUCCESS);
+				task.setStatusCode(200);
+				task.setBody("body-" + i);
+			} else if (i % 3 == 0) {
+				task.setStatus(TaskStatus.CONNECT_FAILED);
+				task.setErrorMsg("Connect failed : Connection refused");
+			} else {
+				task.setStatus(TaskStatus.FAILED);
+				task.setStatusCode(404);
+				task.setErrorMsg("HTTP 404");
+			}
+			tasks.add(task);
+		}
+		LightningRequestReport report = new LightningRequestReport(new LightningRequest("session", tasks, new ReservationReceipt(State.ACCEPTED, "1", TASK_COUNT)));
+		report.setProcessStartTime(System.currentTimeMillis());
+		for (Task task : tasks) {
+			report.recordCompletedTask(task);
+		}
+		report.setStatus(WorkStatus.DONE);
+		return report;
+	}
+}
@@ -0,0 +1,166 @@
+package com.ebay.lightning.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.BatchReport;
+import com.ebay.lightning.core.beans.ChainedURLTask;
+import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
+import com.ebay.lightning.core.beans.LightningResponse.SuccessResponse;
+import com.ebay.lightning.core.beans.ReservationReceipt;
+import com.ebay.lightning.core.beans.ReservationReceipt.State;
+import com.ebay.lightning.core.beans.Task;
+import com.ebay.lightning.core.beans.URLTask;
+import com.ebay.lightning.core.beans.URLTemplate;
+import com.ebay.lightning.core.config.RequestConfig;
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
+import com.ebay.lightning.core.constants.LightningCoreConstants.HttpMethod;
+import com.ebay.lightning.core.constants.LightningCoreConstants.TaskStatus;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
+import com.ebay.lightning.core.store.LightningRequestReport;
+
+public class BinaryCodecTest {
+
+	@Test
+	public void testRequestRoundTrip() throws Exception {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			tasks.add(new URLTask("http://host" + i + ".example.com:8080/path?q=é" + i));
+		}
+		ChainedURLTask chainedTask = new ChainedURLTask();
+		chainedTask.addUrlTask(new URLTask("http://localhost/first"));
+		chainedTask.addUrlTask(new URLTask("http://localhost/second"));
+		tasks.add(chainedTask);
+		LightningRequest request = new LightningRequest("session", tasks, new ReservationReceipt(State.ACCEPTED, "r1", tasks.size()));
+		RequestConfig config = new RequestConfig();
+		config.setConnectTimeoutMillis(500);
+		config.setMethod(HttpMethod.HEAD);
+		request.setRequestconfig(config);
+
+		byte[] encoded = BinaryCodec.toByteArray(BinaryCodec.encode(request));
+		assertTrue(BinaryCodec.isEncoded(encoded));
+		assertFalse(BinaryCodec.isEncoded(ZipUtil.zipAsByteArray(request)));
+
+		LightningRequest decoded = BinaryCodec.decodeRequest(ByteBuffer.wrap(encoded));
+		assertEquals("session", decoded.getSessionId());
+		assertEquals(tasks.size(), decoded.getRequestSize());
+		assertEquals("r1", decoded.getReservationReciept().getId());
+		assertEquals(tasks.size(), decoded.getReservationReciept().getLoad());
+		assertEquals(Integer.valueOf(500), decoded.getRequestconfig().getConnectTimeoutMillis());
+		assertNull(decoded.getRequestconfig().getReadWriteTimeoutMillis());
+		assertEquals(HttpMethod.HEAD, decoded.getRequestconfig().getMethod());
+		assertEquals(((URLTask) tasks.get(7)).getCompleteURL(), ((URLTask) decoded.getTasks().get(7)).getCompleteURL());
+		ChainedURLTask decodedChain = (ChainedURLTask) decoded.getTasks().get(1000);
+		assertEquals(2, decodedChain.getUrlTasks().size());
+		assertNull(decodedChain.getCurrentUrlTask());
+		assertEquals("http://localhost/second", decodedChain.getUrlTasks().get(1).getCompleteURL());
+
+		URLTemplate template = new URLTemplate("http://{host}/ecv").addParameter("host", Arrays.asList("host1", "host2"));
+		LightningRequest templateRequest = new LightningRequest("session", template, new ReservationReceipt(State.ACCEPTED, "r2", 2));
+		templateRequest.setStreaming(true);
+		LightningRequest decodedTemplateRequest = BinaryCodec.decodeRequest(BinaryCodec.encode(templateRequest));
+		assertTrue(decodedTemplateRequest.isStreaming());
+		assertEquals(2, decodedTemplateRequest.getRequestSize());
+		assertEquals(0, decodedTemplateRequest.getTasks().size());
+		assertEquals("http://host2/ecv", decodedTemplateRequest.getUrlTemplate().expand(1).getCompleteURL());
+	}
+
+	@Test
+	public void testResponseRoundTrip() {
+		LightningResponse response = new LightningResponse("session", WorkStatus.RUNNING);
+		response.setTotalCount(3);
+		response.setSuccessCount(1);
+		response.setSequence(3);
+		Map<Integer, FailedResponse> failedResponses = new HashMap<>();
+		failedResponses.put(1, new FailedResponse(404, ErrorCode.HTTP_ERROR, ErrorCode.statusCodeDetail(404)));
+		failedResponses.put(2, new FailedResponse(0, "custom failure"));
+		response.setFailedResponses(failedResponses);
+		Map<Integer, SuccessResponse> successResponses = new HashMap<>();
+		successResponses.put(0, new SuccessResponse("body"));
+		response.setSuccessResponses(successResponses);
+
+		LightningResponse decoded = BinaryCodec.decodeResponse(BinaryCodec.encode(response));
+		assertEquals(WorkStatus.RUNNING, decoded.getStatus());
+		assertEquals(3, decoded.getTotalCount());
+		assertEquals(1, decoded.getSuccessCount());
+		assertEquals(3, decoded.getSequence());
+		assertEquals(ErrorCode.HTTP_ERROR, decoded.getFailedResponses().get(1).getErrorCode());
+		assertEquals("HTTP 404", decoded.getFailedResponses().get(1).getErrMsg());
+		assertEquals(404, decoded.getFailedResponses().get(1).getStatusCode());
+		assertEquals("custom failure", decoded.getFailedResponses().get(2).getErrMsg());
+		assertEquals("body", decoded.getSuccessResponses().get(0).getBody());
+
+		LightningResponse emptyResponse = BinaryCodec.decodeResponse(BinaryCodec.encode(new LightningResponse("session", WorkStatus.IN_QUEUE)));
+		assertNull(emptyResponse.getFailedResponses());
+		assertNull(emptyResponse.getSuccessResponses());
+	}
+
+	@Test
+	public void testReportRoundTrip() {
+		List<Task> tasks = new ArrayList<>();
+		URLTask task = new URLTask("http://localhost/fail");
+		task.setStatus(TaskStatus.CONNECT_FAILED);
+		task.setError(ErrorCode.CONNECT_FAILED, "Connection refused");
+		tasks.add(task);
+		LightningRequestReport report = new LightningRequestReport(new LightningRequest("session", tasks, new ReservationReceipt(State.ACCEPTED, "1", 1)));
+		report.setStatus(WorkStatus.DONE);
+		report.setWorkEnqueueTime(10L);
+		report.setProcessStartTime(10L);
+		report.setTotalExecutionTimeInMillis(25L);
+		BatchReport batchReport = new BatchReport(1);
+		batchReport.setBatchId(1);
+		batchReport.setConnectFailureCount(1);
+		report.getBatchReport().put(1, batchReport);
+		assertTrue(BinaryCodec.canEncode(report));
+
+		LightningRequestReport decoded = BinaryCodec.decodeReport(BinaryCodec.encode(report));
+		assertEquals(WorkStatus.DONE, decoded.getStatus());
+		assertEquals(Long.valueOf(10), decoded.getWorkEnqueueTime());
+		assertEquals(Long.valueOf(25), decoded.getTotalExecutionTimeInMillis());
+		assertEquals(1, decoded.getBatchReport().get(1).getConnectFailureCount());
+		URLTask decodedTask = (URLTask) decoded.getRequest().getTasks().get(0);
+		assertEquals(TaskStatus.CONNECT_FAILED, decodedTask.getStatus());
+		assertEquals("Connect failed : Connection refused", decodedTask.getErrorMsg());
+
+		report.compactTaskResults();
+		assertFalse(BinaryCodec.canEncode(report));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsNewerVersion() {
+		ByteBuffer encoded = BinaryCodec.encode(new LightningResponse("session", WorkStatus.DONE));
+		encoded.put(2, (byte) (BinaryCodec.VERSION + 1));
+		BinaryCodec.decodeResponse(encoded);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsLengthBeyondMessage() {
+		ByteBuffer encoded = BinaryCodec.encode(new LightningResponse("session", WorkStatus.DONE));
+		// the session id length, zig-zag encoded
+		encoded.put(4, (byte) 0x7E);
+		BinaryCodec.decodeResponse(encoded);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsUnknownEnumName() {
+		ByteBuffer encoded = BinaryCodec.encode(new LightningResponse("session", WorkStatus.RUNNING));
+		byte[] bytes = new byte[encoded.remaining()];
+		encoded.get(bytes);
+		String message = new String(bytes, StandardCharsets.ISO_8859_1).replace("RUNNING", "RUNNINX");
+		BinaryCodec.decodeResponse(ByteBuffer.wrap(message.getBytes(StandardCharsets.ISO_8859_1)));
+	}
+}
@@ -0,0 +1,61 @@
+package com.ebay.lightning.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.Test;
+
+import com.ebay.lightning.core.beans.SystemStatus;
+import com.ebay.lightning.core.config.SystemConfig;
+
+public class ResourceMonitorTest {
+
+	private static final String SOCKET_TABLE =
+			"  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode\n"
+			+ "   0: 00000000:1F90 00000000:0000 0A 00000000:00000000 00:00000000 00000000     0        0 662 1\n"
+			+ "   1: 0100007F:8000 0100007F:1F90 01 00000000:00000000 00:00000000 00000000     0        0 663 1\n"
+			+ "   2: 0100007F:8001 0100007F:1F90 06 00000000:00000000 00:00000000 00000000     0        0 0 1\n"
+			+ "   3: 0100007F:8002 0100007F:1F90 06 00000000:00000000 00:00000000 00000000     0        0 0 1\n"
+			+ "   4: 0100007F:1F90 0100007F:8000 01 00000000:00000000 00:00000000 00000000     0        0 664 1\n";
+
+	@Test
+	public void testParseSocketTable() throws Exception {
+		File table = File.createTempFile("tcp", ".txt");
+		table.deleteOnExit();
+		try (FileWriter writer = new FileWriter(table)) {
+			writer.write(SOCKET_TABLE);
+		}
+		ResourceMonitor.ResourceUsage usage = new ResourceMonitor.ResourceUsage();
+		ResourceMonitor.parseSocketTable(table.getAbsolutePath(), new int[] { 32768, 60999 }, usage);
+		assertEquals(2, usage.getEstablishedSocketCount());
+		assertEquals(2, usage.getTimeWaitSocketCount());
+		assertEquals(3, usage.getEphemeralPortsInUse());
+	}
+
+	@Test
+	public void testMissingProcFiles() {
+		assertNull(ResourceMonitor.readLocalPortRange("/nonexistent/ip_local_port_range"));
+		ResourceMonitor.ResourceUsage usage = new ResourceMonitor.ResourceUsage();
+		ResourceMonitor.parseSocketTable("/nonexistent/tcp", null, usage);
+		assertEquals(0, usage.getEstablishedSocketCount());
+	}
+
+	@Test
+	public void testHeadroom() {
+		SystemConfig systemConfig = new SystemConfig();
+		ResourceMonitor monitor = new ResourceMonitor(systemConfig);
+		assertTrue(monitor.getConnectionHeadroom() >= 0);
+		assertTrue(monitor.getInFlightLimit(systemConfig.getWorkerBatchSize()) <= systemConfig.getWorkerBatchSize());
+		SystemStatus status = new SystemStatus();
+		monitor.updateSystemStatus(status);
+		assertTrue(status.getConnectionHeadroom() >= 0);
+
+		systemConfig.getAdmissionPolicy().setEnabled(false);
+		assertEquals(ResourceMonitor.UNBOUNDED, monitor.getConnectionHeadroom());
+		assertEquals(systemConfig.getWorkerBatchSize(), monitor.getInFlightLimit(systemConfig.getWorkerBatchSize()));
+	}
+}
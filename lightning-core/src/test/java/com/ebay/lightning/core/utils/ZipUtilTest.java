@@ -3,11 +3,18 @@
  */
 package com.ebay.lightning.core.utils;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.Test;
 
+import com.ebay.lightning.core.utils.ZipUtil.Codec;
+
 /**
  * @author shashukla
  *
@@ -70,4 +77,72 @@ public class ZipUtilTest {
 		}
 	}
 	
-}
+	@Test
+	public void testCodecs() throws Exception{
+		for (Codec codec : Codec.values()) {
+			byte[] compressedToken = ZipUtil.zipAsByteArray(token, codec);
+			assertEquals(token, ZipUtil.unZipByteArray(compressedToken, String.class));
+			assertEquals(token, ZipUtil.unZip(ZipUtil.zip(token, codec), String.class));
+			if (codec != Codec.IDENTITY) {
+				assertTrue(codec + " should reduce token size", compressedToken.length < token.length());
+			}
+		}
+	}
+	
+	@Test
+	public void testNegotiate(){
+		assertEquals(Codec.GZIP, Codec.negotiate(null, 10, 1024));
+		assertEquals(Codec.IDENTITY, Codec.negotiate("x-lightning-lz, gzip", 10, 1024));
+		assertEquals(Codec.LZ, Codec.negotiate("x-lightning-lz, gzip", 2048, 1024));
+		assertEquals(Codec.GZIP, Codec.negotiate("br;q=1.0, Deflate;q=0.8, gzip", 2048, 1024));
+		assertEquals(Codec.DEFLATE, Codec.negotiate("gzip;q=0.5, deflate;q=0.8", 2048, 1024));
+		assertEquals(Codec.GZIP, Codec.negotiate("gzip, *;q=0", 10, 1024));
+		assertEquals(Codec.IDENTITY, Codec.negotiate("gzip, identity;q=0.1, *;q=0", 10, 1024));
+		assertEquals(Codec.GZIP, Codec.negotiate("gzip, identity;q=0", 10, 1024));
+		assertEquals(Codec.GZIP, Codec.negotiate("x-lightning-lz;q=0, gzip", 2048, 1024));
+		assertEquals(Codec.IDENTITY, Codec.negotiate("br", 2048, 1024));
+		assertEquals("x-lightning-lz, identity", Codec.toAcceptEncoding(Codec.LZ, Codec.IDENTITY));
+	}
+	
+	@Test
+	public void testLZCodec() throws Exception{
+		Random random = new Random(7);
+		byte[] noise = new byte[70000];
+		random.nextBytes(noise);
+		byte[] runs = new byte[70000];
+		for (int i = 0; i < runs.length; i++) {
+			runs[i] = (byte) (i % 1000 < 600 ? 'a' : random.nextInt(4));
+		}
+		for (byte[] data : Arrays.asList(new byte[0], new byte[] { 1, 2, 3 }, token.getBytes(), noise, runs)) {
+			byte[] compressed = LZCodec.compress(data);
+			assertTrue(LZCodec.isEncoded(compressed));
+			assertArrayEquals(data, LZCodec.decompress(compressed));
+		}
+		assertTrue(LZCodec.compress(runs).length < runs.length / 2);
+		
+		byte[] corrupt = LZCodec.compress(token.getBytes());
+		corrupt = Arrays.copyOf(corrupt, corrupt.length - 5);
+		try{
+			LZCodec.decompress(corrupt);
+			assertTrue(false);
+		}catch(IOException e){
+			assertTrue(true);
+		}
+
+		// lengths in the header the block cannot hold
+		for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+			byte[] header = LZCodec.compress(new byte[] { 1, 2, 3 });
+			header[3] = (byte) (length >>> 24);
+			header[4] = (byte) (length >>> 16);
+			header[5] = (byte) (length >>> 8);
+			header[6] = (byte) length;
+			try{
+				LZCodec.decompress(header);
+				assertTrue(false);
+			}catch(IOException e){
+				assertTrue(e.getMessage().contains("invalid length"));
+			}
+		}
+	}
+	
+}
\ No newline at end of file
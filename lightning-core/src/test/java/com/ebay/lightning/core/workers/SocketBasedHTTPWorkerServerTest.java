@@ -2,26 +2,34 @@ package com.ebay.lightning.core.workers;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.Assert;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.web.EmbeddedServletContainerAutoConfiguration;
 import org.springframework.context.ConfigurableApplicationContext;
 
+import com.ebay.lightning.core.beans.BatchReport;
 import com.ebay.lightning.core.beans.LightningRequest;
+import com.ebay.lightning.core.beans.LightningResponse;
+import com.ebay.lightning.core.beans.LightningResponse.FailedResponse;
 import com.ebay.lightning.core.beans.ReservationReceipt;
 import com.ebay.lightning.core.beans.ReservationReceipt.State;
 import com.ebay.lightning.core.beans.Task;
 import com.ebay.lightning.core.beans.URLTask;
 import com.ebay.lightning.core.config.RequestConfig;
 import com.ebay.lightning.core.config.SystemConfig;
+import com.ebay.lightning.core.constants.LightningCoreConstants.ErrorCode;
+import com.ebay.lightning.core.constants.LightningCoreConstants.WorkStatus;
 import com.ebay.lightning.core.constants.LightningCoreConstants.WorkerState;
 import com.ebay.lightning.core.store.ExecutionDataStore;
 import com.ebay.lightning.core.utils.InetSocketAddressCache;
+import com.ebay.lightning.core.utils.ResourceMonitor;
 import com.ebay.lightning.testing.SimpleHttpServer;
 
 public class SocketBasedHTTPWorkerServerTest {
@@ -98,6 +106,134 @@ public class SocketBasedHTTPWorkerServerTest {
 		
 	}
 	
+	@Test
+	public void testStopOnMaxFailures() throws Exception {
+		RequestConfig config = new RequestConfig();
+		config.setMaxFailures(1);
+		LightningResponse response = executeWithStopCondition("stopOnFailures", baseUrl + "error", config);
+		Assert.assertEquals(WorkStatus.DONE, response.getStatus());
+		Assert.assertEquals(0, response.getSuccessCount());
+		Assert.assertEquals(response.getTotalCount(), response.getFailedResponses().size());
+		Assert.assertTrue(countStopped(response) > 0);
+		Assert.assertTrue(countStopped(response) <= response.getTotalCount() - 2);
+	}
+
+	@Test
+	public void testStopOnMinSuccesses() throws Exception {
+		RequestConfig config = new RequestConfig();
+		config.setMinSuccesses(2);
+		LightningResponse response = executeWithStopCondition("stopOnSuccesses", baseUrl + "ecv", config);
+		Assert.assertEquals(WorkStatus.DONE, response.getStatus());
+		Assert.assertTrue(response.getSuccessCount() >= 2);
+		Assert.assertTrue(response.getSuccessCount() < response.getTotalCount());
+		Assert.assertEquals(response.getTotalCount(), response.getSuccessCount() + response.getFailedResponses().size());
+		Assert.assertEquals(response.getFailedResponses().size(), countStopped(response));
+	}
+
+	@Test
+	public void testStopOnFailurePercent() throws Exception {
+		RequestConfig config = new RequestConfig();
+		config.setMaxFailurePercent(50);
+		config.setMinSamplesForFailurePercent(4);
+		LightningResponse response = executeWithStopCondition("stopOnFailurePercent", baseUrl + "error", config);
+		Assert.assertEquals(WorkStatus.DONE, response.getStatus());
+		Assert.assertEquals(response.getTotalCount(), response.getFailedResponses().size());
+		Assert.assertTrue(countStopped(response) > 0);
+		Assert.assertTrue(countStopped(response) <= response.getTotalCount() - 4);
+	}
+
+	@Test
+	public void testStopDuringRetry() throws Exception {
+		InetSocketAddressCache inetCache = new InetSocketAddressCache(new SystemConfig());
+		ExecutionDataStore store = new ExecutionDataStore(new SystemConfig());
+		SystemConfig systemConfig = new SystemConfig();
+		RequestConfig config = new RequestConfig();
+		config.setMinSuccesses(2);
+		config.setRetryFailedTasks(true);
+		config.loadDefaultValues(systemConfig);
+		config.setRetrySlowUrlsReadWriteTimeoutMillis(3000);
+
+		socketBasedHTTPWorker = new SocketBasedHTTPWorker(inetCache, store, systemConfig, config);
+		socketBasedHTTPWorker.setMaxInFlightConnections(2);
+		// every task times out in the first pass and succeeds on retry, the first retried batch meets the stop condition
+		socketBasedHTTPWorker.setSlowUrlsReadWriteTimeoutMillis(100);
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			tasks.add(new URLTask(baseUrl + "slowEcv"));
+		}
+		store.register(new LightningRequest("stopDuringRetry", tasks, new ReservationReceipt(State.ACCEPTED, "stopDuringRetry", 500)));
+		socketBasedHTTPWorker.execute("stopDuringRetry");
+
+		LightningResponse response = store.pollResults("stopDuringRetry", false);
+		Assert.assertEquals(WorkStatus.DONE, response.getStatus());
+		Assert.assertEquals(2, response.getSuccessCount());
+		Assert.assertEquals(4, response.getFailedResponses().size());
+		Assert.assertEquals(4, countStopped(response));
+		// the stopped retry tasks are in the change log as well
+		LightningResponse delta = store.pollResults("stopDuringRetry", 0);
+		Assert.assertEquals(2, delta.getSuccessCount());
+		Assert.assertEquals(4, countStopped(delta));
+	}
+
+	@Test
+	public void testBatchSizeFollowsHeadroom() throws Exception {
+		InetSocketAddressCache inetCache = new InetSocketAddressCache(new SystemConfig());
+		ExecutionDataStore store = new ExecutionDataStore(new SystemConfig());
+		SystemConfig systemConfig = new SystemConfig();
+		RequestConfig config = new RequestConfig();
+		config.loadDefaultValues(systemConfig);
+		ResourceMonitor resourceMonitor = Mockito.mock(ResourceMonitor.class);
+		// the headroom shrinks and grows back while the request runs
+		Mockito.when(resourceMonitor.getInFlightLimit(systemConfig.getWorkerBatchSize())).thenReturn(4, 2, 5);
+
+		socketBasedHTTPWorker = new SocketBasedHTTPWorker(inetCache, store, systemConfig, config);
+		socketBasedHTTPWorker.setResourceMonitor(resourceMonitor);
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 9; i++) {
+			tasks.add(new URLTask(baseUrl + "ecv"));
+		}
+		store.register(new LightningRequest("headroom", tasks, new ReservationReceipt(State.ACCEPTED, "headroom", 500)));
+		socketBasedHTTPWorker.execute("headroom");
+
+		Map<Integer, BatchReport> batchReports = store.getReport("headroom").getBatchReport();
+		Assert.assertEquals(3, batchReports.size());
+		Assert.assertEquals(4, batchReports.get(0).getBatchSize());
+		Assert.assertEquals(2, batchReports.get(1).getBatchSize());
+		Assert.assertEquals(3, batchReports.get(2).getBatchSize());
+	}
+
+	private LightningResponse executeWithStopCondition(String sessionId, String url, RequestConfig config) {
+		InetSocketAddressCache inetCache = new InetSocketAddressCache(new SystemConfig());
+		ExecutionDataStore store = new ExecutionDataStore(new SystemConfig());
+		SystemConfig systemConfig = new SystemConfig();
+		config.loadDefaultValues(systemConfig);
+		config.setConnectTimeoutMillis(1000);
+		config.setReadWriteTimeoutMillis(1000);
+
+		socketBasedHTTPWorker = new SocketBasedHTTPWorker(inetCache, store, systemConfig, config);
+		socketBasedHTTPWorker.setMaxInFlightConnections(2);
+
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			tasks.add(new URLTask(url));
+		}
+		LightningRequest request = new LightningRequest(sessionId, tasks, new ReservationReceipt(State.ACCEPTED, sessionId, 500));
+		store.register(request);
+		socketBasedHTTPWorker.execute(sessionId);
+		Assert.assertEquals(true, WorkerState.IDLE.equals(socketBasedHTTPWorker.getCurrentState()));
+		return store.pollResults(sessionId, false);
+	}
+
+	private static int countStopped(LightningResponse response) {
+		int stopped = 0;
+		for (FailedResponse failedResponse : response.getFailedResponses().values()) {
+			if (ErrorCode.REQUEST_STOPPED.equals(failedResponse.getErrorCode())) {
+				stopped++;
+			}
+		}
+		return stopped;
+	}
+
 	@AfterClass
 	public static void shutDown(){
 		SpringApplication.exit(context);
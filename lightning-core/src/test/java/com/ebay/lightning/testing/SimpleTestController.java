@@ -61,6 +61,14 @@ public class SimpleTestController {
 		return "OK";
 	}
 	
+	@RequestMapping(value = "/slowEcv", method = {RequestMethod.GET,RequestMethod.HEAD}, produces = "application/json")
+	public String slowEcv() {
+		try{
+			Thread.sleep(500);
+		}catch(InterruptedException e){}
+		return "OK";
+	}
+	
 	@RequestMapping(value = "/error", method = {RequestMethod.GET,RequestMethod.HEAD}, produces = "application/json")
 	public ResponseEntity<String> error() {
 		return new ResponseEntity<String>(HttpStatus.GATEWAY_TIMEOUT);